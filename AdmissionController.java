@@ -0,0 +1,160 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive concurrency limit with priority classes, for the request tier in front of the
+ * routing engine.
+ *
+ * The limit follows the gradient between long-run and recent request latency (the Gradient2
+ * scheme from Netflix's concurrency-limits). While recent latency stays within a tolerance of
+ * the long-run baseline, the limit grows by about sqrt(limit) per sample. Once requests start
+ * queueing behind each other, it shrinks in proportion to the slowdown. Samples taken while
+ * the tier was far below its limit say nothing about capacity and only feed the averages.
+ *
+ * Each priority may fill only its share of the limit, so as load rises analytics is shed
+ * first and emergency routing last. A request over its share is rejected at once rather
+ * than queued.
+ */
+public class AdmissionController {
+
+    private static final double RTT_TOLERANCE = 1.5;     // slowdown accepted before backing off
+    private static final double SMOOTHING = 0.2;
+    private static final double SHORT_ALPHA = 0.1;       // ~ last 10 requests
+    private static final double LONG_ALPHA = 1.0 / 600;  // ~ last 600 requests
+
+    public enum Priority {
+        EMERGENCY(1.0),
+        STANDARD(0.85),
+        ANALYTICS(0.5);
+
+        /** Fraction of the limit this class may occupy. */
+        public final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+
+        /** Case-insensitive name; null or blank means STANDARD. */
+        public static Priority parse(String name) {
+            if (name == null || name.isBlank()) return STANDARD;
+            for (Priority p : values()) if (p.name().equalsIgnoreCase(name.trim())) return p;
+            throw new IllegalArgumentException("Unknown priority " + name);
+        }
+    }
+
+    /** An admitted request; close it exactly once when the work is done. */
+    public final class Permit implements AutoCloseable {
+        private final long startNanos = System.nanoTime();
+        private final int inFlightAtStart;
+        private boolean closed;
+
+        private Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            inFlight.decrementAndGet();
+            sample(System.nanoTime() - startNanos, inFlightAtStart);
+        }
+    }
+
+    private final double minLimit;
+    private final double maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<Priority, LongAdder> admitted = new EnumMap<>(Priority.class);
+    private final Map<Priority, LongAdder> shed = new EnumMap<>(Priority.class);
+
+    // Written under the monitor, read without it
+    private volatile double limit;
+    private volatile double shortRttNanos = Double.NaN;
+    private volatile double longRttNanos = Double.NaN;
+
+    public AdmissionController(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Need 1 <= min <= initial <= max limit");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        for (Priority p : Priority.values()) {
+            admitted.put(p, new LongAdder());
+            shed.put(p, new LongAdder());
+        }
+    }
+
+    public AdmissionController() {
+        this(32, 4, 1024);
+    }
+
+    /** A permit if p's share of the limit has room, otherwise null (shed). */
+    public Permit tryAcquire(Priority p) {
+        int cap = capacity(p);
+        while (true) {
+            int cur = inFlight.get();
+            if (cur >= cap) {
+                shed.get(p).increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(cur, cur + 1)) {
+                admitted.get(p).increment();
+                return new Permit(cur + 1);
+            }
+        }
+    }
+
+    public int limit() { return (int) limit; }
+
+    public int inFlight() { return inFlight.get(); }
+
+    public long shedCount() {
+        long n = 0;
+        for (LongAdder a : shed.values()) n += a.sum();
+        return n;
+    }
+
+    /** Current state for /metrics. */
+    public Map<String, Object> metrics() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("limit", limit());
+        out.put("inFlight", inFlight());
+        out.put("recentRttMs", shortRttNanos / 1e6);
+        out.put("baselineRttMs", longRttNanos / 1e6);
+        Map<String, Object> classes = new LinkedHashMap<>();
+        for (Priority p : Priority.values()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("capacity", capacity(p));
+            m.put("admitted", admitted.get(p).sum());
+            m.put("shed", shed.get(p).sum());
+            classes.put(p.name().toLowerCase(Locale.ROOT), m);
+        }
+        out.put("priorities", classes);
+        return out;
+    }
+
+    private int capacity(Priority p) {
+        return Math.max(1, (int) (limit * p.share));
+    }
+
+    private synchronized void sample(long rttNanos, int inFlightAtStart) {
+        double rtt = Math.max(1, rttNanos);
+        double shortRtt = Double.isNaN(shortRttNanos) ? rtt : shortRttNanos + SHORT_ALPHA * (rtt - shortRttNanos);
+        double longRtt = Double.isNaN(longRttNanos) ? rtt : longRttNanos + LONG_ALPHA * (rtt - longRttNanos);
+
+        // After a spike the baseline would otherwise stay inflated for hundreds of samples
+        if (longRtt / shortRtt > 2) longRtt *= 0.95;
+        shortRttNanos = shortRtt;
+        longRttNanos = longRtt;
+
+        double current = limit;
+        if (inFlightAtStart < current / 2) return;
+
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / shortRtt));
+        double target = current * gradient + Math.sqrt(current);
+        double next = current * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
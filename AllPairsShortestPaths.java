@@ -0,0 +1,374 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * All-pairs distance engine over a flat row-major double[] (dist[i * n + j]).
+ *
+ * Dense graphs use a tiled Floyd-Warshall: per k-block the diagonal tile first, then its
+ * row/column tiles in parallel, then every remaining tile in parallel, so each tile stays
+ * in cache while it is swept. Sparse graphs (typical road networks) run one Dijkstra per
+ * source in parallel instead, reweighted with the caller's JohnsonPotentials when weights
+ * are negative. Indexes are int, so the matrix holds at most MAX_NODES nodes.
+ *
+ * After a traffic batch only the rows that can change are touched: rows whose shortest
+ * paths used an edge that got slower are recomputed, and every edge that got faster is
+ * folded in with one O(V^2) min-plus pass.
+ */
+public class AllPairsShortestPaths implements DynamicTrafficManager.TrafficListener {
+
+    public enum Strategy { AUTO, FLOYD_WARSHALL, REPEATED_DIJKSTRA }
+
+    private static final int TILE = 64;
+    private static final double DENSE_RATIO = 0.05;   // arcs / V^2 above this => Floyd-Warshall
+    private static final double INF = Double.POSITIVE_INFINITY;
+    private static final double EPS = 1e-9;
+
+    /** Largest n for which n * n still fits an int index. */
+    public static final int MAX_NODES = 46340;
+
+    private final ForkJoinPool pool;
+    private Strategy strategy = Strategy.AUTO;
+
+    private GraphSnapshot g;
+    private JohnsonPotentials potentials;
+    private double[] dist;
+    private long fingerprint = Long.MIN_VALUE;
+    private boolean negativeCycle;
+    private String lastStrategy = "-";
+    private int lastUpdatedRows;
+
+    private final List<DynamicTrafficManager.EdgeChange> pending = new ArrayList<>();
+
+    public AllPairsShortestPaths(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public AllPairsShortestPaths() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public void setStrategy(Strategy s) { strategy = s; }
+
+    @Override
+    public synchronized void onTrafficChange(int version, List<DynamicTrafficManager.EdgeChange> changes) {
+        if (changes != null) pending.addAll(changes);
+    }
+
+    /** Brings the matrix up to date for non-negative weights. */
+    public void ensure(List<Daa_smartCity.Node> nodes,
+                       List<Daa_smartCity.Edge> edges,
+                       boolean directed) {
+        ensure(nodes, edges, directed, null);
+    }
+
+    /**
+     * Brings the matrix up to date: full build on topology change, row updates otherwise.
+     * pot must be current for the graph when weights are negative (null if a negative cycle
+     * leaves none, in which case Floyd-Warshall exposes it); it is ignored otherwise.
+     */
+    public synchronized void ensure(List<Daa_smartCity.Node> nodes,
+                                    List<Daa_smartCity.Edge> edges,
+                                    boolean directed,
+                                    JohnsonPotentials pot) {
+        potentials = pot;
+        long fp = GraphSnapshot.fingerprint(nodes, edges, directed);
+        if (dist == null || fp != fingerprint || negativeCycle) {
+            fingerprint = fp;
+            pending.clear();
+            compute(GraphSnapshot.of(nodes, edges, directed));
+            lastUpdatedRows = g.size();
+            return;
+        }
+        if (pending.isEmpty()) {
+            lastUpdatedRows = 0;
+            return;
+        }
+        update(nodes, edges, directed);
+    }
+
+    public synchronized double distance(Daa_smartCity.Node a, Daa_smartCity.Node b) {
+        int i = g.indexOf(a);
+        int j = g.indexOf(b);
+        return (i < 0 || j < 0) ? INF : dist[i * g.size() + j];
+    }
+
+    /**
+     * A shortest a-b path read off the matrix (each hop takes a road that is tight against
+     * the remaining distance), or null if b is unreachable or the walk does not close.
+     */
+    public synchronized List<Daa_smartCity.Node> path(Daa_smartCity.Node a, Daa_smartCity.Node b) {
+        int s = g.indexOf(a), t = g.indexOf(b);
+        if (s < 0 || t < 0 || dist[s * g.size() + t] == INF) return null;
+        int n = g.size();
+        List<Daa_smartCity.Node> out = new ArrayList<>();
+        out.add(a);
+        for (int u = s, hops = 0; u != t; hops++) {
+            if (hops >= n) return null;          // zero-weight cycles can keep the walk from closing
+            double rest = dist[u * n + t];
+            int next = -1;
+            for (int arc = g.offsets[u]; arc < g.offsets[u + 1]; arc++) {
+                int v = g.targets[arc];
+                if (Math.abs(g.weights[arc] + dist[v * n + t] - rest) <= EPS * Math.max(1, Math.abs(rest))) {
+                    next = v;
+                    break;
+                }
+            }
+            if (next < 0) return null;
+            out.add(g.nodes[next]);
+            u = next;
+        }
+        return out;
+    }
+
+    public GraphSnapshot snapshot() { return g; }
+
+    public double[] matrix() { return dist; }
+
+    public boolean hasNegativeCycle() { return negativeCycle; }
+
+    public String lastStrategy() { return lastStrategy; }
+
+    public int lastUpdatedRows() { return lastUpdatedRows; }
+
+    /** Full computation for a snapshot; returns the flat matrix. */
+    public synchronized double[] compute(GraphSnapshot snap) {
+        int n = snap.size();
+        if (n > MAX_NODES) {
+            throw new IllegalArgumentException("All-pairs matrix supports at most " + MAX_NODES
+                    + " nodes, graph has " + n);
+        }
+        this.g = snap;
+        dist = new double[n * n];
+        negativeCycle = false;
+
+        boolean dense = snap.arcCount() >= DENSE_RATIO * (double) n * n;
+        boolean useFw = strategy == Strategy.FLOYD_WARSHALL || (strategy == Strategy.AUTO && dense);
+
+        if (!useFw) {
+            double[] h = snap.hasNegativeWeights() && potentials != null ? potentials.forSnapshot(snap) : null;
+            if (snap.hasNegativeWeights() && h == null) {
+                useFw = true; // negative cycle: let Floyd-Warshall expose it on the diagonal
+            } else {
+                repeatedDijkstra(snap, h, null);
+                lastStrategy = (h == null) ? "Repeated Dijkstra" : "Johnson + Dijkstra";
+            }
+        }
+
+        if (useFw) {
+            floydWarshall(snap);
+            lastStrategy = "Tiled Floyd-Warshall";
+            for (int i = 0; i < n; i++) {
+                if (dist[i * n + i] < 0) {
+                    negativeCycle = true;
+                    break;
+                }
+            }
+        }
+        return dist;
+    }
+
+    // ======= Tiled Floyd-Warshall =======
+
+    private void floydWarshall(GraphSnapshot snap) {
+        int n = snap.size();
+        Arrays.fill(dist, INF);
+        for (int i = 0; i < n; i++) dist[i * n + i] = 0.0;
+        for (int u = 0; u < n; u++) {
+            for (int a = snap.offsets[u]; a < snap.offsets[u + 1]; a++) {
+                int idx = u * n + snap.targets[a];
+                if (snap.weights[a] < dist[idx]) dist[idx] = snap.weights[a];
+            }
+        }
+
+        int nb = (n + TILE - 1) / TILE;
+        for (int kb = 0; kb < nb; kb++) {
+            final int k = kb;
+            tile(k, k, k, n);
+            parallelFor(2 * nb, x -> {
+                int other = x >> 1;
+                if (other == k) return;
+                if ((x & 1) == 0) tile(k, other, k, n);
+                else tile(other, k, k, n);
+            });
+            parallelFor(nb * nb, x -> {
+                int ib = x / nb;
+                int jb = x % nb;
+                if (ib != k && jb != k) tile(ib, jb, k, n);
+            });
+        }
+    }
+
+    // dist[i][j] = min(dist[i][j], dist[i][k] + dist[k][j]) for i in tile ib, j in tile jb, k in tile kb
+    private void tile(int ib, int jb, int kb, int n) {
+        int i0 = ib * TILE, i1 = Math.min(n, i0 + TILE);
+        int j0 = jb * TILE, j1 = Math.min(n, j0 + TILE);
+        int k0 = kb * TILE, k1 = Math.min(n, k0 + TILE);
+        double[] d = dist;
+
+        for (int k = k0; k < k1; k++) {
+            int rowK = k * n;
+            for (int i = i0; i < i1; i++) {
+                int rowI = i * n;
+                double dik = d[rowI + k];
+                if (dik == INF) continue;
+                for (int j = j0; j < j1; j++) {
+                    double s = dik + d[rowK + j];
+                    if (s < d[rowI + j]) d[rowI + j] = s;
+                }
+            }
+        }
+    }
+
+    // ======= Repeated Dijkstra (sparse) =======
+
+    // Rows where rows[s] is set (all if null); h maps reduced distances back to the real metric
+    private void repeatedDijkstra(GraphSnapshot snap, double[] h, boolean[] rows) {
+        int n = snap.size();
+        GraphSnapshot work = (h == null) ? snap : snap.reweighted(h);
+        ThreadLocal<IndexedMinHeap> heaps = ThreadLocal.withInitial(() -> new IndexedMinHeap(n));
+
+        parallelFor(n, s -> {
+            if (rows != null && !rows[s]) return;
+            dijkstraRow(work, s, dist, s * n, heaps.get());
+            if (h != null) {
+                int off = s * n;
+                for (int t = 0; t < n; t++) {
+                    if (dist[off + t] != INF) dist[off + t] += h[t] - h[s];
+                }
+            }
+        });
+    }
+
+    static void dijkstraRow(GraphSnapshot g, int s, double[] out, int off, IndexedMinHeap heap) {
+        int n = g.size();
+        Arrays.fill(out, off, off + n, INF);
+        out[off + s] = 0.0;
+        heap.clear();
+        heap.push(s, 0.0);
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            double du = out[off + u];
+            for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                int v = g.targets[a];
+                double nd = du + g.weights[a];
+                if (nd < out[off + v]) {
+                    out[off + v] = nd;
+                    heap.push(v, nd);
+                }
+            }
+        }
+    }
+
+    // ======= Incremental update after traffic batches =======
+
+    private void update(List<Daa_smartCity.Node> nodes, List<Daa_smartCity.Edge> edges, boolean directed) {
+        int n = g.size();
+
+        // Collapse the pending batches to (weight before the first change, weight now) per road
+        Map<Daa_smartCity.Edge, Double> before = new IdentityHashMap<>();
+        for (DynamicTrafficManager.EdgeChange ch : pending) before.putIfAbsent(ch.edge, ch.oldWeight);
+        pending.clear();
+
+        List<double[]> slower = new ArrayList<>();   // {u, v, oldW}
+        List<double[]> faster = new ArrayList<>();   // {u, v, newW}
+        Map<Daa_smartCity.Edge, Double> intermediate = new IdentityHashMap<>();
+
+        for (Map.Entry<Daa_smartCity.Edge, Double> en : before.entrySet()) {
+            Daa_smartCity.Edge e = en.getKey();
+            int u = g.indexOf(e.from);
+            int v = g.indexOf(e.to);
+            if (u < 0 || v < 0) {
+                compute(GraphSnapshot.of(nodes, edges, directed));
+                lastUpdatedRows = n;
+                return;
+            }
+            double oldW = effective(en.getValue());
+            double newW = effective(e.weight);
+            if (newW > oldW) {
+                slower.add(new double[]{u, v, oldW});
+                if (!directed) slower.add(new double[]{v, u, oldW});
+            } else if (newW < oldW) {
+                faster.add(new double[]{u, v, newW});
+                if (!directed) faster.add(new double[]{v, u, newW});
+                intermediate.put(e, en.getValue()); // keep the old weight until phase 2
+            }
+        }
+
+        // Phase 1: metric with only the slow-downs applied; recompute rows that relied on them
+        GraphSnapshot g1 = GraphSnapshot.of(nodes, edges, directed,
+                e -> intermediate.containsKey(e) ? intermediate.get(e) : e.weight);
+
+        boolean[] dirty = new boolean[n];
+        int dirtyCount = 0;
+        for (int i = 0; i < n; i++) {
+            int off = i * n;
+            for (double[] s : slower) {
+                int u = (int) s[0], v = (int) s[1];
+                double diu = dist[off + u];
+                if (diu != INF && Math.abs(diu + s[2] - dist[off + v]) <= EPS * Math.max(1, Math.abs(dist[off + v]))) {
+                    dirty[i] = true;
+                    dirtyCount++;
+                    break;
+                }
+            }
+        }
+
+        if (dirtyCount > n / 2) {
+            compute(GraphSnapshot.of(nodes, edges, directed));
+            lastUpdatedRows = n;
+            return;
+        }
+
+        // g1 only has weights >= the current ones, so the current potentials stay feasible for it
+        double[] h = null;
+        if (g1.hasNegativeWeights()) {
+            if (potentials == null) {
+                compute(GraphSnapshot.of(nodes, edges, directed));
+                lastUpdatedRows = n;
+                return;
+            }
+            h = potentials.forSnapshot(g1);
+        }
+        g = g1;
+        repeatedDijkstra(g1, h, dirty);
+
+        // Phase 2: fold in each speed-up: d[i][j] = min(d[i][j], d[i][u] + w + d[v][j])
+        for (double[] f : faster) {
+            int u = (int) f[0], v = (int) f[1];
+            double w = f[2];
+            int rowV = v * n;
+            parallelFor(n, i -> {
+                int off = i * n;
+                double diu = dist[off + u];
+                if (diu == INF) return;
+                double base = diu + w;
+                for (int j = 0; j < n; j++) {
+                    double c = base + dist[rowV + j];
+                    if (c < dist[off + j]) dist[off + j] = c;
+                }
+            });
+        }
+
+        g = GraphSnapshot.of(nodes, edges, directed);
+        for (int i = 0; i < n; i++) {
+            if (dist[i * n + i] < 0) negativeCycle = true;
+        }
+        lastUpdatedRows = dirtyCount;
+        lastStrategy = "Incremental (" + dirtyCount + " rows recomputed, " + faster.size() + " speed-ups folded)";
+    }
+
+    private static double effective(double w) {
+        return w >= 9999.0 ? INF : w;
+    }
+
+    private void parallelFor(int count, IntConsumer body) {
+        if (count <= 1 || pool.getParallelism() <= 1) {
+            for (int i = 0; i < count; i++) body.accept(i);
+            return;
+        }
+        pool.submit(() -> IntStream.range(0, count).parallel().forEach(body)).join();
+    }
+}
@@ -0,0 +1,265 @@
+import java.util.*;
+
+public class AlternativeRoutes {
+
+    private static final double BLOCKED_THRESHOLD = 9999.0;
+    private static final double EPS = 1e-9;
+
+    // ======= Tuning (defaults follow the usual "admissible alternative" limits) =======
+    private double maxOverlap = 0.7;      // share of a candidate's cost allowed on an accepted route
+    private double maxStretch = 1.4;      // candidate cost <= stretch * optimal cost
+    private double localOptimality = 0.25; // every sub-path up to alpha * optimal must be a shortest path
+    private double penalty = 0.3;         // multiplicative penalty per reuse of an edge
+    private long timeBudgetMs = 50;
+
+    public void setMaxOverlap(double v) { maxOverlap = v; }
+    public void setMaxStretch(double v) { maxStretch = v; }
+    public void setLocalOptimality(double v) { localOptimality = v; }
+    public void setPenalty(double v) { penalty = v; }
+    public void setTimeBudgetMs(long v) { timeBudgetMs = v; }
+
+    private Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> out;
+    private Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> in;
+    private Map<Daa_smartCity.Node, Double> toGoal;
+
+    // Penalty multipliers keyed by node pair (both directions in undirected mode)
+    private Map<Daa_smartCity.Node, Map<Daa_smartCity.Node, Double>> factor;
+    private boolean directed;
+
+    /**
+     * Penalty method: run the shortest-path search, penalise the edges of the route found, repeat.
+     * Each new route is kept only if it passes the overlap, stretch and local-optimality filters.
+     * Stops after k routes or when the time budget is spent; the first entry is always the optimum.
+     */
+    public List<Daa_smartCity.PathResult> find(
+            Daa_smartCity.Node src,
+            Daa_smartCity.Node dst,
+            List<Daa_smartCity.Node> nodes,
+            List<Daa_smartCity.Edge> edges,
+            boolean directed,
+            int k
+    ) {
+        List<Daa_smartCity.PathResult> accepted = new ArrayList<>();
+        if (src == null || dst == null || src == dst || k <= 0) return accepted;
+
+        for (Daa_smartCity.Edge e : edges) {
+            if (e.weight < BLOCKED_THRESHOLD && e.weight < 0) return accepted;
+        }
+
+        long deadline = System.nanoTime() + timeBudgetMs * 1_000_000L;
+        this.directed = directed;
+        buildGraphs(nodes, edges);
+        factor = new HashMap<>();
+
+        // Reverse Dijkstra on the base metric: exact for the first search and a
+        // consistent lower bound for every penalised one (penalties only add cost)
+        toGoal = dijkstraAll(dst, in, true, Double.POSITIVE_INFINITY);
+        if (!toGoal.containsKey(src)) return accepted;
+
+        Set<List<Daa_smartCity.Node>> seen = new HashSet<>();
+        double optimal = -1;
+        int iterations = 0;
+        int maxIterations = 4 * k + 4;
+
+        while (accepted.size() < k && iterations++ < maxIterations) {
+            if (!accepted.isEmpty() && System.nanoTime() > deadline) break;
+
+            Daa_smartCity.PathResult cand = penalisedAStar(src, dst);
+            if (cand == null) break;
+            penalise(cand.path);
+
+            if (!seen.add(cand.path)) continue;
+
+            double cost = baseCost(cand.path);
+            cand.totalCost = cost;
+
+            if (accepted.isEmpty()) {
+                optimal = cost;
+                accepted.add(cand);
+                continue;
+            }
+
+            if (cost > maxStretch * optimal + EPS) continue;
+            if (tooSimilar(cand.path, cost, accepted)) continue;
+            if (!locallyOptimal(cand.path, optimal * localOptimality, deadline)) continue;
+
+            accepted.add(cand);
+        }
+        return accepted;
+    }
+
+    private void buildGraphs(List<Daa_smartCity.Node> nodes, List<Daa_smartCity.Edge> edges) {
+        out = new HashMap<>();
+        in = new HashMap<>();
+        for (Daa_smartCity.Node n : nodes) {
+            out.put(n, new ArrayList<>());
+            in.put(n, new ArrayList<>());
+        }
+
+        for (Daa_smartCity.Edge e : edges) {
+            if (e.weight >= BLOCKED_THRESHOLD) continue;
+            out.get(e.from).add(e);
+            in.get(e.to).add(e);
+            if (!directed) {
+                Daa_smartCity.Edge r = new Daa_smartCity.Edge(e.to, e.from, e.weight);
+                out.get(e.to).add(r);
+                in.get(e.from).add(r);
+            }
+        }
+    }
+
+    private double multiplier(Daa_smartCity.Node u, Daa_smartCity.Node v) {
+        Map<Daa_smartCity.Node, Double> m = factor.get(u);
+        if (m == null) return 1.0;
+        Double f = m.get(v);
+        return f == null ? 1.0 : f;
+    }
+
+    private void penalise(List<Daa_smartCity.Node> path) {
+        for (int i = 0; i < path.size() - 1; i++) {
+            Daa_smartCity.Node u = path.get(i);
+            Daa_smartCity.Node v = path.get(i + 1);
+            double f = multiplier(u, v) * (1.0 + penalty);
+            factor.computeIfAbsent(u, x -> new HashMap<>()).put(v, f);
+            if (!directed) factor.computeIfAbsent(v, x -> new HashMap<>()).put(u, f);
+        }
+    }
+
+    private Daa_smartCity.PathResult penalisedAStar(Daa_smartCity.Node start, Daa_smartCity.Node goal) {
+        Map<Daa_smartCity.Node, Double> g = new HashMap<>();
+        Map<Daa_smartCity.Node, Daa_smartCity.Node> parent = new HashMap<>();
+        Set<Daa_smartCity.Node> closed = new HashSet<>();
+
+        g.put(start, 0.0);
+        PriorityQueue<Object[]> open = new PriorityQueue<>(Comparator.comparingDouble(a -> (Double) a[1]));
+        open.add(new Object[]{start, toGoal.get(start)});
+
+        int steps = 0;
+        while (!open.isEmpty()) {
+            Daa_smartCity.Node u = (Daa_smartCity.Node) open.poll()[0];
+            if (!closed.add(u)) continue;
+            steps++;
+
+            if (u == goal) {
+                List<Daa_smartCity.Node> path = new ArrayList<>();
+                for (Daa_smartCity.Node at = goal; at != null; at = parent.get(at)) path.add(at);
+                Collections.reverse(path);
+                return new Daa_smartCity.PathResult(true, path, steps, false, null, g.get(goal));
+            }
+
+            for (Daa_smartCity.Edge e : out.get(u)) {
+                steps++;
+                Double h = toGoal.get(e.to);
+                if (h == null || closed.contains(e.to)) continue;
+
+                double alt = g.get(u) + e.weight * multiplier(u, e.to);
+                Double cur = g.get(e.to);
+                if (cur == null || alt < cur) {
+                    g.put(e.to, alt);
+                    parent.put(e.to, u);
+                    open.add(new Object[]{e.to, alt + h});
+                }
+            }
+        }
+        return null;
+    }
+
+    // Plain Dijkstra over 'adj' (forward or reverse), pruned at 'limit'
+    private Map<Daa_smartCity.Node, Double> dijkstraAll(Daa_smartCity.Node root,
+                                                        Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> adj,
+                                                        boolean reverse,
+                                                        double limit) {
+        Map<Daa_smartCity.Node, Double> dist = new HashMap<>();
+        Set<Daa_smartCity.Node> settled = new HashSet<>();
+        dist.put(root, 0.0);
+
+        PriorityQueue<Object[]> pq = new PriorityQueue<>(Comparator.comparingDouble(a -> (Double) a[1]));
+        pq.add(new Object[]{root, 0.0});
+
+        while (!pq.isEmpty()) {
+            Object[] top = pq.poll();
+            Daa_smartCity.Node u = (Daa_smartCity.Node) top[0];
+            if (!settled.add(u)) continue;
+            if ((Double) top[1] > limit) break;
+
+            for (Daa_smartCity.Edge e : adj.get(u)) {
+                Daa_smartCity.Node v = reverse ? e.from : e.to;
+                double alt = dist.get(u) + e.weight;
+                Double cur = dist.get(v);
+                if (cur == null || alt < cur) {
+                    dist.put(v, alt);
+                    pq.add(new Object[]{v, alt});
+                }
+            }
+        }
+        return dist;
+    }
+
+    private double edgeCost(Daa_smartCity.Node u, Daa_smartCity.Node v) {
+        double best = Double.POSITIVE_INFINITY;
+        for (Daa_smartCity.Edge e : out.get(u)) {
+            if (e.to == v && e.weight < best) best = e.weight;
+        }
+        return best;
+    }
+
+    private double baseCost(List<Daa_smartCity.Node> path) {
+        double c = 0.0;
+        for (int i = 0; i < path.size() - 1; i++) c += edgeCost(path.get(i), path.get(i + 1));
+        return c;
+    }
+
+    private boolean tooSimilar(List<Daa_smartCity.Node> path, double cost, List<Daa_smartCity.PathResult> accepted) {
+        if (cost <= EPS) return true;
+
+        for (Daa_smartCity.PathResult r : accepted) {
+            // Roads of r keyed by node pair (both directions in undirected mode), like the penalties
+            Map<Daa_smartCity.Node, Set<Daa_smartCity.Node>> used = new HashMap<>();
+            for (int i = 0; i < r.path.size() - 1; i++) {
+                Daa_smartCity.Node u = r.path.get(i);
+                Daa_smartCity.Node v = r.path.get(i + 1);
+                used.computeIfAbsent(u, x -> new HashSet<>()).add(v);
+                if (!directed) used.computeIfAbsent(v, x -> new HashSet<>()).add(u);
+            }
+
+            double shared = 0.0;
+            for (int i = 0; i < path.size() - 1; i++) {
+                Set<Daa_smartCity.Node> next = used.get(path.get(i));
+                if (next != null && next.contains(path.get(i + 1))) {
+                    shared += edgeCost(path.get(i), path.get(i + 1));
+                }
+            }
+            if (shared / cost > maxOverlap) return true;
+        }
+        return false;
+    }
+
+    /**
+     * T-test: every window of the route spanning roughly 'window' cost must itself be a
+     * shortest path, otherwise the route contains a pointless detour.
+     */
+    private boolean locallyOptimal(List<Daa_smartCity.Node> path, double window, long deadline) {
+        if (window <= EPS || path.size() < 3) return true;
+
+        double[] prefix = new double[path.size()];
+        for (int i = 1; i < path.size(); i++) {
+            prefix[i] = prefix[i - 1] + edgeCost(path.get(i - 1), path.get(i));
+        }
+
+        int j = 0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            if (System.nanoTime() > deadline) return false;
+
+            if (j < i + 1) j = i + 1;
+            while (j < path.size() - 1 && prefix[j] - prefix[i] < window) j++;
+            if (j - i < 2) continue; // single edge windows are trivially optimal
+
+            double along = prefix[j] - prefix[i];
+            Double best = dijkstraAll(path.get(i), out, false, along).get(path.get(j));
+            if (best != null && best < along - EPS) return false;
+
+            if (j == path.size() - 1) break;
+        }
+        return true;
+    }
+}
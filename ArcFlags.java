@@ -0,0 +1,296 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Arc-flags goal-directed speedup.
+ *
+ * Nodes are split into at most 64 regions by coordinate bisection, so one long per arc
+ * holds its flags: bit r is set if the arc starts some shortest path into region r (every
+ * arc inside r is flagged for r). Flags for r come from one backward Dijkstra per entry
+ * node of r; regions are independent, so the initial precomputation runs in parallel.
+ * A query towards a node of region r simply ignores arcs whose bit r is clear.
+ *
+ * Traffic makes flags stale only for some regions: a slower road matters only to regions
+ * it was flagged for, a faster road may matter to any region. Stale regions are recomputed
+ * lazily, the first time a query targets them. Weights must be non-negative.
+ */
+public class ArcFlags implements DynamicTrafficManager.TrafficListener {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+    private static final double EPS = 1e-9;
+    private static final int MAX_REGIONS = 64;
+
+    private final ForkJoinPool pool;
+    private final int requestedRegions;
+
+    private RoadTopology topo;
+    private long fingerprint = Long.MIN_VALUE;
+    private volatile boolean stale = true;
+
+    private int regions;
+    private int[] regionOf;
+    private int[][] entryNodes;          // per region: members with an incoming arc from outside
+
+    private long[] flags;                // per arc
+    private double[] weight;             // metric the flags were last computed against
+    private int negativeArcs;
+    private boolean[] dirty;
+    private int recomputedRegions = 0;
+
+    public ArcFlags(ForkJoinPool pool, int regions) {
+        this.pool = pool;
+        this.requestedRegions = Math.max(1, Math.min(MAX_REGIONS, Integer.highestOneBit(regions)));
+    }
+
+    public ArcFlags() {
+        this(ForkJoinPool.commonPool(), 32);
+    }
+
+    public int regionCount() { return regions; }
+
+    /** Regions recomputed (initial build included) since this instance was created. */
+    public int recomputedRegions() { return recomputedRegions; }
+
+    public synchronized int dirtyRegions() {
+        int c = 0;
+        if (dirty != null) for (boolean d : dirty) if (d) c++;
+        return c;
+    }
+
+    @Override
+    public synchronized void onTrafficChange(int version, List<DynamicTrafficManager.EdgeChange> changes) {
+        if (stale || changes == null) return;
+        for (DynamicTrafficManager.EdgeChange ch : changes) {
+            int[] arcs = topo.arcsOf(ch.edge);
+            if (arcs == null) {
+                stale = true;
+                return;
+            }
+            for (int a : arcs) applyArcChange(a);
+        }
+    }
+
+    /** Rebuilds regions and all flags if the topology changed; otherwise picks up weight drift. */
+    public synchronized void ensure(List<Daa_smartCity.Node> nodes,
+                                    List<Daa_smartCity.Edge> edges,
+                                    boolean directed) {
+        long fp = GraphSnapshot.fingerprint(nodes, edges, directed);
+        if (!stale && fp == fingerprint) {
+            for (int a = 0; a < weight.length; a++) {
+                if (Double.compare(weight[a], topo.metric(a)) != 0) applyArcChange(a);
+            }
+            return;
+        }
+        fingerprint = fp;
+        topo = RoadTopology.of(nodes, edges, directed);
+        buildRegions();
+
+        int m = topo.arcCount();
+        weight = new double[m];
+        flags = new long[m];
+        negativeArcs = 0;
+        for (int a = 0; a < m; a++) {
+            weight[a] = topo.metric(a);
+            if (weight[a] < 0) negativeArcs++;
+        }
+        dirty = new boolean[regions];
+        Arrays.fill(dirty, true);
+        if (negativeArcs == 0) computeAll();
+        stale = false;
+    }
+
+    public synchronized Daa_smartCity.PathResult shortestPath(Daa_smartCity.Node start,
+                                                              Daa_smartCity.Node goal,
+                                                              List<Daa_smartCity.Node> nodes,
+                                                              List<Daa_smartCity.Edge> edges,
+                                                              boolean directed) {
+        ensure(nodes, edges, directed);
+        if (negativeArcs > 0) {
+            throw new IllegalArgumentException("Arc-flags need non-negative weights");
+        }
+        int s = topo.indexOf(start), t = topo.indexOf(goal);
+        if (s < 0 || t < 0) return new Daa_smartCity.PathResult(false, null, 0, false, null, INF);
+
+        int r = regionOf[t];
+        if (dirty[r]) recompute(r);
+        long bit = 1L << r;
+
+        int n = topo.n;
+        double[] dist = new double[n];
+        int[] parent = new int[n];
+        Arrays.fill(dist, INF);
+        Arrays.fill(parent, -1);
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        dist[s] = 0.0;
+        heap.push(s, 0.0);
+        int steps = 0;
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            steps++;
+            if (u == t) break;
+            for (int k = topo.outOffsets[u]; k < topo.outOffsets[u + 1]; k++) {
+                int a = topo.outArcs[k];
+                if ((flags[a] & bit) == 0) continue;
+                int v = topo.head[a];
+                double nd = dist[u] + weight[a];
+                if (nd < dist[v]) {
+                    dist[v] = nd;
+                    parent[v] = u;
+                    heap.push(v, nd);
+                }
+            }
+        }
+
+        if (dist[t] == INF) return new Daa_smartCity.PathResult(false, null, steps, false, null, INF);
+        List<Daa_smartCity.Node> path = new ArrayList<>();
+        for (int v = t; v != -1; v = parent[v]) path.add(topo.nodes[v]);
+        Collections.reverse(path);
+        return new Daa_smartCity.PathResult(true, path, steps, false, null, dist[t]);
+    }
+
+    // ======= Regions =======
+
+    private void buildRegions() {
+        int n = topo.n;
+        regionOf = new int[n];
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) all[i] = i;
+
+        // Parts of at most ceil(n / R) nodes stop the bisection after log2(R) levels
+        int maxSize = Math.max(1, (n + requestedRegions - 1) / requestedRegions);
+        List<int[]> parts = new ArrayList<>();
+        RoadTopology.bisect(topo.nodes, all, maxSize, parts::add);
+        regions = Math.max(1, parts.size());
+        for (int r = 0; r < parts.size(); r++) {
+            for (int v : parts.get(r)) regionOf[v] = r;
+        }
+
+        entryNodes = new int[regions][];
+        for (int r = 0; r < parts.size(); r++) {
+            List<Integer> entries = new ArrayList<>();
+            for (int v : parts.get(r)) {
+                for (int k = topo.inOffsets[v]; k < topo.inOffsets[v + 1]; k++) {
+                    if (regionOf[topo.tail[topo.inArcs[k]]] != r) {
+                        entries.add(v);
+                        break;
+                    }
+                }
+            }
+            entryNodes[r] = entries.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    // ======= Flag computation =======
+
+    private void applyArcChange(int a) {
+        double old = weight[a];
+        double now = topo.metric(a);
+        if (Double.compare(old, now) == 0) return;
+        weight[a] = now;
+        if (old < 0) negativeArcs--;
+        if (now < 0) negativeArcs++;
+
+        if (now < old) {
+            Arrays.fill(dirty, true);           // a cheaper road may now lead anywhere
+        } else {
+            long f = flags[a];
+            for (int r = 0; r < regions; r++) {
+                if ((f & (1L << r)) != 0) dirty[r] = true;
+            }
+        }
+    }
+
+    private void computeAll() {
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(topo.n));
+        BitSet[] perRegion = new BitSet[regions];
+        Runnable work = () -> IntStream.range(0, regions).parallel()
+                .forEach(r -> perRegion[r] = flaggedArcs(r, scratch.get()));
+        if (pool.getParallelism() <= 1 || regions == 1) work.run();
+        else pool.submit(work).join();
+
+        for (int r = 0; r < regions; r++) store(r, perRegion[r]);
+    }
+
+    private void recompute(int r) {
+        store(r, flaggedArcs(r, new Scratch(topo.n)));
+    }
+
+    private void store(int r, BitSet arcs) {
+        long bit = 1L << r;
+        for (int a = 0; a < flags.length; a++) {
+            if (arcs.get(a)) flags[a] |= bit;
+            else flags[a] &= ~bit;
+        }
+        dirty[r] = false;
+        recomputedRegions++;
+    }
+
+    // Arcs inside r, plus arcs that are tight towards some entry node of r
+    private BitSet flaggedArcs(int r, Scratch sc) {
+        BitSet out = new BitSet(topo.arcCount());
+        for (int a = 0; a < topo.arcCount(); a++) {
+            if (regionOf[topo.tail[a]] == r && regionOf[topo.head[a]] == r && weight[a] != INF) out.set(a);
+        }
+
+        for (int b : entryNodes[r]) {
+            backwardSearch(b, sc, out);
+            sc.reset();
+        }
+        return out;
+    }
+
+    /*
+     * Distances to b over reversed arcs. When u is settled every arc u -> v that is tight is
+     * flagged: v was settled earlier, or ties with u over a zero arc, so dist[v] is final.
+     */
+    private void backwardSearch(int b, Scratch sc, BitSet out) {
+        double[] dist = sc.dist;
+        sc.heap.clear();
+        dist[b] = 0.0;
+        sc.touch(b);
+        sc.heap.push(b, 0.0);
+        while (!sc.heap.isEmpty()) {
+            int u = sc.heap.poll();
+            double du = dist[u];
+            for (int k = topo.outOffsets[u]; k < topo.outOffsets[u + 1]; k++) {
+                int a = topo.outArcs[k];
+                double w = weight[a];
+                double dv = dist[topo.head[a]];
+                if (w != INF && dv != INF && Math.abs(du - (w + dv)) <= EPS * Math.max(1.0, du)) out.set(a);
+            }
+            for (int k = topo.inOffsets[u]; k < topo.inOffsets[u + 1]; k++) {
+                int a = topo.inArcs[k];
+                int t = topo.tail[a];
+                double nd = du + weight[a];
+                if (nd < dist[t]) {
+                    if (dist[t] == INF) sc.touch(t);
+                    dist[t] = nd;
+                    sc.heap.push(t, nd);
+                }
+            }
+        }
+    }
+
+    private static final class Scratch {
+        final double[] dist;
+        final IndexedMinHeap heap;
+        final int[] touched;
+        int touchedCount = 0;
+
+        Scratch(int n) {
+            dist = new double[n];
+            Arrays.fill(dist, INF);
+            heap = new IndexedMinHeap(n);
+            touched = new int[n];
+        }
+
+        void touch(int v) { touched[touchedCount++] = v; }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) dist[touched[i]] = INF;
+            touchedCount = 0;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Blocking client for BinaryRoutingServer, and a stand-in load generator for it: C
+ * connections, each keeping up to W pipelined route requests outstanding, reporting
+ * throughput and latency. Without a host:port the server runs in-process, and a sample of
+ * its answers is checked against RoutingService directly.
+ *
+ * Usage: java BinaryRoutingClient [connections=4] [requests=50000] [window=8] [graph=grid:60] [host:port]
+ */
+public class BinaryRoutingClient implements AutoCloseable {
+
+    /** Receives one decoded response; path[0..n) is only valid during the call. */
+    public interface Handler {
+        void response(int id, byte status, double cost, int[] path, int n);
+    }
+
+    private final SocketChannel ch;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(16 * 1024);
+    private ByteBuffer in = ByteBuffer.allocateDirect(64 * 1024);
+    private int[] path = new int[256];
+
+    public BinaryRoutingClient(InetSocketAddress address) throws IOException {
+        ch = SocketChannel.open(address);
+        ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        in.flip();      // kept in read mode between calls
+    }
+
+    /** Buffers one route request; it goes out on flush() or when the buffer fills. */
+    public void send(int id, AdmissionController.Priority priority, RoutingEngine.Algorithm algorithm,
+                     int from, int to, int timeoutMs) throws IOException {
+        send(id, priority, algorithm == null ? BinaryRoutingServer.ALGORITHM_DYNAMIC : (byte) (algorithm.ordinal() + 1),
+                from, to, timeoutMs);
+    }
+
+    /** As above with the wire algorithm code, e.g. BinaryRoutingServer.ALGORITHM_HUB_LABELS. */
+    public void send(int id, AdmissionController.Priority priority, byte algorithm,
+                     int from, int to, int timeoutMs) throws IOException {
+        if (out.remaining() < 4 + BinaryRoutingServer.REQUEST_BYTES) flush();
+        out.putInt(BinaryRoutingServer.REQUEST_BYTES)
+                .putInt(id)
+                .put(BinaryRoutingServer.OP_ROUTE)
+                .put((byte) priority.ordinal())
+                .put(algorithm)
+                .putInt(from)
+                .putInt(to)
+                .putInt(timeoutMs);
+    }
+
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) ch.write(out);
+        out.clear();
+    }
+
+    /** Blocks until the next response has arrived and hands it to h. */
+    public void receive(Handler h) throws IOException {
+        while (true) {
+            if (in.remaining() >= 4) {
+                int len = in.getInt(in.position());
+                if (len < BinaryRoutingServer.RESPONSE_HEADER_BYTES) throw new IOException("Bad frame length " + len);
+                if (in.remaining() >= 4 + len) {
+                    in.getInt();
+                    int id = in.getInt();
+                    byte status = in.get();
+                    double cost = in.getDouble();
+                    int n = in.getInt();
+                    if (n > path.length) path = new int[Math.max(n, 2 * path.length)];
+                    for (int i = 0; i < n; i++) path[i] = in.getInt();
+                    h.response(id, status, cost, path, n);
+                    return;
+                }
+                if (4 + len > in.capacity()) {
+                    ByteBuffer bigger = ByteBuffer.allocateDirect(4 + len);
+                    bigger.put(in).flip();
+                    in = bigger;
+                }
+            }
+            in.compact();
+            int r = ch.read(in);
+            in.flip();
+            if (r < 0) throw new EOFException("Server closed the connection");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ch.close();
+    }
+
+    // ======= Stand-in load generator =======
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        int window = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        GraphIO.Graph g = GraphIO.load(args.length > 3 ? args[3] : "grid:60");
+
+        RoutingService local = null;
+        BinaryRoutingServer server = null;
+        InetSocketAddress address;
+        if (args.length > 4) {
+            String[] hp = args[4].split(":");
+            address = new InetSocketAddress(hp[0], Integer.parseInt(hp[1]));
+        } else {
+            local = new RoutingService(g);
+            server = new BinaryRoutingServer(local, 0);
+            server.start();
+            address = new InetSocketAddress("127.0.0.1", server.port());
+        }
+
+        int n = g.nodes.size();
+        int perConnection = Math.max(1, requests / connections);
+        System.out.println("Target " + address + ", " + n + " nodes, " + connections + " connections x "
+                + perConnection + " requests, window " + window);
+
+        // Warm-up so the JIT has compiled both ends before anything is measured
+        try (BinaryRoutingClient c = new BinaryRoutingClient(address)) {
+            drive(c, Math.min(2000, perConnection), window, n, new Random(1), new LatencyHistogram(),
+                    new AtomicInteger(), null, null, null, null);
+        }
+
+        LatencyHistogram hist = new LatencyHistogram();
+        AtomicInteger shed = new AtomicInteger();
+        int[][] from = new int[connections][perConnection];
+        int[][] to = new int[connections][perConnection];
+        double[][] cost = new double[connections][perConnection];
+        byte[][] status = new byte[connections][perConnection];
+
+        ExecutorService users = Executors.newFixedThreadPool(connections);
+        List<Future<?>> done = new ArrayList<>();
+        long t0 = System.nanoTime();
+        for (int k = 0; k < connections; k++) {
+            int conn = k;
+            done.add(users.submit(() -> {
+                try (BinaryRoutingClient c = new BinaryRoutingClient(address)) {
+                    drive(c, perConnection, window, n, new Random(100 + conn), hist, shed,
+                            from[conn], to[conn], cost[conn], status[conn]);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : done) f.get();
+        double secs = (System.nanoTime() - t0) / 1e9;
+        users.shutdown();
+
+        System.out.println("measured " + hist.summary());
+        System.out.println(String.format("%.0f req/s over %.1f s, %d shed", hist.count() / secs, secs, shed.get()));
+
+        if (local != null) {
+            int checked = 0, wrong = 0;
+            Random pick = new Random(7);
+            for (int i = 0; i < 200; i++) {
+                int conn = pick.nextInt(connections), j = pick.nextInt(perConnection);
+                if (status[conn][j] != BinaryRoutingServer.OK) continue;
+                Daa_smartCity.PathResult r = local.route(g.nodes.get(from[conn][j]), g.nodes.get(to[conn][j]),
+                        RoutingService.DYNAMIC);
+                checked++;
+                if (Math.abs(r.totalCost - cost[conn][j]) > 1e-9 * Math.max(1, r.totalCost)) wrong++;
+            }
+            System.out.println("checked " + checked + " answers against RoutingService, " + wrong + " differ");
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    // One connection: keeps up to 'window' requests outstanding until 'count' have been answered
+    private static void drive(BinaryRoutingClient c, int count, int window, int nodes, Random rnd,
+                              LatencyHistogram hist, AtomicInteger shed,
+                              int[] from, int[] to, double[] cost, byte[] status) throws IOException {
+        long[] sentAt = new long[count];
+        int[] received = {0};
+        int sent = 0;
+        Handler h = (id, st, cst, path, n) -> {
+            hist.recordNanos(System.nanoTime() - sentAt[id]);
+            if (st == BinaryRoutingServer.OVERLOADED) shed.incrementAndGet();
+            if (cost != null) {
+                cost[id] = cst;
+                status[id] = st;
+            }
+            received[0]++;
+        };
+        while (received[0] < count) {
+            while (sent < count && sent - received[0] < window) {
+                int a = rnd.nextInt(nodes), b = rnd.nextInt(nodes);
+                if (from != null) {
+                    from[sent] = a;
+                    to[sent] = b;
+                }
+                sentAt[sent] = System.nanoTime();
+                c.send(sent, AdmissionController.Priority.STANDARD, null, a, b, 0);
+                sent++;
+            }
+            c.flush();
+            c.receive(h);
+        }
+    }
+}
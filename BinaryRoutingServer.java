@@ -0,0 +1,343 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compact binary routing protocol over NIO, for internal high-rate callers that do not want
+ * JSON over HTTP.
+ *
+ * Every frame is a 4-byte big-endian length followed by that many bytes.
+ *   request   int id, byte op (1 = route), byte priority (AdmissionController.Priority ordinal),
+ *             byte algorithm (0 = Dynamic, -1 = Hub Labels, else RoutingEngine.Algorithm ordinal + 1),
+ *             int from, int to (indexes into the graph's node list), int timeoutMs (0 = none)
+ *   response  int id, byte status, double cost, int n, n x int node index
+ * Requests may be pipelined: any number can be outstanding on a connection, and responses
+ * come back as they complete, matched by id.
+ *
+ * One selector thread accepts and reads. Queries pass the AdmissionController and then run
+ * on a worker pool. Each worker encodes its response straight into a pooled direct buffer
+ * and writes it to the socket from there; only leftovers wait for the selector.
+ *
+ * Usage: java BinaryRoutingServer [graph=grid:100] [port=9090]
+ */
+public class BinaryRoutingServer implements Runnable {
+
+    public static final byte OP_ROUTE = 1;
+    public static final byte ALGORITHM_DYNAMIC = 0;
+    public static final byte ALGORITHM_HUB_LABELS = -1;
+    public static final int REQUEST_BYTES = 19;
+    public static final int RESPONSE_HEADER_BYTES = 17;
+
+    public static final byte OK = 0;
+    public static final byte NO_PATH = 1;
+    public static final byte NEGATIVE_CYCLE = 2;
+    public static final byte TIMED_OUT = 3;      // path, if any, is the best found so far
+    public static final byte BAD_REQUEST = 4;
+    public static final byte OVERLOADED = 5;
+    public static final byte ERROR = 6;
+
+    private static final int MAX_FRAME = 1024;
+    private static final int READ_BUFFER = 8 * 1024;     // whole requests only, so a few frames
+    private static final int SLAB = 16 * 1024;           // a 4000-node path fits one slab
+
+    private final RoutingService service;
+    private final AdmissionController admission;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final DirectBufferPool buffers = new DirectBufferPool(SLAB, 4096);
+    private final Map<Daa_smartCity.Node, Integer> index = new IdentityHashMap<>();
+    private final Queue<Connection> wantWrite = new ConcurrentLinkedQueue<>();
+    private final LongAdder requests = new LongAdder();
+    private volatile boolean running = true;
+
+    private final class Connection {
+        final SocketChannel ch;
+        final ByteBuffer in;
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();   // guarded by this
+        SelectionKey key;
+        boolean writeRequested;
+        volatile boolean closed;
+
+        Connection(SocketChannel ch) {
+            this.ch = ch;
+            this.in = ByteBuffer.allocateDirect(READ_BUFFER);   // lives as long as the connection
+        }
+    }
+
+    public BinaryRoutingServer(RoutingService service, int port, AdmissionController admission) throws IOException {
+        this.service = service;
+        this.admission = admission;
+        List<Daa_smartCity.Node> nodes = service.graph().nodes;
+        for (int i = 0; i < nodes.size(); i++) index.put(nodes.get(i), i);
+
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        int threads = Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "binary-routing");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public BinaryRoutingServer(RoutingService service, int port) throws IOException {
+        this(service, port, new AdmissionController());
+    }
+
+    public int port() { return server.socket().getLocalPort(); }
+
+    public long requestCount() { return requests.sum(); }
+
+    public DirectBufferPool buffers() { return buffers; }
+
+    /** Runs the selector loop on a new daemon thread. */
+    public void start() {
+        Thread t = new Thread(this, "binary-routing-selector");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        workers.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String source = args.length > 0 ? args[0] : "grid:100";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 9090;
+
+        GraphIO.Graph g = GraphIO.load(source);
+        BinaryRoutingServer server = new BinaryRoutingServer(new RoutingService(g), port);
+        System.out.println("Binary routing service on :" + server.port() + " (" + g.nodes.size() + " nodes)");
+        server.run();
+    }
+
+    // ======= Selector loop =======
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Connection pending;
+                while ((pending = wantWrite.poll()) != null) {
+                    try {
+                        pending.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    } catch (CancelledKeyException ex) {
+                        close(pending);
+                    }
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection c = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) read(c);
+                        if (key.isValid() && key.isWritable()) {
+                            synchronized (c) {
+                                flush(c);
+                                if (c.out.isEmpty() && key.isValid()) {
+                                    c.writeRequested = false;
+                                    key.interestOps(SelectionKey.OP_READ);
+                                }
+                            }
+                        }
+                    } catch (CancelledKeyException ex) {
+                        close(c);                   // a worker closed it meanwhile
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Selector failed", ex);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) close((Connection) key.attachment());
+            }
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel ch;
+        while ((ch = server.accept()) != null) {
+            ch.configureBlocking(false);
+            ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection c = new Connection(ch);
+            c.key = ch.register(selector, SelectionKey.OP_READ, c);
+        }
+    }
+
+    private void read(Connection c) {
+        ByteBuffer in = c.in;
+        try {
+            if (c.ch.read(in) < 0) {
+                close(c);
+                return;
+            }
+        } catch (IOException ex) {
+            close(c);
+            return;
+        }
+        in.flip();
+        while (in.remaining() >= 4 && !c.closed) {
+            int len = in.getInt(in.position());
+            if (len < 0 || len > MAX_FRAME) {
+                close(c);
+                return;
+            }
+            if (in.remaining() < 4 + len) break;
+            int start = in.position() + 4;
+            dispatch(c, in, start, len);
+            in.position(start + len);
+        }
+        in.compact();
+    }
+
+    // ======= Requests =======
+
+    // Decodes with absolute gets, so nothing but the worker task is allocated per request
+    private void dispatch(Connection c, ByteBuffer in, int at, int len) {
+        requests.increment();
+        if (len < REQUEST_BYTES) {
+            respond(c, len >= 4 ? in.getInt(at) : -1, BAD_REQUEST, null);
+            return;
+        }
+        int id = in.getInt(at);
+        byte op = in.get(at + 4);
+        int priority = in.get(at + 5);
+        int algorithm = in.get(at + 6);
+        int from = in.getInt(at + 7);
+        int to = in.getInt(at + 11);
+        int timeoutMs = in.getInt(at + 15);
+
+        List<Daa_smartCity.Node> nodes = service.graph().nodes;
+        AdmissionController.Priority[] priorities = AdmissionController.Priority.values();
+        RoutingEngine.Algorithm[] algorithms = RoutingEngine.Algorithm.values();
+        if (op != OP_ROUTE || priority < 0 || priority >= priorities.length
+                || algorithm < ALGORITHM_HUB_LABELS || algorithm > algorithms.length
+                || from < 0 || from >= nodes.size() || to < 0 || to >= nodes.size()) {
+            respond(c, id, BAD_REQUEST, null);
+            return;
+        }
+
+        AdmissionController.Permit permit = admission.tryAcquire(priorities[priority]);
+        if (permit == null) {
+            respond(c, id, OVERLOADED, null);
+            return;
+        }
+        String label = algorithm == ALGORITHM_DYNAMIC ? RoutingService.DYNAMIC
+                : algorithm == ALGORITHM_HUB_LABELS ? RoutingService.HUB_LABELS
+                : algorithms[algorithm - 1].label;
+        Daa_smartCity.Node src = nodes.get(from);
+        Daa_smartCity.Node dst = nodes.get(to);
+        try {
+            workers.execute(() -> {
+                try {
+                    Daa_smartCity.PathResult r = service.route(src, dst, label, Deadline.afterOrNone(timeoutMs));
+                    respond(c, id, statusOf(r), r);
+                } catch (IllegalArgumentException ex) {
+                    respond(c, id, BAD_REQUEST, null);      // e.g. a label-setting search on negative weights
+                } catch (RuntimeException ex) {
+                    respond(c, id, ERROR, null);
+                } finally {
+                    permit.close();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            permit.close();
+            respond(c, id, ERROR, null);
+        }
+    }
+
+    private static byte statusOf(Daa_smartCity.PathResult r) {
+        if (r == null) return NO_PATH;
+        if (r.hasNegativeCycle) return NEGATIVE_CYCLE;
+        if (r.timedOut) return TIMED_OUT;
+        return r.found ? OK : NO_PATH;
+    }
+
+    // ======= Responses =======
+
+    // Cached results carry a CompactPath whose ids belong to the manager's node table, so both
+    // kinds map each node to its graph index
+    private void respond(Connection c, int id, byte status, Daa_smartCity.PathResult r) {
+        boolean ok = r != null && r.found && !r.hasNegativeCycle;
+        List<Daa_smartCity.Node> path = ok ? r.path : null;
+        CompactPath compact = ok && path == null ? r.compactPath : null;
+        int n = path != null ? path.size() : compact != null ? compact.size() : 0;
+        int body = RESPONSE_HEADER_BYTES + 4 * n;
+        ByteBuffer b = buffers.acquire(4 + body);
+        b.putInt(body).putInt(id).put(status).putDouble(ok ? r.totalCost : Double.POSITIVE_INFINITY).putInt(n);
+        if (path != null) {
+            for (int i = 0; i < n; i++) b.putInt(index.get(path.get(i)));
+        } else if (compact != null) {
+            compact.forEachId(k -> b.putInt(index.get(compact.node(k))));
+        }
+        b.flip();
+        send(c, b);
+    }
+
+    // Writes straight away when nothing is queued ahead; otherwise the selector finishes it
+    private void send(Connection c, ByteBuffer b) {
+        synchronized (c) {
+            if (c.closed) {
+                buffers.release(b);
+                return;
+            }
+            c.out.add(b);
+            flush(c);
+            if (!c.out.isEmpty() && !c.closed && !c.writeRequested) {
+                c.writeRequested = true;
+                wantWrite.add(c);
+                selector.wakeup();
+            }
+        }
+    }
+
+    // Caller holds c's monitor
+    private void flush(Connection c) {
+        try {
+            while (!c.out.isEmpty()) {
+                ByteBuffer head = c.out.peek();
+                c.ch.write(head);
+                if (head.hasRemaining()) return;
+                buffers.release(c.out.poll());
+            }
+        } catch (IOException ex) {
+            close(c);
+        }
+    }
+
+    private void close(Connection c) {
+        synchronized (c) {
+            if (c.closed) return;
+            c.closed = true;
+            for (ByteBuffer b : c.out) buffers.release(b);
+            c.out.clear();
+        }
+        if (c.key != null) c.key.cancel();
+        try {
+            c.ch.close();
+        } catch (IOException ignored) {}
+    }
+}
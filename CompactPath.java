@@ -0,0 +1,133 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * A route kept as node ids from a shared NodeTable, delta-encoded as zigzag varints. Ids
+ * are handed out in graph order, so neighbouring nodes of a road network are usually close
+ * in id and a hop mostly takes one or two bytes where a List<Node> holds a reference plus
+ * the list's own overhead.
+ *
+ * Consumers that only need ids or labels walk it with forEachId(); toList() expands it for
+ * code that really wants nodes, such as the UI.
+ */
+public final class CompactPath {
+
+    /**
+     * Append-only node to id mapping shared by every path encoded against it. Ids are never
+     * reused, so a path stays decodable however the graph changes later; one table per
+     * owner (e.g. a path cache) costs a single array however many paths use it.
+     */
+    public static final class NodeTable {
+        private final Map<Daa_smartCity.Node, Integer> ids = new ConcurrentHashMap<>();   // Node has identity equality
+        private volatile Daa_smartCity.Node[] nodes = new Daa_smartCity.Node[0];
+
+        public int size() { return nodes.length; }
+
+        public Daa_smartCity.Node node(int id) { return nodes[id]; }
+
+        /** Id of n, or -1 if it was never interned. */
+        public int idOf(Daa_smartCity.Node n) {
+            Integer id = ids.get(n);
+            return id == null ? -1 : id;
+        }
+
+        /** Interns the nodes not seen yet, in the given order. */
+        public synchronized void internAll(Daa_smartCity.Node[] order) {
+            List<Daa_smartCity.Node> fresh = new ArrayList<>();
+            for (Daa_smartCity.Node n : order) {
+                if (!ids.containsKey(n)) fresh.add(n);
+            }
+            if (fresh.isEmpty()) return;
+            int base = nodes.length;
+            Daa_smartCity.Node[] grown = Arrays.copyOf(nodes, base + fresh.size());
+            for (int i = 0; i < fresh.size(); i++) grown[base + i] = fresh.get(i);
+            nodes = grown;                                    // publish before the ids point into it
+            for (int i = base; i < grown.length; i++) ids.put(grown[i], i);
+        }
+    }
+
+    private final NodeTable table;
+    private final byte[] data;
+    private final int size;
+
+    private CompactPath(NodeTable table, byte[] data, int size) {
+        this.table = table;
+        this.data = data;
+        this.size = size;
+    }
+
+    /** Encodes ids[0..n), each an id from table. */
+    public static CompactPath encode(NodeTable table, int[] ids, int n) {
+        byte[] buf = new byte[5 * n];
+        int pos = 0;
+        int prev = 0;
+        for (int i = 0; i < n; i++) {
+            int d = ids[i] - prev;
+            prev = ids[i];
+            int z = (d << 1) ^ (d >> 31);
+            while ((z & ~0x7F) != 0) {
+                buf[pos++] = (byte) ((z & 0x7F) | 0x80);
+                z >>>= 7;
+            }
+            buf[pos++] = (byte) z;
+        }
+        return new CompactPath(table, Arrays.copyOf(buf, pos), n);
+    }
+
+    /**
+     * The nodes of path, computed on snapshot g. Nodes new to table are interned in g's order
+     * first; null if one is not in g either.
+     */
+    public static CompactPath of(NodeTable table, GraphSnapshot g, List<Daa_smartCity.Node> path) {
+        int[] ids = new int[path.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Daa_smartCity.Node n = path.get(i);
+            ids[i] = table.idOf(n);
+            if (ids[i] < 0) {
+                table.internAll(g.nodes);
+                ids[i] = table.idOf(n);
+                if (ids[i] < 0) return null;
+            }
+        }
+        return encode(table, ids, ids.length);
+    }
+
+    public int size() { return size; }
+
+    /** Bytes of encoded route (the shared table not counted). */
+    public int encodedBytes() { return data.length; }
+
+    public Daa_smartCity.Node node(int id) { return table.node(id); }
+
+    /** Passes each node id in route order. */
+    public void forEachId(IntConsumer action) {
+        int pos = 0;
+        int prev = 0;
+        for (int i = 0; i < size; i++) {
+            int z = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                z |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            prev += (z >>> 1) ^ -(z & 1);
+            action.accept(prev);
+        }
+    }
+
+    public int[] ids() {
+        int[] out = new int[size];
+        int[] at = {0};
+        forEachId(id -> out[at[0]++] = id);
+        return out;
+    }
+
+    public List<Daa_smartCity.Node> toList() {
+        List<Daa_smartCity.Node> out = new ArrayList<>(size);
+        forEachId(id -> out.add(table.node(id)));
+        return out;
+    }
+}
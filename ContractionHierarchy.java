@@ -0,0 +1,275 @@
+import java.util.*;
+
+/**
+ * Contraction hierarchy over a GraphSnapshot (non-negative weights only).
+ *
+ * Nodes are contracted in lazy edge-difference order; a shortcut u -> x is added for each
+ * in/out neighbour pair of the contracted node v unless a witness search finds a path at
+ * most as short that avoids v. After preprocessing every shortest path can be found by two
+ * searches that only climb in rank: forward over the out arcs, backward over the in arcs.
+ *
+ * The hierarchy is tied to the weights it was built with; callers rebuild after traffic.
+ */
+public class ContractionHierarchy {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    public final GraphSnapshot graph;
+    public final int[] rank;
+
+    // Upward arcs in CSR form: out* holds u -> x with rank[x] > rank[u], in* holds x -> u likewise
+    public final int[] outOffsets, outTargets;
+    public final double[] outWeights;
+    public final int[] inOffsets, inTargets;
+    public final double[] inWeights;
+
+    private final int shortcuts;
+
+    private ContractionHierarchy(GraphSnapshot g, int[] rank,
+                                 int[] oo, int[] ot, double[] ow,
+                                 int[] io, int[] it, double[] iw, int shortcuts) {
+        this.graph = g;
+        this.rank = rank;
+        this.outOffsets = oo;
+        this.outTargets = ot;
+        this.outWeights = ow;
+        this.inOffsets = io;
+        this.inTargets = it;
+        this.inWeights = iw;
+        this.shortcuts = shortcuts;
+    }
+
+    public int shortcutCount() { return shortcuts; }
+
+    public int size() { return graph.size(); }
+
+    public static ContractionHierarchy build(GraphSnapshot g) {
+        if (g.hasNegativeWeights()) {
+            throw new IllegalArgumentException("Contraction hierarchies need non-negative weights");
+        }
+        return new Builder(g).run();
+    }
+
+    /** Point-to-point distance by a bidirectional upward search. */
+    public double distance(int s, int t) {
+        int n = size();
+        double[] df = new double[n];
+        double[] db = new double[n];
+        Arrays.fill(df, INF);
+        Arrays.fill(db, INF);
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+
+        upwardSearch(s, outOffsets, outTargets, outWeights, df, heap, null);
+        double best = INF;
+        List<Integer> touched = new ArrayList<>();
+        upwardSearch(t, inOffsets, inTargets, inWeights, db, heap, touched);
+        for (int x : touched) {
+            if (df[x] + db[x] < best) best = df[x] + db[x];
+        }
+        return best;
+    }
+
+    /** Dijkstra restricted to upward arcs; settled nodes are appended to 'settled' if given. */
+    void upwardSearch(int root, int[] offs, int[] tgts, double[] ws,
+                      double[] dist, IndexedMinHeap heap, List<Integer> settled) {
+        heap.clear();
+        dist[root] = 0.0;
+        heap.push(root, 0.0);
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            if (settled != null) settled.add(u);
+            double du = dist[u];
+            for (int a = offs[u]; a < offs[u + 1]; a++) {
+                int v = tgts[a];
+                double nd = du + ws[a];
+                if (nd < dist[v]) {
+                    dist[v] = nd;
+                    heap.push(v, nd);
+                }
+            }
+        }
+    }
+
+    // ======= Preprocessing =======
+
+    private static final class Csr {
+        final int[] offsets;
+        final int[] targets;
+        final double[] weights;
+
+        Csr(int[] offsets, int[] targets, double[] weights) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+        }
+    }
+
+    private static final class Builder {
+        private final GraphSnapshot g;
+        private final int n;
+        private final List<Map<Integer, Double>> out = new ArrayList<>();
+        private final List<Map<Integer, Double>> in = new ArrayList<>();
+        private final int[] deletedNeighbours;
+        private final int[] rank;
+
+        // Witness search scratch
+        private final double[] wDist;
+        private final List<Integer> wTouched = new ArrayList<>();
+        private final IndexedMinHeap wHeap;
+
+        private int shortcuts = 0;
+
+        Builder(GraphSnapshot g) {
+            this.g = g;
+            this.n = g.size();
+            deletedNeighbours = new int[n];
+            rank = new int[n];
+            wDist = new double[n];
+            Arrays.fill(wDist, INF);
+            wHeap = new IndexedMinHeap(n);
+
+            for (int i = 0; i < n; i++) {
+                out.add(new HashMap<>());
+                in.add(new HashMap<>());
+            }
+            for (int u = 0; u < n; u++) {
+                for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                    int v = g.targets[a];
+                    if (v == u) continue;
+                    out.get(u).merge(v, g.weights[a], Math::min);
+                    in.get(v).merge(u, g.weights[a], Math::min);
+                }
+            }
+        }
+
+        ContractionHierarchy run() {
+            IndexedMinHeap order = new IndexedMinHeap(n);
+            for (int v = 0; v < n; v++) order.push(v, priority(v));
+
+            List<int[]> upOut = new ArrayList<>();   // {from, to}; weights in the parallel list
+            List<Double> upOutW = new ArrayList<>();
+            List<int[]> upIn = new ArrayList<>();
+            List<Double> upInW = new ArrayList<>();
+
+            int next = 0;
+            while (!order.isEmpty()) {
+                int v = order.poll();
+                double p = priority(v);
+                if (!order.isEmpty() && p > order.peekKey()) {
+                    order.push(v, p);          // lazy update: not the minimum any more
+                    continue;
+                }
+
+                // Remaining arcs all lead to uncontracted (= higher-ranked) neighbours
+                for (Map.Entry<Integer, Double> en : out.get(v).entrySet()) {
+                    upOut.add(new int[]{v, en.getKey()});
+                    upOutW.add(en.getValue());
+                }
+                for (Map.Entry<Integer, Double> en : in.get(v).entrySet()) {
+                    upIn.add(new int[]{v, en.getKey()});
+                    upInW.add(en.getValue());
+                }
+
+                for (double[] sc : shortcutsFor(v)) {
+                    int u = (int) sc[0], x = (int) sc[1];
+                    Double old = out.get(u).get(x);
+                    if (old == null || sc[2] < old) {
+                        out.get(u).put(x, sc[2]);
+                        in.get(x).put(u, sc[2]);
+                        if (old == null) shortcuts++;
+                    }
+                }
+
+                Set<Integer> neighbours = new HashSet<>(out.get(v).keySet());
+                neighbours.addAll(in.get(v).keySet());
+                for (int u : out.get(v).keySet()) in.get(u).remove(v);
+                for (int u : in.get(v).keySet()) out.get(u).remove(v);
+                rank[v] = next++;
+
+                for (int u : neighbours) {
+                    deletedNeighbours[u]++;
+                    order.update(u, priority(u));
+                }
+            }
+
+            Csr o = toCsr(upOut, upOutW);
+            Csr i = toCsr(upIn, upInW);
+            return new ContractionHierarchy(g, rank,
+                    o.offsets, o.targets, o.weights, i.offsets, i.targets, i.weights, shortcuts);
+        }
+
+        private Csr toCsr(List<int[]> arcs, List<Double> w) {
+            int[] offs = new int[n + 1];
+            for (int[] a : arcs) offs[a[0] + 1]++;
+            for (int k = 0; k < n; k++) offs[k + 1] += offs[k];
+            int[] fill = Arrays.copyOf(offs, n);
+            int[] tg = new int[arcs.size()];
+            double[] ws = new double[arcs.size()];
+            for (int k = 0; k < arcs.size(); k++) {
+                int[] a = arcs.get(k);
+                tg[fill[a[0]]] = a[1];
+                ws[fill[a[0]]++] = w.get(k);
+            }
+            return new Csr(offs, tg, ws);
+        }
+
+        private double priority(int v) {
+            int added = shortcutsFor(v).size();
+            int removed = out.get(v).size() + in.get(v).size();
+            return (added - removed) + deletedNeighbours[v];
+        }
+
+        // Shortcuts (u, x, w) needed if v were contracted now
+        private List<double[]> shortcutsFor(int v) {
+            List<double[]> res = new ArrayList<>();
+            Map<Integer, Double> outs = out.get(v);
+            if (outs.isEmpty()) return res;
+            double maxOut = 0;
+            for (double w : outs.values()) maxOut = Math.max(maxOut, w);
+
+            for (Map.Entry<Integer, Double> ie : in.get(v).entrySet()) {
+                int u = ie.getKey();
+                double w1 = ie.getValue();
+                witness(u, v, w1 + maxOut);
+                for (Map.Entry<Integer, Double> oe : outs.entrySet()) {
+                    int x = oe.getKey();
+                    if (x == u) continue;
+                    double via = w1 + oe.getValue();
+                    if (wDist[x] > via) res.add(new double[]{u, x, via});
+                }
+                resetWitness();
+            }
+            return res;
+        }
+
+        // Bounded Dijkstra from u among uncontracted nodes, never entering 'avoid'
+        private void witness(int u, int avoid, double limit) {
+            wHeap.clear();
+            wDist[u] = 0.0;
+            wTouched.add(u);
+            wHeap.push(u, 0.0);
+            int settled = 0;
+            while (!wHeap.isEmpty() && settled++ < WITNESS_SETTLE_LIMIT) {
+                if (wHeap.peekKey() > limit) break;
+                int a = wHeap.poll();
+                double da = wDist[a];
+                for (Map.Entry<Integer, Double> en : out.get(a).entrySet()) {
+                    int b = en.getKey();
+                    if (b == avoid) continue;
+                    double nd = da + en.getValue();
+                    if (nd < wDist[b]) {
+                        if (wDist[b] == INF) wTouched.add(b);
+                        wDist[b] = nd;
+                        wHeap.push(b, nd);
+                    }
+                }
+            }
+        }
+
+        private void resetWitness() {
+            for (int t : wTouched) wDist[t] = INF;
+            wTouched.clear();
+        }
+    }
+}
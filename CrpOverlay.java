@@ -0,0 +1,434 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Customizable route planning (CRP) style multi-level overlay.
+ *
+ * Metric-independent part, built once per topology: nodes are split into nested cells by
+ * recursive coordinate bisection (level 0 finest), and the boundary nodes of every cell
+ * (endpoints of roads that leave it) are collected. Blocked roads stay in the topology;
+ * blocking is just an infinite weight.
+ *
+ * Metric-dependent part ("customization"): each cell stores a clique of boundary-to-boundary
+ * distances inside the cell, built from the level below. A traffic batch only re-customizes
+ * the cells containing a changed road (plus their ancestors), cells of one level in parallel.
+ *
+ * Queries run Dijkstra on the overlay: original roads near source and target, clique arcs of
+ * the coarsest cell that contains neither elsewhere. Clique hops are unpacked by a search
+ * restricted to their cell, recursively through the levels below. Weights must be non-negative.
+ */
+public class CrpOverlay implements DynamicTrafficManager.TrafficListener {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+
+    private final ForkJoinPool pool;
+    private final int[] maxCellSize;     // per level, finest first
+
+    // Topology (arrays aliased from topo for the hot loops)
+    private RoadTopology topo;
+    private Daa_smartCity.Node[] nodes;
+    private int n;
+    private int[] tail, head;
+    private int[] outOffsets, outArcs;
+    private long fingerprint = Long.MIN_VALUE;
+
+    // Partition: cellOf[level][node], cells[level][cell]
+    private int levels;
+    private int[][] cellOf;
+    private Cell[][] cells;
+    private int[][] boundaryPos;         // [level][node] -> index in its cell's boundary, or -1
+
+    // Metric
+    private double[] weight;
+    private int negativeArcs;
+    private volatile boolean stale = true;
+    private Scratch queryScratch, unpackScratch;
+    private int[] queryVia;
+    private int customizedCells = 0;
+
+    private static final class Cell {
+        final int[] members;
+        final int[] boundary;
+        double[] clique;                 // boundary.length^2, row-major
+
+        Cell(int[] members, int[] boundary) {
+            this.members = members;
+            this.boundary = boundary;
+        }
+    }
+
+    public CrpOverlay(ForkJoinPool pool, int... maxCellSize) {
+        this.pool = pool;
+        this.maxCellSize = maxCellSize.clone();
+    }
+
+    public CrpOverlay() {
+        this(ForkJoinPool.commonPool(), 32, 256, 2048);
+    }
+
+    /** Cells re-customized by the last traffic batch (or full customization). */
+    public int lastCustomizedCells() { return customizedCells; }
+
+    public int levels() { return levels; }
+
+    public int cellCount(int level) { return cells[level].length; }
+
+    @Override
+    public synchronized void onTrafficChange(int version, List<DynamicTrafficManager.EdgeChange> changes) {
+        if (stale || changes == null) return;
+
+        List<Integer> arcs = new ArrayList<>();
+        for (DynamicTrafficManager.EdgeChange ch : changes) {
+            int[] as = topo.arcsOf(ch.edge);
+            if (as == null) {
+                stale = true;            // road not in this topology: rebuild on next ensure()
+                return;
+            }
+            for (int a : as) arcs.add(a);
+        }
+        customizedCells = recustomize(arcs);
+    }
+
+    /** Rebuilds partition and metric if the topology changed since the last call. */
+    public synchronized void ensure(List<Daa_smartCity.Node> nodeList,
+                                    List<Daa_smartCity.Edge> edges,
+                                    boolean directed) {
+        long fp = GraphSnapshot.fingerprint(nodeList, edges, directed);
+        if (!stale && fp == fingerprint) {
+            // Weights edited outside DynamicTrafficManager still get picked up, incrementally
+            List<Integer> drifted = new ArrayList<>();
+            for (int a = 0; a < tail.length; a++) {
+                if (Double.compare(weight[a], topo.metric(a)) != 0) drifted.add(a);
+            }
+            if (!drifted.isEmpty()) customizedCells = recustomize(drifted);
+            return;
+        }
+        fingerprint = fp;
+        buildTopology(nodeList, edges, directed);
+        buildPartition();
+        queryScratch = new Scratch(n);
+        unpackScratch = new Scratch(n);
+        queryVia = new int[n];
+
+        weight = new double[tail.length];
+        negativeArcs = 0;
+        for (int a = 0; a < tail.length; a++) {
+            weight[a] = topo.metric(a);
+            if (weight[a] < 0) negativeArcs++;
+        }
+        List<Set<Integer>> all = new ArrayList<>();
+        for (int l = 0; l < levels; l++) {
+            Set<Integer> s = new HashSet<>();
+            for (int c = 0; c < cells[l].length; c++) s.add(c);
+            all.add(s);
+        }
+        customizedCells = customize(all);
+        stale = false;
+    }
+
+    public synchronized Daa_smartCity.PathResult shortestPath(Daa_smartCity.Node start,
+                                                              Daa_smartCity.Node goal,
+                                                              List<Daa_smartCity.Node> nodeList,
+                                                              List<Daa_smartCity.Edge> edges,
+                                                              boolean directed) {
+        ensure(nodeList, edges, directed);
+        if (negativeArcs > 0) {
+            throw new IllegalArgumentException("CRP overlay needs non-negative weights");
+        }
+        int s = topo.indexOf(start), t = topo.indexOf(goal);
+        if (s < 0 || t < 0) return new Daa_smartCity.PathResult(false, null, 0, false, null, INF);
+
+        // Query scratch is reused across calls (queries hold the monitor)
+        Scratch q = queryScratch;
+        double[] dist = q.dist;
+        int[] parent = q.parent;
+        int[] via = queryVia;            // arc id >= 0, or -(level + 1) for a clique hop
+        IndexedMinHeap heap = q.heap;
+        heap.clear();
+        dist[s] = 0.0;
+        parent[s] = -1;
+        q.touched.add(s);
+        heap.push(s, 0.0);
+        int steps = 0;
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            steps++;
+            if (u == t) break;
+            double du = dist[u];
+            int l = queryLevel(u, s, t);
+            if (l >= 0 && boundaryPos[l][u] < 0) l = -1;   // not an overlay node: plain arcs are always valid
+
+            if (l >= 0) {
+                Cell c = cells[l][cellOf[l][u]];
+                int bi = boundaryPos[l][u];
+                int b = c.boundary.length;
+                for (int j = 0; j < b; j++) {
+                    int v = c.boundary[j];
+                    double nd = du + c.clique[bi * b + j];
+                    if (nd < dist[v]) {
+                        if (dist[v] == INF) q.touched.add(v);
+                        dist[v] = nd;
+                        parent[v] = u;
+                        via[v] = -(l + 1);
+                        heap.push(v, nd);
+                    }
+                }
+            }
+            for (int k = outOffsets[u]; k < outOffsets[u + 1]; k++) {
+                int a = outArcs[k];
+                int v = head[a];
+                if (l >= 0 && cellOf[l][v] == cellOf[l][u]) continue;   // covered by the clique
+                double nd = du + weight[a];
+                if (nd < dist[v]) {
+                    if (dist[v] == INF) q.touched.add(v);
+                    dist[v] = nd;
+                    parent[v] = u;
+                    via[v] = a;
+                    heap.push(v, nd);
+                }
+            }
+        }
+
+        double total = dist[t];
+        if (total == INF) {
+            q.reset();
+            return new Daa_smartCity.PathResult(false, null, steps, false, null, INF);
+        }
+
+        List<Integer> rev = new ArrayList<>();
+        for (int v = t; v != s; v = parent[v]) {
+            int u = parent[v];
+            if (via[v] >= 0) {
+                rev.add(v);
+            } else {
+                List<Integer> seg = unpack(-via[v] - 1, u, v);
+                for (int k = seg.size() - 1; k >= 1; k--) rev.add(seg.get(k));
+            }
+        }
+        rev.add(s);
+        q.reset();
+        List<Daa_smartCity.Node> path = new ArrayList<>(rev.size());
+        for (int k = rev.size() - 1; k >= 0; k--) path.add(nodes[rev.get(k)]);
+        return new Daa_smartCity.PathResult(true, path, steps, false, null, total);
+    }
+
+    // ======= Topology / partition =======
+
+    private void buildTopology(List<Daa_smartCity.Node> nodeList, List<Daa_smartCity.Edge> edges, boolean directed) {
+        topo = RoadTopology.of(nodeList, edges, directed);
+        nodes = topo.nodes;
+        n = topo.n;
+        tail = topo.tail;
+        head = topo.head;
+        outOffsets = topo.outOffsets;
+        outArcs = topo.outArcs;
+    }
+
+    private void buildPartition() {
+        levels = maxCellSize.length;
+        cellOf = new int[levels][n];
+        List<List<int[]>> cellMembers = new ArrayList<>();
+        for (int l = 0; l < levels; l++) cellMembers.add(new ArrayList<>());
+
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) all[i] = i;
+        bisect(all, levels - 1, cellMembers);
+
+        cells = new Cell[levels][];
+        boundaryPos = new int[levels][n];
+        for (int l = 0; l < levels; l++) {
+            List<int[]> ms = cellMembers.get(l);
+            for (int c = 0; c < ms.size(); c++) {
+                for (int v : ms.get(c)) cellOf[l][v] = c;
+            }
+            // Boundary = endpoint of some road (either direction) that leaves its cell
+            boolean[] crossing = new boolean[n];
+            for (int a = 0; a < tail.length; a++) {
+                if (cellOf[l][tail[a]] != cellOf[l][head[a]]) {
+                    crossing[tail[a]] = true;
+                    crossing[head[a]] = true;
+                }
+            }
+            Arrays.fill(boundaryPos[l], -1);
+            cells[l] = new Cell[ms.size()];
+            for (int c = 0; c < ms.size(); c++) {
+                List<Integer> b = new ArrayList<>();
+                for (int v : ms.get(c)) {
+                    if (crossing[v]) {
+                        boundaryPos[l][v] = b.size();
+                        b.add(v);
+                    }
+                }
+                int[] bs = new int[b.size()];
+                for (int k = 0; k < bs.length; k++) bs[k] = b.get(k);
+                cells[l][c] = new Cell(ms.get(c), bs);
+            }
+        }
+    }
+
+    // Cells of this level in bisection order, each immediately split for the level below
+    private void bisect(int[] members, int level, List<List<int[]>> out) {
+        RoadTopology.bisect(nodes, members, maxCellSize[level], cell -> {
+            out.get(level).add(cell);
+            if (level > 0) bisect(cell, level - 1, out);
+        });
+    }
+
+    // ======= Customization =======
+
+    // Re-reads the given arcs' weights and re-customizes only the cells that contain them
+    private int recustomize(List<Integer> arcs) {
+        List<Set<Integer>> dirty = new ArrayList<>();
+        for (int l = 0; l < levels; l++) dirty.add(new HashSet<>());
+
+        for (int a : arcs) {
+            double old = weight[a];
+            weight[a] = topo.metric(a);
+            if (old < 0) negativeArcs--;
+            if (weight[a] < 0) negativeArcs++;
+
+            // Lowest level whose cell contains both ends, and every ancestor above it
+            for (int l = 0; l < levels; l++) {
+                if (cellOf[l][tail[a]] == cellOf[l][head[a]]) {
+                    for (int k = l; k < levels; k++) dirty.get(k).add(cellOf[k][tail[a]]);
+                    break;
+                }
+            }
+        }
+        return customize(dirty);
+    }
+
+    private int customize(List<Set<Integer>> dirty) {
+        int count = 0;
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(n));
+        for (int l = 0; l < levels; l++) {
+            final int level = l;
+            int[] todo = dirty.get(l).stream().mapToInt(Integer::intValue).toArray();
+            count += todo.length;
+            parallelFor(todo.length, i -> customizeCell(level, todo[i], scratch.get()));
+        }
+        return count;
+    }
+
+    private void customizeCell(int level, int c, Scratch sc) {
+        Cell cell = cells[level][c];
+        int b = cell.boundary.length;
+        double[] clique = new double[b * b];
+        for (int i = 0; i < b; i++) {
+            searchInCell(level, c, cell.boundary[i], sc, -1);
+            for (int j = 0; j < b; j++) clique[i * b + j] = sc.dist[cell.boundary[j]];
+            sc.reset();
+        }
+        cell.clique = clique;       // published whole; queries hold the monitor anyway
+    }
+
+    /**
+     * Dijkstra from src confined to cell c of 'level'. Level 0 walks original arcs; higher
+     * levels walk the level-below cliques plus original arcs between sub-cells, recording in
+     * sc.viaClique which hops were cliques. Stops early once stopAt (if >= 0) is settled.
+     */
+    private void searchInCell(int level, int c, int src, Scratch sc, int stopAt) {
+        sc.heap.clear();
+        sc.dist[src] = 0.0;
+        sc.parent[src] = -1;
+        sc.touched.add(src);
+        sc.heap.push(src, 0.0);
+        int sub = level - 1;
+
+        while (!sc.heap.isEmpty()) {
+            int u = sc.heap.poll();
+            if (u == stopAt) return;
+            double du = sc.dist[u];
+            if (sub >= 0) {
+                Cell sCell = cells[sub][cellOf[sub][u]];
+                int bi = boundaryPos[sub][u];
+                int b = sCell.boundary.length;
+                for (int j = 0; j < b; j++) relax(sc, u, sCell.boundary[j], du + sCell.clique[bi * b + j], true);
+            }
+            for (int k = outOffsets[u]; k < outOffsets[u + 1]; k++) {
+                int a = outArcs[k];
+                int v = head[a];
+                if (cellOf[level][v] != c) continue;
+                if (sub >= 0 && cellOf[sub][v] == cellOf[sub][u]) continue;
+                relax(sc, u, v, du + weight[a], false);
+            }
+        }
+    }
+
+    private static void relax(Scratch sc, int u, int v, double nd, boolean clique) {
+        if (nd < sc.dist[v]) {
+            if (sc.dist[v] == INF) sc.touched.add(v);
+            sc.dist[v] = nd;
+            sc.parent[v] = u;
+            sc.viaClique[v] = clique;
+            sc.heap.push(v, nd);
+        }
+    }
+
+    // Node sequence u ... v realising a clique hop of 'level', unpacked level by level
+    private List<Integer> unpack(int level, int u, int v) {
+        Scratch sc = unpackScratch;
+        searchInCell(level, cellOf[level][u], u, sc, v);
+        List<Integer> chain = new ArrayList<>();
+        List<Boolean> clique = new ArrayList<>();
+        for (int x = v; x != -1; x = sc.parent[x]) {
+            chain.add(x);
+            clique.add(sc.viaClique[x]);
+        }
+        sc.reset();
+
+        List<Integer> seg = new ArrayList<>();
+        seg.add(u);
+        for (int k = chain.size() - 2; k >= 0; k--) {
+            int from = chain.get(k + 1), to = chain.get(k);
+            if (clique.get(k)) {
+                List<Integer> inner = unpack(level - 1, from, to);
+                seg.addAll(inner.subList(1, inner.size()));
+            } else {
+                seg.add(to);
+            }
+        }
+        return seg;
+    }
+
+    // Coarsest level whose cell around u contains neither s nor t; -1 near the endpoints
+    private int queryLevel(int u, int s, int t) {
+        for (int l = levels - 1; l >= 0; l--) {
+            int c = cellOf[l][u];
+            if (c != cellOf[l][s] && c != cellOf[l][t]) return l;
+        }
+        return -1;
+    }
+
+    private static final class Scratch {
+        final double[] dist;
+        final int[] parent;
+        final boolean[] viaClique;
+        final IndexedMinHeap heap;
+        final List<Integer> touched = new ArrayList<>();
+
+        Scratch(int n) {
+            dist = new double[n];
+            parent = new int[n];
+            viaClique = new boolean[n];
+            Arrays.fill(dist, INF);
+            heap = new IndexedMinHeap(n);
+        }
+
+        void reset() {
+            for (int v : touched) dist[v] = INF;
+            touched.clear();
+        }
+    }
+
+    private void parallelFor(int count, IntConsumer body) {
+        if (count <= 1 || pool.getParallelism() <= 1) {
+            for (int i = 0; i < count; i++) body.accept(i);
+            return;
+        }
+        pool.submit(() -> IntStream.range(0, count).parallel().forEach(body)).join();
+    }
+}
@@ -0,0 +1,290 @@
+import java.util.*;
+
+/**
+ * D* Lite planning session for one vehicle driving towards a fixed goal.
+ *
+ * The search runs backwards from the goal, so g(v) is the cost from v to the goal and it
+ * stays valid while the vehicle moves. replan() takes the vehicle's current node and the
+ * traffic batches seen since the last call: only the tails of changed arcs become
+ * inconsistent, and the repair touches the part of the search they actually affect.
+ *
+ * The heuristic is the straight-line distance scaled by the smallest weight/length ratio of
+ * any road, which keeps it consistent for arbitrary weights (it is lowered, and the queue
+ * re-keyed, if traffic makes some road cheaper than that). With a consistent heuristic the
+ * second D* Lite key only breaks ties, so the queue orders by the first key and expands ties
+ * with the vehicle's key too. Weights must be non-negative; blocked roads count as +Infinity.
+ *
+ * Repairing a slower road is only sound for positive costs: two nodes joined by a zero-weight
+ * road can keep "supporting" each other's stale g. While such roads exist, a batch that slows
+ * anything down restarts the search instead.
+ */
+public class DStarLite {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+    private static final double EPS = 1e-9;
+
+    private final Daa_smartCity.Node goalNode;
+    private final List<Daa_smartCity.Node> nodeList;
+    private final List<Daa_smartCity.Edge> edgeList;
+    private final boolean directed;
+
+    private RoadTopology topo;
+    private long fingerprint;
+    private double[] cost;               // arc costs the search state reflects
+    private double scale;                // heuristic = scale * straight-line distance
+    private int zeroArcs;
+
+    private double[] g, rhs;
+    private IndexedMinHeap open;
+    private int goal, last;
+    private double km;
+
+    private int lastExpanded = 0;
+    private int totalExpanded = 0;
+
+    /** Session for a vehicle at start heading to goal, over the live node/edge lists. */
+    public DStarLite(Daa_smartCity.Node start,
+                     Daa_smartCity.Node goal,
+                     List<Daa_smartCity.Node> nodes,
+                     List<Daa_smartCity.Edge> edges,
+                     boolean directed) {
+        this.goalNode = goal;
+        this.nodeList = nodes;
+        this.edgeList = edges;
+        this.directed = directed;
+        initialize(start);
+    }
+
+    public Daa_smartCity.Node goal() { return goalNode; }
+
+    public boolean directed() { return directed; }
+
+    /** Nodes expanded by the last replan() call. */
+    public int lastExpanded() { return lastExpanded; }
+
+    /** Nodes expanded over the whole session, initial search included. */
+    public int totalExpanded() { return totalExpanded; }
+
+    /**
+     * Best route from current to the goal after applying the given traffic (null or empty if
+     * nothing changed). Edges or nodes added/removed since the last call restart the search.
+     */
+    public synchronized Daa_smartCity.PathResult replan(Daa_smartCity.Node current,
+                                                        List<DynamicTrafficManager.EdgeChange> changes) {
+        int before = totalExpanded;
+        if (GraphSnapshot.fingerprint(nodeList, edgeList, directed) != fingerprint) {
+            initialize(current);
+        } else {
+            int s = topo.indexOf(current);
+            if (s < 0) {
+                lastExpanded = 0;
+                return notFound();
+            }
+            if (changes != null && !changes.isEmpty()) {
+                km += heuristic(last, s);
+                last = s;
+                boolean slower = false;
+                int zeroBefore = zeroArcs;
+                for (DynamicTrafficManager.EdgeChange ch : changes) {
+                    int[] arcs = topo.arcsOf(ch.edge);
+                    if (arcs == null) continue;   // not part of this topology (fingerprint caught the rest)
+                    for (int a : arcs) slower |= applyArc(a);
+                }
+                if (slower && (zeroBefore > 0 || zeroArcs > 0)) initialize(current);
+            }
+        }
+
+        int s = topo.indexOf(current);
+        if (s < 0) {
+            lastExpanded = 0;
+            return notFound();
+        }
+        computeShortestPath(s);
+        lastExpanded = totalExpanded - before;
+        return extractPath(s);
+    }
+
+    // ======= Search =======
+
+    private void initialize(Daa_smartCity.Node start) {
+        fingerprint = GraphSnapshot.fingerprint(nodeList, edgeList, directed);
+        topo = RoadTopology.of(nodeList, edgeList, directed);
+        int n = topo.n;
+        int m = topo.arcCount();
+
+        cost = new double[m];
+        zeroArcs = 0;
+        for (int a = 0; a < m; a++) {
+            cost[a] = topo.metric(a);
+            checkNonNegative(cost[a]);
+            if (cost[a] == 0.0) zeroArcs++;
+        }
+        scale = INF;
+        for (int a = 0; a < m; a++) lowerScale(a);
+        if (scale == INF) scale = 0.0;
+
+        g = new double[n];
+        rhs = new double[n];
+        Arrays.fill(g, INF);
+        Arrays.fill(rhs, INF);
+        open = new IndexedMinHeap(n);
+        km = 0.0;
+
+        goal = topo.indexOf(goalNode);
+        int s = topo.indexOf(start);
+        last = Math.max(s, 0);
+        if (goal < 0) return;
+        rhs[goal] = 0.0;
+        open.push(goal, key(goal));
+    }
+
+    private double key(int v) {
+        return Math.min(g[v], rhs[v]) + heuristic(last, v) + km;
+    }
+
+    private double heuristic(int a, int b) {
+        Daa_smartCity.Node p = topo.nodes[a], q = topo.nodes[b];
+        return scale * Math.hypot(p.x - q.x, p.y - q.y);
+    }
+
+    private void computeShortestPath(int start) {
+        if (goal < 0) return;
+        while (!open.isEmpty() && (open.peekKey() <= withSlack(key(start)) || rhs[start] != g[start])) {
+            double kOld = open.peekKey();
+            int u = open.poll();
+            totalExpanded++;
+            double kNew = key(u);
+            if (kOld < kNew) {
+                open.push(u, kNew);
+            } else if (g[u] > rhs[u]) {
+                g[u] = rhs[u];
+                for (int k = topo.inOffsets[u]; k < topo.inOffsets[u + 1]; k++) {
+                    int a = topo.inArcs[k];
+                    int p = topo.tail[a];
+                    if (p != goal && cost[a] + g[u] < rhs[p]) {
+                        rhs[p] = cost[a] + g[u];
+                        updateVertex(p);
+                    }
+                }
+            } else {
+                double gOld = g[u];
+                g[u] = INF;
+                if (u != goal) rhs[u] = bestSuccessor(u);
+                updateVertex(u);
+                for (int k = topo.inOffsets[u]; k < topo.inOffsets[u + 1]; k++) {
+                    int a = topo.inArcs[k];
+                    int p = topo.tail[a];
+                    if (p != goal && rhs[p] == cost[a] + gOld) {
+                        rhs[p] = bestSuccessor(p);
+                        updateVertex(p);
+                    }
+                }
+            }
+        }
+    }
+
+    // Keys that tie in exact arithmetic can differ by rounding (the heuristic is tight on some road)
+    private static double withSlack(double k) {
+        return k + EPS * Math.max(1.0, Math.abs(k));
+    }
+
+    private void updateVertex(int v) {
+        if (g[v] != rhs[v]) open.update(v, key(v));
+        else open.remove(v);
+    }
+
+    private double bestSuccessor(int u) {
+        double best = INF;
+        for (int k = topo.outOffsets[u]; k < topo.outOffsets[u + 1]; k++) {
+            int a = topo.outArcs[k];
+            best = Math.min(best, cost[a] + g[topo.head[a]]);
+        }
+        return best;
+    }
+
+    // ======= Traffic =======
+
+    // Returns true if the arc got more expensive
+    private boolean applyArc(int a) {
+        double old = cost[a];
+        double now = topo.metric(a);
+        if (Double.compare(old, now) == 0) return false;
+        checkNonNegative(now);
+        cost[a] = now;
+        if (old == 0.0) zeroArcs--;
+        if (now == 0.0) zeroArcs++;
+
+        if (lowerScale(a)) rekey();
+
+        int u = topo.tail[a], v = topo.head[a];
+        if (u != goal) {
+            if (now < old) {
+                rhs[u] = Math.min(rhs[u], now + g[v]);
+            } else if (rhs[u] == old + g[v]) {
+                rhs[u] = bestSuccessor(u);
+            }
+            updateVertex(u);
+        }
+        return now > old;
+    }
+
+    // Keeps scale <= weight / length for arc a; true if it had to shrink
+    private boolean lowerScale(int a) {
+        if (cost[a] == INF) return false;
+        Daa_smartCity.Node p = topo.nodes[topo.tail[a]], q = topo.nodes[topo.head[a]];
+        double len = Math.hypot(p.x - q.x, p.y - q.y);
+        if (len == 0.0) return false;
+        double ratio = cost[a] / len;
+        if (ratio >= scale) return false;
+        scale = ratio;
+        return true;
+    }
+
+    // The heuristic changed: recompute every queued key from the vehicle's node, km restarts at 0
+    private void rekey() {
+        km = 0.0;
+        List<Integer> queued = new ArrayList<>();
+        while (!open.isEmpty()) queued.add(open.poll());
+        for (int v : queued) open.push(v, key(v));
+    }
+
+    private static void checkNonNegative(double w) {
+        if (w < 0) throw new IllegalArgumentException("D* Lite needs non-negative weights");
+    }
+
+    // ======= Result =======
+
+    // Breadth-first over each node's best successors: greedy descent alone can loop on zero-weight roads
+    private Daa_smartCity.PathResult extractPath(int s) {
+        if (goal < 0 || g[s] == INF) return notFound();
+        int[] parent = new int[topo.n];
+        Arrays.fill(parent, -1);
+        parent[s] = s;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(s);
+        while (!queue.isEmpty() && parent[goal] < 0) {
+            int u = queue.poll();
+            double best = bestSuccessor(u);
+            if (best == INF) continue;
+            for (int k = topo.outOffsets[u]; k < topo.outOffsets[u + 1]; k++) {
+                int a = topo.outArcs[k];
+                int v = topo.head[a];
+                if (parent[v] < 0 && cost[a] + g[v] == best) {
+                    parent[v] = u;
+                    queue.add(v);
+                }
+            }
+        }
+        if (parent[goal] < 0) return notFound();
+
+        List<Daa_smartCity.Node> path = new ArrayList<>();
+        for (int v = goal; v != s; v = parent[v]) path.add(topo.nodes[v]);
+        path.add(topo.nodes[s]);
+        Collections.reverse(path);
+        return new Daa_smartCity.PathResult(true, path, lastExpanded, false, null, g[s]);
+    }
+
+    private Daa_smartCity.PathResult notFound() {
+        return new Daa_smartCity.PathResult(false, null, lastExpanded, false, null, INF);
+    }
+}
@@ -70,11 +70,16 @@ public class Daa_smartCity extends JFrame {
     // ======= Internal algorithm result =======
     public static class PathResult {
         public boolean found;
-        public List<Node> path;
+        public List<Node> path; // null when only compactPath is kept (cached results)
         public int steps;
         public boolean hasNegativeCycle;
         public List<Map<Node, Double>> distanceHistory;
         public double totalCost;
+        public List<Node> negativeCycle; // closed walk v → ... → v, when known
+        public DistanceHistory compactHistory; // delta-encoded trace (Bellman-Ford)
+        public boolean timedOut; // stopped at its Deadline; any path is the best found so far
+        public double bound = Double.NaN; // ARA* without potentials: totalCost <= bound * optimum (1 = optimal)
+        public CompactPath compactPath; // encoded route, set on results held in caches
 
         public PathResult(boolean f, List<Node> p, int s,
                           boolean nc, List<Map<Node, Double>> hist, double tc) {
@@ -85,6 +90,12 @@ public class Daa_smartCity extends JFrame {
             distanceHistory = hist;
             totalCost = tc;
         }
+
+        /** The route as nodes, expanded from compactPath when no list is held. */
+        public List<Node> path() {
+            if (path != null || compactPath == null) return path;
+            return compactPath.toList();
+        }
     }
 
     static class Holder<T> { T value; Holder(T v){ value = v; } }
@@ -104,6 +115,12 @@ public class Daa_smartCity extends JFrame {
     private Node first = null, hover = null;
     private Node src = null, dst = null;
     private List<Node> currentPath = null;
+    private List<List<Node>> alternativePaths = null;
+    private Isochrone.Result isochrone = null;
+
+    // Vehicle driving src -> dst, replanned with D* Lite as traffic changes
+    private static final String VEHICLE_ID = "vehicle-1";
+    private Node vehicleAt = null;
 
     private boolean directedMode = true;
 
@@ -124,6 +141,44 @@ public class Daa_smartCity extends JFrame {
     // Dynamic traffic manager
     private final DynamicTrafficManager trafficManager = new DynamicTrafficManager();
 
+    // Ranked alternatives (Yen)
+    private final KShortestPaths kShortest = new KShortestPaths();
+    private final AlternativeRoutes penaltyRoutes = new AlternativeRoutes();
+
+    // Parallel one-to-all SSSP (common ForkJoinPool)
+    private final DeltaSteppingSSSP deltaStepping = new DeltaSteppingSSSP();
+
+    // Headless BFS/DFS/Dijkstra/A*/Bellman-Ford/SPFA/Greedy/Delta-Stepping over a snapshot
+    private final RoutingEngine engine = new RoutingEngine(deltaStepping);
+
+    // Multi-level overlay, re-customized per traffic batch
+    private final CrpOverlay crpOverlay = new CrpOverlay();
+
+    // Region flags per arc, stale regions recomputed on demand
+    private final ArcFlags arcFlags = new ArcFlags();
+
+    // Hub labels, rebuilt on the first query after a traffic batch
+    private final HubLabelIndex hubLabels = new HubLabelIndex();
+
+    // Watched trips, re-planned only when a traffic batch can affect them
+    private final RouteWatch routeWatch = new RouteWatch(nodes, edges, new java.util.function.BooleanSupplier() {
+        public boolean getAsBoolean() { return directedMode; }
+    });
+    private int tripSeq = 0;
+
+    // Closest-facility queries (one search per query)
+    private final NearestFacility nearestFacility = new NearestFacility();
+
+    // All-pairs distances, kept current through traffic batches
+    private final AllPairsShortestPaths apsp = new AllPairsShortestPaths();
+
+    // Origin x destination tables (contraction hierarchy buckets)
+    private final ManyToManyMatrix odMatrix = new ManyToManyMatrix();
+
+    private static final Color[] ALT_COLORS = {
+            new Color(0xFFA000), new Color(0x8E24AA), new Color(0x00897B), new Color(0x5D4037)
+    };
+
     // ======= Background Image =======
     private Image bgImage;
 
@@ -172,13 +227,19 @@ public class Daa_smartCity extends JFrame {
     private static class SchedResult {
         double makespan;
         List<List<Integer>> assignment;
+        boolean timedOut;
     }
 
+    // Exact searches (TSP / scheduling B&B) stop here and keep the best solution found so far
+    private static final long EXACT_SEARCH_LIMIT_MS = 5000;
+
     // ===== TSP Branch&Bound helper =====
     private static class TSPState {
         double bestCost = INF;
         int[] bestPath;
         boolean found = false;
+        boolean timedOut = false;   // a branch was abandoned at the deadline
+        List<Node> tour;            // closed best tour, when found
     }
 
     // ===== BEST DECISION helper =====
@@ -196,6 +257,23 @@ public class Daa_smartCity extends JFrame {
 
         canvas = new GraphPanel();
         canvas.setPreferredSize(new Dimension(900, 600));
+        trafficManager.addTrafficListener(apsp);
+        trafficManager.addTrafficListener(odMatrix);
+        trafficManager.addTrafficListener(crpOverlay);
+        trafficManager.addTrafficListener(arcFlags);
+        trafficManager.addTrafficListener(hubLabels);
+        trafficManager.addTrafficListener(routeWatch);
+        routeWatch.addListener(new RouteWatch.Listener() {
+            public void onRouteChange(RouteWatch.RouteChange c) {
+                if (c.lost()) {
+                    logHighlight("Trip " + c.tripId + " lost its route.");
+                } else {
+                    logHighlight("Trip " + c.tripId + " re-routed: " + labelsOfNodes(c.newPath)
+                            + " (Cost " + String.format("%.2f", c.oldCost) + " → "
+                            + String.format("%.2f", c.newCost) + ")");
+                }
+            }
+        });
 
         // ===== Load background image from same package/folder =====
        try {
@@ -217,7 +295,7 @@ public class Daa_smartCity extends JFrame {
         JPanel ctrl = new JPanel(new GridLayout(0, 1, 4, 4));
         ctrl.setBackground(new Color(200, 225, 255));
 
-        String[] algs = {"Run All","BFS","DFS","Dijkstra","A*","Bellman-Ford","Greedy"};
+        String[] algs = {"Run All","BFS","DFS","Dijkstra","A*","ARA*","Bellman-Ford","SPFA","Greedy","Delta-Stepping","CRP Overlay","Arc-Flags","Hub Labels"};
         final JComboBox<String> box = new JComboBox<String>(algs);
 
         JButton run = btn("Run", new Color(0x007BFF));
@@ -372,14 +450,26 @@ public class Daa_smartCity extends JFrame {
                     return;
                 }
 
-                PathResult res = trafficManager.recomputeShortestPath(
-                        src, dst, nodes, edges, directedMode
-                );
+                // A vehicle already en route only needs its remaining route repaired
+                PathResult res;
+                boolean enRoute = vehicleAt != null && trafficManager.hasVehicle(VEHICLE_ID)
+                        && trafficManager.vehicle(VEHICLE_ID).goal() == dst;
+                if (enRoute) {
+                    res = trafficManager.replanVehicle(VEHICLE_ID, vehicleAt, nodes, edges, directedMode);
+                } else {
+                    res = trafficManager.recomputeShortestPath(
+                            src, dst, nodes, edges, directedMode
+                    );
+                }
 
                 if (res != null && res.found && !res.hasNegativeCycle) {
-                    currentPath = res.path;
+                    currentPath = res.path();
                     log("Dynamic Routing (Hybrid) updated. New cost = " +
                             String.format("%.2f", res.totalCost));
+                    if (enRoute) {
+                        log("Replanned from vehicle at " + vehicleAt.label + ", "
+                                + res.steps + " node(s) expanded.");
+                    }
                     canvas.repaint();
                 } else {
                     String blockedRoad = getAnyBlockedRoadLabel();
@@ -399,6 +489,55 @@ public class Daa_smartCity extends JFrame {
             }
         });
 
+        JButton vehicleBtn = btn("Advance Vehicle", new Color(0x00838F));
+        vehicleBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                advanceVehicle();
+            }
+        });
+
+        JButton watchBtn = btn("Watch Trip", new Color(0x006064));
+        watchBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                watchTrip();
+            }
+        });
+
+        JButton altRoutesBtn = btn("Alternative Routes", new Color(0x00897B));
+        altRoutesBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                runAlternativeRoutes();
+            }
+        });
+
+        JButton matrixBtn = btn("Distance Matrix", new Color(0x455A64));
+        matrixBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                showDistanceMatrix();
+            }
+        });
+
+        JButton isoBtn = btn("Isochrone", new Color(0x00695C));
+        isoBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                runIsochrone();
+            }
+        });
+
+        JButton facilityBtn = btn("Nearest Facility", new Color(0xC62828));
+        facilityBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                runNearestFacility();
+            }
+        });
+
+        JButton odBtn = btn("O-D Cost Table", new Color(0x546E7A));
+        odBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                showCostTable();
+            }
+        });
+
         // ===== New module buttons =====
         JButton schedulingBtn = btn("Vehicle Scheduling", new Color(0x0277BD));
         schedulingBtn.addActionListener(new ActionListener() {
@@ -425,6 +564,13 @@ public class Daa_smartCity extends JFrame {
         ctrl.add(roadBlockBtn);
         ctrl.add(periodicBtn);
         ctrl.add(dynRouteBtn);
+        ctrl.add(vehicleBtn);
+        ctrl.add(watchBtn);
+        ctrl.add(altRoutesBtn);
+        ctrl.add(matrixBtn);
+        ctrl.add(odBtn);
+        ctrl.add(isoBtn);
+        ctrl.add(facilityBtn);
         ctrl.add(schedulingBtn);
         ctrl.add(tspBtn);
 
@@ -658,6 +804,17 @@ public class Daa_smartCity extends JFrame {
                 g2.drawImage(bgImage, 0, 0, w, h, this);
             }
 
+            if (isochrone != null && isochrone.outline.npoints > 2) {
+                g2.setColor(new Color(0, 137, 123, 50));
+                g2.fillPolygon(isochrone.outline);
+                g2.setColor(new Color(0x00897B));
+                g2.setStroke(new BasicStroke(
+                        2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
+                        1, new float[]{6, 4}, 0
+                ));
+                g2.drawPolygon(isochrone.outline);
+            }
+
             g2.setStroke(new BasicStroke(2));
 
             for (Edge e : edges) {
@@ -701,6 +858,22 @@ public class Daa_smartCity extends JFrame {
                 }
             }
 
+            if (alternativePaths != null) {
+                g2.setStroke(new BasicStroke(
+                        3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
+                        1, new float[]{8, 6}, 0
+                ));
+                for (int k = 0; k < alternativePaths.size(); k++) {
+                    List<Node> alt = alternativePaths.get(k);
+                    g2.setColor(ALT_COLORS[k % ALT_COLORS.length]);
+                    for (int i = 0; i < alt.size() - 1; i++) {
+                        Node a = alt.get(i);
+                        Node b = alt.get(i + 1);
+                        g2.drawLine(a.x, a.y, b.x, b.y);
+                    }
+                }
+            }
+
             if (currentPath != null && currentPath.size() > 1) {
                 g2.setStroke(new BasicStroke(3));
                 g2.setColor(new Color(46, 139, 87));
@@ -736,6 +909,10 @@ public class Daa_smartCity extends JFrame {
                 g2.setStroke(new BasicStroke(3));
                 g2.drawOval(dst.x - 25, dst.y - 25, 50, 50);
             }
+            if (vehicleAt != null) {
+                g2.setColor(new Color(0xFF6F00));
+                g2.fillRect(vehicleAt.x + 12, vehicleAt.y - 26, 16, 12);
+            }
         }
     }
 
@@ -867,9 +1044,12 @@ public class Daa_smartCity extends JFrame {
 
         if (src == n) src = null;
         if (dst == n) dst = null;
+        if (vehicleAt == n) stopVehicle();
         if (first == n) first = null;
         if (hover == n) hover = null;
         if (currentPath != null && currentPath.contains(n)) currentPath = null;
+        alternativePaths = null;
+        isochrone = null;
 
         log("Node " + n.label + " deleted with " + removedEdges.size() + " connected edge(s).");
         canvas.repaint();
@@ -895,6 +1075,8 @@ public class Daa_smartCity extends JFrame {
         if (e == null) return;
         edges.remove(e);
         if (currentPath != null) currentPath = null;
+        alternativePaths = null;
+        isochrone = null;
         log("Edge " + e.from.label + " → " + e.to.label + " deleted.");
         canvas.repaint();
 
@@ -991,8 +1173,11 @@ public class Daa_smartCity extends JFrame {
         tblModel.setRowCount(0);
         bfModel.setRowCount(0);
         bfModel.setColumnCount(0);
+        bfTable.setModel(bfModel);
         resetColors();
         currentPath = null;
+        alternativePaths = null;
+        isochrone = null;
 
         src = askValidated("Enter Source Node (A, B, C...):");
         if (src == null) return;
@@ -1024,7 +1209,7 @@ public class Daa_smartCity extends JFrame {
                 return;
             }
 
-            String[] all = {"BFS", "DFS", "Dijkstra", "A*", "Bellman-Ford", "Greedy"};
+            String[] all = {"BFS", "DFS", "Dijkstra", "A*", "Bellman-Ford", "SPFA", "Greedy"};
             for (int i = 0; i < all.length; i++) {
                 runOne(all[i], false, hasNeg, true);
             }
@@ -1100,359 +1285,42 @@ public class Daa_smartCity extends JFrame {
     // =====================================================
     //                    ALGORITHMS
     // =====================================================
-    private PathResult bfs(Node start, Node goal, boolean anim) {
-        Map<Node, List<Edge>> g = graph();
-        Map<Node, Node> parent = new HashMap<Node, Node>();
-        Set<Node> vis = new HashSet<Node>();
-        Queue<Node> q = new LinkedList<Node>();
-
-        q.add(start);
-        vis.add(start);
-        parent.put(start, null);
-        int steps = 0;
-
-        while (!q.isEmpty()) {
-            Node cur = q.poll();
-            visit(cur, anim);
-            steps++;
-
-            if (cur == goal) {
-                List<Node> path = reconstruct(parent, start, goal);
-                double cost = (path == null) ? Double.POSITIVE_INFINITY : computePathCost(path);
-                return new PathResult(true, path, steps, false, null, cost);
-            }
-
-            List<Edge> list = g.get(cur);
-            if (list != null) {
-                for (Edge e : list) {
-                    if (!vis.contains(e.to)) {
-                        vis.add(e.to);
-                        q.add(e.to);
-                        parent.put(e.to, cur);
-                    }
-                }
-            }
-        }
-        return new PathResult(false, null, steps, false, null, Double.POSITIVE_INFINITY);
-    }
-
-    private PathResult dfs(Node start, Node goal, boolean anim) {
-        Map<Node, List<Edge>> g = graph();
-        Map<Node, Node> parent = new HashMap<Node, Node>();
-        Set<Node> vis = new HashSet<Node>();
-        Stack<Node> st = new Stack<Node>();
-
-        st.push(start);
-        vis.add(start);
-        parent.put(start, null);
-        int steps = 0;
-
-        while (!st.isEmpty()) {
-            Node cur = st.pop();
-            visit(cur, anim);
-            steps++;
-
-            if (cur == goal) {
-                List<Node> path = reconstruct(parent, start, goal);
-                double cost = (path == null) ? Double.POSITIVE_INFINITY : computePathCost(path);
-                return new PathResult(true, path, steps, false, null, cost);
-            }
-
-            List<Edge> list = g.get(cur);
-            if (list != null) {
-                for (Edge e : list) {
-                    if (!vis.contains(e.to)) {
-                        vis.add(e.to);
-                        st.push(e.to);
-                        parent.put(e.to, cur);
-                    }
-                }
-            }
-        }
-        return new PathResult(false, null, steps, false, null, Double.POSITIVE_INFINITY);
-    }
-
-    private PathResult dijkstra(Node start, Node goal, boolean anim) {
-        Map<Node, List<Edge>> g = graph();
-        Map<Node, Double> dist = new HashMap<Node, Double>();
-        Map<Node, Node> parent = new HashMap<Node, Node>();
-
-        for (Node n : nodes) dist.put(n, Double.POSITIVE_INFINITY);
-        dist.put(start, 0.0);
-
-        PriorityQueue<Node> pq = new PriorityQueue<Node>(11,
-                new Comparator<Node>() {
-                    public int compare(Node a, Node b) {
-                        return Double.compare(dist.get(a), dist.get(b));
-                    }
-                });
-        pq.add(start);
-
-        int steps = 0;
-
-        while (!pq.isEmpty()) {
-            Node u = pq.poll();
-            visit(u, anim);
-            steps++;
-
-            if (u == goal) {
-                List<Node> path = reconstruct(parent, start, goal);
-                double cost = dist.get(goal);
-                return new PathResult(true, path, steps, false, null, cost);
-            }
-
-            List<Edge> list = g.get(u);
-            if (list != null) {
-                for (Edge e : list) {
-                    steps++;
-                    double alt = dist.get(u) + e.weight;
-                    if (alt < dist.get(e.to)) {
-                        dist.put(e.to, alt);
-                        parent.put(e.to, u);
-                        pq.add(e.to);
-                    }
-                }
-            }
-        }
-
-        boolean found = dist.get(goal) < Double.POSITIVE_INFINITY;
-        List<Node> path = found ? reconstruct(parent, start, goal) : null;
-        double cost = found ? dist.get(goal) : Double.POSITIVE_INFINITY;
-        return new PathResult(found, path, steps, false, null, cost);
-    }
-
-    private double heuristic(Node a, Node b) {
-        return Math.hypot(a.x - b.x, a.y - b.y);
-    }
-
-    private PathResult aStar(Node start, Node goal, boolean anim) {
-        Map<Node, List<Edge>> g = graph();
-        Map<Node, Double> gScore = new HashMap<Node, Double>();
-        Map<Node, Double> fScore = new HashMap<Node, Double>();
-        Map<Node, Node> parent = new HashMap<Node, Node>();
-
-        for (Node n : nodes) {
-            gScore.put(n, Double.POSITIVE_INFINITY);
-            fScore.put(n, Double.POSITIVE_INFINITY);
-        }
-
-        gScore.put(start, 0.0);
-        fScore.put(start, heuristic(start, goal));
-
-        PriorityQueue<Node> open = new PriorityQueue<Node>(11,
-                new Comparator<Node>() {
-                    public int compare(Node a, Node b) {
-                        return Double.compare(fScore.get(a), fScore.get(b));
-                    }
-                });
-        open.add(start);
-
-        int steps = 0;
-
-        while (!open.isEmpty()) {
-            Node cur = open.poll();
-            visit(cur, anim);
-            steps++;
-
-            if (cur == goal) {
-                List<Node> path = reconstruct(parent, start, goal);
-                double cost = gScore.get(goal);
-                return new PathResult(true, path, steps, false, null, cost);
-            }
-
-            List<Edge> list = g.get(cur);
-            if (list != null) {
-                for (Edge e : list) {
-                    steps++;
-                    double tentative = gScore.get(cur) + e.weight;
-                    if (tentative < gScore.get(e.to)) {
-                        parent.put(e.to, cur);
-                        gScore.put(e.to, tentative);
-                        fScore.put(e.to, tentative + heuristic(e.to, goal));
-                        open.add(e.to);
-                    }
-                }
-            }
-        }
-        return new PathResult(false, null, steps, false, null, Double.POSITIVE_INFINITY);
+    private void updateBellmanFordTable(DistanceHistory history) {
+        if (history == null || history.iterations() == 0) return;
+        bfTable.setModel(new DistanceHistoryTableModel(history));
     }
 
-    private PathResult bellmanFord(Node start, Node goal, boolean anim) {
-        Map<Node, Double> dist = new HashMap<Node, Double>();
-        Map<Node, Node> parent = new HashMap<Node, Node>();
-        List<Map<Node, Double>> history = new ArrayList<Map<Node, Double>>();
-
-        for (Node n : nodes) {
-            dist.put(n, Double.POSITIVE_INFINITY);
-            parent.put(n, null);
-        }
-        dist.put(start, 0.0);
-        history.add(new HashMap<Node, Double>(dist));
-
-        int steps = 0;
-
-        List<Edge> list = new ArrayList<Edge>();
-        for (Edge e : edges) {
-            if (isBlocked(e)) continue;
-            list.add(e);
-            if (!directedMode) list.add(new Edge(e.to, e.from, e.weight));
-        }
-
-        for (int i = 0; i < nodes.size() - 1; i++) {
-            boolean changed = false;
-            for (Edge e : list) {
-                if (dist.get(e.from) != Double.POSITIVE_INFINITY) {
-                    double alt = dist.get(e.from) + e.weight;
-                    if (alt < dist.get(e.to)) {
-                        dist.put(e.to, alt);
-                        parent.put(e.to, e.from);
-                        changed = true;
-                        steps++;
-
-                        if (anim) {
-                            e.from.color = Color.YELLOW;
-                            e.to.color = Color.YELLOW;
-                            canvas.repaint();
-                            sleep(100);
-                            e.from.color = new Color(0x4CAF50);
-                            e.to.color = new Color(0x4CAF50);
-                            canvas.repaint();
-                            sleep(60);
-                        }
-                    }
-                }
-            }
-            history.add(new HashMap<Node, Double>(dist));
-            if (!changed) break;
-        }
+    // Rows are rebuilt from the delta log only when the table asks for them
+    private static class DistanceHistoryTableModel extends AbstractTableModel {
+        private final DistanceHistory history;
+        private int cachedIter = -1;
+        private double[] cachedRow;
 
-        boolean negCycle = false;
-        for (Edge e : list) {
-            if (dist.get(e.from) != Double.POSITIVE_INFINITY &&
-                    dist.get(e.from) + e.weight < dist.get(e.to)) {
-                negCycle = true;
-                break;
-            }
+        DistanceHistoryTableModel(DistanceHistory history) {
+            this.history = history;
         }
 
-        boolean found = dist.get(goal) < Double.POSITIVE_INFINITY;
-        List<Node> path = found ? reconstruct(parent, start, goal) : null;
-        double cost = found ? dist.get(goal) : Double.POSITIVE_INFINITY;
-
-        return new PathResult(found, path, steps, negCycle, history, cost);
-    }
-
-    private PathResult greedy(Node start, Node goal, boolean anim) {
-        Map<Node, List<Edge>> g = graph();
-        Map<Node, Double> dist = new HashMap<Node, Double>();
-        Map<Node, Node> parent = new HashMap<Node, Node>();
-        Set<Node> visited = new HashSet<Node>();
-
-        for (Node n : nodes) dist.put(n, Double.POSITIVE_INFINITY);
-        dist.put(start, 0.0);
-        parent.put(start, null);
-
-        Node cur = start;
-        int steps = 0;
-
-        while (cur != null && !visited.contains(goal)) {
-            visited.add(cur);
-            visit(cur, anim);
-            steps++;
-
-            Edge best = null;
-            double minW = Double.POSITIVE_INFINITY;
-
-            List<Edge> list = g.get(cur);
-            if (list != null) {
-                for (Edge e : list) {
-                    if (!visited.contains(e.to) && e.weight < minW) {
-                        minW = e.weight;
-                        best = e;
-                    }
-                }
-            }
-
-            if (best == null) break;
+        public int getRowCount() { return history.iterations(); }
 
-            dist.put(best.to, dist.get(cur) + best.weight);
-            parent.put(best.to, cur);
-            cur = best.to;
-            steps++;
+        public int getColumnCount() { return history.nodeCount() + 1; }
 
-            if (anim) {
-                best.from.color = Color.ORANGE;
-                best.to.color = Color.ORANGE;
-                canvas.repaint();
-                sleep(120);
-                best.from.color = new Color(0xFF9800);
-                best.to.color = new Color(0xFF9800);
-                canvas.repaint();
-                sleep(80);
-            }
+        @Override
+        public String getColumnName(int col) {
+            return col == 0 ? "Iter" : history.node(col - 1).label;
         }
 
-        boolean found = visited.contains(goal);
-        List<Node> path = found ? reconstruct(parent, start, goal) : null;
-        double cost = found ? dist.get(goal) : Double.POSITIVE_INFINITY;
-
-        return new PathResult(found, path, steps, false, null, cost);
-    }
-
-    private List<Node> reconstruct(Map<Node, Node> parent, Node start, Node goal) {
-        List<Node> path = new ArrayList<Node>();
-        for (Node at = goal; at != null; at = parent.get(at)) {
-            path.add(at);
-        }
-        if (path.isEmpty() || path.get(path.size() - 1) != start) return null;
-        Collections.reverse(path);
-        return path;
-    }
+        public Object getValueAt(int row, int col) {
+            if (col == 0) return Integer.valueOf(row);
 
-    private double computePathCost(List<Node> path) {
-        if (path == null || path.size() < 2) return Double.POSITIVE_INFINITY;
-        double c = 0.0;
-        for (int i = 0; i < path.size() - 1; i++) {
-            Node a = path.get(i);
-            Node b = path.get(i + 1);
-            boolean foundEdge = false;
-            for (Edge e : edges) {
-                if (isBlocked(e)) continue;
-                if (e.from == a && e.to == b) {
-                    c += e.weight;
-                    foundEdge = true;
-                    break;
-                } else if (!directedMode && e.from == b && e.to == a) {
-                    c += e.weight;
-                    foundEdge = true;
-                    break;
-                }
+            if (row != cachedIter) {
+                // Scrolling is mostly sequential: step forward from the cached row when possible
+                if (cachedRow != null && row == cachedIter + 1) history.replay(cachedRow, row, row);
+                else cachedRow = history.row(row);
+                cachedIter = row;
             }
-            if (!foundEdge) return Double.POSITIVE_INFINITY;
-        }
-        return c;
-    }
-
-    private void updateBellmanFordTable(List<Map<Node, Double>> history) {
-        if (history == null || history.isEmpty()) return;
-
-        bfModel.setRowCount(0);
-        bfModel.setColumnCount(0);
-
-        bfModel.addColumn("Iter");
-        for (Node n : nodes) bfModel.addColumn(n.label);
-
-        for (int i = 0; i < history.size(); i++) {
-            Object[] row = new Object[nodes.size() + 1];
-            row[0] = Integer.valueOf(i);
 
-            Map<Node, Double> dist = history.get(i);
-            for (int j = 0; j < nodes.size(); j++) {
-                Double d = dist.get(nodes.get(j));
-                row[j + 1] = (d == null || d == Double.POSITIVE_INFINITY)
-                        ? "∞" : String.format("%.0f", d);
-            }
-            bfModel.addRow(row);
+            double d = cachedRow[col - 1];
+            return (d == Double.POSITIVE_INFINITY) ? "∞" : String.format("%.0f", d);
         }
     }
 
@@ -1475,34 +1343,55 @@ public class Daa_smartCity extends JFrame {
         else if ("DFS".equals(name)) complexity = "O(V+E)";
         else if ("Dijkstra".equals(name)) complexity = "O((V+E)logV)";
         else if ("A*".equals(name)) complexity = "O((V+E)logV)";
+        else if ("ARA*".equals(name)) complexity = "O((V+E)logV) per ε pass";
         else if ("Bellman-Ford".equals(name)) complexity = "O(V×E)";
+        else if ("SPFA".equals(name)) complexity = "O(V×E) worst, ~O(E) typical";
         else if ("Greedy".equals(name)) complexity = "O(E)";
+        else if ("Delta-Stepping".equals(name)) complexity = "O(V+E+L/Δ) work, parallel";
+        else if ("CRP Overlay".equals(name)) complexity = "O(cells × boundary²) per batch, overlay query";
+        else if ("Arc-Flags".equals(name)) complexity = "O(boundary × E log V) per stale region, pruned Dijkstra";
+        else if ("Hub Labels".equals(name)) complexity = "O(V × label × log V) rebuild per batch, O(label) query";
 
         currentPath = null;
-        final Holder<List<Map<Node, Double>>> hist = new Holder<List<Map<Node, Double>>>(null);
+        final Holder<DistanceHistory> hist = new Holder<DistanceHistory>(null);
+
+        boolean labelSetting = name.equals("Greedy") || name.equals("Dijkstra") ||
+                name.equals("A*") || name.equals("ARA*") || name.equals("Delta-Stepping");
+        JohnsonPotentials potentials = (labelSetting && hasNeg)
+                ? trafficManager.potentialsFor(nodes, edges, directedMode)
+                : null;
 
         try {
-            if ((name.equals("Greedy") || name.equals("Dijkstra") ||
-                    name.equals("A*")) && hasNeg) {
-                reason = "Not executed (negative weights present)";
+            if (labelSetting && hasNeg && potentials == null) {
+                reason = "Not executed (negative cycle: no valid Johnson potentials)";
+                ok = false;
+            } else if ("CRP Overlay".equals(name) && hasNeg) {
+                reason = "Not executed (overlay cliques need non-negative weights)";
+                ok = false;
+            } else if ("Arc-Flags".equals(name) && hasNeg) {
+                reason = "Not executed (arc flags need non-negative weights)";
+                ok = false;
+            } else if ("Hub Labels".equals(name) && hasNeg) {
+                reason = "Not executed (hub labels need non-negative weights)";
                 ok = false;
             } else {
                 PathResult res;
                 long t0 = System.nanoTime();
 
-                if ("BFS".equals(name)) {
-                    res = bfs(src, dst, anim);
-                } else if ("DFS".equals(name)) {
-                    res = dfs(src, dst, anim);
-                } else if ("Dijkstra".equals(name)) {
-                    res = dijkstra(src, dst, anim);
-                } else if ("A*".equals(name)) {
-                    res = aStar(src, dst, anim);
-                } else if ("Bellman-Ford".equals(name)) {
-                    res = bellmanFord(src, dst, anim);
-                    hist.value = res.distanceHistory;
+                RoutingEngine.Algorithm algo = RoutingEngine.Algorithm.byLabel(name);
+                if (algo != null) {
+                    GraphSnapshot snap = GraphSnapshot.of(nodes, edges, directedMode);
+                    res = engine.route(snap, new RoutingEngine.Query(src, dst, algo, potentials),
+                            swingVisualizer(algo, anim));
+                    if (algo == RoutingEngine.Algorithm.BELLMAN_FORD) hist.value = res.compactHistory;
+                } else if ("CRP Overlay".equals(name)) {
+                    res = crpOverlay.shortestPath(src, dst, nodes, edges, directedMode);
+                } else if ("Arc-Flags".equals(name)) {
+                    res = arcFlags.shortestPath(src, dst, nodes, edges, directedMode);
+                } else if ("Hub Labels".equals(name)) {
+                    res = hubLabels.shortestPath(src, dst, nodes, edges, directedMode);
                 } else {
-                    res = greedy(src, dst, anim);
+                    throw new IllegalArgumentException("Unknown algorithm " + name);
                 }
 
                 long t1 = System.nanoTime();
@@ -1513,12 +1402,18 @@ public class Daa_smartCity extends JFrame {
                 cost = res.totalCost;
                 plen = (res.path != null) ? res.path.size() : 0;
 
-                if (res.hasNegativeCycle) {
+                if (res.hasNegativeCycle && res.negativeCycle != null) {
+                    reason = "Negative cycle detected: " + labelsOfNodes(res.negativeCycle);
+                } else if (res.hasNegativeCycle) {
                     reason = "Negative cycle detected";
                 } else if (res.found) {
                     // ✅ small note for BFS/DFS on weighted graphs
                     if (("BFS".equals(name) || "DFS".equals(name)) && !areAllWeightsSamePositive()) {
                         reason = "Path found (Note: BFS/DFS not guaranteed optimal on weighted graphs)";
+                    } else if (res.bound > 1.0) {
+                        reason = String.format("Path found (within %.2f× of optimal)", res.bound);
+                    } else if (potentials != null) {
+                        reason = "Path found (Johnson-reweighted)";
                     } else {
                         reason = "Path found";
                     }
@@ -1527,9 +1422,10 @@ public class Daa_smartCity extends JFrame {
                 }
 
                 if (ok) currentPath = res.path;
+                else if (res.negativeCycle != null) currentPath = res.negativeCycle;
 
                 if ("Bellman-Ford".equals(name) && hist.value != null) {
-                    final List<Map<Node, Double>> history = hist.value;
+                    final DistanceHistory history = hist.value;
                     SwingUtilities.invokeLater(new Runnable() {
                         public void run() {
                             updateBellmanFordTable(history);
@@ -1633,15 +1529,22 @@ public class Daa_smartCity extends JFrame {
             return bd;
         }
 
-        // Negative weights => Bellman-Ford is required
+        // Negative weights => only exact methods: Bellman-Ford family, or Dijkstra on reduced costs
         if (hasNeg) {
+            Result label = null;
             for (Result r : ok) {
-                if ("Bellman-Ford".equals(r.name)) {
-                    bd.best = r;
-                    bd.explanation = "Negative weights detected → Bellman-Ford is required for correctness.";
-                    return bd;
+                if ("Bellman-Ford".equals(r.name) || "SPFA".equals(r.name) || "Dijkstra".equals(r.name)) {
+                    if (label == null || r.steps < label.steps) label = r;
                 }
             }
+            if (label != null) {
+                bd.best = label;
+                bd.explanation = "Dijkstra".equals(label.name)
+                        ? "Negative weights detected → Dijkstra on Johnson-reweighted costs is exact and did the least work."
+                        : "Negative weights detected → " + label.name +
+                          " (Bellman-Ford family) is required for correctness.";
+                return bd;
+            }
         }
 
         // Unweighted/equal weights => BFS best
@@ -1695,6 +1598,8 @@ public class Daa_smartCity extends JFrame {
             bd.explanation = "Dijkstra guarantees optimal shortest path for non-negative weights → best safe choice.";
         } else if ("Bellman-Ford".equals(best.name)) {
             bd.explanation = "Bellman-Ford handles negative weights (slower but correct) → best for this case.";
+        } else if ("SPFA".equals(best.name)) {
+            bd.explanation = "SPFA handles negative weights and only rescans nodes whose label changed → best for this case.";
         } else if ("Greedy".equals(best.name)) {
             bd.explanation = "Greedy matched the optimal cost in this instance and was efficient (not guaranteed generally).";
         } else if ("BFS".equals(best.name)) {
@@ -1723,60 +1628,467 @@ public class Daa_smartCity extends JFrame {
     }
 
     // =====================================================
-    // VEHICLE SCHEDULING + TSP (UNCHANGED)
+    //   ALTERNATIVE ROUTES (Yen k-shortest / Penalty method)
     // =====================================================
-    private void runVehicleSchedulingDialog() {
-        try {
-            String vIn = JOptionPane.showInputDialog(
+    private void runAlternativeRoutes() {
+        if (src == null || dst == null) {
+            JOptionPane.showMessageDialog(
                     this,
-                    "Enter number of vehicles (buses/taxis):",
-                    "3"
+                    "Run any algorithm first to set Source and Destination.",
+                    "No Source/Destination",
+                    JOptionPane.WARNING_MESSAGE
             );
-            if (vIn == null) return;
-            int m = Integer.parseInt(vIn.trim());
-            if (m <= 0) {
-                JOptionPane.showMessageDialog(this, "Vehicles must be > 0");
-                return;
-            }
-
-            String rIn = JOptionPane.showInputDialog(
+            return;
+        }
+        if (hasNegativeWeights()) {
+            JOptionPane.showMessageDialog(
                     this,
-                    "Enter route times (comma-separated, e.g. 10,20,30):",
-                    "10,20,15,25"
+                    "Alternative routes require non-negative weights.",
+                    "Alternative Routes",
+                    JOptionPane.WARNING_MESSAGE
             );
-            if (rIn == null) return;
-            String[] parts = rIn.split(",");
-            List<Double> ts = new ArrayList<Double>();
-            for (String p : parts) {
-                String s = p.trim();
-                if (s.isEmpty()) continue;
-                double val = Double.parseDouble(s);
-                if (val <= 0) {
-                    JOptionPane.showMessageDialog(this, "Route times must be positive.");
-                    return;
-                }
-                ts.add(val);
-            }
-            if (ts.isEmpty()) {
-                JOptionPane.showMessageDialog(this, "No valid routes provided.");
-                return;
-            }
+            return;
+        }
 
-            double[] times = new double[ts.size()];
-            for (int i = 0; i < ts.size(); i++) times[i] = ts.get(i);
+        String kIn = JOptionPane.showInputDialog(this, "How many routes (k)?", "3");
+        if (kIn == null) return;
+        int k;
+        try {
+            k = Integer.parseInt(kIn.trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Enter a valid number!");
+            return;
+        }
+        if (k <= 0) return;
+
+        String[] modes = {"Yen (exact k-shortest)", "Penalty (diverse, fast)"};
+        Object mode = JOptionPane.showInputDialog(
+                this, "Alternative route method:", "Alternative Routes",
+                JOptionPane.QUESTION_MESSAGE, null, modes, modes[0]
+        );
+        if (mode == null) return;
+        boolean yen = modes[0].equals(mode);
+        String prefix = yen ? "Yen #" : "Penalty #";
+        String complexity = yen ? "O(kV(V+E)logV)" : "O(k(V+E)logV)";
+
+        long t0 = System.nanoTime();
+        List<PathResult> routes = yen
+                ? kShortest.yen(src, dst, nodes, edges, directedMode, k)
+                : penaltyRoutes.find(src, dst, nodes, edges, directedMode, k);
+        double ms = (System.nanoTime() - t0) / 1e6;
+
+        if (routes.isEmpty()) {
+            String road = getAnyBlockedRoadLabel();
+            String msg = (road != null)
+                    ? "Traffic cannot proceed — Road " + road + " is blocked."
+                    : "No available route from " + src.label + " to " + dst.label + ".";
+            logHighlight(msg);
+            return;
+        }
 
-            log("========== Vehicle Scheduling ==========");
-            log("Routes: " + times.length + ", Vehicles: " + m);
+        log("========== Alternative Routes (" + (yen ? "Yen" : "Penalty") + ") ==========");
+        if (routes.size() < k) {
+            log("Only " + routes.size() + " route(s) passed the filters.");
+        }
+        alternativePaths = new ArrayList<List<Node>>();
+        for (int i = 0; i < routes.size(); i++) {
+            PathResult r = routes.get(i);
+            String name = prefix + (i + 1);
+            String reason = (i == 0) ? "Shortest route" : "Alternative route";
 
-            SchedResult greedy = scheduleGreedy(times, m);
+            tblModel.addRow(new Object[]{
+                    name,
+                    String.format("%.2f", ms),
+                    Integer.valueOf(r.steps),
+                    String.format("%.2f", r.totalCost),
+                    Integer.valueOf(r.path.size()),
+                    "—",
+                    "Success",
+                    reason,
+                    complexity
+            });
+            results.add(new Result(name, ms, r.steps, r.totalCost, r.path.size(), true, reason, complexity));
+
+            log(name + ": " + labelsOfNodes(r.path) + " (Cost=" + String.format("%.2f", r.totalCost) + ")");
+            if (i > 0) alternativePaths.add(r.path);
+        }
+
+        currentPath = routes.get(0).path;
+        updateOptimalFlags();
+        canvas.repaint();
+    }
+
+    // =====================================================
+    //   ISOCHRONE (everything reachable within a budget)
+    // =====================================================
+    private void runIsochrone() {
+        if (nodes.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Add some nodes first.");
+            return;
+        }
+        Node depot = askValidated("Enter Depot Node (A, B, C...):");
+        if (depot == null) return;
+
+        String bIn = JOptionPane.showInputDialog(this, "Cost budget (e.g. minutes):", "20");
+        if (bIn == null) return;
+        double budget;
+        try {
+            budget = Double.parseDouble(bIn.trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Enter a valid number!");
+            return;
+        }
+        if (budget < 0) return;
+
+        Isochrone.Result r;
+        long t0 = System.nanoTime();
+        try {
+            r = Isochrone.compute(depot, nodes, edges, directedMode, budget);
+        } catch (IllegalArgumentException ex) {
+            logHighlight("Isochrone: " + ex.getMessage() + " — costs are unbounded.");
+            return;
+        }
+        double ms = (System.nanoTime() - t0) / 1e6;
+
+        resetColors();
+        for (Node n : r.arrival.keySet()) {
+            if (n != src && n != dst) n.color = new Color(0x26A69A);
+        }
+        isochrone = r;
+
+        log("========== Isochrone from " + depot.label + " (budget "
+                + String.format("%.2f", budget) + ") ==========");
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Node, Double> en : r.arrival.entrySet()) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(en.getKey().label).append("=").append(String.format("%.1f", en.getValue()));
+        }
+        log("Reachable (" + r.arrival.size() + "/" + nodes.size() + "): " + sb);
+        log("Settled " + r.settled + " node(s) in " + String.format("%.2f", ms) + " ms.");
+        canvas.repaint();
+    }
+
+    // =====================================================
+    //   NEAREST FACILITY (multi-source / reverse / k-nearest)
+    // =====================================================
+    private void runNearestFacility() {
+        if (nodes.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Add some nodes first.");
+            return;
+        }
+        if (hasNegativeWeights()) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    "Nearest-facility search requires non-negative weights.",
+                    "Nearest Facility",
+                    JOptionPane.WARNING_MESSAGE
+            );
+            return;
+        }
+
+        Node incident = askValidated("Enter Incident Node (A, B, C...):");
+        if (incident == null) return;
+        List<Node> facilities = askNodeList("Facility labels (comma-separated, or empty for all nodes):");
+        if (facilities == null) return;
+
+        String[] modes = {"Nearest unit to incident", "Nearest facility from incident", "k nearest units"};
+        Object mode = JOptionPane.showInputDialog(
+                this, "Query:", "Nearest Facility",
+                JOptionPane.QUESTION_MESSAGE, null, modes, modes[0]
+        );
+        if (mode == null) return;
+
+        List<NearestFacility.Match> matches = new ArrayList<NearestFacility.Match>();
+        long t0 = System.nanoTime();
+        if (modes[2].equals(mode)) {
+            String kIn = JOptionPane.showInputDialog(this, "How many (k)?", "3");
+            if (kIn == null) return;
+            int k;
+            try {
+                k = Integer.parseInt(kIn.trim());
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Enter a valid number!");
+                return;
+            }
+            t0 = System.nanoTime();
+            matches = nearestFacility.kNearest(incident, facilities, nodes, edges, directedMode,
+                    NearestFacility.Direction.TO_INCIDENT, k);
+        } else {
+            NearestFacility.Direction dir = modes[0].equals(mode)
+                    ? NearestFacility.Direction.TO_INCIDENT
+                    : NearestFacility.Direction.FROM_INCIDENT;
+            NearestFacility.Match m = nearestFacility.nearest(incident, facilities, nodes, edges, directedMode, dir);
+            if (m != null) matches.add(m);
+        }
+        double ms = (System.nanoTime() - t0) / 1e6;
+
+        log("========== Nearest Facility (" + mode + ") ==========");
+        if (matches.isEmpty()) {
+            logHighlight("No facility is connected to " + incident.label + ".");
+            return;
+        }
+        alternativePaths = new ArrayList<List<Node>>();
+        for (int i = 0; i < matches.size(); i++) {
+            NearestFacility.Match m = matches.get(i);
+            log("#" + (i + 1) + " " + m.facility.label + ": " + labelsOfNodes(m.path)
+                    + " (Cost=" + String.format("%.2f", m.cost) + ")");
+            if (i > 0) alternativePaths.add(m.path);
+        }
+        log("One search, " + nearestFacility.lastSettled() + " node(s) settled in "
+                + String.format("%.2f", ms) + " ms.");
+        logHighlight("Closest: " + matches.get(0).facility.label);
+
+        currentPath = matches.get(0).path;
+        canvas.repaint();
+    }
+
+    // =====================================================
+    //   VEHICLE EN ROUTE (D* Lite)
+    // =====================================================
+    private void advanceVehicle() {
+        if (src == null || dst == null) {
+            JOptionPane.showMessageDialog(this,
+                    "Run any algorithm first to set Source and Destination.",
+                    "No Source/Destination", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        if (hasNegativeWeights()) {
+            JOptionPane.showMessageDialog(this,
+                    "Vehicle replanning needs non-negative weights.",
+                    "Advance Vehicle", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        boolean fresh = vehicleAt == null || !trafficManager.hasVehicle(VEHICLE_ID)
+                || trafficManager.vehicle(VEHICLE_ID).goal() != dst;
+        if (fresh) {
+            vehicleAt = src;
+            trafficManager.startVehicle(VEHICLE_ID, src, dst, nodes, edges, directedMode);
+            log("Vehicle starts at " + src.label + " heading to " + dst.label + ".");
+        } else if (vehicleAt == dst) {
+            logHighlight("Vehicle already arrived at " + dst.label + ".");
+            return;
+        } else if (currentPath != null && currentPath.size() > 1 && currentPath.get(0) == vehicleAt) {
+            vehicleAt = currentPath.get(1);
+        }
+
+        PathResult res = trafficManager.replanVehicle(VEHICLE_ID, vehicleAt, nodes, edges, directedMode);
+        if (res == null || !res.found) {
+            currentPath = null;
+            logHighlight("Vehicle at " + vehicleAt.label + " has no route to " + dst.label + ".");
+            canvas.repaint();
+            return;
+        }
+        currentPath = res.path;
+        log("Vehicle at " + vehicleAt.label + ": " + labelsOfNodes(res.path)
+                + " (Cost=" + String.format("%.2f", res.totalCost) + ", "
+                + res.steps + " node(s) expanded)");
+        if (vehicleAt == dst) logHighlight("Vehicle arrived at " + dst.label + ".");
+        canvas.repaint();
+    }
+
+    private void stopVehicle() {
+        vehicleAt = null;
+        trafficManager.endVehicle(VEHICLE_ID);
+    }
+
+    // =====================================================
+    //   ROUTE WATCH (many active trips)
+    // =====================================================
+    private void watchTrip() {
+        if (src == null || dst == null) {
+            JOptionPane.showMessageDialog(this,
+                    "Run any algorithm first to set Source and Destination.",
+                    "No Source/Destination", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        String id = "trip-" + (++tripSeq);
+        RouteWatch.Trip trip = routeWatch.watch(id, src, dst);
+        if (trip.path() == null) {
+            log("Watching " + id + " (" + src.label + " → " + dst.label + "): no route yet.");
+        } else {
+            log("Watching " + id + ": " + labelsOfNodes(trip.path())
+                    + " (Cost=" + String.format("%.2f", trip.cost()) + ")");
+            currentPath = trip.path();
+            canvas.repaint();
+        }
+        log(routeWatch.tripCount() + " trip(s) watched; traffic batches re-plan only affected ones.");
+    }
+
+    // =====================================================
+    //   DISTANCE MATRIX (all pairs)
+    // =====================================================
+    private void showDistanceMatrix() {
+        if (nodes.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Add some nodes first.");
+            return;
+        }
+
+        long t0 = System.nanoTime();
+        try {
+            ensureAllPairs();
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Distance Matrix", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        double ms = (System.nanoTime() - t0) / 1e6;
+
+        log("========== Distance Matrix ==========");
+        log("Engine: " + apsp.lastStrategy() + " (" + String.format("%.2f", ms) + " ms, "
+                + apsp.lastUpdatedRows() + " rows computed)");
+        if (apsp.hasNegativeCycle()) {
+            logHighlight("Negative cycle detected — distances through it are unbounded.");
+        }
+
+        GraphSnapshot g = apsp.snapshot();
+        double[] d = apsp.matrix();
+        int n = g.size();
+        List<Node> all = Arrays.asList(g.nodes);
+        double[][] rows = new double[n][];
+        for (int i = 0; i < n; i++) rows[i] = Arrays.copyOfRange(d, i * n, (i + 1) * n);
+        showMatrixDialog("Distance Matrix", all, all, rows);
+    }
+
+    // All-pairs matrix for the current graph, Johnson-reweighted through the traffic manager's potentials
+    private void ensureAllPairs() {
+        apsp.ensure(nodes, edges, directedMode,
+                hasNegativeWeights() ? trafficManager.potentialsFor(nodes, edges, directedMode) : null);
+    }
+
+    private void showCostTable() {
+        if (nodes.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Add some nodes first.");
+            return;
+        }
+        if (hasNegativeWeights()) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    "Cost tables require non-negative weights (use Distance Matrix instead).",
+                    "O-D Cost Table",
+                    JOptionPane.WARNING_MESSAGE
+            );
+            return;
+        }
+
+        List<Node> origins = askNodeList("Origin labels (comma-separated, or empty for all nodes):");
+        if (origins == null) return;
+        List<Node> destinations = askNodeList("Destination labels (comma-separated, or empty for all nodes):");
+        if (destinations == null) return;
+
+        long t0 = System.nanoTime();
+        double[][] rows = odMatrix.table(nodes, edges, directedMode, origins, destinations);
+        double ms = (System.nanoTime() - t0) / 1e6;
+
+        log("========== O-D Cost Table ==========");
+        log(origins.size() + " x " + destinations.size() + " table in " + String.format("%.2f", ms)
+                + " ms (" + odMatrix.hierarchy().shortcutCount() + " CH shortcuts)");
+        showMatrixDialog("O-D Cost Table", origins, destinations, rows);
+    }
+
+    // Null if cancelled or a label is unknown; empty input means every node
+    private List<Node> askNodeList(String prompt) {
+        String in = JOptionPane.showInputDialog(this, prompt, "");
+        if (in == null) return null;
+        List<Node> out = new ArrayList<Node>();
+        if (in.trim().isEmpty()) {
+            out.addAll(nodes);
+            return out;
+        }
+        for (String p : in.split(",")) {
+            String lbl = p.trim().toUpperCase();
+            if (lbl.isEmpty()) continue;
+            Node n = findNodeByLabel(lbl);
+            if (n == null) {
+                JOptionPane.showMessageDialog(this, "Node " + lbl + " not found.");
+                return null;
+            }
+            out.add(n);
+        }
+        return out.isEmpty() ? null : out;
+    }
+
+    private void showMatrixDialog(String title, List<Node> rowNodes, List<Node> colNodes, double[][] rows) {
+        String[] cols = new String[colNodes.size() + 1];
+        cols[0] = "From \\ To";
+        for (int j = 0; j < colNodes.size(); j++) cols[j + 1] = colNodes.get(j).label;
+
+        Object[][] data = new Object[rowNodes.size()][cols.length];
+        for (int i = 0; i < rowNodes.size(); i++) {
+            data[i][0] = rowNodes.get(i).label;
+            for (int j = 0; j < colNodes.size(); j++) {
+                double v = rows[i][j];
+                data[i][j + 1] = (v == Double.POSITIVE_INFINITY) ? "∞" : String.format("%.2f", v);
+            }
+        }
+
+        JTable matrix = new JTable(data, cols);
+        matrix.setEnabled(false);
+        matrix.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        JScrollPane sc = new JScrollPane(matrix);
+        sc.setPreferredSize(new Dimension(Math.min(900, 70 * cols.length + 20),
+                Math.min(500, 18 * rowNodes.size() + 40)));
+        JOptionPane.showMessageDialog(this, sc, title, JOptionPane.PLAIN_MESSAGE);
+    }
+
+    // =====================================================
+    // VEHICLE SCHEDULING + TSP (UNCHANGED)
+    // =====================================================
+    private void runVehicleSchedulingDialog() {
+        try {
+            String vIn = JOptionPane.showInputDialog(
+                    this,
+                    "Enter number of vehicles (buses/taxis):",
+                    "3"
+            );
+            if (vIn == null) return;
+            int m = Integer.parseInt(vIn.trim());
+            if (m <= 0) {
+                JOptionPane.showMessageDialog(this, "Vehicles must be > 0");
+                return;
+            }
+
+            String rIn = JOptionPane.showInputDialog(
+                    this,
+                    "Enter route times (comma-separated, e.g. 10,20,30):",
+                    "10,20,15,25"
+            );
+            if (rIn == null) return;
+            String[] parts = rIn.split(",");
+            List<Double> ts = new ArrayList<Double>();
+            for (String p : parts) {
+                String s = p.trim();
+                if (s.isEmpty()) continue;
+                double val = Double.parseDouble(s);
+                if (val <= 0) {
+                    JOptionPane.showMessageDialog(this, "Route times must be positive.");
+                    return;
+                }
+                ts.add(val);
+            }
+            if (ts.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No valid routes provided.");
+                return;
+            }
+
+            double[] times = new double[ts.size()];
+            for (int i = 0; i < ts.size(); i++) times[i] = ts.get(i);
+
+            log("========== Vehicle Scheduling ==========");
+            log("Routes: " + times.length + ", Vehicles: " + m);
+
+            SchedResult greedy = scheduleGreedy(times, m);
             logHighlight("Greedy makespan: " + String.format("%.2f", greedy.makespan));
             log(formatAssignment("Greedy assignment:", greedy, times));
 
             SchedResult optimal = null;
             if (times.length <= 12) {
-                optimal = scheduleBranchAndBound(times, m, greedy);
+                optimal = scheduleBranchAndBound(times, m, greedy, Deadline.after(EXACT_SEARCH_LIMIT_MS));
 
-                if (optimal != null) {
+                if (optimal != null && optimal.timedOut) {
+                    logHighlight("Branch-and-Bound stopped after " + EXACT_SEARCH_LIMIT_MS
+                            + " ms, best makespan so far: " + String.format("%.2f", optimal.makespan));
+                    log(formatAssignment("Best assignment found:", optimal, times));
+                } else if (optimal != null) {
                     logHighlight("Optimal (Branch-and-Bound) makespan: " +
                             String.format("%.2f", optimal.makespan));
                     log(formatAssignment("Optimal assignment:", optimal, times));
@@ -1839,7 +2151,7 @@ public class Daa_smartCity extends JFrame {
         return res;
     }
 
-    private SchedResult scheduleBranchAndBound(double[] times, int m, SchedResult greedySeed) {
+    private SchedResult scheduleBranchAndBound(double[] times, int m, SchedResult greedySeed, Deadline deadline) {
     // Seed best with greedy so even if BnB doesn't improve, we still have a valid assignment to print
     SchedResult best = new SchedResult();
     best.makespan = greedySeed.makespan;
@@ -1857,13 +2169,17 @@ public class Daa_smartCity extends JFrame {
         curLoads[i] = 0.0;
     }
 
-    assignJobBB(0, times, curLoads, currentAssign, best, m);
+    assignJobBB(0, times, curLoads, currentAssign, best, m, deadline);
     return best;
 }
 
     private void assignJobBB(int jobIndex, double[] times, double[] loads,
                              List<List<Integer>> currentAssign,
-                             SchedResult best, int m) {
+                             SchedResult best, int m, Deadline deadline) {
+        if (deadline.expired()) {
+            best.timedOut = true;
+            return;
+        }
         int n = times.length;
         if (jobIndex == n) {
             double maxLoad = 0;
@@ -1885,7 +2201,7 @@ public class Daa_smartCity extends JFrame {
             double currentMax = 0;
             for (int k = 0; k < m; k++) if (loads[k] > currentMax) currentMax = loads[k];
 
-            if (currentMax < best.makespan) assignJobBB(jobIndex + 1, times, loads, currentAssign, best, m);
+            if (currentMax < best.makespan) assignJobBB(jobIndex + 1, times, loads, currentAssign, best, m, deadline);
 
             loads[i] -= times[jobIndex];
             currentAssign.get(i).remove(currentAssign.get(i).size() - 1);
@@ -1911,7 +2227,6 @@ public class Daa_smartCity extends JFrame {
     }
 
     private void runTSPModule() {
-        // (kept as in your code; no functional changes)
         if (nodes.size() < 3) {
             JOptionPane.showMessageDialog(this, "TSP requires at least 3 nodes.", "TSP", JOptionPane.WARNING_MESSAGE);
             return;
@@ -1948,6 +2263,14 @@ public class Daa_smartCity extends JFrame {
             log("========== TSP Module ==========");
             log("TSP nodes: " + labelsOfNodes(tspNodes));
 
+            // Legs are shortest-path distances, so consecutive stops need not share a road
+            ensureAllPairs();
+            if (apsp.hasNegativeCycle()) {
+                logHighlight("TSP skipped: a negative cycle makes leg costs unbounded.");
+                return;
+            }
+            log("Leg costs: " + apsp.lastStrategy());
+
             List<Node> nnTour = tspNearestNeighbor(tspNodes);
             double nnCost = (nnTour == null) ? Double.POSITIVE_INFINITY : tourCost(nnTour);
 
@@ -1961,12 +2284,23 @@ public class Daa_smartCity extends JFrame {
             List<Node> exactTour = null;
             double exactCost = Double.POSITIVE_INFINITY;
             if (tspNodes.size() <= 10) {
-                List<Node> et = tspExactBranchAndBound(tspNodes);
-                if (et != null) {
+                Deadline limit = Deadline.after(EXACT_SEARCH_LIMIT_MS);
+                TSPState exact = tspExactBranchAndBound(tspNodes, limit);
+                List<Node> et = exact == null ? null : exact.tour;
+                if (et != null && exact.timedOut) {
+                    exactTour = et;
+                    exactCost = tourCost(exactTour);
+                    logHighlight("TSP Branch-and-Bound stopped after " + EXACT_SEARCH_LIMIT_MS
+                            + " ms, best cost so far: " + String.format("%.2f", exactCost));
+                    log("Best Tour found: " + labelsOfNodes(exactTour));
+                } else if (et != null) {
                     exactTour = et;
                     exactCost = tourCost(exactTour);
                     logHighlight("TSP Exact (Branch-and-Bound) cost: " + String.format("%.2f", exactCost));
                     log("Exact Tour: " + labelsOfNodes(exactTour));
+                } else if (exact != null && exact.timedOut) {
+                    logHighlight("TSP Branch-and-Bound stopped after " + EXACT_SEARCH_LIMIT_MS
+                            + " ms before completing a tour.");
                 } else {
                     logHighlight("TSP Exact could not find a full tour (disconnected edges).");
                 }
@@ -1975,10 +2309,10 @@ public class Daa_smartCity extends JFrame {
             }
 
             if (exactTour != null && exactCost <= nnCost) {
-                currentPath = exactTour;
+                currentPath = roadsOfTour(exactTour);
                 log("Canvas path: Exact TSP tour.");
             } else if (nnTour != null) {
-                currentPath = nnTour;
+                currentPath = roadsOfTour(nnTour);
                 log("Canvas path: Heuristic TSP tour.");
             } else {
                 currentPath = null;
@@ -2003,20 +2337,28 @@ public class Daa_smartCity extends JFrame {
         return sb.toString();
     }
 
-    private double getEdgeWeight(Node a, Node b) {
-        for (Edge e : edges) {
-            if (isBlocked(e)) continue;
-            if (e.from == a && e.to == b) return e.weight;
-            if (!directedMode && e.from == b && e.to == a) return e.weight;
+    // Shortest-path distance between two stops; call ensureAllPairs() first
+    private double legCost(Node a, Node b) {
+        return a == b ? INF : apsp.distance(a, b);
+    }
+
+    // The tour with every leg unpacked into its roads, for drawing
+    private List<Node> roadsOfTour(List<Node> tour) {
+        List<Node> out = new ArrayList<Node>();
+        out.add(tour.get(0));
+        for (int i = 0; i + 1 < tour.size(); i++) {
+            List<Node> leg = apsp.path(tour.get(i), tour.get(i + 1));
+            if (leg == null) out.add(tour.get(i + 1));
+            else out.addAll(leg.subList(1, leg.size()));
         }
-        return INF;
+        return out;
     }
 
     private double tourCost(List<Node> tour) {
         if (tour == null || tour.size() < 2) return Double.POSITIVE_INFINITY;
         double cost = 0.0;
         for (int i = 0; i < tour.size() - 1; i++) {
-            double w = getEdgeWeight(tour.get(i), tour.get(i + 1));
+            double w = legCost(tour.get(i), tour.get(i + 1));
             if (w >= INF) return Double.POSITIVE_INFINITY;
             cost += w;
         }
@@ -2037,7 +2379,7 @@ public class Daa_smartCity extends JFrame {
             double best = INF;
             for (int j = 0; j < n; j++) {
                 if (!used[j]) {
-                    double w = getEdgeWeight(tspNodes.get(current), tspNodes.get(j));
+                    double w = legCost(tspNodes.get(current), tspNodes.get(j));
                     if (w < best) {
                         best = w;
                         next = j;
@@ -2054,14 +2396,15 @@ public class Daa_smartCity extends JFrame {
         return tour;
     }
 
-    private List<Node> tspExactBranchAndBound(List<Node> tspNodes) {
+    // Null if some stop cannot be entered or left; otherwise the search state with its best tour
+    private TSPState tspExactBranchAndBound(List<Node> tspNodes, Deadline deadline) {
         int n = tspNodes.size();
         double[][] cost = new double[n][n];
 
         for (int i = 0; i < n; i++) {
             for (int j = 0; j < n; j++) {
                 if (i == j) cost[i][j] = INF;
-                else cost[i][j] = getEdgeWeight(tspNodes.get(i), tspNodes.get(j));
+                else cost[i][j] = legCost(tspNodes.get(i), tspNodes.get(j));
             }
         }
 
@@ -2082,20 +2425,25 @@ public class Daa_smartCity extends JFrame {
         used[0] = true;
         path[0] = 0;
 
-        tspBBRec(0, 1, 0.0, used, path, state, cost, n);
+        tspBBRec(0, 1, 0.0, used, path, state, cost, n, deadline);
 
-        if (!state.found || state.bestCost >= INF) return null;
+        if (!state.found || state.bestCost >= INF) return state;
 
         List<Node> tour = new ArrayList<Node>();
         for (int i = 0; i < n; i++) tour.add(tspNodes.get(state.bestPath[i]));
         tour.add(tspNodes.get(state.bestPath[0]));
-        return tour;
+        state.tour = tour;
+        return state;
     }
 
     private void tspBBRec(int current, int level, double currentCost,
                           boolean[] used, int[] path,
-                          TSPState state, double[][] cost, int n) {
+                          TSPState state, double[][] cost, int n, Deadline deadline) {
         if (currentCost >= state.bestCost) return;
+        if (deadline.expired()) {
+            state.timedOut = true;
+            return;
+        }
 
         if (level == n) {
             double back = cost[current][path[0]];
@@ -2114,22 +2462,37 @@ public class Daa_smartCity extends JFrame {
                 used[next] = true;
                 path[level] = next;
                 tspBBRec(next, level + 1, currentCost + cost[current][next],
-                        used, path, state, cost, n);
+                        used, path, state, cost, n, deadline);
                 used[next] = false;
             }
         }
     }
 
-    private void visit(Node n, boolean anim) {
-        try {
-            n.color = Color.YELLOW;
-            canvas.repaint();
-            if (anim) Thread.sleep(150);
+    // Paints engine progress on the canvas; pauses only when animating
+    private RoutingEngine.Visualizer swingVisualizer(final RoutingEngine.Algorithm algo, final boolean anim) {
+        final boolean greedy = algo == RoutingEngine.Algorithm.GREEDY;
+        return new RoutingEngine.Visualizer() {
+            public void visit(Node n) {
+                flash(n, n, Color.YELLOW, new Color(0x4CAF50), anim ? 150 : 0, anim ? 80 : 0);
+            }
 
-            n.color = new Color(0x4CAF50);
-            canvas.repaint();
-            if (anim) Thread.sleep(80);
-        } catch (Exception ignored) {}
+            public void relax(Node from, Node to) {
+                if (!anim) return;
+                if (greedy) flash(from, to, Color.ORANGE, new Color(0xFF9800), 120, 80);
+                else flash(from, to, Color.YELLOW, new Color(0x4CAF50), 100, 60);
+            }
+        };
+    }
+
+    private void flash(Node a, Node b, Color on, Color off, int onMs, int offMs) {
+        a.color = on;
+        b.color = on;
+        canvas.repaint();
+        if (onMs > 0) sleep(onMs);
+        a.color = off;
+        b.color = off;
+        canvas.repaint();
+        if (offMs > 0) sleep(offMs);
     }
 
     private void sleep(int ms) {
@@ -2147,13 +2510,18 @@ public class Daa_smartCity extends JFrame {
         nodes.clear();
         edges.clear();
         first = hover = src = dst = null;
+        stopVehicle();
+        routeWatch.clear();
         currentPath = null;
+        alternativePaths = null;
+        isochrone = null;
         nodeId = 0;
 
         results.clear();
         tblModel.setRowCount(0);
         bfModel.setRowCount(0);
         bfModel.setColumnCount(0);
+        bfTable.setModel(bfModel);
 
         try {
             StyledDocument doc = logArea.getStyledDocument();
@@ -2288,11 +2656,16 @@ public class Daa_smartCity extends JFrame {
     // ======= Internal algorithm result =======
     public static class PathResult {
         public boolean found;
-        public List<Node> path;
+        public List<Node> path; // null when only compactPath is kept (cached results)
         public int steps;
         public boolean hasNegativeCycle;
         public List<Map<Node, Double>> distanceHistory;
         public double totalCost;
+        public List<Node> negativeCycle; // closed walk v → ... → v, when known
+        public DistanceHistory compactHistory; // delta-encoded trace (Bellman-Ford)
+        public boolean timedOut; // stopped at its Deadline; any path is the best found so far
+        public double bound = Double.NaN; // ARA* without potentials: totalCost <= bound * optimum (1 = optimal)
+        public CompactPath compactPath; // encoded route, set on results held in caches
 
         public PathResult(boolean f, List<Node> p, int s,
                           boolean nc, List<Map<Node, Double>> hist, double tc) {
@@ -2303,6 +2676,12 @@ public class Daa_smartCity extends JFrame {
             distanceHistory = hist;
             totalCost = tc;
         }
+
+        /** The route as nodes, expanded from compactPath when no list is held. */
+        public List<Node> path() {
+            if (path != null || compactPath == null) return path;
+            return compactPath.toList();
+        }
     }
 
     static class Holder<T> { T value; Holder(T v){ value = v; } }
@@ -2322,6 +2701,12 @@ public class Daa_smartCity extends JFrame {
     private Node first = null, hover = null;
     private Node src = null, dst = null;
     private List<Node> currentPath = null;
+    private List<List<Node>> alternativePaths = null;
+    private Isochrone.Result isochrone = null;
+
+    // Vehicle driving src -> dst, replanned with D* Lite as traffic changes
+    private static final String VEHICLE_ID = "vehicle-1";
+    private Node vehicleAt = null;
 
     private boolean directedMode = true;
 
@@ -2342,6 +2727,44 @@ public class Daa_smartCity extends JFrame {
     // Dynamic traffic manager
     private final DynamicTrafficManager trafficManager = new DynamicTrafficManager();
 
+    // Ranked alternatives (Yen)
+    private final KShortestPaths kShortest = new KShortestPaths();
+    private final AlternativeRoutes penaltyRoutes = new AlternativeRoutes();
+
+    // Parallel one-to-all SSSP (common ForkJoinPool)
+    private final DeltaSteppingSSSP deltaStepping = new DeltaSteppingSSSP();
+
+    // Headless BFS/DFS/Dijkstra/A*/Bellman-Ford/SPFA/Greedy/Delta-Stepping over a snapshot
+    private final RoutingEngine engine = new RoutingEngine(deltaStepping);
+
+    // Multi-level overlay, re-customized per traffic batch
+    private final CrpOverlay crpOverlay = new CrpOverlay();
+
+    // Region flags per arc, stale regions recomputed on demand
+    private final ArcFlags arcFlags = new ArcFlags();
+
+    // Hub labels, rebuilt on the first query after a traffic batch
+    private final HubLabelIndex hubLabels = new HubLabelIndex();
+
+    // Watched trips, re-planned only when a traffic batch can affect them
+    private final RouteWatch routeWatch = new RouteWatch(nodes, edges, new java.util.function.BooleanSupplier() {
+        public boolean getAsBoolean() { return directedMode; }
+    });
+    private int tripSeq = 0;
+
+    // Closest-facility queries (one search per query)
+    private final NearestFacility nearestFacility = new NearestFacility();
+
+    // All-pairs distances, kept current through traffic batches
+    private final AllPairsShortestPaths apsp = new AllPairsShortestPaths();
+
+    // Origin x destination tables (contraction hierarchy buckets)
+    private final ManyToManyMatrix odMatrix = new ManyToManyMatrix();
+
+    private static final Color[] ALT_COLORS = {
+            new Color(0xFFA000), new Color(0x8E24AA), new Color(0x00897B), new Color(0x5D4037)
+    };
+
     // ======= Background Image =======
     private Image bgImage;
 
@@ -2390,13 +2813,19 @@ public class Daa_smartCity extends JFrame {
     private static class SchedResult {
         double makespan;
         List<List<Integer>> assignment;
+        boolean timedOut;
     }
 
+    // Exact searches (TSP / scheduling B&B) stop here and keep the best solution found so far
+    private static final long EXACT_SEARCH_LIMIT_MS = 5000;
+
     // ===== TSP Branch&Bound helper =====
     private static class TSPState {
         double bestCost = INF;
         int[] bestPath;
         boolean found = false;
+        boolean timedOut = false;   // a branch was abandoned at the deadline
+        List<Node> tour;            // closed best tour, when found
     }
 
     // ===== BEST DECISION helper =====
@@ -2414,6 +2843,23 @@ public class Daa_smartCity extends JFrame {
 
         canvas = new GraphPanel();
         canvas.setPreferredSize(new Dimension(900, 600));
+        trafficManager.addTrafficListener(apsp);
+        trafficManager.addTrafficListener(odMatrix);
+        trafficManager.addTrafficListener(crpOverlay);
+        trafficManager.addTrafficListener(arcFlags);
+        trafficManager.addTrafficListener(hubLabels);
+        trafficManager.addTrafficListener(routeWatch);
+        routeWatch.addListener(new RouteWatch.Listener() {
+            public void onRouteChange(RouteWatch.RouteChange c) {
+                if (c.lost()) {
+                    logHighlight("Trip " + c.tripId + " lost its route.");
+                } else {
+                    logHighlight("Trip " + c.tripId + " re-routed: " + labelsOfNodes(c.newPath)
+                            + " (Cost " + String.format("%.2f", c.oldCost) + " → "
+                            + String.format("%.2f", c.newCost) + ")");
+                }
+            }
+        });
 
         // ===== Load background image from same package/folder =====
         try {
@@ -2435,7 +2881,7 @@ public class Daa_smartCity extends JFrame {
         JPanel ctrl = new JPanel(new GridLayout(0, 1, 4, 4));
         ctrl.setBackground(new Color(200, 225, 255));
 
-        String[] algs = {"Run All","BFS","DFS","Dijkstra","A*","Bellman-Ford","Greedy"};
+        String[] algs = {"Run All","BFS","DFS","Dijkstra","A*","ARA*","Bellman-Ford","SPFA","Greedy","Delta-Stepping","CRP Overlay","Arc-Flags","Hub Labels"};
         final JComboBox<String> box = new JComboBox<String>(algs);
 
         JButton run = btn("Run", new Color(0x007BFF));
@@ -2590,14 +3036,26 @@ public class Daa_smartCity extends JFrame {
                     return;
                 }
 
-                PathResult res = trafficManager.recomputeShortestPath(
-                        src, dst, nodes, edges, directedMode
-                );
+                // A vehicle already en route only needs its remaining route repaired
+                PathResult res;
+                boolean enRoute = vehicleAt != null && trafficManager.hasVehicle(VEHICLE_ID)
+                        && trafficManager.vehicle(VEHICLE_ID).goal() == dst;
+                if (enRoute) {
+                    res = trafficManager.replanVehicle(VEHICLE_ID, vehicleAt, nodes, edges, directedMode);
+                } else {
+                    res = trafficManager.recomputeShortestPath(
+                            src, dst, nodes, edges, directedMode
+                    );
+                }
 
                 if (res != null && res.found && !res.hasNegativeCycle) {
-                    currentPath = res.path;
+                    currentPath = res.path();
                     log("Dynamic Routing (Hybrid) updated. New cost = " +
                             String.format("%.2f", res.totalCost));
+                    if (enRoute) {
+                        log("Replanned from vehicle at " + vehicleAt.label + ", "
+                                + res.steps + " node(s) expanded.");
+                    }
                     canvas.repaint();
                 } else {
                     String blockedRoad = getAnyBlockedRoadLabel();
@@ -2617,6 +3075,55 @@ public class Daa_smartCity extends JFrame {
             }
         });
 
+        JButton vehicleBtn = btn("Advance Vehicle", new Color(0x00838F));
+        vehicleBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                advanceVehicle();
+            }
+        });
+
+        JButton watchBtn = btn("Watch Trip", new Color(0x006064));
+        watchBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                watchTrip();
+            }
+        });
+
+        JButton altRoutesBtn = btn("Alternative Routes", new Color(0x00897B));
+        altRoutesBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                runAlternativeRoutes();
+            }
+        });
+
+        JButton matrixBtn = btn("Distance Matrix", new Color(0x455A64));
+        matrixBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                showDistanceMatrix();
+            }
+        });
+
+        JButton isoBtn = btn("Isochrone", new Color(0x00695C));
+        isoBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                runIsochrone();
+            }
+        });
+
+        JButton facilityBtn = btn("Nearest Facility", new Color(0xC62828));
+        facilityBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                runNearestFacility();
+            }
+        });
+
+        JButton odBtn = btn("O-D Cost Table", new Color(0x546E7A));
+        odBtn.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                showCostTable();
+            }
+        });
+
         // ===== New module buttons =====
         JButton schedulingBtn = btn("Vehicle Scheduling", new Color(0x0277BD));
         schedulingBtn.addActionListener(new ActionListener() {
@@ -2643,6 +3150,13 @@ public class Daa_smartCity extends JFrame {
         ctrl.add(roadBlockBtn);
         ctrl.add(periodicBtn);
         ctrl.add(dynRouteBtn);
+        ctrl.add(vehicleBtn);
+        ctrl.add(watchBtn);
+        ctrl.add(altRoutesBtn);
+        ctrl.add(matrixBtn);
+        ctrl.add(odBtn);
+        ctrl.add(isoBtn);
+        ctrl.add(facilityBtn);
         ctrl.add(schedulingBtn);
         ctrl.add(tspBtn);
 
@@ -2876,8 +3390,19 @@ public class Daa_smartCity extends JFrame {
                 g2.drawImage(bgImage, 0, 0, w, h, this);
             }
 
-            g2.setStroke(new BasicStroke(2));
-
+            if (isochrone != null && isochrone.outline.npoints > 2) {
+                g2.setColor(new Color(0, 137, 123, 50));
+                g2.fillPolygon(isochrone.outline);
+                g2.setColor(new Color(0x00897B));
+                g2.setStroke(new BasicStroke(
+                        2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
+                        1, new float[]{6, 4}, 0
+                ));
+                g2.drawPolygon(isochrone.outline);
+            }
+
+            g2.setStroke(new BasicStroke(2));
+
             for (Edge e : edges) {
                 g2.setColor(isBlocked(e) ? Color.RED : Color.GRAY);
                 g2.drawLine(e.from.x, e.from.y, e.to.x, e.to.y);
@@ -2919,6 +3444,22 @@ public class Daa_smartCity extends JFrame {
                 }
             }
 
+            if (alternativePaths != null) {
+                g2.setStroke(new BasicStroke(
+                        3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
+                        1, new float[]{8, 6}, 0
+                ));
+                for (int k = 0; k < alternativePaths.size(); k++) {
+                    List<Node> alt = alternativePaths.get(k);
+                    g2.setColor(ALT_COLORS[k % ALT_COLORS.length]);
+                    for (int i = 0; i < alt.size() - 1; i++) {
+                        Node a = alt.get(i);
+                        Node b = alt.get(i + 1);
+                        g2.drawLine(a.x, a.y, b.x, b.y);
+                    }
+                }
+            }
+
             if (currentPath != null && currentPath.size() > 1) {
                 g2.setStroke(new BasicStroke(3));
                 g2.setColor(new Color(46, 139, 87));
@@ -2954,6 +3495,10 @@ public class Daa_smartCity extends JFrame {
                 g2.setStroke(new BasicStroke(3));
                 g2.drawOval(dst.x - 25, dst.y - 25, 50, 50);
             }
+            if (vehicleAt != null) {
+                g2.setColor(new Color(0xFF6F00));
+                g2.fillRect(vehicleAt.x + 12, vehicleAt.y - 26, 16, 12);
+            }
         }
     }
 
@@ -3085,9 +3630,12 @@ public class Daa_smartCity extends JFrame {
 
         if (src == n) src = null;
         if (dst == n) dst = null;
+        if (vehicleAt == n) stopVehicle();
         if (first == n) first = null;
         if (hover == n) hover = null;
         if (currentPath != null && currentPath.contains(n)) currentPath = null;
+        alternativePaths = null;
+        isochrone = null;
 
         log("Node " + n.label + " deleted with " + removedEdges.size() + " connected edge(s).");
         canvas.repaint();
@@ -3113,6 +3661,8 @@ public class Daa_smartCity extends JFrame {
         if (e == null) return;
         edges.remove(e);
         if (currentPath != null) currentPath = null;
+        alternativePaths = null;
+        isochrone = null;
         log("Edge " + e.from.label + " → " + e.to.label + " deleted.");
         canvas.repaint();
 
@@ -3209,8 +3759,11 @@ public class Daa_smartCity extends JFrame {
         tblModel.setRowCount(0);
         bfModel.setRowCount(0);
         bfModel.setColumnCount(0);
+        bfTable.setModel(bfModel);
         resetColors();
         currentPath = null;
+        alternativePaths = null;
+        isochrone = null;
 
         src = askValidated("Enter Source Node (A, B, C...):");
         if (src == null) return;
@@ -3242,7 +3795,7 @@ public class Daa_smartCity extends JFrame {
                 return;
             }
 
-            String[] all = {"BFS", "DFS", "Dijkstra", "A*", "Bellman-Ford", "Greedy"};
+            String[] all = {"BFS", "DFS", "Dijkstra", "A*", "Bellman-Ford", "SPFA", "Greedy"};
             for (int i = 0; i < all.length; i++) {
                 runOne(all[i], false, hasNeg, true);
             }
@@ -3318,359 +3871,42 @@ public class Daa_smartCity extends JFrame {
     // =====================================================
     //                    ALGORITHMS
     // =====================================================
-    private PathResult bfs(Node start, Node goal, boolean anim) {
-        Map<Node, List<Edge>> g = graph();
-        Map<Node, Node> parent = new HashMap<Node, Node>();
-        Set<Node> vis = new HashSet<Node>();
-        Queue<Node> q = new LinkedList<Node>();
-
-        q.add(start);
-        vis.add(start);
-        parent.put(start, null);
-        int steps = 0;
-
-        while (!q.isEmpty()) {
-            Node cur = q.poll();
-            visit(cur, anim);
-            steps++;
-
-            if (cur == goal) {
-                List<Node> path = reconstruct(parent, start, goal);
-                double cost = (path == null) ? Double.POSITIVE_INFINITY : computePathCost(path);
-                return new PathResult(true, path, steps, false, null, cost);
-            }
-
-            List<Edge> list = g.get(cur);
-            if (list != null) {
-                for (Edge e : list) {
-                    if (!vis.contains(e.to)) {
-                        vis.add(e.to);
-                        q.add(e.to);
-                        parent.put(e.to, cur);
-                    }
-                }
-            }
-        }
-        return new PathResult(false, null, steps, false, null, Double.POSITIVE_INFINITY);
+    private void updateBellmanFordTable(DistanceHistory history) {
+        if (history == null || history.iterations() == 0) return;
+        bfTable.setModel(new DistanceHistoryTableModel(history));
     }
 
-    private PathResult dfs(Node start, Node goal, boolean anim) {
-        Map<Node, List<Edge>> g = graph();
-        Map<Node, Node> parent = new HashMap<Node, Node>();
-        Set<Node> vis = new HashSet<Node>();
-        Stack<Node> st = new Stack<Node>();
-
-        st.push(start);
-        vis.add(start);
-        parent.put(start, null);
-        int steps = 0;
-
-        while (!st.isEmpty()) {
-            Node cur = st.pop();
-            visit(cur, anim);
-            steps++;
-
-            if (cur == goal) {
-                List<Node> path = reconstruct(parent, start, goal);
-                double cost = (path == null) ? Double.POSITIVE_INFINITY : computePathCost(path);
-                return new PathResult(true, path, steps, false, null, cost);
-            }
+    // Rows are rebuilt from the delta log only when the table asks for them
+    private static class DistanceHistoryTableModel extends AbstractTableModel {
+        private final DistanceHistory history;
+        private int cachedIter = -1;
+        private double[] cachedRow;
 
-            List<Edge> list = g.get(cur);
-            if (list != null) {
-                for (Edge e : list) {
-                    if (!vis.contains(e.to)) {
-                        vis.add(e.to);
-                        st.push(e.to);
-                        parent.put(e.to, cur);
-                    }
-                }
-            }
+        DistanceHistoryTableModel(DistanceHistory history) {
+            this.history = history;
         }
-        return new PathResult(false, null, steps, false, null, Double.POSITIVE_INFINITY);
-    }
 
-    private PathResult dijkstra(Node start, Node goal, boolean anim) {
-        Map<Node, List<Edge>> g = graph();
-        Map<Node, Double> dist = new HashMap<Node, Double>();
-        Map<Node, Node> parent = new HashMap<Node, Node>();
-
-        for (Node n : nodes) dist.put(n, Double.POSITIVE_INFINITY);
-        dist.put(start, 0.0);
-
-        PriorityQueue<Node> pq = new PriorityQueue<Node>(11,
-                new Comparator<Node>() {
-                    public int compare(Node a, Node b) {
-                        return Double.compare(dist.get(a), dist.get(b));
-                    }
-                });
-        pq.add(start);
+        public int getRowCount() { return history.iterations(); }
 
-        int steps = 0;
-
-        while (!pq.isEmpty()) {
-            Node u = pq.poll();
-            visit(u, anim);
-            steps++;
-
-            if (u == goal) {
-                List<Node> path = reconstruct(parent, start, goal);
-                double cost = dist.get(goal);
-                return new PathResult(true, path, steps, false, null, cost);
-            }
-
-            List<Edge> list = g.get(u);
-            if (list != null) {
-                for (Edge e : list) {
-                    steps++;
-                    double alt = dist.get(u) + e.weight;
-                    if (alt < dist.get(e.to)) {
-                        dist.put(e.to, alt);
-                        parent.put(e.to, u);
-                        pq.add(e.to);
-                    }
-                }
-            }
-        }
-
-        boolean found = dist.get(goal) < Double.POSITIVE_INFINITY;
-        List<Node> path = found ? reconstruct(parent, start, goal) : null;
-        double cost = found ? dist.get(goal) : Double.POSITIVE_INFINITY;
-        return new PathResult(found, path, steps, false, null, cost);
-    }
-
-    private double heuristic(Node a, Node b) {
-        return Math.hypot(a.x - b.x, a.y - b.y);
-    }
-
-    private PathResult aStar(Node start, Node goal, boolean anim) {
-        Map<Node, List<Edge>> g = graph();
-        Map<Node, Double> gScore = new HashMap<Node, Double>();
-        Map<Node, Double> fScore = new HashMap<Node, Double>();
-        Map<Node, Node> parent = new HashMap<Node, Node>();
-
-        for (Node n : nodes) {
-            gScore.put(n, Double.POSITIVE_INFINITY);
-            fScore.put(n, Double.POSITIVE_INFINITY);
-        }
-
-        gScore.put(start, 0.0);
-        fScore.put(start, heuristic(start, goal));
-
-        PriorityQueue<Node> open = new PriorityQueue<Node>(11,
-                new Comparator<Node>() {
-                    public int compare(Node a, Node b) {
-                        return Double.compare(fScore.get(a), fScore.get(b));
-                    }
-                });
-        open.add(start);
-
-        int steps = 0;
-
-        while (!open.isEmpty()) {
-            Node cur = open.poll();
-            visit(cur, anim);
-            steps++;
-
-            if (cur == goal) {
-                List<Node> path = reconstruct(parent, start, goal);
-                double cost = gScore.get(goal);
-                return new PathResult(true, path, steps, false, null, cost);
-            }
+        public int getColumnCount() { return history.nodeCount() + 1; }
 
-            List<Edge> list = g.get(cur);
-            if (list != null) {
-                for (Edge e : list) {
-                    steps++;
-                    double tentative = gScore.get(cur) + e.weight;
-                    if (tentative < gScore.get(e.to)) {
-                        parent.put(e.to, cur);
-                        gScore.put(e.to, tentative);
-                        fScore.put(e.to, tentative + heuristic(e.to, goal));
-                        open.add(e.to);
-                    }
-                }
-            }
-        }
-        return new PathResult(false, null, steps, false, null, Double.POSITIVE_INFINITY);
-    }
-
-    private PathResult bellmanFord(Node start, Node goal, boolean anim) {
-        Map<Node, Double> dist = new HashMap<Node, Double>();
-        Map<Node, Node> parent = new HashMap<Node, Node>();
-        List<Map<Node, Double>> history = new ArrayList<Map<Node, Double>>();
-
-        for (Node n : nodes) {
-            dist.put(n, Double.POSITIVE_INFINITY);
-            parent.put(n, null);
-        }
-        dist.put(start, 0.0);
-        history.add(new HashMap<Node, Double>(dist));
-
-        int steps = 0;
-
-        List<Edge> list = new ArrayList<Edge>();
-        for (Edge e : edges) {
-            if (isBlocked(e)) continue;
-            list.add(e);
-            if (!directedMode) list.add(new Edge(e.to, e.from, e.weight));
-        }
-
-        for (int i = 0; i < nodes.size() - 1; i++) {
-            boolean changed = false;
-            for (Edge e : list) {
-                if (dist.get(e.from) != Double.POSITIVE_INFINITY) {
-                    double alt = dist.get(e.from) + e.weight;
-                    if (alt < dist.get(e.to)) {
-                        dist.put(e.to, alt);
-                        parent.put(e.to, e.from);
-                        changed = true;
-                        steps++;
-
-                        if (anim) {
-                            e.from.color = Color.YELLOW;
-                            e.to.color = Color.YELLOW;
-                            canvas.repaint();
-                            sleep(100);
-                            e.from.color = new Color(0x4CAF50);
-                            e.to.color = new Color(0x4CAF50);
-                            canvas.repaint();
-                            sleep(60);
-                        }
-                    }
-                }
-            }
-            history.add(new HashMap<Node, Double>(dist));
-            if (!changed) break;
-        }
-
-        boolean negCycle = false;
-        for (Edge e : list) {
-            if (dist.get(e.from) != Double.POSITIVE_INFINITY &&
-                    dist.get(e.from) + e.weight < dist.get(e.to)) {
-                negCycle = true;
-                break;
-            }
-        }
-
-        boolean found = dist.get(goal) < Double.POSITIVE_INFINITY;
-        List<Node> path = found ? reconstruct(parent, start, goal) : null;
-        double cost = found ? dist.get(goal) : Double.POSITIVE_INFINITY;
-
-        return new PathResult(found, path, steps, negCycle, history, cost);
-    }
-
-    private PathResult greedy(Node start, Node goal, boolean anim) {
-        Map<Node, List<Edge>> g = graph();
-        Map<Node, Double> dist = new HashMap<Node, Double>();
-        Map<Node, Node> parent = new HashMap<Node, Node>();
-        Set<Node> visited = new HashSet<Node>();
-
-        for (Node n : nodes) dist.put(n, Double.POSITIVE_INFINITY);
-        dist.put(start, 0.0);
-        parent.put(start, null);
-
-        Node cur = start;
-        int steps = 0;
-
-        while (cur != null && !visited.contains(goal)) {
-            visited.add(cur);
-            visit(cur, anim);
-            steps++;
-
-            Edge best = null;
-            double minW = Double.POSITIVE_INFINITY;
-
-            List<Edge> list = g.get(cur);
-            if (list != null) {
-                for (Edge e : list) {
-                    if (!visited.contains(e.to) && e.weight < minW) {
-                        minW = e.weight;
-                        best = e;
-                    }
-                }
-            }
-
-            if (best == null) break;
-
-            dist.put(best.to, dist.get(cur) + best.weight);
-            parent.put(best.to, cur);
-            cur = best.to;
-            steps++;
-
-            if (anim) {
-                best.from.color = Color.ORANGE;
-                best.to.color = Color.ORANGE;
-                canvas.repaint();
-                sleep(120);
-                best.from.color = new Color(0xFF9800);
-                best.to.color = new Color(0xFF9800);
-                canvas.repaint();
-                sleep(80);
-            }
+        @Override
+        public String getColumnName(int col) {
+            return col == 0 ? "Iter" : history.node(col - 1).label;
         }
 
-        boolean found = visited.contains(goal);
-        List<Node> path = found ? reconstruct(parent, start, goal) : null;
-        double cost = found ? dist.get(goal) : Double.POSITIVE_INFINITY;
-
-        return new PathResult(found, path, steps, false, null, cost);
-    }
-
-    private List<Node> reconstruct(Map<Node, Node> parent, Node start, Node goal) {
-        List<Node> path = new ArrayList<Node>();
-        for (Node at = goal; at != null; at = parent.get(at)) {
-            path.add(at);
-        }
-        if (path.isEmpty() || path.get(path.size() - 1) != start) return null;
-        Collections.reverse(path);
-        return path;
-    }
+        public Object getValueAt(int row, int col) {
+            if (col == 0) return Integer.valueOf(row);
 
-    private double computePathCost(List<Node> path) {
-        if (path == null || path.size() < 2) return Double.POSITIVE_INFINITY;
-        double c = 0.0;
-        for (int i = 0; i < path.size() - 1; i++) {
-            Node a = path.get(i);
-            Node b = path.get(i + 1);
-            boolean foundEdge = false;
-            for (Edge e : edges) {
-                if (isBlocked(e)) continue;
-                if (e.from == a && e.to == b) {
-                    c += e.weight;
-                    foundEdge = true;
-                    break;
-                } else if (!directedMode && e.from == b && e.to == a) {
-                    c += e.weight;
-                    foundEdge = true;
-                    break;
-                }
+            if (row != cachedIter) {
+                // Scrolling is mostly sequential: step forward from the cached row when possible
+                if (cachedRow != null && row == cachedIter + 1) history.replay(cachedRow, row, row);
+                else cachedRow = history.row(row);
+                cachedIter = row;
             }
-            if (!foundEdge) return Double.POSITIVE_INFINITY;
-        }
-        return c;
-    }
-
-    private void updateBellmanFordTable(List<Map<Node, Double>> history) {
-        if (history == null || history.isEmpty()) return;
-
-        bfModel.setRowCount(0);
-        bfModel.setColumnCount(0);
-
-        bfModel.addColumn("Iter");
-        for (Node n : nodes) bfModel.addColumn(n.label);
-
-        for (int i = 0; i < history.size(); i++) {
-            Object[] row = new Object[nodes.size() + 1];
-            row[0] = Integer.valueOf(i);
 
-            Map<Node, Double> dist = history.get(i);
-            for (int j = 0; j < nodes.size(); j++) {
-                Double d = dist.get(nodes.get(j));
-                row[j + 1] = (d == null || d == Double.POSITIVE_INFINITY)
-                        ? "∞" : String.format("%.0f", d);
-            }
-            bfModel.addRow(row);
+            double d = cachedRow[col - 1];
+            return (d == Double.POSITIVE_INFINITY) ? "∞" : String.format("%.0f", d);
         }
     }
 
@@ -3693,34 +3929,55 @@ public class Daa_smartCity extends JFrame {
         else if ("DFS".equals(name)) complexity = "O(V+E)";
         else if ("Dijkstra".equals(name)) complexity = "O((V+E)logV)";
         else if ("A*".equals(name)) complexity = "O((V+E)logV)";
+        else if ("ARA*".equals(name)) complexity = "O((V+E)logV) per ε pass";
         else if ("Bellman-Ford".equals(name)) complexity = "O(V×E)";
+        else if ("SPFA".equals(name)) complexity = "O(V×E) worst, ~O(E) typical";
         else if ("Greedy".equals(name)) complexity = "O(E)";
+        else if ("Delta-Stepping".equals(name)) complexity = "O(V+E+L/Δ) work, parallel";
+        else if ("CRP Overlay".equals(name)) complexity = "O(cells × boundary²) per batch, overlay query";
+        else if ("Arc-Flags".equals(name)) complexity = "O(boundary × E log V) per stale region, pruned Dijkstra";
+        else if ("Hub Labels".equals(name)) complexity = "O(V × label × log V) rebuild per batch, O(label) query";
 
         currentPath = null;
-        final Holder<List<Map<Node, Double>>> hist = new Holder<List<Map<Node, Double>>>(null);
+        final Holder<DistanceHistory> hist = new Holder<DistanceHistory>(null);
+
+        boolean labelSetting = name.equals("Greedy") || name.equals("Dijkstra") ||
+                name.equals("A*") || name.equals("ARA*") || name.equals("Delta-Stepping");
+        JohnsonPotentials potentials = (labelSetting && hasNeg)
+                ? trafficManager.potentialsFor(nodes, edges, directedMode)
+                : null;
 
         try {
-            if ((name.equals("Greedy") || name.equals("Dijkstra") ||
-                    name.equals("A*")) && hasNeg) {
-                reason = "Not executed (negative weights present)";
+            if (labelSetting && hasNeg && potentials == null) {
+                reason = "Not executed (negative cycle: no valid Johnson potentials)";
+                ok = false;
+            } else if ("CRP Overlay".equals(name) && hasNeg) {
+                reason = "Not executed (overlay cliques need non-negative weights)";
+                ok = false;
+            } else if ("Arc-Flags".equals(name) && hasNeg) {
+                reason = "Not executed (arc flags need non-negative weights)";
+                ok = false;
+            } else if ("Hub Labels".equals(name) && hasNeg) {
+                reason = "Not executed (hub labels need non-negative weights)";
                 ok = false;
             } else {
                 PathResult res;
                 long t0 = System.nanoTime();
 
-                if ("BFS".equals(name)) {
-                    res = bfs(src, dst, anim);
-                } else if ("DFS".equals(name)) {
-                    res = dfs(src, dst, anim);
-                } else if ("Dijkstra".equals(name)) {
-                    res = dijkstra(src, dst, anim);
-                } else if ("A*".equals(name)) {
-                    res = aStar(src, dst, anim);
-                } else if ("Bellman-Ford".equals(name)) {
-                    res = bellmanFord(src, dst, anim);
-                    hist.value = res.distanceHistory;
+                RoutingEngine.Algorithm algo = RoutingEngine.Algorithm.byLabel(name);
+                if (algo != null) {
+                    GraphSnapshot snap = GraphSnapshot.of(nodes, edges, directedMode);
+                    res = engine.route(snap, new RoutingEngine.Query(src, dst, algo, potentials),
+                            swingVisualizer(algo, anim));
+                    if (algo == RoutingEngine.Algorithm.BELLMAN_FORD) hist.value = res.compactHistory;
+                } else if ("CRP Overlay".equals(name)) {
+                    res = crpOverlay.shortestPath(src, dst, nodes, edges, directedMode);
+                } else if ("Arc-Flags".equals(name)) {
+                    res = arcFlags.shortestPath(src, dst, nodes, edges, directedMode);
+                } else if ("Hub Labels".equals(name)) {
+                    res = hubLabels.shortestPath(src, dst, nodes, edges, directedMode);
                 } else {
-                    res = greedy(src, dst, anim);
+                    throw new IllegalArgumentException("Unknown algorithm " + name);
                 }
 
                 long t1 = System.nanoTime();
@@ -3731,12 +3988,18 @@ public class Daa_smartCity extends JFrame {
                 cost = res.totalCost;
                 plen = (res.path != null) ? res.path.size() : 0;
 
-                if (res.hasNegativeCycle) {
+                if (res.hasNegativeCycle && res.negativeCycle != null) {
+                    reason = "Negative cycle detected: " + labelsOfNodes(res.negativeCycle);
+                } else if (res.hasNegativeCycle) {
                     reason = "Negative cycle detected";
                 } else if (res.found) {
                     // ✅ small note for BFS/DFS on weighted graphs
                     if (("BFS".equals(name) || "DFS".equals(name)) && !areAllWeightsSamePositive()) {
                         reason = "Path found (Note: BFS/DFS not guaranteed optimal on weighted graphs)";
+                    } else if (res.bound > 1.0) {
+                        reason = String.format("Path found (within %.2f× of optimal)", res.bound);
+                    } else if (potentials != null) {
+                        reason = "Path found (Johnson-reweighted)";
                     } else {
                         reason = "Path found";
                     }
@@ -3745,9 +4008,10 @@ public class Daa_smartCity extends JFrame {
                 }
 
                 if (ok) currentPath = res.path;
+                else if (res.negativeCycle != null) currentPath = res.negativeCycle;
 
                 if ("Bellman-Ford".equals(name) && hist.value != null) {
-                    final List<Map<Node, Double>> history = hist.value;
+                    final DistanceHistory history = hist.value;
                     SwingUtilities.invokeLater(new Runnable() {
                         public void run() {
                             updateBellmanFordTable(history);
@@ -3851,15 +4115,22 @@ public class Daa_smartCity extends JFrame {
             return bd;
         }
 
-        // Negative weights => Bellman-Ford is required
+        // Negative weights => only exact methods: Bellman-Ford family, or Dijkstra on reduced costs
         if (hasNeg) {
+            Result label = null;
             for (Result r : ok) {
-                if ("Bellman-Ford".equals(r.name)) {
-                    bd.best = r;
-                    bd.explanation = "Negative weights detected → Bellman-Ford is required for correctness.";
-                    return bd;
+                if ("Bellman-Ford".equals(r.name) || "SPFA".equals(r.name) || "Dijkstra".equals(r.name)) {
+                    if (label == null || r.steps < label.steps) label = r;
                 }
             }
+            if (label != null) {
+                bd.best = label;
+                bd.explanation = "Dijkstra".equals(label.name)
+                        ? "Negative weights detected → Dijkstra on Johnson-reweighted costs is exact and did the least work."
+                        : "Negative weights detected → " + label.name +
+                          " (Bellman-Ford family) is required for correctness.";
+                return bd;
+            }
         }
 
         // Unweighted/equal weights => BFS best
@@ -3913,6 +4184,8 @@ public class Daa_smartCity extends JFrame {
             bd.explanation = "Dijkstra guarantees optimal shortest path for non-negative weights → best safe choice.";
         } else if ("Bellman-Ford".equals(best.name)) {
             bd.explanation = "Bellman-Ford handles negative weights (slower but correct) → best for this case.";
+        } else if ("SPFA".equals(best.name)) {
+            bd.explanation = "SPFA handles negative weights and only rescans nodes whose label changed → best for this case.";
         } else if ("Greedy".equals(best.name)) {
             bd.explanation = "Greedy matched the optimal cost in this instance and was efficient (not guaranteed generally).";
         } else if ("BFS".equals(best.name)) {
@@ -3940,6 +4213,409 @@ public class Daa_smartCity extends JFrame {
         }
     }
 
+    // =====================================================
+    //   ALTERNATIVE ROUTES (Yen k-shortest / Penalty method)
+    // =====================================================
+    private void runAlternativeRoutes() {
+        if (src == null || dst == null) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    "Run any algorithm first to set Source and Destination.",
+                    "No Source/Destination",
+                    JOptionPane.WARNING_MESSAGE
+            );
+            return;
+        }
+        if (hasNegativeWeights()) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    "Alternative routes require non-negative weights.",
+                    "Alternative Routes",
+                    JOptionPane.WARNING_MESSAGE
+            );
+            return;
+        }
+
+        String kIn = JOptionPane.showInputDialog(this, "How many routes (k)?", "3");
+        if (kIn == null) return;
+        int k;
+        try {
+            k = Integer.parseInt(kIn.trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Enter a valid number!");
+            return;
+        }
+        if (k <= 0) return;
+
+        String[] modes = {"Yen (exact k-shortest)", "Penalty (diverse, fast)"};
+        Object mode = JOptionPane.showInputDialog(
+                this, "Alternative route method:", "Alternative Routes",
+                JOptionPane.QUESTION_MESSAGE, null, modes, modes[0]
+        );
+        if (mode == null) return;
+        boolean yen = modes[0].equals(mode);
+        String prefix = yen ? "Yen #" : "Penalty #";
+        String complexity = yen ? "O(kV(V+E)logV)" : "O(k(V+E)logV)";
+
+        long t0 = System.nanoTime();
+        List<PathResult> routes = yen
+                ? kShortest.yen(src, dst, nodes, edges, directedMode, k)
+                : penaltyRoutes.find(src, dst, nodes, edges, directedMode, k);
+        double ms = (System.nanoTime() - t0) / 1e6;
+
+        if (routes.isEmpty()) {
+            String road = getAnyBlockedRoadLabel();
+            String msg = (road != null)
+                    ? "Traffic cannot proceed — Road " + road + " is blocked."
+                    : "No available route from " + src.label + " to " + dst.label + ".";
+            logHighlight(msg);
+            return;
+        }
+
+        log("========== Alternative Routes (" + (yen ? "Yen" : "Penalty") + ") ==========");
+        if (routes.size() < k) {
+            log("Only " + routes.size() + " route(s) passed the filters.");
+        }
+        alternativePaths = new ArrayList<List<Node>>();
+        for (int i = 0; i < routes.size(); i++) {
+            PathResult r = routes.get(i);
+            String name = prefix + (i + 1);
+            String reason = (i == 0) ? "Shortest route" : "Alternative route";
+
+            tblModel.addRow(new Object[]{
+                    name,
+                    String.format("%.2f", ms),
+                    Integer.valueOf(r.steps),
+                    String.format("%.2f", r.totalCost),
+                    Integer.valueOf(r.path.size()),
+                    "—",
+                    "Success",
+                    reason,
+                    complexity
+            });
+            results.add(new Result(name, ms, r.steps, r.totalCost, r.path.size(), true, reason, complexity));
+
+            log(name + ": " + labelsOfNodes(r.path) + " (Cost=" + String.format("%.2f", r.totalCost) + ")");
+            if (i > 0) alternativePaths.add(r.path);
+        }
+
+        currentPath = routes.get(0).path;
+        updateOptimalFlags();
+        canvas.repaint();
+    }
+
+    // =====================================================
+    //   ISOCHRONE (everything reachable within a budget)
+    // =====================================================
+    private void runIsochrone() {
+        if (nodes.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Add some nodes first.");
+            return;
+        }
+        Node depot = askValidated("Enter Depot Node (A, B, C...):");
+        if (depot == null) return;
+
+        String bIn = JOptionPane.showInputDialog(this, "Cost budget (e.g. minutes):", "20");
+        if (bIn == null) return;
+        double budget;
+        try {
+            budget = Double.parseDouble(bIn.trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Enter a valid number!");
+            return;
+        }
+        if (budget < 0) return;
+
+        Isochrone.Result r;
+        long t0 = System.nanoTime();
+        try {
+            r = Isochrone.compute(depot, nodes, edges, directedMode, budget);
+        } catch (IllegalArgumentException ex) {
+            logHighlight("Isochrone: " + ex.getMessage() + " — costs are unbounded.");
+            return;
+        }
+        double ms = (System.nanoTime() - t0) / 1e6;
+
+        resetColors();
+        for (Node n : r.arrival.keySet()) {
+            if (n != src && n != dst) n.color = new Color(0x26A69A);
+        }
+        isochrone = r;
+
+        log("========== Isochrone from " + depot.label + " (budget "
+                + String.format("%.2f", budget) + ") ==========");
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Node, Double> en : r.arrival.entrySet()) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(en.getKey().label).append("=").append(String.format("%.1f", en.getValue()));
+        }
+        log("Reachable (" + r.arrival.size() + "/" + nodes.size() + "): " + sb);
+        log("Settled " + r.settled + " node(s) in " + String.format("%.2f", ms) + " ms.");
+        canvas.repaint();
+    }
+
+    // =====================================================
+    //   NEAREST FACILITY (multi-source / reverse / k-nearest)
+    // =====================================================
+    private void runNearestFacility() {
+        if (nodes.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Add some nodes first.");
+            return;
+        }
+        if (hasNegativeWeights()) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    "Nearest-facility search requires non-negative weights.",
+                    "Nearest Facility",
+                    JOptionPane.WARNING_MESSAGE
+            );
+            return;
+        }
+
+        Node incident = askValidated("Enter Incident Node (A, B, C...):");
+        if (incident == null) return;
+        List<Node> facilities = askNodeList("Facility labels (comma-separated, or empty for all nodes):");
+        if (facilities == null) return;
+
+        String[] modes = {"Nearest unit to incident", "Nearest facility from incident", "k nearest units"};
+        Object mode = JOptionPane.showInputDialog(
+                this, "Query:", "Nearest Facility",
+                JOptionPane.QUESTION_MESSAGE, null, modes, modes[0]
+        );
+        if (mode == null) return;
+
+        List<NearestFacility.Match> matches = new ArrayList<NearestFacility.Match>();
+        long t0 = System.nanoTime();
+        if (modes[2].equals(mode)) {
+            String kIn = JOptionPane.showInputDialog(this, "How many (k)?", "3");
+            if (kIn == null) return;
+            int k;
+            try {
+                k = Integer.parseInt(kIn.trim());
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Enter a valid number!");
+                return;
+            }
+            t0 = System.nanoTime();
+            matches = nearestFacility.kNearest(incident, facilities, nodes, edges, directedMode,
+                    NearestFacility.Direction.TO_INCIDENT, k);
+        } else {
+            NearestFacility.Direction dir = modes[0].equals(mode)
+                    ? NearestFacility.Direction.TO_INCIDENT
+                    : NearestFacility.Direction.FROM_INCIDENT;
+            NearestFacility.Match m = nearestFacility.nearest(incident, facilities, nodes, edges, directedMode, dir);
+            if (m != null) matches.add(m);
+        }
+        double ms = (System.nanoTime() - t0) / 1e6;
+
+        log("========== Nearest Facility (" + mode + ") ==========");
+        if (matches.isEmpty()) {
+            logHighlight("No facility is connected to " + incident.label + ".");
+            return;
+        }
+        alternativePaths = new ArrayList<List<Node>>();
+        for (int i = 0; i < matches.size(); i++) {
+            NearestFacility.Match m = matches.get(i);
+            log("#" + (i + 1) + " " + m.facility.label + ": " + labelsOfNodes(m.path)
+                    + " (Cost=" + String.format("%.2f", m.cost) + ")");
+            if (i > 0) alternativePaths.add(m.path);
+        }
+        log("One search, " + nearestFacility.lastSettled() + " node(s) settled in "
+                + String.format("%.2f", ms) + " ms.");
+        logHighlight("Closest: " + matches.get(0).facility.label);
+
+        currentPath = matches.get(0).path;
+        canvas.repaint();
+    }
+
+    // =====================================================
+    //   VEHICLE EN ROUTE (D* Lite)
+    // =====================================================
+    private void advanceVehicle() {
+        if (src == null || dst == null) {
+            JOptionPane.showMessageDialog(this,
+                    "Run any algorithm first to set Source and Destination.",
+                    "No Source/Destination", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        if (hasNegativeWeights()) {
+            JOptionPane.showMessageDialog(this,
+                    "Vehicle replanning needs non-negative weights.",
+                    "Advance Vehicle", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        boolean fresh = vehicleAt == null || !trafficManager.hasVehicle(VEHICLE_ID)
+                || trafficManager.vehicle(VEHICLE_ID).goal() != dst;
+        if (fresh) {
+            vehicleAt = src;
+            trafficManager.startVehicle(VEHICLE_ID, src, dst, nodes, edges, directedMode);
+            log("Vehicle starts at " + src.label + " heading to " + dst.label + ".");
+        } else if (vehicleAt == dst) {
+            logHighlight("Vehicle already arrived at " + dst.label + ".");
+            return;
+        } else if (currentPath != null && currentPath.size() > 1 && currentPath.get(0) == vehicleAt) {
+            vehicleAt = currentPath.get(1);
+        }
+
+        PathResult res = trafficManager.replanVehicle(VEHICLE_ID, vehicleAt, nodes, edges, directedMode);
+        if (res == null || !res.found) {
+            currentPath = null;
+            logHighlight("Vehicle at " + vehicleAt.label + " has no route to " + dst.label + ".");
+            canvas.repaint();
+            return;
+        }
+        currentPath = res.path;
+        log("Vehicle at " + vehicleAt.label + ": " + labelsOfNodes(res.path)
+                + " (Cost=" + String.format("%.2f", res.totalCost) + ", "
+                + res.steps + " node(s) expanded)");
+        if (vehicleAt == dst) logHighlight("Vehicle arrived at " + dst.label + ".");
+        canvas.repaint();
+    }
+
+    private void stopVehicle() {
+        vehicleAt = null;
+        trafficManager.endVehicle(VEHICLE_ID);
+    }
+
+    // =====================================================
+    //   ROUTE WATCH (many active trips)
+    // =====================================================
+    private void watchTrip() {
+        if (src == null || dst == null) {
+            JOptionPane.showMessageDialog(this,
+                    "Run any algorithm first to set Source and Destination.",
+                    "No Source/Destination", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        String id = "trip-" + (++tripSeq);
+        RouteWatch.Trip trip = routeWatch.watch(id, src, dst);
+        if (trip.path() == null) {
+            log("Watching " + id + " (" + src.label + " → " + dst.label + "): no route yet.");
+        } else {
+            log("Watching " + id + ": " + labelsOfNodes(trip.path())
+                    + " (Cost=" + String.format("%.2f", trip.cost()) + ")");
+            currentPath = trip.path();
+            canvas.repaint();
+        }
+        log(routeWatch.tripCount() + " trip(s) watched; traffic batches re-plan only affected ones.");
+    }
+
+    // =====================================================
+    //   DISTANCE MATRIX (all pairs)
+    // =====================================================
+    private void showDistanceMatrix() {
+        if (nodes.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Add some nodes first.");
+            return;
+        }
+
+        long t0 = System.nanoTime();
+        try {
+            ensureAllPairs();
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Distance Matrix", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        double ms = (System.nanoTime() - t0) / 1e6;
+
+        log("========== Distance Matrix ==========");
+        log("Engine: " + apsp.lastStrategy() + " (" + String.format("%.2f", ms) + " ms, "
+                + apsp.lastUpdatedRows() + " rows computed)");
+        if (apsp.hasNegativeCycle()) {
+            logHighlight("Negative cycle detected — distances through it are unbounded.");
+        }
+
+        GraphSnapshot g = apsp.snapshot();
+        double[] d = apsp.matrix();
+        int n = g.size();
+        List<Node> all = Arrays.asList(g.nodes);
+        double[][] rows = new double[n][];
+        for (int i = 0; i < n; i++) rows[i] = Arrays.copyOfRange(d, i * n, (i + 1) * n);
+        showMatrixDialog("Distance Matrix", all, all, rows);
+    }
+
+    // All-pairs matrix for the current graph, Johnson-reweighted through the traffic manager's potentials
+    private void ensureAllPairs() {
+        apsp.ensure(nodes, edges, directedMode,
+                hasNegativeWeights() ? trafficManager.potentialsFor(nodes, edges, directedMode) : null);
+    }
+
+    private void showCostTable() {
+        if (nodes.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Add some nodes first.");
+            return;
+        }
+        if (hasNegativeWeights()) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    "Cost tables require non-negative weights (use Distance Matrix instead).",
+                    "O-D Cost Table",
+                    JOptionPane.WARNING_MESSAGE
+            );
+            return;
+        }
+
+        List<Node> origins = askNodeList("Origin labels (comma-separated, or empty for all nodes):");
+        if (origins == null) return;
+        List<Node> destinations = askNodeList("Destination labels (comma-separated, or empty for all nodes):");
+        if (destinations == null) return;
+
+        long t0 = System.nanoTime();
+        double[][] rows = odMatrix.table(nodes, edges, directedMode, origins, destinations);
+        double ms = (System.nanoTime() - t0) / 1e6;
+
+        log("========== O-D Cost Table ==========");
+        log(origins.size() + " x " + destinations.size() + " table in " + String.format("%.2f", ms)
+                + " ms (" + odMatrix.hierarchy().shortcutCount() + " CH shortcuts)");
+        showMatrixDialog("O-D Cost Table", origins, destinations, rows);
+    }
+
+    // Null if cancelled or a label is unknown; empty input means every node
+    private List<Node> askNodeList(String prompt) {
+        String in = JOptionPane.showInputDialog(this, prompt, "");
+        if (in == null) return null;
+        List<Node> out = new ArrayList<Node>();
+        if (in.trim().isEmpty()) {
+            out.addAll(nodes);
+            return out;
+        }
+        for (String p : in.split(",")) {
+            String lbl = p.trim().toUpperCase();
+            if (lbl.isEmpty()) continue;
+            Node n = findNodeByLabel(lbl);
+            if (n == null) {
+                JOptionPane.showMessageDialog(this, "Node " + lbl + " not found.");
+                return null;
+            }
+            out.add(n);
+        }
+        return out.isEmpty() ? null : out;
+    }
+
+    private void showMatrixDialog(String title, List<Node> rowNodes, List<Node> colNodes, double[][] rows) {
+        String[] cols = new String[colNodes.size() + 1];
+        cols[0] = "From \\ To";
+        for (int j = 0; j < colNodes.size(); j++) cols[j + 1] = colNodes.get(j).label;
+
+        Object[][] data = new Object[rowNodes.size()][cols.length];
+        for (int i = 0; i < rowNodes.size(); i++) {
+            data[i][0] = rowNodes.get(i).label;
+            for (int j = 0; j < colNodes.size(); j++) {
+                double v = rows[i][j];
+                data[i][j + 1] = (v == Double.POSITIVE_INFINITY) ? "∞" : String.format("%.2f", v);
+            }
+        }
+
+        JTable matrix = new JTable(data, cols);
+        matrix.setEnabled(false);
+        matrix.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        JScrollPane sc = new JScrollPane(matrix);
+        sc.setPreferredSize(new Dimension(Math.min(900, 70 * cols.length + 20),
+                Math.min(500, 18 * rowNodes.size() + 40)));
+        JOptionPane.showMessageDialog(this, sc, title, JOptionPane.PLAIN_MESSAGE);
+    }
+
     // =====================================================
     // VEHICLE SCHEDULING + TSP (UNCHANGED)
     // =====================================================
@@ -3992,9 +4668,13 @@ public class Daa_smartCity extends JFrame {
 
             SchedResult optimal = null;
             if (times.length <= 12) {
-                optimal = scheduleBranchAndBound(times, m, greedy);
+                optimal = scheduleBranchAndBound(times, m, greedy, Deadline.after(EXACT_SEARCH_LIMIT_MS));
 
-                if (optimal != null) {
+                if (optimal != null && optimal.timedOut) {
+                    logHighlight("Branch-and-Bound stopped after " + EXACT_SEARCH_LIMIT_MS
+                            + " ms, best makespan so far: " + String.format("%.2f", optimal.makespan));
+                    log(formatAssignment("Best assignment found:", optimal, times));
+                } else if (optimal != null) {
                     logHighlight("Optimal (Branch-and-Bound) makespan: " +
                             String.format("%.2f", optimal.makespan));
                     log(formatAssignment("Optimal assignment:", optimal, times));
@@ -4057,7 +4737,7 @@ public class Daa_smartCity extends JFrame {
         return res;
     }
 
-    private SchedResult scheduleBranchAndBound(double[] times, int m, SchedResult greedySeed) {
+    private SchedResult scheduleBranchAndBound(double[] times, int m, SchedResult greedySeed, Deadline deadline) {
     // Seed best with greedy so even if BnB doesn't improve, we still have a valid assignment to print
     SchedResult best = new SchedResult();
     best.makespan = greedySeed.makespan;
@@ -4075,13 +4755,17 @@ public class Daa_smartCity extends JFrame {
         curLoads[i] = 0.0;
     }
 
-    assignJobBB(0, times, curLoads, currentAssign, best, m);
+    assignJobBB(0, times, curLoads, currentAssign, best, m, deadline);
     return best;
 }
 
     private void assignJobBB(int jobIndex, double[] times, double[] loads,
                              List<List<Integer>> currentAssign,
-                             SchedResult best, int m) {
+                             SchedResult best, int m, Deadline deadline) {
+        if (deadline.expired()) {
+            best.timedOut = true;
+            return;
+        }
         int n = times.length;
         if (jobIndex == n) {
             double maxLoad = 0;
@@ -4103,7 +4787,7 @@ public class Daa_smartCity extends JFrame {
             double currentMax = 0;
             for (int k = 0; k < m; k++) if (loads[k] > currentMax) currentMax = loads[k];
 
-            if (currentMax < best.makespan) assignJobBB(jobIndex + 1, times, loads, currentAssign, best, m);
+            if (currentMax < best.makespan) assignJobBB(jobIndex + 1, times, loads, currentAssign, best, m, deadline);
 
             loads[i] -= times[jobIndex];
             currentAssign.get(i).remove(currentAssign.get(i).size() - 1);
@@ -4129,7 +4813,6 @@ public class Daa_smartCity extends JFrame {
     }
 
     private void runTSPModule() {
-        // (kept as in your code; no functional changes)
         if (nodes.size() < 3) {
             JOptionPane.showMessageDialog(this, "TSP requires at least 3 nodes.", "TSP", JOptionPane.WARNING_MESSAGE);
             return;
@@ -4166,6 +4849,14 @@ public class Daa_smartCity extends JFrame {
             log("========== TSP Module ==========");
             log("TSP nodes: " + labelsOfNodes(tspNodes));
 
+            // Legs are shortest-path distances, so consecutive stops need not share a road
+            ensureAllPairs();
+            if (apsp.hasNegativeCycle()) {
+                logHighlight("TSP skipped: a negative cycle makes leg costs unbounded.");
+                return;
+            }
+            log("Leg costs: " + apsp.lastStrategy());
+
             List<Node> nnTour = tspNearestNeighbor(tspNodes);
             double nnCost = (nnTour == null) ? Double.POSITIVE_INFINITY : tourCost(nnTour);
 
@@ -4179,12 +4870,23 @@ public class Daa_smartCity extends JFrame {
             List<Node> exactTour = null;
             double exactCost = Double.POSITIVE_INFINITY;
             if (tspNodes.size() <= 10) {
-                List<Node> et = tspExactBranchAndBound(tspNodes);
-                if (et != null) {
+                Deadline limit = Deadline.after(EXACT_SEARCH_LIMIT_MS);
+                TSPState exact = tspExactBranchAndBound(tspNodes, limit);
+                List<Node> et = exact == null ? null : exact.tour;
+                if (et != null && exact.timedOut) {
+                    exactTour = et;
+                    exactCost = tourCost(exactTour);
+                    logHighlight("TSP Branch-and-Bound stopped after " + EXACT_SEARCH_LIMIT_MS
+                            + " ms, best cost so far: " + String.format("%.2f", exactCost));
+                    log("Best Tour found: " + labelsOfNodes(exactTour));
+                } else if (et != null) {
                     exactTour = et;
                     exactCost = tourCost(exactTour);
                     logHighlight("TSP Exact (Branch-and-Bound) cost: " + String.format("%.2f", exactCost));
                     log("Exact Tour: " + labelsOfNodes(exactTour));
+                } else if (exact != null && exact.timedOut) {
+                    logHighlight("TSP Branch-and-Bound stopped after " + EXACT_SEARCH_LIMIT_MS
+                            + " ms before completing a tour.");
                 } else {
                     logHighlight("TSP Exact could not find a full tour (disconnected edges).");
                 }
@@ -4193,10 +4895,10 @@ public class Daa_smartCity extends JFrame {
             }
 
             if (exactTour != null && exactCost <= nnCost) {
-                currentPath = exactTour;
+                currentPath = roadsOfTour(exactTour);
                 log("Canvas path: Exact TSP tour.");
             } else if (nnTour != null) {
-                currentPath = nnTour;
+                currentPath = roadsOfTour(nnTour);
                 log("Canvas path: Heuristic TSP tour.");
             } else {
                 currentPath = null;
@@ -4221,20 +4923,28 @@ public class Daa_smartCity extends JFrame {
         return sb.toString();
     }
 
-    private double getEdgeWeight(Node a, Node b) {
-        for (Edge e : edges) {
-            if (isBlocked(e)) continue;
-            if (e.from == a && e.to == b) return e.weight;
-            if (!directedMode && e.from == b && e.to == a) return e.weight;
+    // Shortest-path distance between two stops; call ensureAllPairs() first
+    private double legCost(Node a, Node b) {
+        return a == b ? INF : apsp.distance(a, b);
+    }
+
+    // The tour with every leg unpacked into its roads, for drawing
+    private List<Node> roadsOfTour(List<Node> tour) {
+        List<Node> out = new ArrayList<Node>();
+        out.add(tour.get(0));
+        for (int i = 0; i + 1 < tour.size(); i++) {
+            List<Node> leg = apsp.path(tour.get(i), tour.get(i + 1));
+            if (leg == null) out.add(tour.get(i + 1));
+            else out.addAll(leg.subList(1, leg.size()));
         }
-        return INF;
+        return out;
     }
 
     private double tourCost(List<Node> tour) {
         if (tour == null || tour.size() < 2) return Double.POSITIVE_INFINITY;
         double cost = 0.0;
         for (int i = 0; i < tour.size() - 1; i++) {
-            double w = getEdgeWeight(tour.get(i), tour.get(i + 1));
+            double w = legCost(tour.get(i), tour.get(i + 1));
             if (w >= INF) return Double.POSITIVE_INFINITY;
             cost += w;
         }
@@ -4255,7 +4965,7 @@ public class Daa_smartCity extends JFrame {
             double best = INF;
             for (int j = 0; j < n; j++) {
                 if (!used[j]) {
-                    double w = getEdgeWeight(tspNodes.get(current), tspNodes.get(j));
+                    double w = legCost(tspNodes.get(current), tspNodes.get(j));
                     if (w < best) {
                         best = w;
                         next = j;
@@ -4272,14 +4982,15 @@ public class Daa_smartCity extends JFrame {
         return tour;
     }
 
-    private List<Node> tspExactBranchAndBound(List<Node> tspNodes) {
+    // Null if some stop cannot be entered or left; otherwise the search state with its best tour
+    private TSPState tspExactBranchAndBound(List<Node> tspNodes, Deadline deadline) {
         int n = tspNodes.size();
         double[][] cost = new double[n][n];
 
         for (int i = 0; i < n; i++) {
             for (int j = 0; j < n; j++) {
                 if (i == j) cost[i][j] = INF;
-                else cost[i][j] = getEdgeWeight(tspNodes.get(i), tspNodes.get(j));
+                else cost[i][j] = legCost(tspNodes.get(i), tspNodes.get(j));
             }
         }
 
@@ -4300,20 +5011,25 @@ public class Daa_smartCity extends JFrame {
         used[0] = true;
         path[0] = 0;
 
-        tspBBRec(0, 1, 0.0, used, path, state, cost, n);
+        tspBBRec(0, 1, 0.0, used, path, state, cost, n, deadline);
 
-        if (!state.found || state.bestCost >= INF) return null;
+        if (!state.found || state.bestCost >= INF) return state;
 
         List<Node> tour = new ArrayList<Node>();
         for (int i = 0; i < n; i++) tour.add(tspNodes.get(state.bestPath[i]));
         tour.add(tspNodes.get(state.bestPath[0]));
-        return tour;
+        state.tour = tour;
+        return state;
     }
 
     private void tspBBRec(int current, int level, double currentCost,
                           boolean[] used, int[] path,
-                          TSPState state, double[][] cost, int n) {
+                          TSPState state, double[][] cost, int n, Deadline deadline) {
         if (currentCost >= state.bestCost) return;
+        if (deadline.expired()) {
+            state.timedOut = true;
+            return;
+        }
 
         if (level == n) {
             double back = cost[current][path[0]];
@@ -4332,22 +5048,37 @@ public class Daa_smartCity extends JFrame {
                 used[next] = true;
                 path[level] = next;
                 tspBBRec(next, level + 1, currentCost + cost[current][next],
-                        used, path, state, cost, n);
+                        used, path, state, cost, n, deadline);
                 used[next] = false;
             }
         }
     }
 
-    private void visit(Node n, boolean anim) {
-        try {
-            n.color = Color.YELLOW;
-            canvas.repaint();
-            if (anim) Thread.sleep(150);
+    // Paints engine progress on the canvas; pauses only when animating
+    private RoutingEngine.Visualizer swingVisualizer(final RoutingEngine.Algorithm algo, final boolean anim) {
+        final boolean greedy = algo == RoutingEngine.Algorithm.GREEDY;
+        return new RoutingEngine.Visualizer() {
+            public void visit(Node n) {
+                flash(n, n, Color.YELLOW, new Color(0x4CAF50), anim ? 150 : 0, anim ? 80 : 0);
+            }
 
-            n.color = new Color(0x4CAF50);
-            canvas.repaint();
-            if (anim) Thread.sleep(80);
-        } catch (Exception ignored) {}
+            public void relax(Node from, Node to) {
+                if (!anim) return;
+                if (greedy) flash(from, to, Color.ORANGE, new Color(0xFF9800), 120, 80);
+                else flash(from, to, Color.YELLOW, new Color(0x4CAF50), 100, 60);
+            }
+        };
+    }
+
+    private void flash(Node a, Node b, Color on, Color off, int onMs, int offMs) {
+        a.color = on;
+        b.color = on;
+        canvas.repaint();
+        if (onMs > 0) sleep(onMs);
+        a.color = off;
+        b.color = off;
+        canvas.repaint();
+        if (offMs > 0) sleep(offMs);
     }
 
     private void sleep(int ms) {
@@ -4365,13 +5096,18 @@ public class Daa_smartCity extends JFrame {
         nodes.clear();
         edges.clear();
         first = hover = src = dst = null;
+        stopVehicle();
+        routeWatch.clear();
         currentPath = null;
+        alternativePaths = null;
+        isochrone = null;
         nodeId = 0;
 
         results.clear();
         tblModel.setRowCount(0);
         bfModel.setRowCount(0);
         bfModel.setColumnCount(0);
+        bfTable.setModel(bfModel);
 
         try {
             StyledDocument doc = logArea.getStyledDocument();
@@ -0,0 +1,45 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cooperative time limit for long searches. Search loops poll expired() and, once it is
+ * true, stop and return what they have so far with PathResult.timedOut set; nothing is
+ * interrupted. cancel() ends the deadline early, e.g. when the caller's future is cancelled.
+ */
+public final class Deadline {
+
+    /** Never expires and cannot be cancelled. */
+    public static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    private final long atNanos;          // System.nanoTime() value; MAX_VALUE for no limit
+    private volatile boolean cancelled;
+
+    private Deadline(long atNanos) {
+        this.atNanos = atNanos;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis)));
+    }
+
+    /** after(millis), or a deadline that only cancel() ends when millis <= 0. */
+    public static Deadline afterOrNone(long millis) {
+        return millis > 0 ? after(millis) : new Deadline(Long.MAX_VALUE);
+    }
+
+    public void cancel() {
+        if (this != NONE) cancelled = true;
+    }
+
+    public boolean isCancelled() { return cancelled; }
+
+    public boolean expired() {
+        return cancelled || (atNanos != Long.MAX_VALUE && System.nanoTime() - atNanos >= 0);
+    }
+
+    /** Nanoseconds left; Long.MAX_VALUE without a limit, 0 once expired. */
+    public long remainingNanos() {
+        if (cancelled) return 0;
+        if (atNanos == Long.MAX_VALUE) return Long.MAX_VALUE;
+        return Math.max(0, atNanos - System.nanoTime());
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Headless benchmark for DeltaSteppingSSSP: random grid road network, one-to-all from
+ * a corner, sweeping bucket width (as a multiple of the mean weight) and thread count.
+ * Every run is checked against a sequential binary-heap Dijkstra.
+ *
+ * Usage: java DeltaSteppingBenchmark [gridSide=300] [repeats=5]
+ */
+public class DeltaSteppingBenchmark {
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        GraphSnapshot g = randomGrid(side, new Random(42));
+        double mean = 0;
+        for (double w : g.weights) mean += w;
+        mean /= Math.max(1, g.arcCount());
+
+        System.out.println("Grid " + side + "x" + side + ": V=" + g.size() + ", arcs=" + g.arcCount()
+                + String.format(", mean w=%.2f", mean));
+
+        double[] reference = dijkstra(g, 0);
+        double base = time(repeats, () -> dijkstra(g, 0));
+        System.out.println(String.format("Sequential Dijkstra: %.2f ms", base));
+
+        double[] deltaFactors = {0.25, 0.5, 1, 2, 4, 8};
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> threads = new ArrayList<>();
+        for (int t = 1; t < cores; t *= 2) threads.add(t);
+        threads.add(cores);
+
+        StringBuilder header = new StringBuilder(String.format("%-10s", "delta\\thr"));
+        for (int t : threads) header.append(String.format("%10d", t));
+        System.out.println(header);
+
+        for (double f : deltaFactors) {
+            StringBuilder row = new StringBuilder(String.format("%-10s", f + "x"));
+            for (int t : threads) {
+                ForkJoinPool pool = new ForkJoinPool(t);
+                DeltaSteppingSSSP ds = new DeltaSteppingSSSP(pool, f * mean);
+
+                double[] d = ds.distances(g, 0);
+                verify(reference, d);
+
+                double ms = time(repeats, () -> ds.distances(g, 0));
+                row.append(String.format("%10.2f", ms));
+                pool.shutdown();
+            }
+            System.out.println(row);
+        }
+        System.out.println("(ms per one-to-all query, best of " + repeats + ")");
+    }
+
+    private static GraphSnapshot randomGrid(int side, Random rnd) {
+        List<Daa_smartCity.Node> nodes = new ArrayList<>();
+        List<Daa_smartCity.Edge> edges = new ArrayList<>();
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) nodes.add(new Daa_smartCity.Node(x * 10, y * 10, "N" + (y * side + x)));
+        }
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                int i = y * side + x;
+                if (x + 1 < side) edges.add(new Daa_smartCity.Edge(nodes.get(i), nodes.get(i + 1), 1 + rnd.nextInt(25)));
+                if (y + 1 < side) edges.add(new Daa_smartCity.Edge(nodes.get(i), nodes.get(i + side), 1 + rnd.nextInt(25)));
+            }
+        }
+        return GraphSnapshot.of(nodes, edges, false);
+    }
+
+    private static double time(int repeats, Runnable r) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < repeats; i++) {
+            long t0 = System.nanoTime();
+            r.run();
+            best = Math.min(best, (System.nanoTime() - t0) / 1e6);
+        }
+        return best;
+    }
+
+    private static void verify(double[] expected, double[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            if (Math.abs(expected[i] - actual[i]) > 1e-6) {
+                throw new IllegalStateException("Mismatch at node " + i + ": " + expected[i] + " vs " + actual[i]);
+            }
+        }
+    }
+
+    private static double[] dijkstra(GraphSnapshot g, int s) {
+        double[] dist = new double[g.size()];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        dist[s] = 0;
+        PriorityQueue<double[]> pq = new PriorityQueue<>(Comparator.comparingDouble(a -> a[0]));
+        pq.add(new double[]{0, s});
+        while (!pq.isEmpty()) {
+            double[] top = pq.poll();
+            int u = (int) top[1];
+            if (top[0] > dist[u]) continue;
+            for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                double nd = dist[u] + g.weights[a];
+                if (nd < dist[g.targets[a]]) {
+                    dist[g.targets[a]] = nd;
+                    pq.add(new double[]{nd, g.targets[a]});
+                }
+            }
+        }
+        return dist;
+    }
+}
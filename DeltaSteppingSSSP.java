@@ -0,0 +1,320 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parallel single-source shortest paths (Meyer & Sanders delta-stepping).
+ * Nodes are kept in buckets of width delta; light arcs (w <= delta) are relaxed
+ * repeatedly while a bucket is open, heavy arcs once when it closes. Relaxations
+ * of one phase run in parallel on a ForkJoinPool with a CAS-min on the distance.
+ * Requires non-negative weights.
+ */
+public class DeltaSteppingSSSP {
+
+    private static final int SEQUENTIAL_CUTOFF = 256;
+
+    private final ForkJoinPool pool;
+    private final double requestedDelta;
+    private double delta;
+
+    // ======= Per-run state =======
+    private GraphSnapshot g;
+    private int[] lightEnd;          // arcs [offsets[u], lightEnd[u]) are light, the rest heavy
+    private int[] arcOrder;          // arc ids of g, light first per node
+    private AtomicLongArray dist;    // double bits, updated with CAS-min
+    private final LongAdder relaxations = new LongAdder();
+    private boolean timedOut;
+
+    /** @param delta bucket width; <= 0 picks the mean arc weight */
+    public DeltaSteppingSSSP(ForkJoinPool pool, double delta) {
+        this.pool = pool;
+        this.requestedDelta = delta;
+    }
+
+    public DeltaSteppingSSSP() {
+        this(ForkJoinPool.commonPool(), 0);
+    }
+
+    public long lastRelaxations() { return relaxations.sum(); }
+
+    /** Whether the last run stopped at its deadline (its distances are then upper bounds). */
+    public boolean lastTimedOut() { return timedOut; }
+
+    public double lastDelta() { return delta; }
+
+    // ======= Same contract as the other engines =======
+    public Daa_smartCity.PathResult shortestPath(Daa_smartCity.Node start,
+                                                 Daa_smartCity.Node goal,
+                                                 List<Daa_smartCity.Node> nodes,
+                                                 List<Daa_smartCity.Edge> edges,
+                                                 boolean directed) {
+        return shortestPath(start, goal, nodes, edges, directed, null);
+    }
+
+    /** As above, but runs on reduced costs when potentials are given (negative weights). */
+    public Daa_smartCity.PathResult shortestPath(Daa_smartCity.Node start,
+                                                 Daa_smartCity.Node goal,
+                                                 List<Daa_smartCity.Node> nodes,
+                                                 List<Daa_smartCity.Edge> edges,
+                                                 boolean directed,
+                                                 JohnsonPotentials pot) {
+        return shortestPath(GraphSnapshot.of(nodes, edges, directed), start, goal, pot);
+    }
+
+    /** As above, on an already built snapshot. */
+    public Daa_smartCity.PathResult shortestPath(GraphSnapshot snap,
+                                                 Daa_smartCity.Node start,
+                                                 Daa_smartCity.Node goal,
+                                                 JohnsonPotentials pot) {
+        return shortestPath(snap, start, goal, pot, Deadline.NONE);
+    }
+
+    /** As above; past the deadline the result reports timedOut and no path. */
+    public Daa_smartCity.PathResult shortestPath(GraphSnapshot snap,
+                                                 Daa_smartCity.Node start,
+                                                 Daa_smartCity.Node goal,
+                                                 JohnsonPotentials pot,
+                                                 Deadline deadline) {
+        if (pot != null) snap = snap.reweighted(pot.forSnapshot(snap));
+        int s = snap.indexOf(start);
+        int t = snap.indexOf(goal);
+
+        double[] d = distances(snap, s, deadline);
+        if (timedOut || t < 0 || d[t] == Double.POSITIVE_INFINITY) {
+            Daa_smartCity.PathResult res = new Daa_smartCity.PathResult(false, null, (int) lastRelaxations(),
+                    false, null, Double.POSITIVE_INFINITY);
+            res.timedOut = timedOut;
+            return res;
+        }
+
+        int[] parent = parents(snap, s, d);
+        List<Daa_smartCity.Node> path = snap.toPath(parent, s, t);
+        double cost = (pot == null) ? d[t] : pot.restore(d[t], start, goal);
+        return new Daa_smartCity.PathResult(path != null, path, (int) lastRelaxations(), false, null, cost);
+    }
+
+    /** One-to-all distances from source (index into snap). */
+    public double[] distances(GraphSnapshot snap, int source) {
+        return distances(snap, source, Deadline.NONE);
+    }
+
+    /** As above, giving up after the bucket in progress when the deadline passes. */
+    public double[] distances(GraphSnapshot snap, int source, Deadline deadline) {
+        if (snap.hasNegativeWeights()) {
+            throw new IllegalArgumentException("Delta-stepping requires non-negative weights");
+        }
+
+        this.g = snap;
+        int n = snap.size();
+        relaxations.reset();
+        timedOut = false;
+        splitLightHeavy();
+
+        dist = new AtomicLongArray(n);
+        long inf = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+        for (int i = 0; i < n; i++) dist.set(i, inf);
+        if (source < 0 || source >= n) return toArray();
+
+        dist.set(source, Double.doubleToRawLongBits(0.0));
+
+        List<IntBuf> buckets = new ArrayList<>();
+        bucketAdd(buckets, 0, source);
+
+        boolean[] inR = new boolean[n];
+        int[] seenInPhase = new int[n];
+        int phase = 0;
+        for (int i = 0; i < buckets.size(); i++) {
+            if (buckets.get(i) == null) continue;
+            if (deadline.expired()) {
+                timedOut = true;
+                break;
+            }
+            IntBuf settledHere = new IntBuf();
+
+            while (buckets.get(i) != null) {
+                IntBuf raw = buckets.get(i);
+                buckets.set(i, null);
+
+                // Drop stale entries (node already moved to a lower bucket) and duplicates
+                IntBuf frontier = new IntBuf();
+                phase++;
+                for (int k = 0; k < raw.size; k++) {
+                    int u = raw.data[k];
+                    if (seenInPhase[u] == phase || bucketOf(get(u)) != i) continue;
+                    seenInPhase[u] = phase;
+                    frontier.add(u);
+                    if (!inR[u]) {
+                        inR[u] = true;
+                        settledHere.add(u);
+                    }
+                }
+                if (frontier.size == 0) break;
+
+                IntBuf improved = relax(frontier, true);
+                distribute(buckets, improved);
+            }
+
+            IntBuf improved = relax(settledHere, false);
+            distribute(buckets, improved);
+
+            for (int k = 0; k < settledHere.size; k++) inR[settledHere.data[k]] = false;
+        }
+        return toArray();
+    }
+
+    /** Tight-arc BFS from the source; gives a proper tree even with zero-weight cycles. */
+    public int[] parents(GraphSnapshot snap, int source, double[] d) {
+        int n = snap.size();
+        int[] parent = new int[n];
+        Arrays.fill(parent, -1);
+        if (source < 0) return parent;
+
+        boolean[] seen = new boolean[n];
+        ArrayDeque<Integer> q = new ArrayDeque<>();
+        q.add(source);
+        seen[source] = true;
+        while (!q.isEmpty()) {
+            int u = q.poll();
+            for (int a = snap.offsets[u]; a < snap.offsets[u + 1]; a++) {
+                int v = snap.targets[a];
+                if (seen[v]) continue;
+                if (Math.abs(d[u] + snap.weights[a] - d[v]) <= 1e-9 * Math.max(1.0, Math.abs(d[v]))) {
+                    seen[v] = true;
+                    parent[v] = u;
+                    q.add(v);
+                }
+            }
+        }
+        return parent;
+    }
+
+    // ======= Internals =======
+
+    private void splitLightHeavy() {
+        int n = g.size();
+        delta = requestedDelta;
+        if (delta <= 0) {
+            double sum = 0;
+            for (double w : g.weights) sum += w;
+            delta = g.arcCount() == 0 ? 1.0 : Math.max(1e-9, sum / g.arcCount());
+        }
+
+        lightEnd = new int[n];
+        arcOrder = new int[g.arcCount()];
+        for (int u = 0; u < n; u++) {
+            int lo = g.offsets[u];
+            int hi = g.offsets[u + 1];
+            int k = lo;
+            for (int a = lo; a < hi; a++) if (g.weights[a] <= delta) arcOrder[k++] = a;
+            lightEnd[u] = k;
+            for (int a = lo; a < hi; a++) if (g.weights[a] > delta) arcOrder[k++] = a;
+        }
+    }
+
+    private double get(int u) {
+        return Double.longBitsToDouble(dist.get(u));
+    }
+
+    private int bucketOf(double d) {
+        if (d == Double.POSITIVE_INFINITY) return -1;
+        return (int) Math.min(Integer.MAX_VALUE - 1, Math.floor(d / delta));
+    }
+
+    private void bucketAdd(List<IntBuf> buckets, int b, int u) {
+        while (buckets.size() <= b) buckets.add(null);
+        if (buckets.get(b) == null) buckets.set(b, new IntBuf());
+        buckets.get(b).add(u);
+    }
+
+    private void distribute(List<IntBuf> buckets, IntBuf improved) {
+        for (int k = 0; k < improved.size; k++) {
+            int v = improved.data[k];
+            bucketAdd(buckets, bucketOf(get(v)), v);
+        }
+    }
+
+    private IntBuf relax(IntBuf frontier, boolean light) {
+        if (frontier.size == 0) return new IntBuf();
+        if (frontier.size <= SEQUENTIAL_CUTOFF || pool.getParallelism() <= 1) {
+            return relaxRange(frontier, 0, frontier.size, light);
+        }
+        return pool.invoke(new RelaxTask(frontier, 0, frontier.size, light));
+    }
+
+    private IntBuf relaxRange(IntBuf frontier, int from, int to, boolean light) {
+        IntBuf improved = new IntBuf();
+        long count = 0;
+        for (int k = from; k < to; k++) {
+            int u = frontier.data[k];
+            double du = get(u);
+            int lo = light ? g.offsets[u] : lightEnd[u];
+            int hi = light ? lightEnd[u] : g.offsets[u + 1];
+            for (int i = lo; i < hi; i++) {
+                int a = arcOrder[i];
+                count++;
+                if (casMin(g.targets[a], du + g.weights[a])) improved.add(g.targets[a]);
+            }
+        }
+        relaxations.add(count);
+        return improved;
+    }
+
+    private boolean casMin(int v, double nd) {
+        long nb = Double.doubleToRawLongBits(nd);
+        while (true) {
+            long cur = dist.get(v);
+            if (nd >= Double.longBitsToDouble(cur)) return false;
+            if (dist.compareAndSet(v, cur, nb)) return true;
+        }
+    }
+
+    private double[] toArray() {
+        double[] out = new double[dist.length()];
+        for (int i = 0; i < out.length; i++) out[i] = get(i);
+        return out;
+    }
+
+    private class RelaxTask extends RecursiveTask<IntBuf> {
+        final IntBuf frontier;
+        final int from, to;
+        final boolean light;
+
+        RelaxTask(IntBuf frontier, int from, int to, boolean light) {
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.light = light;
+        }
+
+        @Override
+        protected IntBuf compute() {
+            if (to - from <= SEQUENTIAL_CUTOFF) return relaxRange(frontier, from, to, light);
+            int mid = (from + to) >>> 1;
+            RelaxTask left = new RelaxTask(frontier, from, mid, light);
+            left.fork();
+            IntBuf right = new RelaxTask(frontier, mid, to, light).compute();
+            IntBuf l = left.join();
+            l.addAll(right);
+            return l;
+        }
+    }
+
+    // Growable int list (avoids boxing in the hot loops)
+    static final class IntBuf {
+        int[] data = new int[16];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        void addAll(IntBuf o) {
+            if (size + o.size > data.length) data = Arrays.copyOf(data, Math.max(size + o.size, size * 2));
+            System.arraycopy(o.data, 0, data, size, o.size);
+            size += o.size;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe pool of equally sized direct ByteBuffers, so the network path neither allocates
+ * per message nor copies through a heap array on the way to the socket. Anything larger than
+ * a slab gets a one-off buffer that is simply dropped on release.
+ */
+public final class DirectBufferPool {
+
+    private final int slabSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    public DirectBufferPool(int slabSize, int maxPooled) {
+        this.slabSize = slabSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public int slabSize() { return slabSize; }
+
+    /** Slabs allocated so far (pooled or in use); one-off buffers are not counted. */
+    public int allocated() { return allocated.get(); }
+
+    /** A cleared buffer with at least minCapacity bytes. */
+    public ByteBuffer acquire(int minCapacity) {
+        if (minCapacity > slabSize) return ByteBuffer.allocateDirect(minCapacity);
+        ByteBuffer b = free.poll();
+        if (b == null) {
+            allocated.incrementAndGet();
+            return ByteBuffer.allocateDirect(slabSize);
+        }
+        pooled.decrementAndGet();
+        b.clear();
+        return b;
+    }
+
+    /** Returns a buffer from acquire(); it must not be used afterwards. */
+    public void release(ByteBuffer b) {
+        if (b == null || b.capacity() != slabSize || !b.isDirect()) return;
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            allocated.decrementAndGet();
+            return;
+        }
+        free.offer(b);
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.*;
+
+/**
+ * Compact per-iteration distance trace for Bellman-Ford style algorithms.
+ *
+ * Instead of a full Map copy per iteration, only (node, newDist) deltas are logged in
+ * primitive arrays, grouped by iteration. A full row is checkpointed every
+ * CHECKPOINT_EVERY iterations so any row can be rebuilt by replaying at most that many
+ * iterations of deltas. Memory is O(changes + V * iterations / CHECKPOINT_EVERY).
+ */
+public class DistanceHistory {
+
+    private static final int CHECKPOINT_EVERY = 32;
+
+    private final Daa_smartCity.Node[] nodes;
+    private final Map<Daa_smartCity.Node, Integer> index = new IdentityHashMap<>();
+
+    // Deltas: entries [iterStart[i], iterStart[i + 1]) belong to iteration i
+    private int[] deltaNode = new int[64];
+    private double[] deltaDist = new double[64];
+    private int deltaCount = 0;
+    private int[] iterStart = new int[16];
+    private int iterations = 1;
+
+    // Slot of a node's delta in the open iteration, so repeated writes overwrite
+    private final int[] openSlot;
+
+    private final double[] current;
+    private final List<double[]> checkpoints = new ArrayList<>();
+
+    public DistanceHistory(List<Daa_smartCity.Node> nodeList) {
+        nodes = nodeList.toArray(new Daa_smartCity.Node[0]);
+        for (int i = 0; i < nodes.length; i++) index.put(nodes[i], i);
+
+        current = new double[nodes.length];
+        Arrays.fill(current, Double.POSITIVE_INFINITY);
+        openSlot = new int[nodes.length];
+        Arrays.fill(openSlot, -1);
+        checkpoints.add(current.clone());
+    }
+
+    /** Logs a new distance for n in the current (open) iteration. */
+    public void record(Daa_smartCity.Node n, double dist) {
+        Integer j = index.get(n);
+        if (j == null) return;
+        current[j] = dist;
+
+        int slot = openSlot[j];
+        if (slot >= 0) {
+            deltaDist[slot] = dist;
+            return;
+        }
+        if (deltaCount == deltaNode.length) {
+            deltaNode = Arrays.copyOf(deltaNode, deltaCount * 2);
+            deltaDist = Arrays.copyOf(deltaDist, deltaCount * 2);
+        }
+        deltaNode[deltaCount] = j;
+        deltaDist[deltaCount] = dist;
+        openSlot[j] = deltaCount++;
+    }
+
+    /** Closes the current iteration and opens the next one. */
+    public void nextIteration() {
+        for (int k = iterStart[iterations - 1]; k < deltaCount; k++) openSlot[deltaNode[k]] = -1;
+
+        if (iterations == iterStart.length) iterStart = Arrays.copyOf(iterStart, iterations * 2);
+        iterStart[iterations] = deltaCount;
+        iterations++;
+
+        // Every CHECKPOINT_EVERY iterations, snapshot the state before the newly opened one
+        if ((iterations - 1) % CHECKPOINT_EVERY == 0) checkpoints.add(current.clone());
+    }
+
+    public int iterations() { return iterations; }
+
+    public int nodeCount() { return nodes.length; }
+
+    public Daa_smartCity.Node node(int j) { return nodes[j]; }
+
+    public int deltaCount() { return deltaCount; }
+
+    /**
+     * Distances after 'iter' iterations. Row i includes every delta of iterations 0..i.
+     * The checkpoint for row c*K is the state *before* iteration c*K's deltas.
+     */
+    public double[] row(int iter) {
+        int c = Math.min(iter / CHECKPOINT_EVERY, checkpoints.size() - 1);
+        double[] r = checkpoints.get(c).clone();
+        replay(r, c * CHECKPOINT_EVERY, iter);
+        return r;
+    }
+
+    /** Advances a row for iteration 'from - 1' to iteration 'to' in place. */
+    public void replay(double[] r, int from, int to) {
+        for (int i = from; i <= to && i < iterations; i++) {
+            int end = (i + 1 < iterations) ? iterStart[i + 1] : deltaCount;
+            for (int k = iterStart[i]; k < end; k++) r[deltaNode[k]] = deltaDist[k];
+        }
+    }
+}
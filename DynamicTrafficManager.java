@@ -1,4 +1,15 @@
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 public class DynamicTrafficManager {
 
@@ -17,18 +28,129 @@ public class DynamicTrafficManager {
         }
     }
 
+    // Notified after every traffic batch (engines that maintain state incrementally)
+    public interface TrafficListener {
+        void onTrafficChange(int version, List<EdgeChange> changes);
+    }
+
+    private final List<TrafficListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Concurrent so queries may read and fill it in parallel; traffic batches must still be
+    // applied exclusively (they mutate edge weights in place). Entries keep only a CompactPath.
     private final Map<Daa_smartCity.Node,
-            Map<Daa_smartCity.Node, Daa_smartCity.PathResult>> dpCache = new HashMap<>();
+            Map<Daa_smartCity.Node, Daa_smartCity.PathResult>> dpCache = new ConcurrentHashMap<>();
+
+    // One id space for every cached path, so entries never hold a snapshot's node array
+    private final CompactPath.NodeTable nodeTable = new CompactPath.NodeTable();
 
-    private int trafficVersion = 0;
-    private int lastFullRecomputeVersion = -1;
+    private volatile int trafficVersion = 0;
+    private volatile int lastFullRecomputeVersion = -1;
 
-    private List<EdgeChange> lastChanges = new ArrayList<>();
+    private volatile List<EdgeChange> lastChanges = new ArrayList<>();
 
     private double fullRecomputeThreshold = 0.35;
 
+    // Dijkstra / A* for recomputeShortestPath
+    private final RoutingEngine engine = new RoutingEngine();
+
+    // Single-flight: identical concurrent misses wait on the search already running
+    private final Map<FlightKey, CompletableFuture<Daa_smartCity.PathResult>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    private static final class FlightKey {
+        final Daa_smartCity.Node src, dst;
+        final int version;
+        final boolean directed;
+
+        FlightKey(Daa_smartCity.Node src, Daa_smartCity.Node dst, int version, boolean directed) {
+            this.src = src;
+            this.dst = dst;
+            this.version = version;
+            this.directed = directed;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FlightKey)) return false;
+            FlightKey k = (FlightKey) o;
+            return src == k.src && dst == k.dst && version == k.version && directed == k.directed;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = System.identityHashCode(src) * 31 + System.identityHashCode(dst);
+            return (h * 31 + version) * 2 + (directed ? 1 : 0);
+        }
+    }
+
+    // Johnson potentials, kept in step with every traffic batch
+    private final JohnsonPotentials potentials = new JohnsonPotentials();
+
+    // D* Lite session per vehicle en route, plus the traffic it has not seen yet
+    private final Map<String, DStarLite> vehicles = new HashMap<>();
+    private final Map<String, List<EdgeChange>> unseenChanges = new HashMap<>();
+
     public void clearCache() { dpCache.clear(); }
 
+    public int getTrafficVersion() { return trafficVersion; }
+
+    /** Searches recomputeShortestPath actually ran. */
+    public long searchCount() { return searches.sum(); }
+
+    /** Queries that shared another caller's in-flight search instead of running their own. */
+    public long coalescedCount() { return coalesced.sum(); }
+
+    public void addTrafficListener(TrafficListener l) { listeners.add(l); }
+
+    public void removeTrafficListener(TrafficListener l) { listeners.remove(l); }
+
+    /** Starts (or restarts) tracking a vehicle at start heading to goal. */
+    public DStarLite startVehicle(String id,
+                                  Daa_smartCity.Node start,
+                                  Daa_smartCity.Node goal,
+                                  List<Daa_smartCity.Node> nodes,
+                                  List<Daa_smartCity.Edge> edges,
+                                  boolean directedMode) {
+        DStarLite session = new DStarLite(start, goal, nodes, edges, directedMode);
+        vehicles.put(id, session);
+        unseenChanges.put(id, new ArrayList<>());
+        return session;
+    }
+
+    public boolean hasVehicle(String id) { return vehicles.containsKey(id); }
+
+    public DStarLite vehicle(String id) { return vehicles.get(id); }
+
+    public void endVehicle(String id) {
+        vehicles.remove(id);
+        unseenChanges.remove(id);
+    }
+
+    /**
+     * Route from the vehicle's current node to its goal, repairing its D* Lite search with
+     * the traffic batches since its last replan. Null if the vehicle is unknown. Negative
+     * weights end the session and fall back to recomputeShortestPath.
+     */
+    public Daa_smartCity.PathResult replanVehicle(String id,
+                                                  Daa_smartCity.Node current,
+                                                  List<Daa_smartCity.Node> nodes,
+                                                  List<Daa_smartCity.Edge> edges,
+                                                  boolean directedMode) {
+        DStarLite session = vehicles.get(id);
+        if (session == null) return null;
+        if (session.directed() != directedMode) {
+            session = startVehicle(id, current, session.goal(), nodes, edges, directedMode);
+        }
+        List<EdgeChange> unseen = unseenChanges.put(id, new ArrayList<>());
+        try {
+            return session.replan(current, unseen);
+        } catch (IllegalArgumentException ex) {
+            endVehicle(id);
+            return recomputeShortestPath(current, session.goal(), nodes, edges, directedMode);
+        }
+    }
+
     public Daa_smartCity.PathResult getCached(Daa_smartCity.Node src,
                                              Daa_smartCity.Node dst) {
         Map<Daa_smartCity.Node, Daa_smartCity.PathResult> inner = dpCache.get(src);
@@ -37,8 +159,13 @@ public class DynamicTrafficManager {
     }
 
     private void putCache(Daa_smartCity.Node src, Daa_smartCity.Node dst,
-                          Daa_smartCity.PathResult res) {
-        dpCache.computeIfAbsent(src, k -> new HashMap<>()).put(dst, res);
+                          Daa_smartCity.PathResult res, GraphSnapshot snap) {
+        if (res.path == null) return;
+        CompactPath route = CompactPath.of(nodeTable, snap, res.path);
+        if (route == null) return;
+        Daa_smartCity.PathResult entry = new Daa_smartCity.PathResult(true, null, res.steps, false, null, res.totalCost);
+        entry.compactPath = route;
+        dpCache.computeIfAbsent(src, k -> new ConcurrentHashMap<>()).put(dst, entry);
     }
 
     // ✅ Improved cache invalidation: invalidate ONLY cached paths that actually use changed edges
@@ -47,10 +174,11 @@ public class DynamicTrafficManager {
 
         Set<Long> changed = new HashSet<>();
         for (EdgeChange ch : changes) {
-            int u = System.identityHashCode(ch.edge.from);
-            int v = System.identityHashCode(ch.edge.to);
-            changed.add(pack(u, v));
+            int u = nodeTable.idOf(ch.edge.from);
+            int v = nodeTable.idOf(ch.edge.to);
+            if (u >= 0 && v >= 0) changed.add(pack(u, v));   // otherwise no cached path touches it
         }
+        if (changed.isEmpty()) return;
 
         for (Daa_smartCity.Node src : new ArrayList<>(dpCache.keySet())) {
             Map<Daa_smartCity.Node, Daa_smartCity.PathResult> inner = dpCache.get(src);
@@ -58,22 +186,21 @@ public class DynamicTrafficManager {
 
             for (Daa_smartCity.Node dst : new ArrayList<>(inner.keySet())) {
                 Daa_smartCity.PathResult pr = inner.get(dst);
-                if (pr == null || pr.path == null || pr.path.size() < 2) {
+                if (pr == null || pr.compactPath == null || pr.compactPath.size() < 2) {
                     inner.remove(dst);
                     continue;
                 }
-                if (pathUsesChangedEdge(pr.path, changed)) inner.remove(dst);
+                if (pathUsesChangedEdge(pr.compactPath, changed)) inner.remove(dst);
             }
 
             if (inner.isEmpty()) dpCache.remove(src);
         }
     }
 
-    private boolean pathUsesChangedEdge(List<Daa_smartCity.Node> path, Set<Long> changed) {
-        for (int i = 0; i < path.size() - 1; i++) {
-            int u = System.identityHashCode(path.get(i));
-            int v = System.identityHashCode(path.get(i + 1));
-            if (changed.contains(pack(u, v))) return true;
+    private boolean pathUsesChangedEdge(CompactPath path, Set<Long> changed) {
+        int[] ids = path.ids();
+        for (int i = 0; i < ids.length - 1; i++) {
+            if (changed.contains(pack(ids[i], ids[i + 1]))) return true;
         }
         return false;
     }
@@ -85,7 +212,27 @@ public class DynamicTrafficManager {
     private void registerTrafficChange(List<EdgeChange> changes) {
         this.trafficVersion++;
         this.lastChanges = changes;
+        potentials.onChanges(changes);
         invalidateCacheForChanges(changes);
+        for (List<EdgeChange> unseen : unseenChanges.values()) unseen.addAll(changes);
+        for (TrafficListener l : listeners) l.onTrafficChange(trafficVersion, changes);
+    }
+
+    /**
+     * Potentials valid for the current graph, or null if a negative cycle makes
+     * reweighting impossible. Cheap when nothing changed since the last call.
+     */
+    public JohnsonPotentials potentialsFor(List<Daa_smartCity.Node> nodes,
+                                           List<Daa_smartCity.Edge> edges,
+                                           boolean directedMode) {
+        return potentials.ensure(nodes, edges, directedMode) ? potentials : null;
+    }
+
+    private boolean hasNegativeWeights(List<Daa_smartCity.Edge> edges) {
+        for (Daa_smartCity.Edge e : edges) {
+            if (e.weight < BLOCKED_THRESHOLD && e.weight < 0) return true;
+        }
+        return false;
     }
 
    public List<EdgeChange> applyRandomTraffic(
@@ -204,6 +351,23 @@ public class DynamicTrafficManager {
         return result;
     }
 
+    /** Sets the given roads to explicit weights (e.g. from a live feed) as one batch. */
+    public List<EdgeChange> applyWeights(Map<Daa_smartCity.Edge, Double> weights) {
+        if (weights == null || weights.isEmpty()) return List.of();
+
+        List<EdgeChange> result = new ArrayList<>();
+        for (Map.Entry<Daa_smartCity.Edge, Double> en : weights.entrySet()) {
+            Daa_smartCity.Edge e = en.getKey();
+            double oldW = e.weight;
+            double newW = en.getValue();
+            if (Double.compare(oldW, newW) == 0) continue;
+            e.weight = newW;
+            result.add(new EdgeChange(e, oldW, newW));
+        }
+        registerTrafficChange(result);
+        return result;
+    }
+
     public List<EdgeChange> applyPeriodicRandomTraffic(List<Daa_smartCity.Edge> edges,
                                                        Random rng) {
         if (edges == null || edges.isEmpty()) return List.of();
@@ -218,175 +382,211 @@ public class DynamicTrafficManager {
             List<Daa_smartCity.Edge> edges,
             boolean directedMode
     ) {
-        if (src == null || dst == null) return null;
-
-        Daa_smartCity.PathResult cached = getCached(src, dst);
-        if (cached != null && cached.found && !cached.hasNegativeCycle) return cached;
-
-        boolean fullRecompute = shouldFullRecompute(edges.size(), lastChanges.size());
-
-        Daa_smartCity.PathResult res;
-        if (fullRecompute) {
-            res = runDijkstra(src, dst, nodes, edges, directedMode);
-            lastFullRecomputeVersion = trafficVersion;
-        } else {
-            res = runAStar(src, dst, nodes, edges, directedMode);
-        }
-
-        if (res != null && res.found) putCache(src, dst, res);
-        return res;
+        return recomputeShortestPath(src, dst, nodes, edges, directedMode, null);
     }
 
-    private boolean shouldFullRecompute(int totalEdges, int changedEdges) {
-        if (totalEdges == 0) return false;
-        if (lastFullRecomputeVersion < 0) return true;
-
-        double fraction = (double) changedEdges / (double) totalEdges;
-        return fraction >= fullRecomputeThreshold;
+    /**
+     * As above; snap, if given, must reflect the current weights (callers that rebuild a
+     * snapshot after every batch pass it in to skip the per-query build). Concurrent calls
+     * for the same (src, dst) at the same traffic version share one search.
+     */
+    public Daa_smartCity.PathResult recomputeShortestPath(
+            Daa_smartCity.Node src,
+            Daa_smartCity.Node dst,
+            List<Daa_smartCity.Node> nodes,
+            List<Daa_smartCity.Edge> edges,
+            boolean directedMode,
+            GraphSnapshot snap
+    ) {
+        return recomputeShortestPath(src, dst, nodes, edges, directedMode, snap, Deadline.NONE);
     }
 
-    private Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> buildGraph(
+    /**
+     * As above, giving up at the deadline with a timedOut result (the best route found so
+     * far, if any), which is not cached. A caller that joined a search whose own deadline
+     * ran out first searches again with the time it has left.
+     */
+    public Daa_smartCity.PathResult recomputeShortestPath(
+            Daa_smartCity.Node src,
+            Daa_smartCity.Node dst,
             List<Daa_smartCity.Node> nodes,
             List<Daa_smartCity.Edge> edges,
-            boolean directed
+            boolean directedMode,
+            GraphSnapshot snap,
+            Deadline deadline
     ) {
-        Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> g = new HashMap<>();
-        for (Daa_smartCity.Node n : nodes) g.put(n, new ArrayList<>());
+        if (src == null || dst == null) return null;
 
-        for (Daa_smartCity.Edge e : edges) {
-            if (e.weight >= BLOCKED_THRESHOLD) continue;
-            g.get(e.from).add(e);
-            if (!directed) g.get(e.to).add(new Daa_smartCity.Edge(e.to, e.from, e.weight));
+        Daa_smartCity.PathResult cached = getCached(src, dst);
+        if (cached != null && cached.found && !cached.hasNegativeCycle) return cached;
+
+        FlightKey key = new FlightKey(src, dst, trafficVersion, directedMode);
+        CompletableFuture<Daa_smartCity.PathResult> mine = new CompletableFuture<>();
+        CompletableFuture<Daa_smartCity.PathResult> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            Daa_smartCity.PathResult shared = await(running, deadline);
+            if (shared != null && !shared.timedOut) return shared;
+            if (deadline.expired()) return shared != null ? shared : RoutingEngine.timedOut(0);
+            return search(src, dst, nodes, edges, directedMode, snap, deadline);
+        }
+        try {
+            // The previous leader may have finished between the cache miss and putIfAbsent
+            cached = getCached(src, dst);
+            Daa_smartCity.PathResult res = (cached != null && cached.found && !cached.hasNegativeCycle)
+                    ? cached
+                    : search(src, dst, nodes, edges, directedMode, snap, deadline);
+            mine.complete(res);
+            return res;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, mine);     // after putCache, so late arrivals hit the cache
         }
-        return g;
     }
 
-    private double heuristic(Daa_smartCity.Node a, Daa_smartCity.Node b) {
-        return Math.hypot(a.x - b.x, a.y - b.y);
+    // The leader's result, or null if our deadline passes first (polled so cancel() is seen)
+    private static Daa_smartCity.PathResult await(CompletableFuture<Daa_smartCity.PathResult> running,
+                                                  Deadline deadline) {
+        try {
+            if (deadline == Deadline.NONE) return running.join();
+            while (!deadline.expired()) {
+                long slice = Math.min(deadline.remainingNanos(), TimeUnit.MILLISECONDS.toNanos(20));
+                try {
+                    return running.get(slice, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException ignored) {
+                    // poll the deadline again
+                }
+            }
+            return null;
+        } catch (CompletionException | ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
     }
 
-    private Daa_smartCity.PathResult runDijkstra(
-            Daa_smartCity.Node start,
-            Daa_smartCity.Node goal,
+    private Daa_smartCity.PathResult search(
+            Daa_smartCity.Node src,
+            Daa_smartCity.Node dst,
             List<Daa_smartCity.Node> nodes,
             List<Daa_smartCity.Edge> edges,
-            boolean directed
+            boolean directedMode,
+            GraphSnapshot snap,
+            Deadline deadline
     ) {
-        Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> g = buildGraph(nodes, edges, directed);
-
-        Map<Daa_smartCity.Node, Double> dist = new HashMap<>();
-        Map<Daa_smartCity.Node, Daa_smartCity.Node> parent = new HashMap<>();
-
-        for (Daa_smartCity.Node n : nodes) dist.put(n, Double.POSITIVE_INFINITY);
-        dist.put(start, 0.0);
-
-        PriorityQueue<Daa_smartCity.Node> pq =
-                new PriorityQueue<>(Comparator.comparingDouble(dist::get));
-        pq.add(start);
-
-        int steps = 0;
-
-        while (!pq.isEmpty()) {
-            Daa_smartCity.Node u = pq.poll();
-            steps++;
-
-            if (u == goal) {
-                List<Daa_smartCity.Node> path = reconstruct(parent, start, goal);
-                double cost = dist.get(goal);
-                return new Daa_smartCity.PathResult(true, path, steps, false, null, cost);
-            }
-
-            List<Daa_smartCity.Edge> out = g.get(u);
-            if (out == null) continue;
+        searches.increment();
+        boolean fullRecompute = shouldFullRecompute(edges.size(), lastChanges.size());
 
-            for (Daa_smartCity.Edge e : out) {
-                steps++;
-                double alt = dist.get(u) + e.weight;
-                if (alt < dist.get(e.to)) {
-                    dist.put(e.to, alt);
-                    parent.put(e.to, u);
-                    pq.add(e.to);
-                }
+        // Negative weights: search on reduced costs instead of giving up on Dijkstra/A*
+        JohnsonPotentials pot = null;
+        if (hasNegativeWeights(edges)) {
+            pot = potentialsFor(nodes, edges, directedMode);
+            if (pot == null) {
+                return new Daa_smartCity.PathResult(false, null, 0, true, null, Double.POSITIVE_INFINITY);
             }
         }
 
-        boolean found = dist.get(goal) < Double.POSITIVE_INFINITY;
-        List<Daa_smartCity.Node> path = found ? reconstruct(parent, start, goal) : null;
-        double cost = found ? dist.get(goal) : Double.POSITIVE_INFINITY;
+        if (snap == null) snap = GraphSnapshot.of(nodes, edges, directedMode);
+        RoutingEngine.Algorithm algo = fullRecompute
+                ? RoutingEngine.Algorithm.DIJKSTRA
+                : RoutingEngine.Algorithm.A_STAR;
+        Daa_smartCity.PathResult res = engine.route(snap,
+                new RoutingEngine.Query(src, dst, algo, pot).withDeadline(deadline));
+        if (res.timedOut) return res;
+        if (fullRecompute) lastFullRecomputeVersion = trafficVersion;
 
-        return new Daa_smartCity.PathResult(found, path, steps, false, null, cost);
+        if (res.found) putCache(src, dst, res, snap);
+        return res;
     }
 
-    private Daa_smartCity.PathResult runAStar(
-            Daa_smartCity.Node start,
-            Daa_smartCity.Node goal,
+    /**
+     * Many (src, dst) pairs at once; results come back in request order (null for a pair
+     * with a null end). Cached routes are reused. The rest are grouped by source: one
+     * Dijkstra per source runs until all of its targets are settled, with the groups spread
+     * over pool. New routes go into the cache as usual.
+     */
+    public List<Daa_smartCity.PathResult> recomputeBatch(
+            List<Daa_smartCity.Node[]> pairs,
             List<Daa_smartCity.Node> nodes,
             List<Daa_smartCity.Edge> edges,
-            boolean directed
+            boolean directedMode,
+            GraphSnapshot snap,
+            ForkJoinPool pool
     ) {
-        Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> g = buildGraph(nodes, edges, directed);
-
-        Map<Daa_smartCity.Node, Double> gScore = new HashMap<>();
-        Map<Daa_smartCity.Node, Double> fScore = new HashMap<>();
-        Map<Daa_smartCity.Node, Daa_smartCity.Node> parent = new HashMap<>();
-
-        for (Daa_smartCity.Node n : nodes) {
-            gScore.put(n, Double.POSITIVE_INFINITY);
-            fScore.put(n, Double.POSITIVE_INFINITY);
+        Daa_smartCity.PathResult[] out = new Daa_smartCity.PathResult[pairs.size()];
+        Map<Daa_smartCity.Node, List<Integer>> bySource = new LinkedHashMap<>();
+        for (int i = 0; i < out.length; i++) {
+            Daa_smartCity.Node[] p = pairs.get(i);
+            if (p[0] == null || p[1] == null) continue;
+            Daa_smartCity.PathResult cached = getCached(p[0], p[1]);
+            if (cached != null && cached.found && !cached.hasNegativeCycle) out[i] = cached;
+            else bySource.computeIfAbsent(p[0], k -> new ArrayList<>()).add(i);
         }
-
-        gScore.put(start, 0.0);
-        fScore.put(start, heuristic(start, goal));
-
-        PriorityQueue<Daa_smartCity.Node> open =
-                new PriorityQueue<>(Comparator.comparingDouble(fScore::get));
-        open.add(start);
-
-        int steps = 0;
-
-        while (!open.isEmpty()) {
-            Daa_smartCity.Node cur = open.poll();
-            steps++;
-
-            if (cur == goal) {
-                List<Daa_smartCity.Node> path = reconstruct(parent, start, goal);
-                double cost = gScore.get(goal);
-                return new Daa_smartCity.PathResult(true, path, steps, false, null, cost);
-            }
-
-            List<Daa_smartCity.Edge> out = g.get(cur);
-            if (out == null) continue;
-
-            for (Daa_smartCity.Edge e : out) {
-                steps++;
-                double tentative = gScore.get(cur) + e.weight;
-                if (tentative < gScore.get(e.to)) {
-                    parent.put(e.to, cur);
-                    gScore.put(e.to, tentative);
-                    fScore.put(e.to, tentative + heuristic(e.to, goal));
-                    open.add(e.to);
+        if (bySource.isEmpty()) return Arrays.asList(out);
+
+        JohnsonPotentials pot = null;
+        if (hasNegativeWeights(edges)) {
+            pot = potentialsFor(nodes, edges, directedMode);
+            if (pot == null) {
+                for (List<Integer> group : bySource.values()) {
+                    for (int i : group) {
+                        out[i] = new Daa_smartCity.PathResult(false, null, 0, true, null, Double.POSITIVE_INFINITY);
+                    }
                 }
+                return Arrays.asList(out);
             }
         }
-
-        return new Daa_smartCity.PathResult(false, null, steps, false, null, Double.POSITIVE_INFINITY);
+        GraphSnapshot g = snap != null ? snap : GraphSnapshot.of(nodes, edges, directedMode);
+        JohnsonPotentials reweight = pot;
+
+        List<Map.Entry<Daa_smartCity.Node, List<Integer>>> groups = new ArrayList<>(bySource.entrySet());
+        IntConsumer solve = k -> {
+            Daa_smartCity.Node src = groups.get(k).getKey();
+            List<Integer> idx = groups.get(k).getValue();
+            List<Daa_smartCity.Node> targets = new ArrayList<>(idx.size());
+            for (int i : idx) targets.add(pairs.get(i)[1]);
+
+            Daa_smartCity.PathResult[] res = engine.routeToMany(g, src, targets, reweight);
+            for (int j = 0; j < res.length; j++) {
+                out[idx.get(j)] = res[j];
+                if (res[j].found) putCache(src, targets.get(j), res[j], g);
+            }
+        };
+        if (pool.getParallelism() <= 1 || groups.size() == 1) {
+            for (int k = 0; k < groups.size(); k++) solve.accept(k);
+        } else {
+            pool.submit(() -> IntStream.range(0, groups.size()).parallel().forEach(solve)).join();
+        }
+        lastFullRecomputeVersion = trafficVersion;
+        return Arrays.asList(out);
     }
 
-    private List<Daa_smartCity.Node> reconstruct(
-            Map<Daa_smartCity.Node, Daa_smartCity.Node> parent,
-            Daa_smartCity.Node start,
-            Daa_smartCity.Node goal
-    ) {
-        List<Daa_smartCity.Node> path = new ArrayList<>();
-        for (Daa_smartCity.Node at = goal; at != null; at = parent.get(at)) path.add(at);
+    private boolean shouldFullRecompute(int totalEdges, int changedEdges) {
+        if (totalEdges == 0) return false;
+        if (lastFullRecomputeVersion < 0) return true;
 
-        if (path.isEmpty() || path.get(path.size() - 1) != start) return null;
-        Collections.reverse(path);
-        return path;
+        double fraction = (double) changedEdges / (double) totalEdges;
+        return fraction >= fullRecomputeThreshold;
     }
+
 }
 =======
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 public class DynamicTrafficManager {
 
@@ -405,18 +605,129 @@ public class DynamicTrafficManager {
         }
     }
 
+    // Notified after every traffic batch (engines that maintain state incrementally)
+    public interface TrafficListener {
+        void onTrafficChange(int version, List<EdgeChange> changes);
+    }
+
+    private final List<TrafficListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Concurrent so queries may read and fill it in parallel; traffic batches must still be
+    // applied exclusively (they mutate edge weights in place). Entries keep only a CompactPath.
     private final Map<Daa_smartCity.Node,
-            Map<Daa_smartCity.Node, Daa_smartCity.PathResult>> dpCache = new HashMap<>();
+            Map<Daa_smartCity.Node, Daa_smartCity.PathResult>> dpCache = new ConcurrentHashMap<>();
+
+    // One id space for every cached path, so entries never hold a snapshot's node array
+    private final CompactPath.NodeTable nodeTable = new CompactPath.NodeTable();
 
-    private int trafficVersion = 0;
-    private int lastFullRecomputeVersion = -1;
+    private volatile int trafficVersion = 0;
+    private volatile int lastFullRecomputeVersion = -1;
 
-    private List<EdgeChange> lastChanges = new ArrayList<>();
+    private volatile List<EdgeChange> lastChanges = new ArrayList<>();
 
     private double fullRecomputeThreshold = 0.35;
 
+    // Dijkstra / A* for recomputeShortestPath
+    private final RoutingEngine engine = new RoutingEngine();
+
+    // Single-flight: identical concurrent misses wait on the search already running
+    private final Map<FlightKey, CompletableFuture<Daa_smartCity.PathResult>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    private static final class FlightKey {
+        final Daa_smartCity.Node src, dst;
+        final int version;
+        final boolean directed;
+
+        FlightKey(Daa_smartCity.Node src, Daa_smartCity.Node dst, int version, boolean directed) {
+            this.src = src;
+            this.dst = dst;
+            this.version = version;
+            this.directed = directed;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FlightKey)) return false;
+            FlightKey k = (FlightKey) o;
+            return src == k.src && dst == k.dst && version == k.version && directed == k.directed;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = System.identityHashCode(src) * 31 + System.identityHashCode(dst);
+            return (h * 31 + version) * 2 + (directed ? 1 : 0);
+        }
+    }
+
+    // Johnson potentials, kept in step with every traffic batch
+    private final JohnsonPotentials potentials = new JohnsonPotentials();
+
+    // D* Lite session per vehicle en route, plus the traffic it has not seen yet
+    private final Map<String, DStarLite> vehicles = new HashMap<>();
+    private final Map<String, List<EdgeChange>> unseenChanges = new HashMap<>();
+
     public void clearCache() { dpCache.clear(); }
 
+    public int getTrafficVersion() { return trafficVersion; }
+
+    /** Searches recomputeShortestPath actually ran. */
+    public long searchCount() { return searches.sum(); }
+
+    /** Queries that shared another caller's in-flight search instead of running their own. */
+    public long coalescedCount() { return coalesced.sum(); }
+
+    public void addTrafficListener(TrafficListener l) { listeners.add(l); }
+
+    public void removeTrafficListener(TrafficListener l) { listeners.remove(l); }
+
+    /** Starts (or restarts) tracking a vehicle at start heading to goal. */
+    public DStarLite startVehicle(String id,
+                                  Daa_smartCity.Node start,
+                                  Daa_smartCity.Node goal,
+                                  List<Daa_smartCity.Node> nodes,
+                                  List<Daa_smartCity.Edge> edges,
+                                  boolean directedMode) {
+        DStarLite session = new DStarLite(start, goal, nodes, edges, directedMode);
+        vehicles.put(id, session);
+        unseenChanges.put(id, new ArrayList<>());
+        return session;
+    }
+
+    public boolean hasVehicle(String id) { return vehicles.containsKey(id); }
+
+    public DStarLite vehicle(String id) { return vehicles.get(id); }
+
+    public void endVehicle(String id) {
+        vehicles.remove(id);
+        unseenChanges.remove(id);
+    }
+
+    /**
+     * Route from the vehicle's current node to its goal, repairing its D* Lite search with
+     * the traffic batches since its last replan. Null if the vehicle is unknown. Negative
+     * weights end the session and fall back to recomputeShortestPath.
+     */
+    public Daa_smartCity.PathResult replanVehicle(String id,
+                                                  Daa_smartCity.Node current,
+                                                  List<Daa_smartCity.Node> nodes,
+                                                  List<Daa_smartCity.Edge> edges,
+                                                  boolean directedMode) {
+        DStarLite session = vehicles.get(id);
+        if (session == null) return null;
+        if (session.directed() != directedMode) {
+            session = startVehicle(id, current, session.goal(), nodes, edges, directedMode);
+        }
+        List<EdgeChange> unseen = unseenChanges.put(id, new ArrayList<>());
+        try {
+            return session.replan(current, unseen);
+        } catch (IllegalArgumentException ex) {
+            endVehicle(id);
+            return recomputeShortestPath(current, session.goal(), nodes, edges, directedMode);
+        }
+    }
+
     public Daa_smartCity.PathResult getCached(Daa_smartCity.Node src,
                                              Daa_smartCity.Node dst) {
         Map<Daa_smartCity.Node, Daa_smartCity.PathResult> inner = dpCache.get(src);
@@ -425,8 +736,13 @@ public class DynamicTrafficManager {
     }
 
     private void putCache(Daa_smartCity.Node src, Daa_smartCity.Node dst,
-                          Daa_smartCity.PathResult res) {
-        dpCache.computeIfAbsent(src, k -> new HashMap<>()).put(dst, res);
+                          Daa_smartCity.PathResult res, GraphSnapshot snap) {
+        if (res.path == null) return;
+        CompactPath route = CompactPath.of(nodeTable, snap, res.path);
+        if (route == null) return;
+        Daa_smartCity.PathResult entry = new Daa_smartCity.PathResult(true, null, res.steps, false, null, res.totalCost);
+        entry.compactPath = route;
+        dpCache.computeIfAbsent(src, k -> new ConcurrentHashMap<>()).put(dst, entry);
     }
 
     // ✅ Improved cache invalidation: invalidate ONLY cached paths that actually use changed edges
@@ -435,10 +751,11 @@ public class DynamicTrafficManager {
 
         Set<Long> changed = new HashSet<>();
         for (EdgeChange ch : changes) {
-            int u = System.identityHashCode(ch.edge.from);
-            int v = System.identityHashCode(ch.edge.to);
-            changed.add(pack(u, v));
+            int u = nodeTable.idOf(ch.edge.from);
+            int v = nodeTable.idOf(ch.edge.to);
+            if (u >= 0 && v >= 0) changed.add(pack(u, v));   // otherwise no cached path touches it
         }
+        if (changed.isEmpty()) return;
 
         for (Daa_smartCity.Node src : new ArrayList<>(dpCache.keySet())) {
             Map<Daa_smartCity.Node, Daa_smartCity.PathResult> inner = dpCache.get(src);
@@ -446,22 +763,21 @@ public class DynamicTrafficManager {
 
             for (Daa_smartCity.Node dst : new ArrayList<>(inner.keySet())) {
                 Daa_smartCity.PathResult pr = inner.get(dst);
-                if (pr == null || pr.path == null || pr.path.size() < 2) {
+                if (pr == null || pr.compactPath == null || pr.compactPath.size() < 2) {
                     inner.remove(dst);
                     continue;
                 }
-                if (pathUsesChangedEdge(pr.path, changed)) inner.remove(dst);
+                if (pathUsesChangedEdge(pr.compactPath, changed)) inner.remove(dst);
             }
 
             if (inner.isEmpty()) dpCache.remove(src);
         }
     }
 
-    private boolean pathUsesChangedEdge(List<Daa_smartCity.Node> path, Set<Long> changed) {
-        for (int i = 0; i < path.size() - 1; i++) {
-            int u = System.identityHashCode(path.get(i));
-            int v = System.identityHashCode(path.get(i + 1));
-            if (changed.contains(pack(u, v))) return true;
+    private boolean pathUsesChangedEdge(CompactPath path, Set<Long> changed) {
+        int[] ids = path.ids();
+        for (int i = 0; i < ids.length - 1; i++) {
+            if (changed.contains(pack(ids[i], ids[i + 1]))) return true;
         }
         return false;
     }
@@ -473,7 +789,27 @@ public class DynamicTrafficManager {
     private void registerTrafficChange(List<EdgeChange> changes) {
         this.trafficVersion++;
         this.lastChanges = changes;
+        potentials.onChanges(changes);
         invalidateCacheForChanges(changes);
+        for (List<EdgeChange> unseen : unseenChanges.values()) unseen.addAll(changes);
+        for (TrafficListener l : listeners) l.onTrafficChange(trafficVersion, changes);
+    }
+
+    /**
+     * Potentials valid for the current graph, or null if a negative cycle makes
+     * reweighting impossible. Cheap when nothing changed since the last call.
+     */
+    public JohnsonPotentials potentialsFor(List<Daa_smartCity.Node> nodes,
+                                           List<Daa_smartCity.Edge> edges,
+                                           boolean directedMode) {
+        return potentials.ensure(nodes, edges, directedMode) ? potentials : null;
+    }
+
+    private boolean hasNegativeWeights(List<Daa_smartCity.Edge> edges) {
+        for (Daa_smartCity.Edge e : edges) {
+            if (e.weight < BLOCKED_THRESHOLD && e.weight < 0) return true;
+        }
+        return false;
     }
 
    public List<EdgeChange> applyRandomTraffic(
@@ -592,6 +928,23 @@ public class DynamicTrafficManager {
         return result;
     }
 
+    /** Sets the given roads to explicit weights (e.g. from a live feed) as one batch. */
+    public List<EdgeChange> applyWeights(Map<Daa_smartCity.Edge, Double> weights) {
+        if (weights == null || weights.isEmpty()) return List.of();
+
+        List<EdgeChange> result = new ArrayList<>();
+        for (Map.Entry<Daa_smartCity.Edge, Double> en : weights.entrySet()) {
+            Daa_smartCity.Edge e = en.getKey();
+            double oldW = e.weight;
+            double newW = en.getValue();
+            if (Double.compare(oldW, newW) == 0) continue;
+            e.weight = newW;
+            result.add(new EdgeChange(e, oldW, newW));
+        }
+        registerTrafficChange(result);
+        return result;
+    }
+
     public List<EdgeChange> applyPeriodicRandomTraffic(List<Daa_smartCity.Edge> edges,
                                                        Random rng) {
         if (edges == null || edges.isEmpty()) return List.of();
@@ -606,171 +959,196 @@ public class DynamicTrafficManager {
             List<Daa_smartCity.Edge> edges,
             boolean directedMode
     ) {
-        if (src == null || dst == null) return null;
-
-        Daa_smartCity.PathResult cached = getCached(src, dst);
-        if (cached != null && cached.found && !cached.hasNegativeCycle) return cached;
-
-        boolean fullRecompute = shouldFullRecompute(edges.size(), lastChanges.size());
-
-        Daa_smartCity.PathResult res;
-        if (fullRecompute) {
-            res = runDijkstra(src, dst, nodes, edges, directedMode);
-            lastFullRecomputeVersion = trafficVersion;
-        } else {
-            res = runAStar(src, dst, nodes, edges, directedMode);
-        }
-
-        if (res != null && res.found) putCache(src, dst, res);
-        return res;
+        return recomputeShortestPath(src, dst, nodes, edges, directedMode, null);
     }
 
-    private boolean shouldFullRecompute(int totalEdges, int changedEdges) {
-        if (totalEdges == 0) return false;
-        if (lastFullRecomputeVersion < 0) return true;
-
-        double fraction = (double) changedEdges / (double) totalEdges;
-        return fraction >= fullRecomputeThreshold;
+    /**
+     * As above; snap, if given, must reflect the current weights (callers that rebuild a
+     * snapshot after every batch pass it in to skip the per-query build). Concurrent calls
+     * for the same (src, dst) at the same traffic version share one search.
+     */
+    public Daa_smartCity.PathResult recomputeShortestPath(
+            Daa_smartCity.Node src,
+            Daa_smartCity.Node dst,
+            List<Daa_smartCity.Node> nodes,
+            List<Daa_smartCity.Edge> edges,
+            boolean directedMode,
+            GraphSnapshot snap
+    ) {
+        return recomputeShortestPath(src, dst, nodes, edges, directedMode, snap, Deadline.NONE);
     }
 
-    private Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> buildGraph(
+    /**
+     * As above, giving up at the deadline with a timedOut result (the best route found so
+     * far, if any), which is not cached. A caller that joined a search whose own deadline
+     * ran out first searches again with the time it has left.
+     */
+    public Daa_smartCity.PathResult recomputeShortestPath(
+            Daa_smartCity.Node src,
+            Daa_smartCity.Node dst,
             List<Daa_smartCity.Node> nodes,
             List<Daa_smartCity.Edge> edges,
-            boolean directed
+            boolean directedMode,
+            GraphSnapshot snap,
+            Deadline deadline
     ) {
-        Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> g = new HashMap<>();
-        for (Daa_smartCity.Node n : nodes) g.put(n, new ArrayList<>());
+        if (src == null || dst == null) return null;
 
-        for (Daa_smartCity.Edge e : edges) {
-            if (e.weight >= BLOCKED_THRESHOLD) continue;
-            g.get(e.from).add(e);
-            if (!directed) g.get(e.to).add(new Daa_smartCity.Edge(e.to, e.from, e.weight));
+        Daa_smartCity.PathResult cached = getCached(src, dst);
+        if (cached != null && cached.found && !cached.hasNegativeCycle) return cached;
+
+        FlightKey key = new FlightKey(src, dst, trafficVersion, directedMode);
+        CompletableFuture<Daa_smartCity.PathResult> mine = new CompletableFuture<>();
+        CompletableFuture<Daa_smartCity.PathResult> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            Daa_smartCity.PathResult shared = await(running, deadline);
+            if (shared != null && !shared.timedOut) return shared;
+            if (deadline.expired()) return shared != null ? shared : RoutingEngine.timedOut(0);
+            return search(src, dst, nodes, edges, directedMode, snap, deadline);
+        }
+        try {
+            // The previous leader may have finished between the cache miss and putIfAbsent
+            cached = getCached(src, dst);
+            Daa_smartCity.PathResult res = (cached != null && cached.found && !cached.hasNegativeCycle)
+                    ? cached
+                    : search(src, dst, nodes, edges, directedMode, snap, deadline);
+            mine.complete(res);
+            return res;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, mine);     // after putCache, so late arrivals hit the cache
         }
-        return g;
     }
 
-    private double heuristic(Daa_smartCity.Node a, Daa_smartCity.Node b) {
-        return Math.hypot(a.x - b.x, a.y - b.y);
+    // The leader's result, or null if our deadline passes first (polled so cancel() is seen)
+    private static Daa_smartCity.PathResult await(CompletableFuture<Daa_smartCity.PathResult> running,
+                                                  Deadline deadline) {
+        try {
+            if (deadline == Deadline.NONE) return running.join();
+            while (!deadline.expired()) {
+                long slice = Math.min(deadline.remainingNanos(), TimeUnit.MILLISECONDS.toNanos(20));
+                try {
+                    return running.get(slice, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException ignored) {
+                    // poll the deadline again
+                }
+            }
+            return null;
+        } catch (CompletionException | ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
     }
 
-    private Daa_smartCity.PathResult runDijkstra(
-            Daa_smartCity.Node start,
-            Daa_smartCity.Node goal,
+    private Daa_smartCity.PathResult search(
+            Daa_smartCity.Node src,
+            Daa_smartCity.Node dst,
             List<Daa_smartCity.Node> nodes,
             List<Daa_smartCity.Edge> edges,
-            boolean directed
+            boolean directedMode,
+            GraphSnapshot snap,
+            Deadline deadline
     ) {
-        Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> g = buildGraph(nodes, edges, directed);
-
-        Map<Daa_smartCity.Node, Double> dist = new HashMap<>();
-        Map<Daa_smartCity.Node, Daa_smartCity.Node> parent = new HashMap<>();
-
-        for (Daa_smartCity.Node n : nodes) dist.put(n, Double.POSITIVE_INFINITY);
-        dist.put(start, 0.0);
-
-        PriorityQueue<Daa_smartCity.Node> pq =
-                new PriorityQueue<>(Comparator.comparingDouble(dist::get));
-        pq.add(start);
-
-        int steps = 0;
-
-        while (!pq.isEmpty()) {
-            Daa_smartCity.Node u = pq.poll();
-            steps++;
-
-            if (u == goal) {
-                List<Daa_smartCity.Node> path = reconstruct(parent, start, goal);
-                double cost = dist.get(goal);
-                return new Daa_smartCity.PathResult(true, path, steps, false, null, cost);
-            }
-
-            List<Daa_smartCity.Edge> out = g.get(u);
-            if (out == null) continue;
+        searches.increment();
+        boolean fullRecompute = shouldFullRecompute(edges.size(), lastChanges.size());
 
-            for (Daa_smartCity.Edge e : out) {
-                steps++;
-                double alt = dist.get(u) + e.weight;
-                if (alt < dist.get(e.to)) {
-                    dist.put(e.to, alt);
-                    parent.put(e.to, u);
-                    pq.add(e.to);
-                }
+        // Negative weights: search on reduced costs instead of giving up on Dijkstra/A*
+        JohnsonPotentials pot = null;
+        if (hasNegativeWeights(edges)) {
+            pot = potentialsFor(nodes, edges, directedMode);
+            if (pot == null) {
+                return new Daa_smartCity.PathResult(false, null, 0, true, null, Double.POSITIVE_INFINITY);
             }
         }
 
-        boolean found = dist.get(goal) < Double.POSITIVE_INFINITY;
-        List<Daa_smartCity.Node> path = found ? reconstruct(parent, start, goal) : null;
-        double cost = found ? dist.get(goal) : Double.POSITIVE_INFINITY;
+        if (snap == null) snap = GraphSnapshot.of(nodes, edges, directedMode);
+        RoutingEngine.Algorithm algo = fullRecompute
+                ? RoutingEngine.Algorithm.DIJKSTRA
+                : RoutingEngine.Algorithm.A_STAR;
+        Daa_smartCity.PathResult res = engine.route(snap,
+                new RoutingEngine.Query(src, dst, algo, pot).withDeadline(deadline));
+        if (res.timedOut) return res;
+        if (fullRecompute) lastFullRecomputeVersion = trafficVersion;
 
-        return new Daa_smartCity.PathResult(found, path, steps, false, null, cost);
+        if (res.found) putCache(src, dst, res, snap);
+        return res;
     }
 
-    private Daa_smartCity.PathResult runAStar(
-            Daa_smartCity.Node start,
-            Daa_smartCity.Node goal,
+    /**
+     * Many (src, dst) pairs at once; results come back in request order (null for a pair
+     * with a null end). Cached routes are reused. The rest are grouped by source: one
+     * Dijkstra per source runs until all of its targets are settled, with the groups spread
+     * over pool. New routes go into the cache as usual.
+     */
+    public List<Daa_smartCity.PathResult> recomputeBatch(
+            List<Daa_smartCity.Node[]> pairs,
             List<Daa_smartCity.Node> nodes,
             List<Daa_smartCity.Edge> edges,
-            boolean directed
+            boolean directedMode,
+            GraphSnapshot snap,
+            ForkJoinPool pool
     ) {
-        Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> g = buildGraph(nodes, edges, directed);
-
-        Map<Daa_smartCity.Node, Double> gScore = new HashMap<>();
-        Map<Daa_smartCity.Node, Double> fScore = new HashMap<>();
-        Map<Daa_smartCity.Node, Daa_smartCity.Node> parent = new HashMap<>();
-
-        for (Daa_smartCity.Node n : nodes) {
-            gScore.put(n, Double.POSITIVE_INFINITY);
-            fScore.put(n, Double.POSITIVE_INFINITY);
+        Daa_smartCity.PathResult[] out = new Daa_smartCity.PathResult[pairs.size()];
+        Map<Daa_smartCity.Node, List<Integer>> bySource = new LinkedHashMap<>();
+        for (int i = 0; i < out.length; i++) {
+            Daa_smartCity.Node[] p = pairs.get(i);
+            if (p[0] == null || p[1] == null) continue;
+            Daa_smartCity.PathResult cached = getCached(p[0], p[1]);
+            if (cached != null && cached.found && !cached.hasNegativeCycle) out[i] = cached;
+            else bySource.computeIfAbsent(p[0], k -> new ArrayList<>()).add(i);
         }
-
-        gScore.put(start, 0.0);
-        fScore.put(start, heuristic(start, goal));
-
-        PriorityQueue<Daa_smartCity.Node> open =
-                new PriorityQueue<>(Comparator.comparingDouble(fScore::get));
-        open.add(start);
-
-        int steps = 0;
-
-        while (!open.isEmpty()) {
-            Daa_smartCity.Node cur = open.poll();
-            steps++;
-
-            if (cur == goal) {
-                List<Daa_smartCity.Node> path = reconstruct(parent, start, goal);
-                double cost = gScore.get(goal);
-                return new Daa_smartCity.PathResult(true, path, steps, false, null, cost);
-            }
-
-            List<Daa_smartCity.Edge> out = g.get(cur);
-            if (out == null) continue;
-
-            for (Daa_smartCity.Edge e : out) {
-                steps++;
-                double tentative = gScore.get(cur) + e.weight;
-                if (tentative < gScore.get(e.to)) {
-                    parent.put(e.to, cur);
-                    gScore.put(e.to, tentative);
-                    fScore.put(e.to, tentative + heuristic(e.to, goal));
-                    open.add(e.to);
+        if (bySource.isEmpty()) return Arrays.asList(out);
+
+        JohnsonPotentials pot = null;
+        if (hasNegativeWeights(edges)) {
+            pot = potentialsFor(nodes, edges, directedMode);
+            if (pot == null) {
+                for (List<Integer> group : bySource.values()) {
+                    for (int i : group) {
+                        out[i] = new Daa_smartCity.PathResult(false, null, 0, true, null, Double.POSITIVE_INFINITY);
+                    }
                 }
+                return Arrays.asList(out);
             }
         }
-
-        return new Daa_smartCity.PathResult(false, null, steps, false, null, Double.POSITIVE_INFINITY);
+        GraphSnapshot g = snap != null ? snap : GraphSnapshot.of(nodes, edges, directedMode);
+        JohnsonPotentials reweight = pot;
+
+        List<Map.Entry<Daa_smartCity.Node, List<Integer>>> groups = new ArrayList<>(bySource.entrySet());
+        IntConsumer solve = k -> {
+            Daa_smartCity.Node src = groups.get(k).getKey();
+            List<Integer> idx = groups.get(k).getValue();
+            List<Daa_smartCity.Node> targets = new ArrayList<>(idx.size());
+            for (int i : idx) targets.add(pairs.get(i)[1]);
+
+            Daa_smartCity.PathResult[] res = engine.routeToMany(g, src, targets, reweight);
+            for (int j = 0; j < res.length; j++) {
+                out[idx.get(j)] = res[j];
+                if (res[j].found) putCache(src, targets.get(j), res[j], g);
+            }
+        };
+        if (pool.getParallelism() <= 1 || groups.size() == 1) {
+            for (int k = 0; k < groups.size(); k++) solve.accept(k);
+        } else {
+            pool.submit(() -> IntStream.range(0, groups.size()).parallel().forEach(solve)).join();
+        }
+        lastFullRecomputeVersion = trafficVersion;
+        return Arrays.asList(out);
     }
 
-    private List<Daa_smartCity.Node> reconstruct(
-            Map<Daa_smartCity.Node, Daa_smartCity.Node> parent,
-            Daa_smartCity.Node start,
-            Daa_smartCity.Node goal
-    ) {
-        List<Daa_smartCity.Node> path = new ArrayList<>();
-        for (Daa_smartCity.Node at = goal; at != null; at = parent.get(at)) path.add(at);
+    private boolean shouldFullRecompute(int totalEdges, int changedEdges) {
+        if (totalEdges == 0) return false;
+        if (lastFullRecomputeVersion < 0) return true;
 
-        if (path.isEmpty() || path.get(path.size() - 1) != start) return null;
-        Collections.reverse(path);
-        return path;
+        double fraction = (double) changedEdges / (double) totalEdges;
+        return fraction >= fullRecomputeThreshold;
     }
+
 }
 >>>>>>> 42f386a4733fd25e1a4a88ad7dbbc790df9efee9
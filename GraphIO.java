@@ -0,0 +1,122 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Plain-text road graph files for the headless tools (server, replay, benchmarks).
+ *
+ *   # comment
+ *   directed false
+ *   node A 120 80          label x y
+ *   edge A B 7.5           from to weight (>= 9999 means blocked)
+ *
+ * "grid:N" instead of a path generates an N x N random grid like the benchmarks use.
+ */
+public class GraphIO {
+
+    /** A loaded graph: live node/edge lists (weights mutate with traffic) plus a label index. */
+    public static final class Graph {
+        public final List<Daa_smartCity.Node> nodes;
+        public final List<Daa_smartCity.Edge> edges;
+        public final boolean directed;
+        private final Map<String, Daa_smartCity.Node> byLabel = new HashMap<>();
+
+        public Graph(List<Daa_smartCity.Node> nodes, List<Daa_smartCity.Edge> edges, boolean directed) {
+            this.nodes = nodes;
+            this.edges = edges;
+            this.directed = directed;
+            for (Daa_smartCity.Node n : nodes) byLabel.putIfAbsent(n.label, n);
+        }
+
+        /** Node with this label, or null. */
+        public Daa_smartCity.Node node(String label) { return byLabel.get(label); }
+
+        /** First road joining from -> to (either way round when undirected), or null. */
+        public Daa_smartCity.Edge edge(Daa_smartCity.Node from, Daa_smartCity.Node to) {
+            for (Daa_smartCity.Edge e : edges) {
+                if (e.from == from && e.to == to) return e;
+                if (!directed && e.from == to && e.to == from) return e;
+            }
+            return null;
+        }
+    }
+
+    /** Reads a graph file, or generates one for "grid:N[:seed]". */
+    public static Graph load(String source) throws IOException {
+        if (source.startsWith("grid:")) {
+            String[] p = source.split(":");
+            int side = Integer.parseInt(p[1]);
+            long seed = p.length > 2 ? Long.parseLong(p[2]) : 42L;
+            return grid(side, new Random(seed));
+        }
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)) {
+            return read(in);
+        }
+    }
+
+    public static Graph read(BufferedReader in) throws IOException {
+        List<Daa_smartCity.Node> nodes = new ArrayList<>();
+        List<Daa_smartCity.Edge> edges = new ArrayList<>();
+        Map<String, Daa_smartCity.Node> byLabel = new HashMap<>();
+        boolean directed = false;
+
+        String line;
+        int lineNo = 0;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] t = line.split("\\s+");
+            try {
+                if ("directed".equals(t[0])) {
+                    directed = Boolean.parseBoolean(t[1]);
+                } else if ("node".equals(t[0])) {
+                    Daa_smartCity.Node n = new Daa_smartCity.Node(
+                            Integer.parseInt(t[2]), Integer.parseInt(t[3]), t[1]);
+                    if (byLabel.putIfAbsent(t[1], n) != null) {
+                        throw new IOException("Line " + lineNo + ": duplicate node " + t[1]);
+                    }
+                    nodes.add(n);
+                } else if ("edge".equals(t[0])) {
+                    Daa_smartCity.Node from = byLabel.get(t[1]);
+                    Daa_smartCity.Node to = byLabel.get(t[2]);
+                    if (from == null || to == null) {
+                        throw new IOException("Line " + lineNo + ": unknown node in " + line);
+                    }
+                    edges.add(new Daa_smartCity.Edge(from, to, Double.parseDouble(t[3])));
+                } else {
+                    throw new IOException("Line " + lineNo + ": unknown record " + t[0]);
+                }
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+                throw new IOException("Line " + lineNo + ": malformed " + line);
+            }
+        }
+        return new Graph(nodes, edges, directed);
+    }
+
+    public static void write(Graph g, Writer out) throws IOException {
+        PrintWriter pw = new PrintWriter(out);
+        pw.println("directed " + g.directed);
+        for (Daa_smartCity.Node n : g.nodes) pw.println("node " + n.label + " " + n.x + " " + n.y);
+        for (Daa_smartCity.Edge e : g.edges) pw.println("edge " + e.from.label + " " + e.to.label + " " + e.weight);
+        pw.flush();
+    }
+
+    /** Undirected side x side grid, 10 units apart, weights uniform in 1..25. */
+    public static Graph grid(int side, Random rnd) {
+        List<Daa_smartCity.Node> nodes = new ArrayList<>();
+        List<Daa_smartCity.Edge> edges = new ArrayList<>();
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) nodes.add(new Daa_smartCity.Node(x * 10, y * 10, "N" + (y * side + x)));
+        }
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                int i = y * side + x;
+                if (x + 1 < side) edges.add(new Daa_smartCity.Edge(nodes.get(i), nodes.get(i + 1), 1 + rnd.nextInt(25)));
+                if (y + 1 < side) edges.add(new Daa_smartCity.Edge(nodes.get(i), nodes.get(i + side), 1 + rnd.nextInt(25)));
+            }
+        }
+        return new Graph(nodes, edges, false);
+    }
+}
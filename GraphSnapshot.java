@@ -0,0 +1,167 @@
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Immutable, int-indexed (CSR) copy of the road graph. Blocked roads are dropped and
+ * undirected roads are expanded into both directions, exactly like Daa_smartCity.graph().
+ */
+public class GraphSnapshot {
+
+    private static final double BLOCKED_THRESHOLD = 9999.0;
+
+    public final Daa_smartCity.Node[] nodes;
+    public final int[] offsets;   // out-arcs of u are [offsets[u], offsets[u + 1])
+    public final int[] targets;
+    public final double[] weights;
+    public final boolean directed;
+
+    private final Map<Daa_smartCity.Node, Integer> index;
+    private int negative = 0;     // 0 unknown, 1 yes, 2 no
+
+    private GraphSnapshot(Daa_smartCity.Node[] nodes, int[] offsets, int[] targets, double[] weights,
+                          boolean directed, Map<Daa_smartCity.Node, Integer> index) {
+        this.nodes = nodes;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.directed = directed;
+        this.index = index;
+    }
+
+    public static GraphSnapshot of(List<Daa_smartCity.Node> nodes,
+                                   List<Daa_smartCity.Edge> edges,
+                                   boolean directed) {
+        return of(nodes, edges, directed, e -> e.weight);
+    }
+
+    /** As above, reading each road's weight through weightOf (e.g. to rebuild an older metric). */
+    public static GraphSnapshot of(List<Daa_smartCity.Node> nodes,
+                                   List<Daa_smartCity.Edge> edges,
+                                   boolean directed,
+                                   ToDoubleFunction<Daa_smartCity.Edge> weightOf) {
+        int n = nodes.size();
+        Daa_smartCity.Node[] arr = nodes.toArray(new Daa_smartCity.Node[0]);
+        Map<Daa_smartCity.Node, Integer> index = new IdentityHashMap<>();
+        for (int i = 0; i < n; i++) index.put(arr[i], i);
+
+        int[] deg = new int[n + 1];
+        for (Daa_smartCity.Edge e : edges) {
+            if (weightOf.applyAsDouble(e) >= BLOCKED_THRESHOLD) continue;
+            deg[index.get(e.from)]++;
+            if (!directed) deg[index.get(e.to)]++;
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) offsets[i + 1] = offsets[i] + deg[i];
+
+        int[] fill = Arrays.copyOf(offsets, n);
+        int[] targets = new int[offsets[n]];
+        double[] weights = new double[offsets[n]];
+        for (Daa_smartCity.Edge e : edges) {
+            double w = weightOf.applyAsDouble(e);
+            if (w >= BLOCKED_THRESHOLD) continue;
+            int u = index.get(e.from);
+            int v = index.get(e.to);
+            targets[fill[u]] = v;
+            weights[fill[u]++] = w;
+            if (!directed) {
+                targets[fill[v]] = u;
+                weights[fill[v]++] = w;
+            }
+        }
+        return new GraphSnapshot(arr, offsets, targets, weights, directed, index);
+    }
+
+    /**
+     * Cheap identity fingerprint of the topology (which nodes / edge objects, direction mode).
+     * Weights are not part of it; they change through EdgeChange batches instead.
+     * Order-independent because applyRandomTraffic shuffles the edge list in place.
+     */
+    public static long fingerprint(List<Daa_smartCity.Node> nodes,
+                                   List<Daa_smartCity.Edge> edges,
+                                   boolean directed) {
+        long f = 1469598103934665603L;
+        f = f * 31 + nodes.size();
+        f = f * 31 + edges.size();
+        f = f * 31 + (directed ? 1 : 0);
+        long members = 0;
+        for (Daa_smartCity.Node n : nodes) members += mix(System.identityHashCode(n));
+        for (Daa_smartCity.Edge e : edges) members += mix(~System.identityHashCode(e));
+        return f * 31 + members;
+    }
+
+    private static long mix(long x) {
+        x *= 0x9E3779B97F4A7C15L;
+        return x ^ (x >>> 29);
+    }
+
+    public int size() { return nodes.length; }
+
+    public int arcCount() { return targets.length; }
+
+    /** Index of n in this snapshot, or -1 if the node is not part of it. */
+    public int indexOf(Daa_smartCity.Node n) {
+        Integer i = index.get(n);
+        return i == null ? -1 : i;
+    }
+
+    public boolean hasNegativeWeights() {
+        int v = negative;
+        if (v == 0) {
+            v = 2;
+            for (double w : weights) {
+                if (w < 0) {
+                    v = 1;
+                    break;
+                }
+            }
+            negative = v;     // racy but idempotent: the arrays never change
+        }
+        return v == 1;
+    }
+
+    /** Same arcs with reduced costs w + h[u] - h[v] (clamped at 0 against rounding). */
+    public GraphSnapshot reweighted(double[] h) {
+        double[] w = new double[weights.length];
+        for (int u = 0; u < nodes.length; u++) {
+            for (int a = offsets[u]; a < offsets[u + 1]; a++) {
+                w[a] = Math.max(0.0, weights[a] + h[u] - h[targets[a]]);
+            }
+        }
+        return new GraphSnapshot(nodes, offsets, targets, w, directed, index);
+    }
+
+    /** Same nodes, every arc flipped (used for backward searches). */
+    public GraphSnapshot reverse() {
+        int n = nodes.length;
+        int[] offs = new int[n + 1];
+        for (int a = 0; a < targets.length; a++) offs[targets[a] + 1]++;
+        for (int i = 0; i < n; i++) offs[i + 1] += offs[i];
+
+        int[] fill = Arrays.copyOf(offs, n);
+        int[] tg = new int[targets.length];
+        double[] w = new double[targets.length];
+        for (int u = 0; u < n; u++) {
+            for (int a = offsets[u]; a < offsets[u + 1]; a++) {
+                int v = targets[a];
+                tg[fill[v]] = u;
+                w[fill[v]++] = weights[a];
+            }
+        }
+        return new GraphSnapshot(nodes, offs, tg, w, directed, index);
+    }
+
+    /** Walks a parent array back from t; null if t is not connected to s through it. */
+    public List<Daa_smartCity.Node> toPath(int[] parent, int s, int t) {
+        List<Daa_smartCity.Node> path = new ArrayList<>();
+        int guard = nodes.length;
+        for (int at = t; at != -1 && guard-- >= 0; at = parent[at]) {
+            path.add(nodes[at]);
+            if (at == s) {
+                Collections.reverse(path);
+                return path;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Keeps a HubLabels index current for the routing front ends.
+ *
+ * Labels cannot be patched after a weight change, so a traffic batch simply drops them and
+ * the next query rebuilds on the snapshot it is given. Callers that build a fresh snapshot
+ * per query (the Swing frame) keep the index as long as topology and weights are unchanged.
+ */
+public class HubLabelIndex implements DynamicTrafficManager.TrafficListener {
+
+    private final ForkJoinPool pool;
+    private volatile HubLabels labels;
+    private int builds = 0;
+
+    public HubLabelIndex(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public HubLabelIndex() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /** Label builds since this instance was created. */
+    public synchronized int builds() { return builds; }
+
+    @Override
+    public void onTrafficChange(int version, List<DynamicTrafficManager.EdgeChange> changes) {
+        labels = null;
+    }
+
+    /** Labels for snap, rebuilt if traffic or snap's topology or weights changed since the last build. */
+    public synchronized HubLabels forSnapshot(GraphSnapshot snap) {
+        HubLabels l = labels;
+        if (l == null || !sameGraph(l.graph, snap)) {
+            l = HubLabels.build(snap, pool);
+            labels = l;
+            builds++;
+        }
+        return l;
+    }
+
+    public Daa_smartCity.PathResult shortestPath(GraphSnapshot snap, Daa_smartCity.Node start, Daa_smartCity.Node goal) {
+        return forSnapshot(snap).shortestPath(start, goal);
+    }
+
+    public Daa_smartCity.PathResult shortestPath(Daa_smartCity.Node start,
+                                                 Daa_smartCity.Node goal,
+                                                 List<Daa_smartCity.Node> nodes,
+                                                 List<Daa_smartCity.Edge> edges,
+                                                 boolean directed) {
+        return shortestPath(GraphSnapshot.of(nodes, edges, directed), start, goal);
+    }
+
+    private static boolean sameGraph(GraphSnapshot a, GraphSnapshot b) {
+        if (a == b) return true;
+        if (a.directed != b.directed || a.size() != b.size()) return false;
+        for (int i = 0; i < a.nodes.length; i++) if (a.nodes[i] != b.nodes[i]) return false;
+        return Arrays.equals(a.offsets, b.offsets)
+                && Arrays.equals(a.targets, b.targets)
+                && Arrays.equals(a.weights, b.weights);
+    }
+}
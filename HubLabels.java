@@ -0,0 +1,403 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Hub-labeling distance index built by pruned landmark labeling (PLL).
+ *
+ * Every node v keeps an out-label {(h, d(v, h))} and an in-label {(h, d(h, v))}; for any
+ * pair some hub on a shortest s-t path is in both L_out(s) and L_in(t), so a query is one
+ * linear merge of two sorted arrays. Labels are stored flat (CSR) as hub rank, distance and
+ * parent: the parent is the neighbour of v on its shortest path towards/from the hub, which
+ * is itself labelled with the same hub, so paths unpack hop by hop without any search.
+ *
+ * Hubs are processed from most to least important (see importanceOrder). The first SEQUENTIAL_HUBS run one at a
+ * time (they prune the most); after that hubs are processed in batches whose pruned
+ * searches run in parallel against the labels committed by earlier batches. Less pruning
+ * inside a batch only adds redundant entries, never wrong ones.
+ *
+ * The index is immutable; weights must be non-negative. Rebuild after traffic changes.
+ */
+public class HubLabels {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+    private static final int SEQUENTIAL_HUBS = 64;
+    private static final int ORDER_SAMPLES = 32;
+
+    public final GraphSnapshot graph;
+    private final int[] hubNode;          // rank -> node index
+
+    private final int[] outOffsets, outHub, outParent;
+    private final double[] outDist;
+    private final int[] inOffsets, inHub, inParent;
+    private final double[] inDist;
+
+    private HubLabels(GraphSnapshot g, int[] hubNode, Labels out, Labels in) {
+        this.graph = g;
+        this.hubNode = hubNode;
+        this.outOffsets = out.offsets;
+        this.outHub = out.hub;
+        this.outDist = out.dist;
+        this.outParent = out.parent;
+        this.inOffsets = in.offsets;
+        this.inHub = in.hub;
+        this.inDist = in.dist;
+        this.inParent = in.parent;
+    }
+
+    public static HubLabels build(GraphSnapshot g) {
+        return build(g, ForkJoinPool.commonPool());
+    }
+
+    public static HubLabels build(GraphSnapshot g, ForkJoinPool pool) {
+        if (g.hasNegativeWeights()) {
+            throw new IllegalArgumentException("Hub labeling needs non-negative weights");
+        }
+        return new Builder(g, pool).run();
+    }
+
+    public int labelEntries() { return outHub.length + inHub.length; }
+
+    public double averageLabelSize() {
+        return graph.size() == 0 ? 0 : labelEntries() / (2.0 * graph.size());
+    }
+
+    public long memoryBytes() {
+        return (long) labelEntries() * (4 + 8 + 4) + 8L * (graph.size() + 1);
+    }
+
+    public double distance(Daa_smartCity.Node s, Daa_smartCity.Node t) {
+        int a = graph.indexOf(s), b = graph.indexOf(t);
+        return (a < 0 || b < 0) ? INF : distance(a, b);
+    }
+
+    public double distance(int s, int t) {
+        double[] cost = new double[1];
+        return bestHub(s, t, cost) < 0 ? INF : cost[0];
+    }
+
+    /** Shortest s-t path as node indices, or null if t is unreachable from s. */
+    public int[] path(int s, int t) {
+        int r = bestHub(s, t, new double[1]);
+        if (r < 0) return null;
+        int h = hubNode[r];
+
+        IntBuf head = new IntBuf();
+        for (int cur = s; ; ) {
+            head.add(cur);
+            if (cur == h) break;
+            cur = outParent[find(outOffsets, outHub, cur, r)];
+        }
+        IntBuf tail = new IntBuf();
+        for (int cur = t; cur != h; ) {
+            tail.add(cur);
+            cur = inParent[find(inOffsets, inHub, cur, r)];
+        }
+        int[] p = Arrays.copyOf(head.a, head.size + tail.size);
+        for (int i = 0; i < tail.size; i++) p[head.size + i] = tail.a[tail.size - 1 - i];
+        return p;
+    }
+
+    public Daa_smartCity.PathResult shortestPath(Daa_smartCity.Node s, Daa_smartCity.Node t) {
+        int a = graph.indexOf(s), b = graph.indexOf(t);
+        int[] p = (a < 0 || b < 0) ? null : path(a, b);
+        if (p == null) return new Daa_smartCity.PathResult(false, null, 0, false, null, INF);
+        List<Daa_smartCity.Node> nodes = new ArrayList<>(p.length);
+        for (int v : p) nodes.add(graph.nodes[v]);
+        return new Daa_smartCity.PathResult(true, nodes, labelSize(a) + labelSize(b), false, null, distance(a, b));
+    }
+
+    // ======= Query internals =======
+
+    private int labelSize(int v) {
+        return (outOffsets[v + 1] - outOffsets[v]) + (inOffsets[v + 1] - inOffsets[v]);
+    }
+
+    // Rank of the hub minimising d(s, h) + d(h, t), or -1; that cost is written to cost[0]
+    private int bestHub(int s, int t, double[] cost) {
+        int i = outOffsets[s], iEnd = outOffsets[s + 1];
+        int j = inOffsets[t], jEnd = inOffsets[t + 1];
+        double best = INF;
+        int bestRank = -1;
+        while (i < iEnd && j < jEnd) {
+            int hi = outHub[i], hj = inHub[j];
+            if (hi == hj) {
+                double c = outDist[i] + inDist[j];
+                if (c < best) {
+                    best = c;
+                    bestRank = hi;
+                }
+                i++;
+                j++;
+            } else if (hi < hj) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        cost[0] = best;
+        return bestRank;
+    }
+
+    private static int find(int[] offs, int[] hubs, int v, int rank) {
+        int k = Arrays.binarySearch(hubs, offs[v], offs[v + 1], rank);
+        if (k < 0) throw new IllegalStateException("Missing parent label for hub rank " + rank);
+        return k;
+    }
+
+    // ======= Construction =======
+
+    private static final class Labels {
+        int[] offsets, hub, parent;
+        double[] dist;
+    }
+
+    // Nodes labelled by one pruned search, with distance and parent for each
+    private static final class Hits {
+        final boolean forward;
+        final IntBuf nodes = new IntBuf();
+        final IntBuf parents = new IntBuf();
+        double[] dist = new double[8];
+
+        Hits(boolean forward) {
+            this.forward = forward;
+        }
+
+        void add(int v, int p, double d) {
+            if (nodes.size == dist.length) dist = Arrays.copyOf(dist, dist.length * 2);
+            dist[nodes.size] = d;
+            nodes.add(v);
+            parents.add(p);
+        }
+    }
+
+    private static final class IntBuf {
+        int[] a = new int[8];
+        int size;
+
+        void add(int v) {
+            if (size == a.length) a = Arrays.copyOf(a, size * 2);
+            a[size++] = v;
+        }
+    }
+
+    // Growable per-node label under construction
+    private static final class Growing {
+        int[] hub = new int[4];
+        double[] dist = new double[4];
+        int[] parent = new int[4];
+        int size;
+
+        void add(int h, double d, int p) {
+            if (size == hub.length) {
+                hub = Arrays.copyOf(hub, size * 2);
+                dist = Arrays.copyOf(dist, size * 2);
+                parent = Arrays.copyOf(parent, size * 2);
+            }
+            hub[size] = h;
+            dist[size] = d;
+            parent[size++] = p;
+        }
+    }
+
+    private static final class Builder {
+        private final GraphSnapshot g, rev;
+        private final ForkJoinPool pool;
+        private final int n;
+        private final int[] order;        // rank -> node
+        private final Growing[] out, in;
+
+        Builder(GraphSnapshot g, ForkJoinPool pool) {
+            this.g = g;
+            this.rev = g.reverse();
+            this.pool = pool;
+            this.n = g.size();
+            this.order = importanceOrder(g, rev);
+            out = new Growing[n];
+            in = new Growing[n];
+            for (int v = 0; v < n; v++) {
+                out[v] = new Growing();
+                in[v] = new Growing();
+            }
+        }
+
+        HubLabels run() {
+            ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(n));
+            int batch = Math.max(1, pool.getParallelism() * 2);
+
+            int r = 0;
+            while (r < n) {
+                int from = r;
+                int to = (r < SEQUENTIAL_HUBS || batch == 1) ? r + 1 : Math.min(n, r + batch);
+
+                // Pruned searches for the batch only read committed labels
+                Hits[][] results = new Hits[to - from][];
+                Runnable work = () -> IntStream.range(from, to).parallel().forEach(rank -> {
+                    Scratch sc = scratch.get();
+                    results[rank - from] = new Hits[]{prunedSearch(rank, true, sc), prunedSearch(rank, false, sc)};
+                });
+                if (to - from == 1 || pool.getParallelism() <= 1) work.run();
+                else pool.submit(work).join();
+
+                // Commit in rank order so every label stays sorted by hub rank
+                for (int k = 0; k < to - from; k++) commit(from + k, results[k]);
+                r = to;
+            }
+
+            return new HubLabels(g, order, flatten(out), flatten(in));
+        }
+
+        // Forward search fills in-labels (d(h, v)), backward search on the reverse graph out-labels
+        private Hits prunedSearch(int rank, boolean forward, Scratch sc) {
+            int h = order[rank];
+            GraphSnapshot graph = forward ? g : rev;
+            Growing[] own = forward ? out : in;       // labels of h on the side we start from
+            Growing[] target = forward ? in : out;    // labels being created for reached nodes
+
+            // Distances from/to h via already committed hubs, indexed by hub rank
+            Growing hl = own[h];
+            for (int k = 0; k < hl.size; k++) sc.hubDist[hl.hub[k]] = hl.dist[k];
+
+            sc.heap.clear();
+            sc.dist[h] = 0.0;
+            sc.parent[h] = h;
+            sc.touched.size = 0;
+            sc.touched.add(h);
+            sc.heap.push(h, 0.0);
+            Hits hits = new Hits(forward);
+
+            while (!sc.heap.isEmpty()) {
+                int v = sc.heap.poll();
+                double dv = sc.dist[v];
+
+                Growing tl = target[v];
+                boolean covered = false;
+                for (int k = 0; k < tl.size; k++) {
+                    double via = sc.hubDist[tl.hub[k]];
+                    if (via != INF && via + tl.dist[k] <= dv) {
+                        covered = true;
+                        break;
+                    }
+                }
+                if (covered) continue;
+
+                hits.add(v, sc.parent[v], dv);
+
+                for (int a = graph.offsets[v]; a < graph.offsets[v + 1]; a++) {
+                    int w = graph.targets[a];
+                    double nd = dv + graph.weights[a];
+                    if (nd < sc.dist[w]) {
+                        if (sc.dist[w] == INF) sc.touched.add(w);
+                        sc.dist[w] = nd;
+                        sc.parent[w] = v;
+                        sc.heap.push(w, nd);
+                    }
+                }
+            }
+
+            for (int k = 0; k < sc.touched.size; k++) sc.dist[sc.touched.a[k]] = INF;
+            for (int k = 0; k < hl.size; k++) sc.hubDist[hl.hub[k]] = INF;
+
+            return hits;
+        }
+
+        private void commit(int rank, Hits[] searches) {
+            for (Hits hs : searches) {
+                Growing[] target = hs.forward ? in : out;
+                for (int k = 0; k < hs.nodes.size; k++) {
+                    target[hs.nodes.a[k]].add(rank, hs.dist[k], hs.parents.a[k]);
+                }
+            }
+        }
+
+        private Labels flatten(Growing[] gs) {
+            Labels l = new Labels();
+            l.offsets = new int[n + 1];
+            for (int v = 0; v < n; v++) l.offsets[v + 1] = l.offsets[v] + gs[v].size;
+            int total = l.offsets[n];
+            l.hub = new int[total];
+            l.dist = new double[total];
+            l.parent = new int[total];
+            for (int v = 0; v < n; v++) {
+                Growing x = gs[v];
+                System.arraycopy(x.hub, 0, l.hub, l.offsets[v], x.size);
+                System.arraycopy(x.dist, 0, l.dist, l.offsets[v], x.size);
+                System.arraycopy(x.parent, 0, l.parent, l.offsets[v], x.size);
+            }
+            return l;
+        }
+
+        // Most important first. Importance = how many nodes hang below v in a few sampled
+        // shortest-path trees (a cheap betweenness estimate; nodes on many shortest paths make
+        // the best hubs). Ties fall back to degree, then index, for determinism.
+        private static int[] importanceOrder(GraphSnapshot g, GraphSnapshot rev) {
+            int n = g.size();
+            long[] score = new long[n];
+            int samples = Math.min(n, ORDER_SAMPLES);
+            Random rnd = new Random(n);
+            double[] dist = new double[n];
+            int[] parent = new int[n];
+            int[] settled = new int[n];
+            long[] below = new long[n];
+            IndexedMinHeap heap = new IndexedMinHeap(n);
+
+            for (int k = 0; k < samples; k++) {
+                int root = rnd.nextInt(n);
+                Arrays.fill(dist, INF);
+                dist[root] = 0.0;
+                parent[root] = -1;
+                heap.clear();
+                heap.push(root, 0.0);
+                int count = 0;
+                while (!heap.isEmpty()) {
+                    int u = heap.poll();
+                    settled[count++] = u;
+                    for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                        int v = g.targets[a];
+                        double nd = dist[u] + g.weights[a];
+                        if (nd < dist[v]) {
+                            dist[v] = nd;
+                            parent[v] = u;
+                            heap.push(v, nd);
+                        }
+                    }
+                }
+                for (int i = 0; i < count; i++) below[settled[i]] = 1;
+                for (int i = count - 1; i > 0; i--) {
+                    int v = settled[i];
+                    below[parent[v]] += below[v];
+                }
+                for (int i = 0; i < count; i++) score[settled[i]] += below[settled[i]];
+            }
+
+            Integer[] idx = new Integer[n];
+            for (int i = 0; i < n; i++) idx[i] = i;
+            Arrays.sort(idx, (a, b) -> {
+                if (score[a] != score[b]) return Long.compare(score[b], score[a]);
+                int da = (g.offsets[a + 1] - g.offsets[a]) + (rev.offsets[a + 1] - rev.offsets[a]);
+                int db = (g.offsets[b + 1] - g.offsets[b]) + (rev.offsets[b + 1] - rev.offsets[b]);
+                return da != db ? Integer.compare(db, da) : Integer.compare(a, b);
+            });
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) order[i] = idx[i];
+            return order;
+        }
+    }
+
+    private static final class Scratch {
+        final double[] dist;
+        final int[] parent;
+        final double[] hubDist;
+        final IndexedMinHeap heap;
+        final IntBuf touched = new IntBuf();
+
+        Scratch(int n) {
+            dist = new double[n];
+            parent = new int[n];
+            hubDist = new double[n];
+            Arrays.fill(dist, INF);
+            Arrays.fill(hubDist, INF);
+            heap = new IndexedMinHeap(n);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.Arrays;
+
+/**
+ * Binary min-heap over node indices 0..n-1 with decrease-key, backed by primitive arrays.
+ * Meant to be reused across many searches on the same snapshot (clear() is O(size)).
+ */
+public class IndexedMinHeap {
+
+    private final int[] heap;     // heap position -> node
+    private final int[] pos;      // node -> heap position, -1 if absent
+    private final double[] key;
+    private int size;
+
+    public IndexedMinHeap(int n) {
+        heap = new int[Math.max(1, n)];
+        pos = new int[Math.max(1, n)];
+        key = new double[Math.max(1, n)];
+        Arrays.fill(pos, -1);
+    }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public int size() { return size; }
+
+    public boolean contains(int v) { return pos[v] >= 0; }
+
+    public double peekKey() { return key[heap[0]]; }
+
+    public double keyOf(int v) { return key[v]; }
+
+    /** Inserts v or lowers its key; a higher key is ignored. */
+    public void push(int v, double k) {
+        int p = pos[v];
+        if (p < 0) {
+            key[v] = k;
+            heap[size] = v;
+            pos[v] = size;
+            siftUp(size++);
+        } else if (k < key[v]) {
+            key[v] = k;
+            siftUp(p);
+        }
+    }
+
+    /** Sets v's key unconditionally (used by searches whose keys can grow, e.g. D* Lite). */
+    public void update(int v, double k) {
+        int p = pos[v];
+        if (p < 0) {
+            push(v, k);
+            return;
+        }
+        double old = key[v];
+        key[v] = k;
+        if (k < old) siftUp(p);
+        else siftDown(p);
+    }
+
+    public int poll() {
+        int top = heap[0];
+        remove(top);
+        return top;
+    }
+
+    public void remove(int v) {
+        int p = pos[v];
+        if (p < 0) return;
+        int last = heap[--size];
+        pos[v] = -1;
+        if (p == size) return;
+        heap[p] = last;
+        pos[last] = p;
+        siftUp(p);
+        siftDown(pos[last]);
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) pos[heap[i]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        double k = key[v];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int pv = heap[parent];
+            if (key[pv] <= k) break;
+            heap[i] = pv;
+            pos[pv] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        pos[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        double k = key[v];
+        int half = size >>> 1;
+        while (i < half) {
+            int c = 2 * i + 1;
+            if (c + 1 < size && key[heap[c + 1]] < key[heap[c]]) c++;
+            if (key[heap[c]] >= k) break;
+            heap[i] = heap[c];
+            pos[heap[i]] = i;
+            i = c;
+        }
+        heap[i] = v;
+        pos[v] = i;
+    }
+}
@@ -0,0 +1,157 @@
+import java.awt.Polygon;
+import java.util.*;
+
+/**
+ * Budget-bounded one-to-all search: every node reachable from a depot within a cost limit,
+ * with its arrival cost, plus an outline polygon for drawing.
+ *
+ * With non-negative weights this is Dijkstra that stops as soon as the smallest queued
+ * label exceeds the budget, so only the reachable region (and its frontier) is touched.
+ * Negative weights break that stopping rule; then a full label-correcting pass runs and
+ * the result is filtered by budget.
+ *
+ * The outline is the convex hull of the reachable nodes plus the points where the budget
+ * runs out part-way along outgoing roads (linear interpolation over the road's cost).
+ */
+public class Isochrone {
+
+    private static final double EPS = 1e-9;
+
+    public static final class Result {
+        public final Daa_smartCity.Node source;
+        public final double budget;
+        public final Map<Daa_smartCity.Node, Double> arrival;   // in settle order
+        public final Polygon outline;
+        public final int settled;
+
+        Result(Daa_smartCity.Node source, double budget, Map<Daa_smartCity.Node, Double> arrival,
+               Polygon outline, int settled) {
+            this.source = source;
+            this.budget = budget;
+            this.arrival = arrival;
+            this.outline = outline;
+            this.settled = settled;
+        }
+    }
+
+    /** Throws IllegalArgumentException if a negative cycle is reachable from source. */
+    public static Result compute(Daa_smartCity.Node source,
+                                 List<Daa_smartCity.Node> nodes,
+                                 List<Daa_smartCity.Edge> edges,
+                                 boolean directed,
+                                 double budget) {
+        GraphSnapshot g = GraphSnapshot.of(nodes, edges, directed);
+        int s = g.indexOf(source);
+        int n = g.size();
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        List<Integer> order = new ArrayList<>();
+
+        if (s >= 0) {
+            if (g.hasNegativeWeights()) labelCorrecting(g, s, dist, order);
+            else boundedDijkstra(g, s, budget, dist, order);
+        }
+
+        Map<Daa_smartCity.Node, Double> arrival = new LinkedHashMap<>();
+        List<double[]> pts = new ArrayList<>();
+        for (int u : order) {
+            if (dist[u] > budget + EPS) continue;
+            Daa_smartCity.Node a = g.nodes[u];
+            arrival.put(a, dist[u]);
+            pts.add(new double[]{a.x, a.y});
+
+            for (int k = g.offsets[u]; k < g.offsets[u + 1]; k++) {
+                int v = g.targets[k];
+                double w = g.weights[k];
+                if (w <= 0 || dist[u] + w <= budget + EPS) continue;
+                double f = (budget - dist[u]) / w;
+                Daa_smartCity.Node b = g.nodes[v];
+                pts.add(new double[]{a.x + f * (b.x - a.x), a.y + f * (b.y - a.y)});
+            }
+        }
+        return new Result(source, budget, arrival, hull(pts), order.size());
+    }
+
+    private static void boundedDijkstra(GraphSnapshot g, int s, double budget,
+                                        double[] dist, List<Integer> order) {
+        IndexedMinHeap heap = new IndexedMinHeap(g.size());
+        dist[s] = 0.0;
+        heap.push(s, 0.0);
+        while (!heap.isEmpty()) {
+            if (heap.peekKey() > budget + EPS) break;
+            int u = heap.poll();
+            order.add(u);
+            for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                int v = g.targets[a];
+                double nd = dist[u] + g.weights[a];
+                if (nd < dist[v]) {
+                    dist[v] = nd;
+                    heap.push(v, nd);
+                }
+            }
+        }
+    }
+
+    private static void labelCorrecting(GraphSnapshot g, int s, double[] dist, List<Integer> order) {
+        int n = g.size();
+        int[] relabels = new int[n];
+        boolean[] queued = new boolean[n];
+        ArrayDeque<Integer> q = new ArrayDeque<>();
+        dist[s] = 0.0;
+        q.add(s);
+        queued[s] = true;
+
+        while (!q.isEmpty()) {
+            int u = q.poll();
+            queued[u] = false;
+            for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                int v = g.targets[a];
+                double nd = dist[u] + g.weights[a];
+                if (nd < dist[v] - EPS) {
+                    dist[v] = nd;
+                    if (++relabels[v] > n) {
+                        throw new IllegalArgumentException("Negative cycle reachable from " + g.nodes[s].label);
+                    }
+                    if (!queued[v]) {
+                        queued[v] = true;
+                        q.add(v);
+                    }
+                }
+            }
+        }
+
+        Integer[] idx = new Integer[n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+        Arrays.sort(idx, Comparator.comparingDouble(i -> dist[i]));
+        for (int i : idx) {
+            if (dist[i] == Double.POSITIVE_INFINITY) break;
+            order.add(i);
+        }
+    }
+
+    // Andrew's monotone chain; fewer than 3 distinct points give a degenerate polygon
+    static Polygon hull(List<double[]> pts) {
+        Polygon poly = new Polygon();
+        if (pts.isEmpty()) return poly;
+        pts.sort((p, q) -> p[0] != q[0] ? Double.compare(p[0], q[0]) : Double.compare(p[1], q[1]));
+
+        double[][] h = new double[2 * pts.size()][];
+        int k = 0;
+        for (double[] p : pts) {
+            while (k >= 2 && cross(h[k - 2], h[k - 1], p) <= 0) k--;
+            h[k++] = p;
+        }
+        for (int i = pts.size() - 2, lower = k + 1; i >= 0; i--) {
+            double[] p = pts.get(i);
+            while (k >= lower && cross(h[k - 2], h[k - 1], p) <= 0) k--;
+            h[k++] = p;
+        }
+        int count = Math.max(1, k - 1);
+        for (int i = 0; i < count; i++) poly.addPoint((int) Math.round(h[i][0]), (int) Math.round(h[i][1]));
+        return poly;
+    }
+
+    private static double cross(double[] o, double[] a, double[] b) {
+        return (a[0] - o[0]) * (b[1] - o[1]) - (a[1] - o[1]) * (b[0] - o[0]);
+    }
+}
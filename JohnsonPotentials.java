@@ -0,0 +1,143 @@
+import java.util.*;
+
+/**
+ * Johnson-style node potentials h so that every reduced cost w(u,v) + h(u) - h(v) is >= 0.
+ * With them Dijkstra / A* / Greedy / delta-stepping stay usable after traffic makes some
+ * weights negative; a distance d' found on reduced costs maps back as d' - h(s) + h(t).
+ *
+ * h is the distance from a virtual source joined to every node by a 0-cost arc, computed
+ * once per topology with a label-correcting pass. Traffic batches are applied incrementally:
+ * a weight increase (or a road becoming blocked) keeps h feasible, a decrease is repaired by
+ * relaxing forward from the affected arc only.
+ */
+public class JohnsonPotentials {
+
+    private static final double BLOCKED_THRESHOLD = 9999.0;
+    private static final double EPS = 1e-9;
+
+    private final Map<Daa_smartCity.Node, Double> h = new IdentityHashMap<>();
+
+    // Original edges touching each node (both endpoints in undirected mode); weights read live
+    private final Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> incident = new IdentityHashMap<>();
+
+    private final List<DynamicTrafficManager.EdgeChange> pending = new ArrayList<>();
+
+    private long fingerprint = Long.MIN_VALUE;
+    private boolean directed;
+    private boolean valid = false;
+    private int fullComputes = 0;
+    private int repairs = 0;
+
+    /** Called for every traffic batch; the actual repair happens lazily in ensure(). */
+    public synchronized void onChanges(List<DynamicTrafficManager.EdgeChange> changes) {
+        if (changes != null) pending.addAll(changes);
+    }
+
+    /**
+     * Makes the potentials match the current graph. Returns false if no feasible potential
+     * exists (a negative cycle is reachable), in which case only Bellman-Ford family applies.
+     */
+    public synchronized boolean ensure(List<Daa_smartCity.Node> nodes,
+                                       List<Daa_smartCity.Edge> edges,
+                                       boolean directed) {
+        long fp = GraphSnapshot.fingerprint(nodes, edges, directed);
+        if (fp == fingerprint && !valid && pending.isEmpty()) return false;
+        if (fp != fingerprint || !valid) {
+            fingerprint = fp;
+            this.directed = directed;
+            pending.clear();
+            valid = fullCompute(nodes, edges);
+            fullComputes++;
+            return valid;
+        }
+
+        if (pending.isEmpty()) return true;
+
+        Deque<Daa_smartCity.Node> seeds = new ArrayDeque<>();
+        for (DynamicTrafficManager.EdgeChange ch : pending) {
+            if (ch.newWeight >= ch.oldWeight || ch.newWeight >= BLOCKED_THRESHOLD) continue;
+            seeds.add(ch.edge.from);
+            if (!directed) seeds.add(ch.edge.to);
+        }
+        pending.clear();
+        if (seeds.isEmpty()) return true;
+
+        repairs++;
+        valid = relax(seeds, nodes.size());
+        return valid;
+    }
+
+    public synchronized boolean isValid() { return valid; }
+
+    public double potential(Daa_smartCity.Node n) {
+        Double p = h.get(n);
+        return p == null ? 0.0 : p;
+    }
+
+    /** Non-negative reduced cost of traversing u -> v with weight w. */
+    public double reduced(Daa_smartCity.Node u, Daa_smartCity.Node v, double w) {
+        return Math.max(0.0, w + potential(u) - potential(v));
+    }
+
+    /** Maps a distance measured on reduced costs back to the real metric. */
+    public double restore(double reducedDist, Daa_smartCity.Node s, Daa_smartCity.Node t) {
+        return reducedDist - potential(s) + potential(t);
+    }
+
+    /** Potentials aligned with a snapshot's node indices. */
+    public double[] forSnapshot(GraphSnapshot g) {
+        double[] out = new double[g.size()];
+        for (int i = 0; i < out.length; i++) out[i] = potential(g.nodes[i]);
+        return out;
+    }
+
+    public int fullComputes() { return fullComputes; }
+
+    public int repairs() { return repairs; }
+
+    // ======= Internals =======
+
+    private boolean fullCompute(List<Daa_smartCity.Node> nodes, List<Daa_smartCity.Edge> edges) {
+        h.clear();
+        incident.clear();
+        for (Daa_smartCity.Node n : nodes) {
+            h.put(n, 0.0);                     // virtual source: 0-cost arc to everyone
+            incident.put(n, new ArrayList<>());
+        }
+        for (Daa_smartCity.Edge e : edges) {
+            incident.get(e.from).add(e);
+            if (!directed) incident.get(e.to).add(e);
+        }
+        return relax(new ArrayDeque<>(nodes), nodes.size());
+    }
+
+    // FIFO label-correcting pass from the seeds; more than V relabels of one node => negative cycle
+    private boolean relax(Deque<Daa_smartCity.Node> queue, int n) {
+        Set<Daa_smartCity.Node> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+        queued.addAll(queue);
+        Map<Daa_smartCity.Node, Integer> relabels = new IdentityHashMap<>();
+
+        while (!queue.isEmpty()) {
+            Daa_smartCity.Node u = queue.poll();
+            queued.remove(u);
+            double hu = potential(u);
+
+            for (Daa_smartCity.Edge e : incident.get(u)) {
+                if (e.weight >= BLOCKED_THRESHOLD) continue;
+                Daa_smartCity.Node v;
+                if (e.from == u) v = e.to;
+                else if (!directed) v = e.from;
+                else continue;
+
+                double nh = hu + e.weight;
+                if (nh < potential(v) - EPS) {
+                    h.put(v, nh);
+                    int c = relabels.merge(v, 1, Integer::sum);
+                    if (c > n) return false;
+                    if (queued.add(v)) queue.add(v);
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.*;
+
+public class KShortestPaths {
+
+    private static final double BLOCKED_THRESHOLD = 9999.0;
+
+    // ======= One ranked candidate (node sequence + prefix costs) =======
+    private static class Candidate {
+        final List<Daa_smartCity.Node> path;
+        final double[] prefix;   // prefix[i] = cost from path[0] to path[i]
+        final int steps;
+
+        Candidate(List<Daa_smartCity.Node> path, double[] prefix, int steps) {
+            this.path = path;
+            this.prefix = prefix;
+            this.steps = steps;
+        }
+
+        double cost() { return prefix[prefix.length - 1]; }
+    }
+
+    private Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> out;
+    private Map<Daa_smartCity.Node, List<Daa_smartCity.Edge>> in;
+
+    // Reverse shortest-path tree rooted at the destination (built once per query)
+    private Map<Daa_smartCity.Node, Double> toGoal;
+    private Map<Daa_smartCity.Node, Daa_smartCity.Node> nextHop;
+
+    /**
+     * Yen's k loopless shortest paths from src to dst, cheapest first.
+     * Requires non-negative weights; returns an empty list otherwise or when dst is unreachable.
+     */
+    public List<Daa_smartCity.PathResult> yen(
+            Daa_smartCity.Node src,
+            Daa_smartCity.Node dst,
+            List<Daa_smartCity.Node> nodes,
+            List<Daa_smartCity.Edge> edges,
+            boolean directed,
+            int k
+    ) {
+        List<Daa_smartCity.PathResult> results = new ArrayList<>();
+        if (src == null || dst == null || src == dst || k <= 0) return results;
+
+        for (Daa_smartCity.Edge e : edges) {
+            if (e.weight < BLOCKED_THRESHOLD && e.weight < 0) return results;
+        }
+
+        buildGraphs(nodes, edges, directed);
+        int treeSteps = buildReverseTree(dst);
+        if (!toGoal.containsKey(src)) return results;
+
+        List<Candidate> accepted = new ArrayList<>();
+        PriorityQueue<Candidate> pending = new PriorityQueue<>(Comparator.comparingDouble(Candidate::cost));
+        Set<List<Daa_smartCity.Node>> seen = new HashSet<>();
+
+        Candidate first = treePath(src, Collections.emptySet(), Collections.emptyMap(), treeSteps);
+        accepted.add(first);
+        seen.add(first.path);
+
+        while (accepted.size() < k) {
+            Candidate prev = accepted.get(accepted.size() - 1);
+
+            for (int i = 0; i < prev.path.size() - 1; i++) {
+                Daa_smartCity.Node spur = prev.path.get(i);
+                List<Daa_smartCity.Node> root = prev.path.subList(0, i + 1);
+
+                // Ban the next edge of every accepted path sharing this root
+                Map<Daa_smartCity.Node, Set<Daa_smartCity.Node>> bannedEdges = new HashMap<>();
+                for (Candidate c : accepted) {
+                    if (c.path.size() > i + 1 && c.path.subList(0, i + 1).equals(root)) {
+                        bannedEdges.computeIfAbsent(c.path.get(i), x -> new HashSet<>()).add(c.path.get(i + 1));
+                    }
+                }
+
+                // Root nodes (except the spur) may not be revisited -> loopless
+                Set<Daa_smartCity.Node> bannedNodes = new HashSet<>(root.subList(0, i));
+
+                Candidate spurPath = treePath(spur, bannedNodes, bannedEdges, 0);
+                if (spurPath == null) spurPath = spurSearch(spur, dst, bannedNodes, bannedEdges);
+                if (spurPath == null) continue;
+
+                List<Daa_smartCity.Node> total = new ArrayList<>(root.subList(0, i));
+                total.addAll(spurPath.path);
+                if (!seen.add(total)) continue;
+
+                double[] prefix = new double[total.size()];
+                System.arraycopy(prev.prefix, 0, prefix, 0, i + 1);
+                for (int j = 1; j < spurPath.prefix.length; j++) {
+                    prefix[i + j] = prev.prefix[i] + spurPath.prefix[j];
+                }
+                pending.add(new Candidate(total, prefix, spurPath.steps));
+            }
+
+            if (pending.isEmpty()) break;
+            accepted.add(pending.poll());
+        }
+
+        for (Candidate c : accepted) {
+            results.add(new Daa_smartCity.PathResult(true, c.path, c.steps, false, null, c.cost()));
+        }
+        return results;
+    }
+
+    private void buildGraphs(List<Daa_smartCity.Node> nodes, List<Daa_smartCity.Edge> edges, boolean directed) {
+        out = new HashMap<>();
+        in = new HashMap<>();
+        for (Daa_smartCity.Node n : nodes) {
+            out.put(n, new ArrayList<>());
+            in.put(n, new ArrayList<>());
+        }
+
+        for (Daa_smartCity.Edge e : edges) {
+            if (e.weight >= BLOCKED_THRESHOLD) continue;
+            out.get(e.from).add(e);
+            in.get(e.to).add(e);
+            if (!directed) {
+                Daa_smartCity.Edge r = new Daa_smartCity.Edge(e.to, e.from, e.weight);
+                out.get(e.to).add(r);
+                in.get(e.from).add(r);
+            }
+        }
+    }
+
+    // Dijkstra on the reverse graph: exact distance-to-goal for every node + next hop toward goal
+    private int buildReverseTree(Daa_smartCity.Node goal) {
+        toGoal = new HashMap<>();
+        nextHop = new HashMap<>();
+        Set<Daa_smartCity.Node> settled = new HashSet<>();
+
+        toGoal.put(goal, 0.0);
+        PriorityQueue<Object[]> pq = new PriorityQueue<>(Comparator.comparingDouble(a -> (Double) a[1]));
+        pq.add(new Object[]{goal, 0.0});
+
+        int steps = 0;
+        while (!pq.isEmpty()) {
+            Object[] top = pq.poll();
+            Daa_smartCity.Node v = (Daa_smartCity.Node) top[0];
+            if (!settled.add(v)) continue;
+            steps++;
+
+            for (Daa_smartCity.Edge e : in.get(v)) {
+                steps++;
+                double alt = toGoal.get(v) + e.weight;
+                Double cur = toGoal.get(e.from);
+                if (cur == null || alt < cur) {
+                    toGoal.put(e.from, alt);
+                    nextHop.put(e.from, v);
+                    pq.add(new Object[]{e.from, alt});
+                }
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Follows the reverse tree from 'from' to the goal. The tree path is already optimal,
+     * so if it avoids every banned node/edge the spur search can be skipped entirely.
+     */
+    private Candidate treePath(Daa_smartCity.Node from,
+                               Set<Daa_smartCity.Node> bannedNodes,
+                               Map<Daa_smartCity.Node, Set<Daa_smartCity.Node>> bannedEdges,
+                               int steps) {
+        if (!toGoal.containsKey(from)) return null;
+
+        List<Daa_smartCity.Node> path = new ArrayList<>();
+        path.add(from);
+        for (Daa_smartCity.Node at = from; nextHop.containsKey(at); ) {
+            Daa_smartCity.Node nx = nextHop.get(at);
+            Set<Daa_smartCity.Node> banned = bannedEdges.get(at);
+            if (bannedNodes.contains(nx) || (banned != null && banned.contains(nx))) return null;
+            path.add(nx);
+            at = nx;
+        }
+
+        double[] prefix = new double[path.size()];
+        double base = toGoal.get(from);
+        for (int i = 0; i < path.size(); i++) prefix[i] = base - toGoal.get(path.get(i));
+        return new Candidate(path, prefix, steps + path.size());
+    }
+
+    /**
+     * A* from the spur node with the reverse-tree distances as heuristic. Bans only ever
+     * lengthen paths, so toGoal stays a consistent lower bound and the search is very focused.
+     */
+    private Candidate spurSearch(Daa_smartCity.Node spur,
+                                 Daa_smartCity.Node goal,
+                                 Set<Daa_smartCity.Node> bannedNodes,
+                                 Map<Daa_smartCity.Node, Set<Daa_smartCity.Node>> bannedEdges) {
+        Map<Daa_smartCity.Node, Double> g = new HashMap<>();
+        Map<Daa_smartCity.Node, Daa_smartCity.Node> parent = new HashMap<>();
+        Set<Daa_smartCity.Node> closed = new HashSet<>();
+
+        g.put(spur, 0.0);
+        PriorityQueue<Object[]> open = new PriorityQueue<>(Comparator.comparingDouble(a -> (Double) a[1]));
+        open.add(new Object[]{spur, toGoal.get(spur)});
+
+        int steps = 0;
+        while (!open.isEmpty()) {
+            Daa_smartCity.Node u = (Daa_smartCity.Node) open.poll()[0];
+            if (!closed.add(u)) continue;
+            steps++;
+
+            if (u == goal) {
+                List<Daa_smartCity.Node> path = new ArrayList<>();
+                for (Daa_smartCity.Node at = goal; at != null; at = parent.get(at)) path.add(at);
+                Collections.reverse(path);
+
+                double[] prefix = new double[path.size()];
+                for (int i = 0; i < path.size(); i++) prefix[i] = g.get(path.get(i));
+                return new Candidate(path, prefix, steps);
+            }
+
+            Set<Daa_smartCity.Node> banned = bannedEdges.get(u);
+            for (Daa_smartCity.Edge e : out.get(u)) {
+                steps++;
+                if (bannedNodes.contains(e.to) || closed.contains(e.to)) continue;
+                if (banned != null && banned.contains(e.to)) continue;
+
+                Double h = toGoal.get(e.to);
+                if (h == null) continue; // cannot reach goal from here at all
+
+                double alt = g.get(u) + e.weight;
+                Double cur = g.get(e.to);
+                if (cur == null || alt < cur) {
+                    g.put(e.to, alt);
+                    parent.put(e.to, u);
+                    open.add(new Object[]{e.to, alt + h});
+                }
+            }
+        }
+        return null;
+    }
+}
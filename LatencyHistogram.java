@@ -0,0 +1,75 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram for tail percentiles.
+ *
+ * Buckets are log-linear over microseconds: each power of two is split into 16 sub-buckets,
+ * so a reported percentile is within about 6% of the true value, from 1 µs up to about 9 hours.
+ * recordNanos() is safe from any number of threads.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAGNITUDES = 32;
+
+    private final AtomicLongArray counts = new AtomicLongArray(MAGNITUDES * SUB);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public void recordNanos(long nanos) {
+        long us = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(us));
+        total.increment();
+        sumMicros.add(us);
+        maxMicros.accumulate(us);
+    }
+
+    public long count() { return total.sum(); }
+
+    public double meanMillis() {
+        long n = total.sum();
+        return n == 0 ? 0.0 : sumMicros.sum() / 1000.0 / n;
+    }
+
+    public double maxMillis() { return maxMicros.get() / 1000.0; }
+
+    /** Upper edge of the bucket holding quantile q (0..1), in milliseconds. */
+    public double percentileMillis(double q) {
+        long n = total.sum();
+        if (n == 0) return 0.0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int b = 0; b < counts.length(); b++) {
+            seen += counts.get(b);
+            if (seen >= rank) return Math.min(upperMicros(b), maxMicros.get()) / 1000.0;
+        }
+        return maxMillis();
+    }
+
+    /** One line with count, mean, p50/p90/p99/p99.9 and max. */
+    public String summary() {
+        return String.format("n=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+                count(), meanMillis(), percentileMillis(0.50), percentileMillis(0.90),
+                percentileMillis(0.99), percentileMillis(0.999), maxMillis());
+    }
+
+    // Values below SUB get exact buckets; above, the top SUB_BITS bits after the leading one pick the sub-bucket
+    private static int bucketOf(long us) {
+        if (us < SUB) return (int) us;
+        int mag = 63 - Long.numberOfLeadingZeros(us);           // >= SUB_BITS
+        int sub = (int) (us >>> (mag - SUB_BITS)) & (SUB - 1);
+        int b = (mag - SUB_BITS + 1) * SUB + sub;
+        return Math.min(b, MAGNITUDES * SUB - 1);
+    }
+
+    private static long upperMicros(int b) {
+        if (b < SUB) return b;
+        int mag = b / SUB + SUB_BITS - 1;
+        int sub = b % SUB;
+        return ((long) (SUB + sub + 1) << (mag - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,186 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Origin x destination cost tables on top of a contraction hierarchy (bucket method).
+ *
+ * One backward upward search per target drops (target, distance) into a bucket at every
+ * node it settles; one forward upward search per source then only scans the buckets of the
+ * nodes it settles. Both searches touch a few hundred nodes even on large graphs, so an
+ * S x T table costs far less than S full Dijkstras.
+ *
+ * Rows are handed to a RowSink as soon as each source finishes. Sources run in parallel,
+ * so the sink may be called from several pool threads at once.
+ *
+ * The hierarchy is rebuilt lazily when the topology fingerprint or the traffic changes.
+ */
+public class ManyToManyMatrix implements DynamicTrafficManager.TrafficListener {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+
+    public interface RowSink {
+        void row(int sourceIndex, double[] costs);
+    }
+
+    private final ForkJoinPool pool;
+
+    private ContractionHierarchy ch;
+    private long fingerprint = Long.MIN_VALUE;
+    private volatile boolean stale = true;
+    private int builds = 0;
+
+    public ManyToManyMatrix(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ManyToManyMatrix() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public void onTrafficChange(int version, List<DynamicTrafficManager.EdgeChange> changes) {
+        stale = true;
+    }
+
+    public int builds() { return builds; }
+
+    public ContractionHierarchy hierarchy() { return ch; }
+
+    /** Rebuilds the hierarchy if needed; throws IllegalArgumentException on negative weights. */
+    public synchronized ContractionHierarchy ensure(List<Daa_smartCity.Node> nodes,
+                                                    List<Daa_smartCity.Edge> edges,
+                                                    boolean directed) {
+        long fp = GraphSnapshot.fingerprint(nodes, edges, directed);
+        if (ch == null || stale || fp != fingerprint) {
+            stale = false;
+            fingerprint = fp;
+            ch = ContractionHierarchy.build(GraphSnapshot.of(nodes, edges, directed));
+            builds++;
+        }
+        return ch;
+    }
+
+    /** Full S x T table, row i for sources.get(i). Unreachable pairs are +Infinity. */
+    public double[][] table(List<Daa_smartCity.Node> nodes,
+                            List<Daa_smartCity.Edge> edges,
+                            boolean directed,
+                            List<Daa_smartCity.Node> sources,
+                            List<Daa_smartCity.Node> targets) {
+        double[][] out = new double[sources.size()][];
+        stream(nodes, edges, directed, sources, targets, (i, row) -> out[i] = row);
+        return out;
+    }
+
+    /** Computes the table and streams each finished row to sink. */
+    public void stream(List<Daa_smartCity.Node> nodes,
+                       List<Daa_smartCity.Edge> edges,
+                       boolean directed,
+                       List<Daa_smartCity.Node> sources,
+                       List<Daa_smartCity.Node> targets,
+                       RowSink sink) {
+        ContractionHierarchy h = ensure(nodes, edges, directed);
+        GraphSnapshot g = h.graph;
+        int n = h.size();
+        int tCount = targets.size();
+
+        int[] tIdx = new int[tCount];
+        for (int j = 0; j < tCount; j++) tIdx[j] = g.indexOf(targets.get(j));
+
+        Buckets buckets = fillBuckets(h, tIdx);
+
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(n));
+        Runnable work = () -> IntStream.range(0, sources.size()).parallel().forEach(i -> {
+            double[] row = new double[tCount];
+            Arrays.fill(row, INF);
+            int s = g.indexOf(sources.get(i));
+            if (s >= 0) scanSource(h, s, buckets, row, scratch.get());
+            sink.row(i, row);
+        });
+        if (pool.getParallelism() <= 1) work.run();
+        else pool.submit(work).join();
+    }
+
+    // ======= Internals =======
+
+    // Bucket entries grouped by node: entries [offsets[x], offsets[x + 1]) live at node x
+    private static final class Buckets {
+        int[] offsets;
+        int[] target;
+        double[] dist;
+    }
+
+    private static final class Scratch {
+        final double[] dist;
+        final IndexedMinHeap heap;
+        final List<Integer> settled = new ArrayList<>();
+
+        Scratch(int n) {
+            dist = new double[n];
+            Arrays.fill(dist, INF);
+            heap = new IndexedMinHeap(n);
+        }
+
+        void reset() {
+            for (int x : settled) dist[x] = INF;
+            settled.clear();
+        }
+    }
+
+    private Buckets fillBuckets(ContractionHierarchy h, int[] tIdx) {
+        int n = h.size();
+        Scratch sc = new Scratch(n);
+        int[] count = new int[n + 1];
+        List<int[]> perTarget = new ArrayList<>();
+        List<double[]> perTargetDist = new ArrayList<>();
+
+        for (int j = 0; j < tIdx.length; j++) {
+            int t = tIdx[j];
+            if (t < 0) {
+                perTarget.add(new int[0]);
+                perTargetDist.add(new double[0]);
+                continue;
+            }
+            h.upwardSearch(t, h.inOffsets, h.inTargets, h.inWeights, sc.dist, sc.heap, sc.settled);
+            int[] xs = new int[sc.settled.size()];
+            double[] ds = new double[xs.length];
+            for (int k = 0; k < xs.length; k++) {
+                xs[k] = sc.settled.get(k);
+                ds[k] = sc.dist[xs[k]];
+                count[xs[k] + 1]++;
+            }
+            perTarget.add(xs);
+            perTargetDist.add(ds);
+            sc.reset();
+        }
+
+        Buckets b = new Buckets();
+        for (int x = 0; x < n; x++) count[x + 1] += count[x];
+        b.offsets = count;
+        b.target = new int[count[n]];
+        b.dist = new double[count[n]];
+        int[] fill = Arrays.copyOf(count, n);
+        for (int j = 0; j < tIdx.length; j++) {
+            int[] xs = perTarget.get(j);
+            double[] ds = perTargetDist.get(j);
+            for (int k = 0; k < xs.length; k++) {
+                int at = fill[xs[k]]++;
+                b.target[at] = j;
+                b.dist[at] = ds[k];
+            }
+        }
+        return b;
+    }
+
+    private void scanSource(ContractionHierarchy h, int s, Buckets b, double[] row, Scratch sc) {
+        h.upwardSearch(s, h.outOffsets, h.outTargets, h.outWeights, sc.dist, sc.heap, sc.settled);
+        for (int x : sc.settled) {
+            double dx = sc.dist[x];
+            for (int k = b.offsets[x]; k < b.offsets[x + 1]; k++) {
+                double c = dx + b.dist[k];
+                if (c < row[b.target[k]]) row[b.target[k]] = c;
+            }
+        }
+        sc.reset();
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.*;
+
+/**
+ * Just enough JSON for the routing service: parses into Map / List / String / Double /
+ * Boolean / null, and writes the same shapes back (Map keys in insertion order).
+ */
+public final class MiniJson {
+
+    private final String s;
+    private int i = 0;
+
+    private MiniJson(String s) { this.s = s; }
+
+    public static Object parse(String text) {
+        MiniJson p = new MiniJson(text);
+        Object v = p.value();
+        p.ws();
+        if (p.i != p.s.length()) throw p.error("trailing characters");
+        return v;
+    }
+
+    /** Parses text that must be a JSON object. */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(String text) {
+        Object v = parse(text);
+        if (!(v instanceof Map)) throw new IllegalArgumentException("JSON object expected");
+        return (Map<String, Object>) v;
+    }
+
+    // ======= Reading =======
+
+    private Object value() {
+        ws();
+        if (i >= s.length()) throw error("unexpected end");
+        char c = s.charAt(i);
+        switch (c) {
+            case '{': return object();
+            case '[': return array();
+            case '"': return string();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default:  return number();
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        i++;
+        ws();
+        if (peek() == '}') {
+            i++;
+            return m;
+        }
+        while (true) {
+            ws();
+            if (peek() != '"') throw error("key expected");
+            String k = string();
+            ws();
+            expect(':');
+            m.put(k, value());
+            ws();
+            if (peek() == ',') {
+                i++;
+            } else {
+                expect('}');
+                return m;
+            }
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> a = new ArrayList<>();
+        i++;
+        ws();
+        if (peek() == ']') {
+            i++;
+            return a;
+        }
+        while (true) {
+            a.add(value());
+            ws();
+            if (peek() == ',') {
+                i++;
+            } else {
+                expect(']');
+                return a;
+            }
+        }
+    }
+
+    private String string() {
+        StringBuilder b = new StringBuilder();
+        i++;
+        while (i < s.length()) {
+            char c = s.charAt(i++);
+            if (c == '"') return b.toString();
+            if (c != '\\') {
+                b.append(c);
+                continue;
+            }
+            if (i >= s.length()) break;
+            char e = s.charAt(i++);
+            switch (e) {
+                case 'n': b.append('\n'); break;
+                case 't': b.append('\t'); break;
+                case 'r': b.append('\r'); break;
+                case 'b': b.append('\b'); break;
+                case 'f': b.append('\f'); break;
+                case 'u':
+                    if (i + 4 > s.length()) throw error("bad escape");
+                    b.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                    i += 4;
+                    break;
+                default: b.append(e);
+            }
+        }
+        throw error("unterminated string");
+    }
+
+    private Object literal(String word, Object v) {
+        if (!s.startsWith(word, i)) throw error("unexpected token");
+        i += word.length();
+        return v;
+    }
+
+    private Double number() {
+        int start = i;
+        while (i < s.length() && "+-0123456789.eE".indexOf(s.charAt(i)) >= 0) i++;
+        if (start == i) throw error("unexpected character '" + s.charAt(i) + "'");
+        try {
+            return Double.valueOf(s.substring(start, i));
+        } catch (NumberFormatException ex) {
+            throw error("bad number");
+        }
+    }
+
+    private void ws() {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+    }
+
+    private char peek() {
+        return i < s.length() ? s.charAt(i) : '\0';
+    }
+
+    private void expect(char c) {
+        if (peek() != c) throw error("'" + c + "' expected");
+        i++;
+    }
+
+    private IllegalArgumentException error(String msg) {
+        return new IllegalArgumentException("Bad JSON at " + i + ": " + msg);
+    }
+
+    // ======= Typed access (IllegalArgumentException on a mismatch) =======
+
+    @SuppressWarnings("unchecked")
+    public static List<Object> asArray(Object o, String what) {
+        if (!(o instanceof List)) throw new IllegalArgumentException("\"" + what + "\" must be an array");
+        return (List<Object>) o;
+    }
+
+    public static String asString(Object o) {
+        if (!(o instanceof String)) throw new IllegalArgumentException("String expected, got " + o);
+        return (String) o;
+    }
+
+    public static Number asNumber(Object o) {
+        if (!(o instanceof Number)) throw new IllegalArgumentException("Number expected, got " + o);
+        return (Number) o;
+    }
+
+    // ======= Writing =======
+
+    public static String write(Object v) {
+        StringBuilder b = new StringBuilder();
+        write(v, b);
+        return b.toString();
+    }
+
+    public static void write(Object v, StringBuilder b) {
+        if (v == null) {
+            b.append("null");
+        } else if (v instanceof String) {
+            quote((String) v, b);
+        } else if (v instanceof Double || v instanceof Float) {
+            double d = ((Number) v).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) b.append("null");
+            else if (d == Math.rint(d) && Math.abs(d) < 1e15) b.append((long) d);
+            else b.append(d);
+        } else if (v instanceof Number || v instanceof Boolean) {
+            b.append(v);
+        } else if (v instanceof Map) {
+            b.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> en : ((Map<?, ?>) v).entrySet()) {
+                if (!first) b.append(',');
+                first = false;
+                quote(String.valueOf(en.getKey()), b);
+                b.append(':');
+                write(en.getValue(), b);
+            }
+            b.append('}');
+        } else if (v instanceof Collection) {
+            b.append('[');
+            boolean first = true;
+            for (Object o : (Collection<?>) v) {
+                if (!first) b.append(',');
+                first = false;
+                write(o, b);
+            }
+            b.append(']');
+        } else {
+            quote(v.toString(), b);
+        }
+    }
+
+    private static void quote(String str, StringBuilder b) {
+        b.append('"');
+        for (int k = 0; k < str.length(); k++) {
+            char c = str.charAt(k);
+            switch (c) {
+                case '"':  b.append("\\\""); break;
+                case '\\': b.append("\\\\"); break;
+                case '\n': b.append("\\n"); break;
+                case '\r': b.append("\\r"); break;
+                case '\t': b.append("\\t"); break;
+                default:
+                    if (c < 0x20) b.append(String.format("\\u%04x", (int) c));
+                    else b.append(c);
+            }
+        }
+        b.append('"');
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * "Which of these facilities is closest to the incident?" answered with a single search.
+ *
+ * nearest() seeds every facility at distance 0 and stops when the incident is settled:
+ * on the forward graph that is min over f of d(f, incident) (a unit driving out to it), on
+ * the reverse graph min over f of d(incident, f) (e.g. the incident driving to a hospital).
+ * kNearest() searches from the incident instead and stops after k facilities are settled.
+ *
+ * Label-setting, so weights must be non-negative (IllegalArgumentException otherwise).
+ */
+public class NearestFacility {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+
+    public enum Direction {
+        TO_INCIDENT,    // facility -> incident (dispatch)
+        FROM_INCIDENT   // incident -> facility (transport)
+    }
+
+    public static final class Match {
+        public final Daa_smartCity.Node facility;
+        public final double cost;
+        public final List<Daa_smartCity.Node> path;   // in travel order
+
+        Match(Daa_smartCity.Node facility, double cost, List<Daa_smartCity.Node> path) {
+            this.facility = facility;
+            this.cost = cost;
+            this.path = path;
+        }
+    }
+
+    private int lastSettled = 0;
+
+    public int lastSettled() { return lastSettled; }
+
+    /** Closest facility to/from the incident, or null if none is connected. */
+    public Match nearest(Daa_smartCity.Node incident,
+                         Collection<Daa_smartCity.Node> facilities,
+                         List<Daa_smartCity.Node> nodes,
+                         List<Daa_smartCity.Edge> edges,
+                         boolean directed,
+                         Direction dir) {
+        GraphSnapshot g = snapshot(nodes, edges, directed);
+        int x = g.indexOf(incident);
+        if (x < 0) return null;
+
+        int[] seeds = indices(g, facilities);
+        GraphSnapshot search = (dir == Direction.TO_INCIDENT) ? g : g.reverse();
+        Search s = new Search(search);
+        s.run(seeds, v -> v == x);
+        if (s.dist[x] == INF) return null;
+
+        // Walking parents from the incident visits it last on the forward graph, first on the reverse one
+        List<Daa_smartCity.Node> path = s.walk(x);
+        if (dir == Direction.TO_INCIDENT) Collections.reverse(path);
+        Daa_smartCity.Node facility = (dir == Direction.TO_INCIDENT) ? path.get(0) : path.get(path.size() - 1);
+        return new Match(facility, s.dist[x], path);
+    }
+
+    /** Up to k facilities ordered by cost, found by one search from the incident. */
+    public List<Match> kNearest(Daa_smartCity.Node incident,
+                                Collection<Daa_smartCity.Node> facilities,
+                                List<Daa_smartCity.Node> nodes,
+                                List<Daa_smartCity.Edge> edges,
+                                boolean directed,
+                                Direction dir,
+                                int k) {
+        GraphSnapshot g = snapshot(nodes, edges, directed);
+        List<Match> out = new ArrayList<>();
+        int x = g.indexOf(incident);
+        if (x < 0 || k <= 0) return out;
+
+        boolean[] isFacility = new boolean[g.size()];
+        int total = 0;
+        for (int f : indices(g, facilities)) {
+            if (!isFacility[f]) total++;
+            isFacility[f] = true;
+        }
+        final int want = Math.min(k, total);
+
+        GraphSnapshot search = (dir == Direction.TO_INCIDENT) ? g.reverse() : g;
+        Search s = new Search(search);
+        List<Integer> found = new ArrayList<>();
+        s.run(new int[]{x}, v -> {
+            if (isFacility[v]) found.add(v);
+            return found.size() >= want;
+        });
+
+        for (int f : found) {
+            List<Daa_smartCity.Node> path = s.walk(f);
+            if (dir == Direction.FROM_INCIDENT) Collections.reverse(path);
+            out.add(new Match(g.nodes[f], s.dist[f], path));
+        }
+        return out;
+    }
+
+    // ======= Internals =======
+
+    private GraphSnapshot snapshot(List<Daa_smartCity.Node> nodes, List<Daa_smartCity.Edge> edges, boolean directed) {
+        GraphSnapshot g = GraphSnapshot.of(nodes, edges, directed);
+        if (g.hasNegativeWeights()) {
+            throw new IllegalArgumentException("Nearest-facility search needs non-negative weights");
+        }
+        return g;
+    }
+
+    private static int[] indices(GraphSnapshot g, Collection<Daa_smartCity.Node> list) {
+        int[] out = new int[list.size()];
+        int c = 0;
+        for (Daa_smartCity.Node n : list) {
+            int i = g.indexOf(n);
+            if (i >= 0) out[c++] = i;
+        }
+        return Arrays.copyOf(out, c);
+    }
+
+    private final class Search {
+        final GraphSnapshot g;
+        final double[] dist;
+        final int[] parent;
+
+        Search(GraphSnapshot g) {
+            this.g = g;
+            dist = new double[g.size()];
+            parent = new int[g.size()];
+            Arrays.fill(dist, INF);
+            Arrays.fill(parent, -1);
+        }
+
+        // Dijkstra from all seeds at 0; stops once stop accepts a settled node
+        void run(int[] seeds, IntPredicate stop) {
+            IndexedMinHeap heap = new IndexedMinHeap(g.size());
+            for (int s : seeds) {
+                dist[s] = 0.0;
+                heap.push(s, 0.0);
+            }
+            int settled = 0;
+            while (!heap.isEmpty()) {
+                int u = heap.poll();
+                settled++;
+                if (stop.test(u)) break;
+                for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                    int v = g.targets[a];
+                    double nd = dist[u] + g.weights[a];
+                    if (nd < dist[v]) {
+                        dist[v] = nd;
+                        parent[v] = u;
+                        heap.push(v, nd);
+                    }
+                }
+            }
+            lastSettled = settled;
+        }
+
+        // v, parent[v], ... up to the seed
+        List<Daa_smartCity.Node> walk(int v) {
+            List<Daa_smartCity.Node> path = new ArrayList<>();
+            for (int at = v; at != -1; at = parent[at]) path.add(g.nodes[at]);
+            return path;
+        }
+    }
+}
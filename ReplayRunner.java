@@ -0,0 +1,194 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays a JSONL capture of route and traffic operations against RoutingService and
+ * reports throughput and p50/p99/p99.9 latency per operation type.
+ *
+ * One operation per line; "t" is the recorded offset in milliseconds (optional):
+ *   {"t":0,   "op":"route", "from":"N1", "to":"N7", "algorithm":"Dijkstra"}
+ *   {"t":3.5, "op":"batch-route", "pairs":[["N1","N2"],["N1","N9"]]}
+ *   {"t":9,   "op":"traffic", "mode":"rush", "factor":1.3}      (same fields as POST /traffic)
+ *
+ * The file is streamed, never loaded whole. With a speed factor, operations are released at
+ * their recorded offsets divided by it ("max" releases them as fast as workers free up). At
+ * most 'concurrency' operations run at once. Latency is measured from the scheduled release
+ * time, so waiting for a busy worker counts against the operation rather than being hidden.
+ *
+ * Usage: java ReplayRunner <capture.jsonl> [graph=grid:60] [speed=1|max] [concurrency=8]
+ *        java ReplayRunner --generate <out.jsonl> [ops=10000] [graph=grid:60] [opsPerSec=500]
+ */
+public class ReplayRunner {
+
+    private final RoutingService service;
+    private final int concurrency;
+    private final double speed;          // 0 => as fast as possible
+
+    private final Map<String, LatencyHistogram> latency = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder invalidLines = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    public ReplayRunner(RoutingService service, int concurrency, double speed) {
+        this.service = service;
+        this.concurrency = Math.max(1, concurrency);
+        this.speed = speed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java ReplayRunner <capture.jsonl> [graph=grid:60] [speed=1|max] [concurrency=8]");
+            System.out.println("       java ReplayRunner --generate <out.jsonl> [ops=10000] [graph=grid:60] [opsPerSec=500]");
+            return;
+        }
+        if ("--generate".equals(args[0])) {
+            int ops = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+            GraphIO.Graph g = GraphIO.load(args.length > 3 ? args[3] : "grid:60");
+            double rate = args.length > 4 ? Double.parseDouble(args[4]) : 500;
+            try (Writer w = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                generate(g, ops, rate, new Random(44), w);
+            }
+            System.out.println("Wrote " + ops + " operations to " + args[1]);
+            return;
+        }
+
+        GraphIO.Graph g = GraphIO.load(args.length > 1 ? args[1] : "grid:60");
+        String speedArg = args.length > 2 ? args[2] : "1";
+        double speed = "max".equals(speedArg) ? 0 : Double.parseDouble(speedArg);
+        int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+
+        ReplayRunner runner = new ReplayRunner(new RoutingService(g), concurrency, speed);
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            double secs = runner.replay(in);
+            runner.report(secs, System.out);
+        }
+    }
+
+    /** Streams and executes every operation; returns the wall time in seconds. */
+    public double replay(BufferedReader in) throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(r, "replay");
+            t.setDaemon(true);
+            return t;
+        });
+        Semaphore slots = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        double origin = Double.NaN;
+
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                Map<String, Object> op;
+                try {
+                    op = MiniJson.parseObject(line);
+                } catch (IllegalArgumentException ex) {
+                    invalidLines.increment();
+                    continue;
+                }
+
+                long due = System.nanoTime();
+                if (speed > 0 && op.get("t") instanceof Number) {
+                    double t = ((Number) op.get("t")).doubleValue();
+                    if (Double.isNaN(origin)) origin = t;
+                    due = start + (long) ((t - origin) / speed * 1e6);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                }
+
+                slots.acquire();
+                long lag = System.nanoTime() - due;
+                maxLagNanos.accumulateAndGet(lag, Math::max);
+                long scheduled = due;
+                workers.execute(() -> {
+                    try {
+                        execute(op, scheduled);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+            slots.acquire(concurrency);     // drain
+        } finally {
+            workers.shutdownNow();
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private void execute(Map<String, Object> op, long scheduled) {
+        String kind = op.get("op") instanceof String ? (String) op.get("op") : "?";
+        try {
+            String algorithm = op.containsKey("algorithm")
+                    ? MiniJson.asString(op.get("algorithm"))
+                    : RoutingService.DYNAMIC;
+            if ("route".equals(kind)) {
+                service.route(service.node(MiniJson.asString(op.get("from"))),
+                        service.node(MiniJson.asString(op.get("to"))), algorithm);
+            } else if ("batch-route".equals(kind)) {
+                service.routeBatch(service.pairs(op.get("pairs")), algorithm);
+            } else if ("traffic".equals(kind)) {
+                service.applyTraffic(op);
+            } else {
+                throw new IllegalArgumentException("Unknown op " + kind);
+            }
+        } catch (RuntimeException ex) {
+            errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+        }
+        latency.computeIfAbsent(kind, k -> new LatencyHistogram()).recordNanos(System.nanoTime() - scheduled);
+    }
+
+    public void report(double secs, PrintStream out) {
+        long total = 0;
+        for (LatencyHistogram h : latency.values()) total += h.count();
+        out.println(String.format("%d operations in %.2f s (%.0f ops/s), concurrency %d, speed %s, max dispatch lag %.1f ms",
+                total, secs, total / secs, concurrency, speed > 0 ? speed + "x" : "max", maxLagNanos.get() / 1e6));
+        if (invalidLines.sum() > 0) out.println(invalidLines.sum() + " unparseable lines skipped");
+        out.println(String.format("%-12s %8s %7s %9s %9s %9s %9s %9s",
+                "op", "count", "errors", "ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<String, LatencyHistogram> en : latency.entrySet()) {
+            LatencyHistogram h = en.getValue();
+            LongAdder err = errors.get(en.getKey());
+            out.println(String.format("%-12s %8d %7d %9.0f %9.2f %9.2f %9.2f %9.2f",
+                    en.getKey(), h.count(), err == null ? 0 : err.sum(), h.count() / secs,
+                    h.percentileMillis(0.50), h.percentileMillis(0.99), h.percentileMillis(0.999), h.maxMillis()));
+        }
+    }
+
+    // Synthetic capture: mostly single routes, some batches sharing a source, a traffic batch per second
+    private static void generate(GraphIO.Graph g, int ops, double opsPerSec, Random rnd, Writer w) throws IOException {
+        int n = g.nodes.size();
+        double t = 0;
+        double nextTraffic = 1000;
+        String[] modes = {"rush", "night", "block"};
+        for (int i = 0; i < ops; i++) {
+            t += -Math.log(1 - rnd.nextDouble()) * 1000.0 / opsPerSec;    // Poisson arrivals
+            Map<String, Object> op = new LinkedHashMap<>();
+            op.put("t", Math.round(t * 1000) / 1000.0);
+            if (t >= nextTraffic) {
+                nextTraffic += 1000;
+                String mode = modes[rnd.nextInt(modes.length)];
+                op.put("op", "traffic");
+                op.put("mode", mode);
+                if ("block".equals(mode)) op.put("count", 2);
+                else op.put("factor", "rush".equals(mode) ? 1.2 : 0.8);
+            } else if (rnd.nextInt(10) == 0) {
+                op.put("op", "batch-route");
+                List<Object> pairs = new ArrayList<>();
+                String src = g.nodes.get(rnd.nextInt(n)).label;
+                for (int k = 0; k < 8; k++) pairs.add(Arrays.asList(src, g.nodes.get(rnd.nextInt(n)).label));
+                op.put("pairs", pairs);
+            } else {
+                op.put("op", "route");
+                op.put("from", g.nodes.get(rnd.nextInt(n)).label);
+                op.put("to", g.nodes.get(rnd.nextInt(n)).label);
+            }
+            w.write(MiniJson.write(op));
+            w.write('\n');
+        }
+    }
+}
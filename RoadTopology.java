@@ -0,0 +1,137 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Arc-level view of the road graph for engines that keep state across traffic batches.
+ *
+ * Unlike GraphSnapshot, blocked roads are kept (their metric is just +Infinity) and every
+ * arc remembers the Edge it came from, so an EdgeChange maps straight to the arcs to patch
+ * and a road being blocked or reopened never changes the topology. Undirected roads become
+ * two arcs.
+ */
+public class RoadTopology {
+
+    private static final double BLOCKED_THRESHOLD = 9999.0;
+
+    public final Daa_smartCity.Node[] nodes;
+    public final int n;
+    public final int[] tail, head;
+    public final Daa_smartCity.Edge[] edgeOf;
+    public final int[] outOffsets, outArcs;    // arcs leaving u: outArcs[outOffsets[u] .. outOffsets[u + 1])
+    public final int[] inOffsets, inArcs;      // arcs entering v, same layout
+
+    private final Map<Daa_smartCity.Node, Integer> nodeIndex;
+    private final Map<Daa_smartCity.Edge, int[]> arcsOfEdge;
+
+    private RoadTopology(Daa_smartCity.Node[] nodes, int[] tail, int[] head, Daa_smartCity.Edge[] edgeOf,
+                         Map<Daa_smartCity.Node, Integer> nodeIndex, Map<Daa_smartCity.Edge, int[]> arcsOfEdge) {
+        this.nodes = nodes;
+        this.n = nodes.length;
+        this.tail = tail;
+        this.head = head;
+        this.edgeOf = edgeOf;
+        this.nodeIndex = nodeIndex;
+        this.arcsOfEdge = arcsOfEdge;
+
+        int[][] out = group(tail);
+        outOffsets = out[0];
+        outArcs = out[1];
+        int[][] in = group(head);
+        inOffsets = in[0];
+        inArcs = in[1];
+    }
+
+    public static RoadTopology of(List<Daa_smartCity.Node> nodeList,
+                                  List<Daa_smartCity.Edge> edges,
+                                  boolean directed) {
+        Daa_smartCity.Node[] nodes = nodeList.toArray(new Daa_smartCity.Node[0]);
+        Map<Daa_smartCity.Node, Integer> nodeIndex = new IdentityHashMap<>();
+        for (int i = 0; i < nodes.length; i++) nodeIndex.put(nodes[i], i);
+
+        int m = directed ? edges.size() : 2 * edges.size();
+        int[] tail = new int[m];
+        int[] head = new int[m];
+        Daa_smartCity.Edge[] edgeOf = new Daa_smartCity.Edge[m];
+        Map<Daa_smartCity.Edge, int[]> arcsOfEdge = new IdentityHashMap<>();
+        int a = 0;
+        for (Daa_smartCity.Edge e : edges) {
+            int u = nodeIndex.get(e.from), v = nodeIndex.get(e.to);
+            tail[a] = u;
+            head[a] = v;
+            edgeOf[a] = e;
+            if (directed) {
+                arcsOfEdge.put(e, new int[]{a++});
+            } else {
+                tail[a + 1] = v;
+                head[a + 1] = u;
+                edgeOf[a + 1] = e;
+                arcsOfEdge.put(e, new int[]{a, a + 1});
+                a += 2;
+            }
+        }
+        return new RoadTopology(nodes, tail, head, edgeOf, nodeIndex, arcsOfEdge);
+    }
+
+    public int arcCount() { return tail.length; }
+
+    /** Index of the node, or -1 if it is not part of this topology. */
+    public int indexOf(Daa_smartCity.Node v) {
+        Integer i = nodeIndex.get(v);
+        return i == null ? -1 : i;
+    }
+
+    /** Arcs created for the road, or null if the road is not part of this topology. */
+    public int[] arcsOf(Daa_smartCity.Edge e) {
+        return arcsOfEdge.get(e);
+    }
+
+    /** Current metric of an arc: the road's weight, or +Infinity while it is blocked. */
+    public double metric(int arc) {
+        return metric(edgeOf[arc].weight);
+    }
+
+    public static double metric(double w) {
+        return w >= BLOCKED_THRESHOLD ? Double.POSITIVE_INFINITY : w;
+    }
+
+    /**
+     * Recursive coordinate bisection: splits at the median of the wider axis until a part has
+     * at most maxSize nodes, handing each final part to leaf in left-to-right order.
+     */
+    public static void bisect(Daa_smartCity.Node[] nodes, int[] members, int maxSize, Consumer<int[]> leaf) {
+        if (members.length <= maxSize) {
+            leaf.accept(members);
+            return;
+        }
+        int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        for (int v : members) {
+            minX = Math.min(minX, nodes[v].x);
+            maxX = Math.max(maxX, nodes[v].x);
+            minY = Math.min(minY, nodes[v].y);
+            maxY = Math.max(maxY, nodes[v].y);
+        }
+        boolean byX = (maxX - minX) >= (maxY - minY);
+        Integer[] sorted = new Integer[members.length];
+        for (int i = 0; i < members.length; i++) sorted[i] = members[i];
+        Arrays.sort(sorted, Comparator.comparingInt(v -> byX ? nodes[v].x : nodes[v].y));
+        int mid = members.length / 2;
+        int[] left = new int[mid], right = new int[members.length - mid];
+        for (int i = 0; i < members.length; i++) {
+            if (i < mid) left[i] = sorted[i];
+            else right[i - mid] = sorted[i];
+        }
+        bisect(nodes, left, maxSize, leaf);
+        bisect(nodes, right, maxSize, leaf);
+    }
+
+    // CSR grouping of arc ids by endpoint
+    private int[][] group(int[] endpoint) {
+        int[] offs = new int[n + 1];
+        for (int v : endpoint) offs[v + 1]++;
+        for (int i = 0; i < n; i++) offs[i + 1] += offs[i];
+        int[] fill = Arrays.copyOf(offs, n);
+        int[] arcs = new int[endpoint.length];
+        for (int a = 0; a < endpoint.length; a++) arcs[fill[endpoint[a]]++] = a;
+        return new int[][]{offs, arcs};
+    }
+}
@@ -0,0 +1,540 @@
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Keeps many active trips on their best route as traffic batches arrive.
+ *
+ * Every trip is indexed by the roads of its current route, so a slower road only reaches the
+ * trips actually driving over it. A faster road can also make a route stale without being on
+ * it; those are found through a coarse grid: with s the smallest weight/length ratio, a road
+ * (u, v) can only shorten a trip of cost C if s|src u| + w + s|v dst| < C, which puts u in
+ * the circle around the trip's midpoint with radius C / 2s. Trips are filed under the grid
+ * cells that circle covers (very wide trips go to a short list checked on every speed-up).
+ * Trips without a route are only looked at when a blocked road reopens, since a cheaper
+ * road never reconnects anything (unless a negative cycle was in the way: those are retried
+ * every batch). Trips not hit by any index cost nothing per batch.
+ *
+ * Hit trips are re-planned in parallel and every trip whose route changed is reported to the
+ * listeners, after the batch, on the thread that applied the traffic.
+ */
+public class RouteWatch implements DynamicTrafficManager.TrafficListener {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+    private static final double EPS = 1e-9;
+    private static final int GRID = 64;               // cells per side
+    private static final int MAX_TRIP_CELLS = 1024;   // wider trips go to the 'wide' list
+    private static final double GRID_SLACK = 0.8;     // circles are filed for a lower ratio than the current one
+
+    public interface Listener {
+        void onRouteChange(RouteChange change);
+    }
+
+    public static final class Trip {
+        public final String id;
+        public final Daa_smartCity.Node source, target;
+
+        private List<Daa_smartCity.Node> path;     // null while there is no route
+        private double cost = INF;
+        private int[] arcs = new int[0];
+        private long[] cells = new long[0];       // grid cells it is filed under
+        private boolean wide;
+        private boolean behindCycle;              // no route because of a negative cycle
+
+        Trip(String id, Daa_smartCity.Node source, Daa_smartCity.Node target) {
+            this.id = id;
+            this.source = source;
+            this.target = target;
+        }
+
+        public synchronized List<Daa_smartCity.Node> path() { return path; }
+
+        public synchronized double cost() { return cost; }
+    }
+
+    public static final class RouteChange {
+        public final String tripId;
+        public final int trafficVersion;
+        public final List<Daa_smartCity.Node> oldPath, newPath;   // null = no route
+        public final double oldCost, newCost;
+
+        RouteChange(String tripId, int trafficVersion,
+                    List<Daa_smartCity.Node> oldPath, double oldCost,
+                    List<Daa_smartCity.Node> newPath, double newCost) {
+            this.tripId = tripId;
+            this.trafficVersion = trafficVersion;
+            this.oldPath = oldPath;
+            this.oldCost = oldCost;
+            this.newPath = newPath;
+            this.newCost = newCost;
+        }
+
+        public boolean lost() { return newPath == null; }
+    }
+
+    private final List<Daa_smartCity.Node> nodeList;
+    private final List<Daa_smartCity.Edge> edgeList;
+    private final BooleanSupplier directed;
+    private final ForkJoinPool pool;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Map<String, Trip> trips = new LinkedHashMap<>();
+    private final Map<Daa_smartCity.Edge, Set<Trip>> byEdge = new IdentityHashMap<>();
+    private final Map<Long, Set<Trip>> byCell = new HashMap<>();
+    private final Set<Trip> wide = new LinkedHashSet<>();
+    private final Set<Trip> lost = new LinkedHashSet<>();
+
+    private RoadTopology topo;
+    private long fingerprint;
+    private Scratch watchScratch;
+    private double[] weight;            // metric last seen per arc
+    private int negativeArcs;
+    private double scale;               // min weight / length over finite arcs
+    private double gridScale;           // ratio the grid circles were filed for, <= scale
+    private double minX, minY, cellSize;
+
+    private int lastAffected = 0;
+    private int lastChanged = 0;
+
+    /** Watches routes over the live node/edge lists; directed is read at every batch. */
+    public RouteWatch(List<Daa_smartCity.Node> nodes,
+                      List<Daa_smartCity.Edge> edges,
+                      BooleanSupplier directed,
+                      ForkJoinPool pool) {
+        this.nodeList = nodes;
+        this.edgeList = edges;
+        this.directed = directed;
+        this.pool = pool;
+    }
+
+    public RouteWatch(List<Daa_smartCity.Node> nodes, List<Daa_smartCity.Edge> edges, BooleanSupplier directed) {
+        this(nodes, edges, directed, ForkJoinPool.commonPool());
+    }
+
+    public void addListener(Listener l) { listeners.add(l); }
+
+    public void removeListener(Listener l) { listeners.remove(l); }
+
+    public synchronized int tripCount() { return trips.size(); }
+
+    public synchronized Trip trip(String id) { return trips.get(id); }
+
+    /** Trips re-planned by the last batch. */
+    public synchronized int lastAffected() { return lastAffected; }
+
+    /** Trips whose route changed in the last batch. */
+    public synchronized int lastChanged() { return lastChanged; }
+
+    /** Starts watching (or re-plans) a trip; its initial route is available right away. */
+    public Trip watch(String id, Daa_smartCity.Node source, Daa_smartCity.Node target) {
+        List<RouteChange> changes = new ArrayList<>();
+        Trip trip;
+        synchronized (this) {
+            // Full fingerprints are left to traffic batches; here a size check catches edits
+            if (topo == null || topo.n != nodeList.size() || topo.edgeOf.length != arcsFor(edgeList.size())) {
+                ensureTopology(changes, -1);
+            }
+            Trip old = trips.remove(id);
+            if (old != null) unindex(old);
+            trip = new Trip(id, source, target);
+            trips.put(id, trip);
+            Route r = plan(trip, watchScratch);
+            install(trip, r);
+        }
+        publish(changes);
+        return trip;
+    }
+
+    public synchronized void unwatch(String id) {
+        Trip t = trips.remove(id);
+        if (t != null) unindex(t);
+    }
+
+    public synchronized void clear() {
+        trips.clear();
+        byEdge.clear();
+        byCell.clear();
+        wide.clear();
+        lost.clear();
+    }
+
+    @Override
+    public void onTrafficChange(int version, List<DynamicTrafficManager.EdgeChange> batch) {
+        List<RouteChange> changes = new ArrayList<>();
+        synchronized (this) {
+            if (trips.isEmpty() || batch == null) return;
+            if (!ensureTopology(changes, version)) {
+                Set<Trip> affected = collectAffected(batch);
+                replan(new ArrayList<>(affected), version, changes);
+                lastAffected = affected.size();
+            }
+            lastChanged = changes.size();
+        }
+        publish(changes);
+    }
+
+    // ======= Finding affected trips =======
+
+    private Set<Trip> collectAffected(List<DynamicTrafficManager.EdgeChange> batch) {
+        Set<Trip> affected = new LinkedHashSet<>();
+        List<Integer> faster = new ArrayList<>();
+        boolean reopened = false;
+
+        for (DynamicTrafficManager.EdgeChange ch : batch) {
+            int[] arcs = topo.arcsOf(ch.edge);
+            if (arcs == null) continue;
+            for (int a : arcs) {
+                double old = weight[a];
+                double now = topo.metric(a);
+                if (Double.compare(old, now) == 0) continue;
+                weight[a] = now;
+                if (old < 0) negativeArcs--;
+                if (now < 0) negativeArcs++;
+                lowerScale(a);
+
+                Set<Trip> onRoad = byEdge.get(topo.edgeOf[a]);
+                if (now > old) {
+                    if (onRoad != null) for (Trip t : onRoad) if (usesArc(t, a)) affected.add(t);
+                } else {
+                    // A cheaper road already on the route keeps it optimal; only the cost moves
+                    if (onRoad != null) {
+                        for (Trip t : onRoad) {
+                            if (!usesArc(t, a)) continue;
+                            synchronized (t) {
+                                t.cost -= old - now;
+                            }
+                        }
+                    }
+                    faster.add(a);
+                    reopened |= old == INF;
+                }
+            }
+        }
+
+        if (scale < gridScale) {
+            gridScale = scale * GRID_SLACK;
+            for (Trip t : trips.values()) fileByArea(t);   // every circle grew past its filing
+        }
+        for (Trip t : lost) if (reopened || t.behindCycle) affected.add(t);
+
+        boolean boundsUsable = negativeArcs == 0 && scale > 0;
+        for (int a : faster) {
+            Iterable<Trip> candidates;
+            if (!boundsUsable) {
+                candidates = trips.values();    // lost trips pass through mayShorten only if reopened
+            } else {
+                List<Trip> c = new ArrayList<>(wide);
+                Set<Trip> inCell = byCell.get(cellOf(topo.nodes[topo.tail[a]]));
+                if (inCell != null) c.addAll(inCell);
+                candidates = c;
+            }
+            for (Trip t : candidates) {
+                if (!affected.contains(t) && mayShorten(t, a, boundsUsable)) affected.add(t);
+            }
+        }
+        return affected;
+    }
+
+    private boolean usesArc(Trip t, int a) {
+        for (int x : t.arcs) if (x == a) return true;
+        return false;
+    }
+
+    private boolean mayShorten(Trip t, int a, boolean boundsUsable) {
+        if (t.cost == INF) return false;
+        if (!boundsUsable) return true;
+        Daa_smartCity.Node u = topo.nodes[topo.tail[a]], v = topo.nodes[topo.head[a]];
+        double bound = scale * dist(t.source, u) + weight[a] + scale * dist(v, t.target);
+        return bound < t.cost - EPS * Math.max(1.0, t.cost);
+    }
+
+    // ======= Re-planning =======
+
+    private static final class Route {
+        final List<Daa_smartCity.Node> path;
+        final double cost;
+        final int[] arcs;
+        final boolean negativeCycle;
+
+        Route(List<Daa_smartCity.Node> path, double cost, int[] arcs, boolean negativeCycle) {
+            this.path = path;
+            this.cost = cost;
+            this.arcs = arcs;
+            this.negativeCycle = negativeCycle;
+        }
+
+        static Route none(boolean negativeCycle) {
+            return new Route(null, INF, new int[0], negativeCycle);
+        }
+    }
+
+    private void replan(List<Trip> todo, int version, List<RouteChange> changes) {
+        Route[] routes = new Route[todo.size()];
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(topo.n));
+        parallelFor(todo.size(), i -> routes[i] = plan(todo.get(i), scratch.get()));
+
+        for (int i = 0; i < routes.length; i++) {
+            Trip t = todo.get(i);
+            List<Daa_smartCity.Node> oldPath;
+            double oldCost;
+            synchronized (t) {
+                oldPath = t.path;
+                oldCost = t.cost;
+            }
+            install(t, routes[i]);
+            if (!Objects.equals(oldPath, routes[i].path)) {
+                changes.add(new RouteChange(t.id, version, oldPath, oldCost, routes[i].path, routes[i].cost));
+            }
+        }
+    }
+
+    private void install(Trip t, Route r) {
+        unindex(t);
+        synchronized (t) {
+            t.path = r.path;
+            t.cost = r.cost;
+        }
+        t.arcs = r.arcs;
+        t.behindCycle = r.negativeCycle;
+        for (int a : r.arcs) {
+            byEdge.computeIfAbsent(topo.edgeOf[a], k -> new LinkedHashSet<>()).add(t);
+        }
+        fileByArea(t);
+    }
+
+    private void unindex(Trip t) {
+        for (int a : t.arcs) {
+            Set<Trip> s = byEdge.get(topo.edgeOf[a]);
+            if (s != null && s.remove(t) && s.isEmpty()) byEdge.remove(topo.edgeOf[a]);
+        }
+        t.arcs = new int[0];
+        unfileArea(t);
+    }
+
+    // Dijkstra (or label-correcting with negative weights) from source, stopping at target
+    private Route plan(Trip t, Scratch sc) {
+        int s = topo.indexOf(t.source), g = topo.indexOf(t.target);
+        if (s < 0 || g < 0) return Route.none(false);
+
+        if (negativeArcs == 0) sc.dijkstra(s, g);
+        else if (!sc.labelCorrecting(s)) return Route.none(true);
+        double cost = sc.dist[g];
+        if (cost == INF) {
+            sc.reset();
+            return Route.none(false);
+        }
+
+        List<Integer> arcs = new ArrayList<>();
+        for (int v = g; v != s; v = topo.tail[sc.parentArc[v]]) arcs.add(sc.parentArc[v]);
+        Collections.reverse(arcs);
+        List<Daa_smartCity.Node> path = new ArrayList<>(arcs.size() + 1);
+        path.add(topo.nodes[s]);
+        int[] out = new int[arcs.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = arcs.get(i);
+            path.add(topo.nodes[topo.head[out[i]]]);
+        }
+        sc.reset();
+        return new Route(path, cost, out, false);
+    }
+
+    private final class Scratch {
+        final double[] dist;
+        final int[] parentArc;
+        final IndexedMinHeap heap;
+        final int[] touched;
+        int touchedCount = 0;
+
+        Scratch(int n) {
+            dist = new double[n];
+            parentArc = new int[n];
+            Arrays.fill(dist, INF);
+            heap = new IndexedMinHeap(n);
+            touched = new int[n];
+        }
+
+        void dijkstra(int s, int goal) {
+            set(s, 0.0, -1);
+            heap.push(s, 0.0);
+            while (!heap.isEmpty()) {
+                int u = heap.poll();
+                if (u == goal) break;
+                for (int k = topo.outOffsets[u]; k < topo.outOffsets[u + 1]; k++) {
+                    int a = topo.outArcs[k];
+                    int v = topo.head[a];
+                    double nd = dist[u] + weight[a];
+                    if (nd < dist[v]) {
+                        set(v, nd, a);
+                        heap.push(v, nd);
+                    }
+                }
+            }
+            heap.clear();
+        }
+
+        // FIFO Bellman-Ford; false (state reset) if a negative cycle is reachable
+        boolean labelCorrecting(int s) {
+            int n = topo.n;
+            int[] relaxed = new int[n];
+            boolean[] queued = new boolean[n];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            set(s, 0.0, -1);
+            queue.add(s);
+            queued[s] = true;
+            while (!queue.isEmpty()) {
+                int u = queue.poll();
+                queued[u] = false;
+                for (int k = topo.outOffsets[u]; k < topo.outOffsets[u + 1]; k++) {
+                    int a = topo.outArcs[k];
+                    int v = topo.head[a];
+                    double nd = dist[u] + weight[a];
+                    if (nd < dist[v]) {
+                        set(v, nd, a);
+                        if (++relaxed[v] >= n) {
+                            reset();
+                            return false;
+                        }
+                        if (!queued[v]) {
+                            queued[v] = true;
+                            queue.add(v);
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        void set(int v, double d, int arc) {
+            if (dist[v] == INF) touched[touchedCount++] = v;
+            dist[v] = d;
+            parentArc[v] = arc;
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) dist[touched[i]] = INF;
+            touchedCount = 0;
+        }
+    }
+
+    // ======= Topology and area grid =======
+
+    // Rebuilds on first use or after the graph was edited; every trip is re-planned then
+    private boolean ensureTopology(List<RouteChange> changes, int version) {
+        boolean dir = directed.getAsBoolean();
+        long fp = GraphSnapshot.fingerprint(nodeList, edgeList, dir);
+        if (topo != null && fp == fingerprint) return false;
+
+        List<Trip> all = new ArrayList<>(trips.values());
+        for (Trip t : all) unindex(t);
+
+        fingerprint = fp;
+        topo = RoadTopology.of(nodeList, edgeList, dir);
+        int m = topo.arcCount();
+        weight = new double[m];
+        watchScratch = new Scratch(topo.n);
+        negativeArcs = 0;
+        scale = INF;
+        for (int a = 0; a < m; a++) {
+            weight[a] = topo.metric(a);
+            if (weight[a] < 0) negativeArcs++;
+            lowerScale(a);
+        }
+        gridScale = scale * GRID_SLACK;
+
+        minX = minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Daa_smartCity.Node v : topo.nodes) {
+            minX = Math.min(minX, v.x);
+            minY = Math.min(minY, v.y);
+            maxX = Math.max(maxX, v.x);
+            maxY = Math.max(maxY, v.y);
+        }
+        cellSize = topo.n == 0 ? 1.0 : Math.max(1.0, Math.max(maxX - minX, maxY - minY) / GRID);
+
+        replan(all, version, changes);
+        lastAffected = all.size();
+        return true;
+    }
+
+    private void lowerScale(int a) {
+        double w = weight[a];
+        if (w == INF || w < 0) return;
+        double len = dist(topo.nodes[topo.tail[a]], topo.nodes[topo.head[a]]);
+        if (len > 0) scale = Math.min(scale, w / len);
+    }
+
+    private void fileByArea(Trip t) {
+        unfileArea(t);
+        if (t.cost == INF) {
+            lost.add(t);
+            return;
+        }
+        double radius = (negativeArcs > 0 || gridScale <= 0 || gridScale == INF) ? INF : t.cost / (2 * gridScale);
+        long c0x = 0, c1x = -1, c0y = 0, c1y = -1;
+        if (radius != INF) {
+            double mx = (t.source.x + t.target.x) / 2.0, my = (t.source.y + t.target.y) / 2.0;
+            c0x = Math.max(0, (long) Math.floor((mx - radius - minX) / cellSize));
+            c1x = Math.min(GRID, (long) Math.floor((mx + radius - minX) / cellSize));
+            c0y = Math.max(0, (long) Math.floor((my - radius - minY) / cellSize));
+            c1y = Math.min(GRID, (long) Math.floor((my + radius - minY) / cellSize));
+        }
+        long count = (c1x < c0x || c1y < c0y) ? 0 : (c1x - c0x + 1) * (c1y - c0y + 1);
+        if (radius == INF || count > MAX_TRIP_CELLS) {
+            t.wide = true;
+            wide.add(t);
+            return;
+        }
+        long[] cells = new long[(int) count];
+        int i = 0;
+        for (long cx = c0x; cx <= c1x; cx++) {
+            for (long cy = c0y; cy <= c1y; cy++) {
+                long key = cx * (GRID + 1) + cy;
+                cells[i++] = key;
+                byCell.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(t);
+            }
+        }
+        t.cells = cells;
+    }
+
+    private void unfileArea(Trip t) {
+        lost.remove(t);
+        if (t.wide) wide.remove(t);
+        t.wide = false;
+        for (long key : t.cells) {
+            Set<Trip> s = byCell.get(key);
+            if (s != null && s.remove(t) && s.isEmpty()) byCell.remove(key);
+        }
+        t.cells = new long[0];
+    }
+
+    private long cellOf(Daa_smartCity.Node v) {
+        long cx = Math.min(GRID, Math.max(0, (long) Math.floor((v.x - minX) / cellSize)));
+        long cy = Math.min(GRID, Math.max(0, (long) Math.floor((v.y - minY) / cellSize)));
+        return cx * (GRID + 1) + cy;
+    }
+
+    private int arcsFor(int edges) {
+        return directed.getAsBoolean() ? edges : 2 * edges;
+    }
+
+    private static double dist(Daa_smartCity.Node a, Daa_smartCity.Node b) {
+        return Math.hypot(a.x - b.x, a.y - b.y);
+    }
+
+    private void parallelFor(int count, IntConsumer body) {
+        if (count <= 1 || pool.getParallelism() <= 1) {
+            for (int i = 0; i < count; i++) body.accept(i);
+            return;
+        }
+        pool.submit(() -> IntStream.range(0, count).parallel().forEach(body)).join();
+    }
+
+    private void publish(List<RouteChange> changes) {
+        for (RouteChange c : changes) {
+            for (Listener l : listeners) l.onRouteChange(c);
+        }
+    }
+}
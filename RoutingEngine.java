@@ -0,0 +1,564 @@
+import java.util.*;
+
+/**
+ * Headless point-to-point routing: takes a graph snapshot and a query and returns a
+ * PathResult, with no dependency on the Swing frame.
+ *
+ * Drawing is a pluggable Visualizer. The searches only call it when one other than
+ * Visualizer.NONE is passed, so with hooks disabled the calls are never made and the JIT
+ * drops the branch. Label-setting searches (Dijkstra, A*, Greedy, Delta-Stepping) run on
+ * Johnson-reduced costs when the query carries potentials and refuse negative weights
+ * otherwise; costs are always reported in the real metric.
+ *
+ * A query may carry a Deadline. Every search loop polls it and, once it has passed, returns
+ * with timedOut set: Dijkstra, A*, Bellman-Ford and SPFA hand back the best path to the goal
+ * found so far (an upper bound, not proven shortest), the others report no path. ARA* is
+ * the anytime option: it returns its latest route together with a proven bound on how far
+ * from optimal that route can be (on non-negative weights; Johnson-reweighted runs report none).
+ */
+public class RoutingEngine {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+
+    // ARA*: the first pass inflates the heuristic by at least this; each repair halves eps - 1
+    private static final double ARA_MIN_INITIAL_EPSILON = 3.0;
+    private static final double ARA_MAX_INITIAL_EPSILON = 100.0;
+
+    public enum Algorithm {
+        BFS("BFS", false),
+        DFS("DFS", false),
+        DIJKSTRA("Dijkstra", true),
+        A_STAR("A*", true),
+        ARA_STAR("ARA*", true),
+        BELLMAN_FORD("Bellman-Ford", false),
+        SPFA("SPFA", false),
+        GREEDY("Greedy", true),
+        DELTA_STEPPING("Delta-Stepping", true);
+
+        public final String label;
+        public final boolean labelSetting;
+
+        Algorithm(String label, boolean labelSetting) {
+            this.label = label;
+            this.labelSetting = labelSetting;
+        }
+
+        /** The algorithm with this UI label, or null if the engine does not run it. */
+        public static Algorithm byLabel(String label) {
+            for (Algorithm a : values()) if (a.label.equals(label)) return a;
+            return null;
+        }
+    }
+
+    /** Receives search progress, e.g. to animate it. Implementations may block to slow it down. */
+    public interface Visualizer {
+        /** A node was taken off the frontier. */
+        void visit(Daa_smartCity.Node n);
+
+        /** A road was relaxed (Bellman-Ford) or chosen (Greedy). */
+        void relax(Daa_smartCity.Node from, Daa_smartCity.Node to);
+
+        Visualizer NONE = new Visualizer() {
+            public void visit(Daa_smartCity.Node n) {}
+            public void relax(Daa_smartCity.Node from, Daa_smartCity.Node to) {}
+        };
+    }
+
+    public static final class Query {
+        public final Daa_smartCity.Node start;
+        public final Daa_smartCity.Node goal;
+        public final Algorithm algorithm;
+        public final JohnsonPotentials potentials;   // null unless weights are negative
+        public final Deadline deadline;
+
+        public Query(Daa_smartCity.Node start, Daa_smartCity.Node goal, Algorithm algorithm) {
+            this(start, goal, algorithm, null);
+        }
+
+        public Query(Daa_smartCity.Node start, Daa_smartCity.Node goal, Algorithm algorithm,
+                     JohnsonPotentials potentials) {
+            this(start, goal, algorithm, potentials, Deadline.NONE);
+        }
+
+        private Query(Daa_smartCity.Node start, Daa_smartCity.Node goal, Algorithm algorithm,
+                      JohnsonPotentials potentials, Deadline deadline) {
+            this.start = start;
+            this.goal = goal;
+            this.algorithm = algorithm;
+            this.potentials = potentials;
+            this.deadline = deadline;
+        }
+
+        public Query withDeadline(Deadline deadline) {
+            return new Query(start, goal, algorithm, potentials, deadline == null ? Deadline.NONE : deadline);
+        }
+    }
+
+    private final DeltaSteppingSSSP deltaStepping;
+
+    public RoutingEngine(DeltaSteppingSSSP deltaStepping) {
+        this.deltaStepping = deltaStepping;
+    }
+
+    public RoutingEngine() {
+        this(new DeltaSteppingSSSP());
+    }
+
+    public Daa_smartCity.PathResult route(GraphSnapshot g, Query q) {
+        return route(g, q, Visualizer.NONE);
+    }
+
+    public Daa_smartCity.PathResult route(GraphSnapshot g, Query q, Visualizer viz) {
+        int s = g.indexOf(q.start);
+        int t = g.indexOf(q.goal);
+        if (s < 0 || t < 0) return notFound(0);
+
+        if (q.algorithm.labelSetting && q.potentials == null && g.hasNegativeWeights()) {
+            throw new IllegalArgumentException(q.algorithm.label
+                    + " needs non-negative weights (or Johnson potentials)");
+        }
+        double[] w = (q.algorithm.labelSetting && q.potentials != null)
+                ? g.reweighted(q.potentials.forSnapshot(g)).weights
+                : g.weights;
+
+        switch (q.algorithm) {
+            case BFS:            return traverse(g, s, t, false, q.deadline, viz);
+            case DFS:            return traverse(g, s, t, true, q.deadline, viz);
+            case DIJKSTRA:       return bestFirst(g, w, s, t, false, q, viz);
+            case A_STAR:         return bestFirst(g, w, s, t, true, q, viz);
+            case ARA_STAR:       return anytimeAStar(g, w, s, t, q, viz);
+            case BELLMAN_FORD:   return bellmanFord(g, s, t, q.deadline, viz);
+            case SPFA:           return new SpfaShortestPaths().shortestPath(g, q.start, q.goal, q.deadline);
+            case GREEDY:         return greedy(g, w, s, t, q.deadline, viz);
+            case DELTA_STEPPING: return deltaStepping(g, q);
+            default:             throw new IllegalArgumentException("Unknown algorithm " + q.algorithm);
+        }
+    }
+
+    /**
+     * One Dijkstra from start that stops once every goal is settled, for batches sharing a
+     * source. Results line up with goals; potentials work as in route().
+     */
+    public Daa_smartCity.PathResult[] routeToMany(GraphSnapshot g, Daa_smartCity.Node start,
+                                                  List<Daa_smartCity.Node> goals, JohnsonPotentials pot) {
+        Daa_smartCity.PathResult[] out = new Daa_smartCity.PathResult[goals.size()];
+        int s = g.indexOf(start);
+        if (s < 0) {
+            for (int i = 0; i < out.length; i++) out[i] = notFound(0);
+            return out;
+        }
+        if (pot == null && g.hasNegativeWeights()) {
+            throw new IllegalArgumentException("Dijkstra needs non-negative weights (or Johnson potentials)");
+        }
+        double[] w = pot == null ? g.weights : g.reweighted(pot.forSnapshot(g)).weights;
+
+        int n = g.size();
+        boolean[] wanted = new boolean[n];
+        int remaining = 0;
+        for (Daa_smartCity.Node goal : goals) {
+            int t = g.indexOf(goal);
+            if (t >= 0 && !wanted[t]) {
+                wanted[t] = true;
+                remaining++;
+            }
+        }
+
+        double[] dist = new double[n];
+        int[] parent = new int[n];
+        int[] settledAt = new int[n];
+        Arrays.fill(dist, INF);
+        Arrays.fill(parent, -1);
+        IndexedMinHeap open = new IndexedMinHeap(n);
+        dist[s] = 0.0;
+        open.push(s, 0.0);
+        int steps = 0;
+
+        while (!open.isEmpty() && remaining > 0) {
+            int u = open.poll();
+            steps++;
+            if (wanted[u]) {
+                settledAt[u] = steps;
+                remaining--;
+            }
+            for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                steps++;
+                int v = g.targets[a];
+                double nd = dist[u] + w[a];
+                if (nd < dist[v]) {
+                    dist[v] = nd;
+                    parent[v] = u;
+                    open.push(v, nd);
+                }
+            }
+        }
+
+        for (int i = 0; i < out.length; i++) {
+            Daa_smartCity.Node goal = goals.get(i);
+            int t = g.indexOf(goal);
+            if (t < 0 || dist[t] == INF) {
+                out[i] = notFound(steps);
+                continue;
+            }
+            double cost = pot == null ? dist[t] : pot.restore(dist[t], start, goal);
+            List<Daa_smartCity.Node> path = g.toPath(parent, s, t);
+            out[i] = new Daa_smartCity.PathResult(path != null, path, settledAt[t], false, null, cost);
+        }
+        return out;
+    }
+
+    // ======= Unweighted traversal =======
+
+    // BFS (queue) or DFS (stack); the cost is that of the roads actually followed
+    private Daa_smartCity.PathResult traverse(GraphSnapshot g, int s, int t, boolean depthFirst,
+                                              Deadline deadline, Visualizer viz) {
+        boolean hooks = viz != Visualizer.NONE;
+        int n = g.size();
+        int[] parent = new int[n];
+        int[] viaArc = new int[n];
+        boolean[] seen = new boolean[n];
+        Arrays.fill(parent, -1);
+        ArrayDeque<Integer> frontier = new ArrayDeque<>();
+
+        frontier.add(s);
+        seen[s] = true;
+        int steps = 0;
+
+        while (!frontier.isEmpty()) {
+            if (deadline.expired()) return timedOut(steps);
+            int u = depthFirst ? frontier.pollLast() : frontier.pollFirst();
+            if (hooks) viz.visit(g.nodes[u]);
+            steps++;
+
+            if (u == t) {
+                double cost = 0.0;
+                for (int v = t; v != s; v = parent[v]) cost += g.weights[viaArc[v]];
+                return new Daa_smartCity.PathResult(true, g.toPath(parent, s, t), steps, false, null,
+                        s == t ? INF : cost);
+            }
+
+            for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                int v = g.targets[a];
+                if (seen[v]) continue;
+                seen[v] = true;
+                parent[v] = u;
+                viaArc[v] = a;
+                frontier.add(v);
+            }
+        }
+        return notFound(steps);
+    }
+
+    // ======= Label-setting =======
+
+    // Dijkstra, or A* with the straight-line distance added to the key
+    private Daa_smartCity.PathResult bestFirst(GraphSnapshot g, double[] w, int s, int t, boolean aStar,
+                                               Query q, Visualizer viz) {
+        boolean hooks = viz != Visualizer.NONE;
+        int n = g.size();
+        double[] dist = new double[n];
+        int[] parent = new int[n];
+        Arrays.fill(dist, INF);
+        Arrays.fill(parent, -1);
+        IndexedMinHeap open = new IndexedMinHeap(n);
+
+        dist[s] = 0.0;
+        open.push(s, aStar ? heuristic(g, s, t) : 0.0);
+        int steps = 0;
+        boolean timedOut = false;
+
+        while (!open.isEmpty()) {
+            if (q.deadline.expired()) {
+                timedOut = true;
+                break;
+            }
+            int u = open.poll();
+            if (hooks) viz.visit(g.nodes[u]);
+            steps++;
+            if (u == t) break;
+
+            for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                steps++;
+                int v = g.targets[a];
+                double nd = dist[u] + w[a];
+                if (nd < dist[v]) {
+                    dist[v] = nd;
+                    parent[v] = u;
+                    open.push(v, aStar ? nd + heuristic(g, v, t) : nd);
+                }
+            }
+        }
+
+        if (dist[t] == INF) return timedOut ? timedOut(steps) : notFound(steps);
+        double cost = q.potentials == null ? dist[t] : q.potentials.restore(dist[t], q.start, q.goal);
+        List<Daa_smartCity.Node> path = g.toPath(parent, s, t);
+        Daa_smartCity.PathResult res = new Daa_smartCity.PathResult(path != null, path, steps, false, null, cost);
+        res.timedOut = timedOut;     // tentative label: the best route reached so far
+        return res;
+    }
+
+    private static double heuristic(GraphSnapshot g, int a, int b) {
+        Daa_smartCity.Node p = g.nodes[a], q = g.nodes[b];
+        return Math.hypot(p.x - q.x, p.y - q.y);
+    }
+
+    // ======= Anytime (ARA*) =======
+
+    /*
+     * Likhachev, Gordon & Thrun's anytime repairing A*. The first pass is weighted A* with
+     * key g + eps*h, so it reaches the goal quickly; every later pass lowers eps and repairs
+     * the previous search instead of restarting it: nodes whose g improved after they were
+     * expanded (INCONS) are reopened alongside OPEN, everything else keeps its g-value.
+     *
+     * The reported bound is min(eps, g(goal) / min over OPEN+INCONS of g + h), which needs a
+     * consistent h; the straight-line distance only qualifies once scaled by the smallest
+     * weight-per-length ratio of any arc. That is usually far below the typical ratio, so the
+     * first eps is sized to bring eps*h up to about twice a typical road's cost per unit of
+     * length. With potentials the search runs on reduced costs, where the ratio says nothing
+     * about the restored real cost (whose optimum may even be <= 0), so no bound is reported.
+     */
+    private Daa_smartCity.PathResult anytimeAStar(GraphSnapshot g, double[] w, int s, int t, Query q,
+                                                  Visualizer viz) {
+        boolean hooks = viz != Visualizer.NONE;
+        int n = g.size();
+        double[] ratio = weightPerLength(g, w);
+        double scale = ratio[0];
+        double[] h = new double[n];
+        double[] dist = new double[n];
+        int[] parent = new int[n];
+        boolean[] closed = new boolean[n];
+        boolean[] incons = new boolean[n];
+        int[] inconsList = new int[n];
+        int[] pending = new int[n];
+        Arrays.fill(h, -1.0);
+        Arrays.fill(dist, INF);
+        Arrays.fill(parent, -1);
+        IndexedMinHeap open = new IndexedMinHeap(n);
+
+        double eps = scale > 0
+                ? Math.min(ARA_MAX_INITIAL_EPSILON, Math.max(ARA_MIN_INITIAL_EPSILON, 2 * ratio[1] / scale))
+                : 1.0;                   // h = 0: plain Dijkstra, optimal in one pass
+        double bound = INF;              // proven for dist[t] once a pass has completed
+        boolean timedOut = false;
+        int inconsCount = 0;
+        int steps = 0;
+
+        dist[s] = 0.0;
+        open.push(s, eps * scaledHeuristic(g, h, scale, s, t));
+
+        while (true) {
+            // improvePath: expand while some open key beats the goal's current cost
+            while (!open.isEmpty() && open.peekKey() < dist[t]) {
+                if (q.deadline.expired()) {
+                    timedOut = true;
+                    break;
+                }
+                int u = open.poll();
+                closed[u] = true;
+                if (hooks) viz.visit(g.nodes[u]);
+                steps++;
+
+                for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                    steps++;
+                    int v = g.targets[a];
+                    double nd = dist[u] + w[a];
+                    if (nd >= dist[v]) continue;
+                    dist[v] = nd;
+                    parent[v] = u;
+                    if (!closed[v]) {
+                        open.push(v, nd + eps * scaledHeuristic(g, h, scale, v, t));
+                    } else if (!incons[v]) {
+                        incons[v] = true;
+                        inconsList[inconsCount++] = v;
+                    }
+                }
+            }
+            if (timedOut || dist[t] == INF) break;
+
+            // OPEN + INCONS seed the next pass; their smallest g + h bounds the optimum from below
+            int pendingCount = 0;
+            double lower = INF;
+            while (!open.isEmpty()) pending[pendingCount++] = open.poll();
+            for (int i = 0; i < inconsCount; i++) {
+                incons[inconsList[i]] = false;
+                pending[pendingCount++] = inconsList[i];
+            }
+            inconsCount = 0;
+            for (int i = 0; i < pendingCount; i++) {
+                int v = pending[i];
+                lower = Math.min(lower, dist[v] + scaledHeuristic(g, h, scale, v, t));
+            }
+            bound = lower >= dist[t] ? 1.0 : Math.min(eps, lower > 0 ? dist[t] / lower : eps);
+            if (bound <= 1.0 || eps <= 1.0) {
+                bound = Math.min(bound, eps);
+                break;
+            }
+
+            eps = Math.max(1.0, 1.0 + (bound - 1.0) / 2);
+            Arrays.fill(closed, false);
+            for (int i = 0; i < pendingCount; i++) {
+                int v = pending[i];
+                open.push(v, dist[v] + eps * scaledHeuristic(g, h, scale, v, t));
+            }
+        }
+
+        if (dist[t] == INF) return timedOut ? timedOut(steps) : notFound(steps);
+        double cost = q.potentials == null ? dist[t] : q.potentials.restore(dist[t], q.start, q.goal);
+        List<Daa_smartCity.Node> path = g.toPath(parent, s, t);
+        Daa_smartCity.PathResult res = new Daa_smartCity.PathResult(path != null, path, steps, false, null, cost);
+        res.timedOut = timedOut;
+        if (q.potentials == null) res.bound = bound;
+        return res;
+    }
+
+    // {min, mean} of weight / straight-line length over the arcs; the min is the largest k for
+    // which k * straight-line distance never overestimates a road's weight
+    private static double[] weightPerLength(GraphSnapshot g, double[] w) {
+        double min = INF;
+        double sum = 0.0;
+        int count = 0;
+        for (int u = 0; u < g.size(); u++) {
+            Daa_smartCity.Node p = g.nodes[u];
+            for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                Daa_smartCity.Node q = g.nodes[g.targets[a]];
+                double dx = p.x - q.x, dy = p.y - q.y;
+                double len = Math.sqrt(dx * dx + dy * dy);     // hypot is much slower over every arc
+                if (len <= 0) continue;
+                min = Math.min(min, w[a] / len);
+                sum += w[a] / len;
+                count++;
+            }
+        }
+        if (count == 0) return new double[]{0.0, 0.0};
+        return new double[]{Math.max(0.0, min), sum / count};
+    }
+
+    private static double scaledHeuristic(GraphSnapshot g, double[] h, double scale, int v, int t) {
+        if (h[v] < 0) h[v] = scale * heuristic(g, v, t);
+        return h[v];
+    }
+
+    // Always takes the cheapest unvisited road (reduced cost), accumulating the real weight
+    private Daa_smartCity.PathResult greedy(GraphSnapshot g, double[] w, int s, int t, Deadline deadline,
+                                            Visualizer viz) {
+        boolean hooks = viz != Visualizer.NONE;
+        int n = g.size();
+        int[] parent = new int[n];
+        boolean[] visited = new boolean[n];
+        Arrays.fill(parent, -1);
+
+        double cost = 0.0;
+        int steps = 0;
+        int cur = s;
+
+        while (!visited[t]) {
+            if (deadline.expired()) return timedOut(steps);
+            visited[cur] = true;
+            if (hooks) viz.visit(g.nodes[cur]);
+            steps++;
+            if (cur == t) break;
+
+            int best = -1;
+            double min = INF;
+            for (int a = g.offsets[cur]; a < g.offsets[cur + 1]; a++) {
+                if (!visited[g.targets[a]] && w[a] < min) {
+                    min = w[a];
+                    best = a;
+                }
+            }
+            if (best < 0) break;
+
+            int next = g.targets[best];
+            cost += g.weights[best];
+            parent[next] = cur;
+            steps++;
+            if (hooks) viz.relax(g.nodes[cur], g.nodes[next]);
+            cur = next;
+        }
+
+        if (!visited[t]) return notFound(steps);
+        return new Daa_smartCity.PathResult(true, g.toPath(parent, s, t), steps, false, null,
+                s == t ? 0.0 : cost);
+    }
+
+    // ======= Bellman-Ford =======
+
+    // Round-based relaxation in arc order, with the per-round distances kept for the table
+    private Daa_smartCity.PathResult bellmanFord(GraphSnapshot g, int s, int t, Deadline deadline,
+                                                 Visualizer viz) {
+        boolean hooks = viz != Visualizer.NONE;
+        int n = g.size();
+        double[] dist = new double[n];
+        int[] parent = new int[n];
+        Arrays.fill(dist, INF);
+        Arrays.fill(parent, -1);
+        DistanceHistory history = new DistanceHistory(Arrays.asList(g.nodes));
+
+        dist[s] = 0.0;
+        history.record(g.nodes[s], 0.0);
+        int steps = 0;
+        boolean timedOut = false;
+
+        rounds:
+        for (int i = 0; i < n - 1; i++) {
+            boolean changed = false;
+            history.nextIteration();
+            for (int u = 0; u < n; u++) {
+                if (deadline.expired()) {
+                    timedOut = true;
+                    break rounds;
+                }
+                if (dist[u] == INF) continue;
+                for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                    int v = g.targets[a];
+                    double nd = dist[u] + g.weights[a];
+                    if (nd < dist[v]) {
+                        dist[v] = nd;
+                        parent[v] = u;
+                        history.record(g.nodes[v], nd);
+                        changed = true;
+                        steps++;
+                        if (hooks) viz.relax(g.nodes[u], g.nodes[v]);
+                    }
+                }
+            }
+            if (!changed) break;
+        }
+
+        // Unfinished rounds prove nothing about cycles, so the check only runs after a full pass
+        boolean negCycle = false;
+        for (int u = 0; u < n && !negCycle && !timedOut; u++) {
+            if (dist[u] == INF) continue;
+            for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                if (dist[u] + g.weights[a] < dist[g.targets[a]]) {
+                    negCycle = true;
+                    break;
+                }
+            }
+        }
+
+        boolean found = dist[t] < INF;
+        List<Daa_smartCity.Node> path = found ? g.toPath(parent, s, t) : null;
+        Daa_smartCity.PathResult res = new Daa_smartCity.PathResult(found && path != null, path, steps,
+                negCycle, null, found ? dist[t] : INF);
+        res.compactHistory = history;
+        res.timedOut = timedOut;
+        return res;
+    }
+
+    // DeltaSteppingSSSP keeps per-run state, so concurrent queries take turns on it
+    private Daa_smartCity.PathResult deltaStepping(GraphSnapshot g, Query q) {
+        synchronized (deltaStepping) {
+            return deltaStepping.shortestPath(g, q.start, q.goal, q.potentials, q.deadline);
+        }
+    }
+
+    private static Daa_smartCity.PathResult notFound(int steps) {
+        return new Daa_smartCity.PathResult(false, null, steps, false, null, INF);
+    }
+
+    static Daa_smartCity.PathResult timedOut(int steps) {
+        Daa_smartCity.PathResult res = notFound(steps);
+        res.timedOut = true;
+        return res;
+    }
+}
@@ -0,0 +1,128 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local load test for RoutingServer: opens C concurrent keep-alive connections, each sending
+ * R /route requests back to back between random nodes, and reports client-side tail latency.
+ * A traffic batch (rush hour / night mode, alternating) is posted every second while the test
+ * runs, so cache invalidation and the write lock are part of the measurement. Requests the
+ * server's admission control sheds (503) are counted apart from failures.
+ *
+ * Nodes are picked by grid label (N0..N{n-1}, as GraphIO.grid names them). Target is either a
+ * running server's base URL or a graph source served in-process. For 10k connections run the
+ * server in its own JVM: each side needs one descriptor per connection.
+ *
+ * Usage: java RoutingLoadTest [connections=10000] [requestsPerConnection=5] [target=grid:60]
+ */
+public class RoutingLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int perConnection = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String target = args.length > 2 ? args[2] : "grid:60";
+
+        RoutingServer local = null;
+        String base;
+        int nodeCount;
+        if (target.startsWith("http://")) {
+            base = target.endsWith("/") ? target.substring(0, target.length() - 1) : target;
+            nodeCount = -1;
+        } else {
+            GraphIO.Graph g = GraphIO.load(target);
+            local = new RoutingServer(new RoutingService(g), 0);
+            local.start();
+            base = "http://127.0.0.1:" + local.port();
+            nodeCount = g.nodes.size();
+        }
+        if (nodeCount < 0) nodeCount = fetchNodeCount(base);
+
+        ExecutorService clientThreads = Executors.newFixedThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(clientThreads)
+                .build();
+
+        System.out.println("Target " + base + ", " + nodeCount + " nodes, " + connections
+                + " connections x " + perConnection + " requests");
+
+        // Warm-up so the JIT has compiled the search before anything is measured
+        LatencyHistogram warm = new LatencyHistogram();
+        runUsers(client, base, nodeCount, 64, 50, warm, new AtomicInteger(), new Random(1));
+        System.out.println("warm-up  " + warm.summary());
+
+        ScheduledExecutorService traffic = Executors.newSingleThreadScheduledExecutor();
+        AtomicInteger batches = new AtomicInteger();
+        traffic.scheduleAtFixedRate(() -> {
+            try {
+                String body = batches.get() % 2 == 0
+                        ? "{\"mode\":\"rush\",\"factor\":1.1}"
+                        : "{\"mode\":\"night\",\"factor\":0.9}";
+                HttpRequest post = HttpRequest.newBuilder(URI.create(base + "/traffic"))
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                client.send(post, HttpResponse.BodyHandlers.discarding());
+                batches.incrementAndGet();
+            } catch (Exception ignored) {}
+        }, 1, 1, TimeUnit.SECONDS);
+
+        LatencyHistogram hist = new LatencyHistogram();
+        AtomicInteger shed = new AtomicInteger();
+        long t0 = System.nanoTime();
+        int failed = runUsers(client, base, nodeCount, connections, perConnection, hist, shed, new Random(2));
+        double secs = (System.nanoTime() - t0) / 1e9;
+        traffic.shutdownNow();
+
+        System.out.println("measured " + hist.summary());
+        System.out.println(String.format("%.0f req/s over %.1f s, %d failed, %d shed, %d traffic batches",
+                hist.count() / secs, secs, failed, shed.get(), batches.get()));
+
+        clientThreads.shutdownNow();
+        if (local != null) local.stop();
+        System.exit(0);
+    }
+
+    // Every user keeps one request in flight at a time; returns the number of failures
+    private static int runUsers(HttpClient client, String base, int nodeCount, int users, int perUser,
+                                LatencyHistogram hist, AtomicInteger shed, Random rnd) throws InterruptedException {
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(users);
+        for (int u = 0; u < users; u++) {
+            long seed = rnd.nextLong();
+            next(client, base, nodeCount, perUser, new Random(seed), hist, failed, shed, done);
+        }
+        done.await();
+        return failed.get();
+    }
+
+    private static void next(HttpClient client, String base, int nodeCount, int remaining, Random rnd,
+                             LatencyHistogram hist, AtomicInteger failed, AtomicInteger shed, CountDownLatch done) {
+        if (remaining == 0) {
+            done.countDown();
+            return;
+        }
+        String uri = base + "/route?from=N" + rnd.nextInt(nodeCount) + "&to=N" + rnd.nextInt(nodeCount);
+        HttpRequest req = HttpRequest.newBuilder(URI.create(uri)).timeout(Duration.ofSeconds(120)).build();
+        long t0 = System.nanoTime();
+        client.sendAsync(req, HttpResponse.BodyHandlers.ofString()).whenComplete((resp, err) -> {
+            hist.recordNanos(System.nanoTime() - t0);
+            if (err == null && resp.statusCode() == 503) shed.incrementAndGet();
+            else if (err != null || resp.statusCode() != 200) failed.incrementAndGet();
+            next(client, base, nodeCount, remaining - 1, rnd, hist, failed, shed, done);
+        });
+    }
+
+    private static int fetchNodeCount(String base) throws Exception {
+        HttpClient c = HttpClient.newHttpClient();
+        String body = c.send(HttpRequest.newBuilder(URI.create(base + "/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        return ((Number) MiniJson.parseObject(body).get("nodes")).intValue();
+    }
+}
@@ -0,0 +1,276 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Embedded HTTP routing service on the JDK's com.sun.net.httpserver.
+ *
+ *   GET  /route?from=A&to=B[&algorithm=Dijkstra][&timeoutMs=n]
+ *                      one shortest path ("Dynamic" by default, "Hub Labels", or a RoutingEngine
+ *                      label); a search still running after
+ *                      timeoutMs (default 10 s) answers with its best route so far and "timedOut"
+ *   POST /batch-route  {"algorithm":..., "pairs":[["A","B"], ...]}
+ *   POST /traffic      {"mode":"random|rush|night|block|set", ...}
+ *   GET  /metrics      per-endpoint counts and latency percentiles, admission state
+ *
+ * Route queries pass an AdmissionController first. An optional X-Priority header
+ * (emergency | standard | analytics) picks the class. A query over its class's share of the
+ * adaptive limit gets 503 with Retry-After straight away. Traffic updates and metrics bypass
+ * admission control.
+ *
+ * Each request gets its own virtual thread when the runtime has them (JDK 21+, looked up
+ * reflectively so the class still builds on 17); otherwise a fixed pool wide enough that
+ * requests queue in admission control, where latency is measured, not in the executor.
+ *
+ * Usage: java RoutingServer [graph=grid:100] [port=8080]
+ */
+public class RoutingServer {
+
+    private static final int BACKLOG = 16384;
+    private static final long DEFAULT_TIMEOUT_MS = 10_000;
+
+    private final RoutingService service;
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final AdmissionController admission;
+    private final Map<String, LatencyHistogram> latency = new ConcurrentHashMap<>();
+    private final LongAdder clientErrors = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+
+    /** A JSON-producing endpoint; IllegalArgumentException maps to 400. */
+    interface Endpoint {
+        Object handle(HttpExchange ex) throws Exception;
+    }
+
+    public RoutingServer(RoutingService service, int port) throws IOException {
+        this(service, port, new AdmissionController());
+    }
+
+    public RoutingServer(RoutingService service, int port, AdmissionController admission) throws IOException {
+        this.service = service;
+        this.admission = admission;
+        this.http = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = requestExecutor();
+        http.setExecutor(executor);
+
+        mount("/route", "GET", true, this::route);
+        mount("/batch-route", "POST", true, this::batchRoute);
+        mount("/traffic", "POST", false, this::traffic);
+        mount("/metrics", "GET", false, ex -> metrics());
+    }
+
+    public void start() { http.start(); }
+
+    public void stop() {
+        http.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int port() { return http.getAddress().getPort(); }
+
+    public RoutingService service() { return service; }
+
+    public static void main(String[] args) throws IOException {
+        String source = args.length > 0 ? args[0] : "grid:100";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+
+        GraphIO.Graph g = GraphIO.load(source);
+        RoutingServer server = new RoutingServer(new RoutingService(g), port);
+        server.start();
+        System.out.println("Routing service on :" + server.port() + " (" + g.nodes.size() + " nodes, "
+                + g.edges.size() + " roads, " + (virtualThreads() ? "virtual threads" : "thread pool") + ")");
+    }
+
+    // ======= Executor =======
+
+    static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            int threads = Math.max(256, 32 * Runtime.getRuntime().availableProcessors());
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "routing-http");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    static boolean virtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    // ======= Endpoints =======
+
+    private Object route(HttpExchange ex) {
+        Map<String, String> q = queryParams(ex);
+        Daa_smartCity.Node src = service.node(q.get("from"));
+        Daa_smartCity.Node dst = service.node(q.get("to"));
+        String algorithm = q.getOrDefault("algorithm", RoutingService.DYNAMIC);
+        long timeoutMs = q.containsKey("timeoutMs") ? Long.parseLong(q.get("timeoutMs")) : DEFAULT_TIMEOUT_MS;
+
+        int version = service.trafficVersion();
+        Map<String, Object> out = pathJson(service.route(src, dst, algorithm, Deadline.afterOrNone(timeoutMs)));
+        out.put("algorithm", algorithm);
+        out.put("version", version);
+        return out;
+    }
+
+    private Object batchRoute(HttpExchange ex) throws IOException {
+        Map<String, Object> body = MiniJson.parseObject(readBody(ex));
+        String algorithm = body.containsKey("algorithm") ? MiniJson.asString(body.get("algorithm")) : RoutingService.DYNAMIC;
+        List<Daa_smartCity.Node[]> pairs = service.pairs(body.get("pairs"));
+
+        int version = service.trafficVersion();
+        List<Object> results = new ArrayList<>(pairs.size());
+        for (Daa_smartCity.PathResult r : service.routeBatch(pairs, algorithm)) results.add(pathJson(r));
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("algorithm", algorithm);
+        out.put("version", version);
+        out.put("results", results);
+        return out;
+    }
+
+    private Object traffic(HttpExchange ex) throws IOException {
+        Map<String, Object> body = MiniJson.parseObject(readBody(ex));
+        List<DynamicTrafficManager.EdgeChange> changes = service.applyTraffic(body);
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("mode", body.get("mode"));
+        out.put("changed", changes.size());
+        out.put("version", service.trafficVersion());
+        return out;
+    }
+
+    private Object metrics() {
+        Map<String, Object> endpoints = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> en : latency.entrySet()) {
+            LatencyHistogram h = en.getValue();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("count", h.count());
+            m.put("meanMs", h.meanMillis());
+            m.put("p50Ms", h.percentileMillis(0.50));
+            m.put("p99Ms", h.percentileMillis(0.99));
+            m.put("p999Ms", h.percentileMillis(0.999));
+            m.put("maxMs", h.maxMillis());
+            endpoints.put(en.getKey(), m);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("version", service.trafficVersion());
+        out.put("nodes", service.graph().nodes.size());
+        out.put("roads", service.graph().edges.size());
+        out.put("virtualThreads", virtualThreads());
+        out.put("searches", service.manager().searchCount());
+        out.put("coalesced", service.manager().coalescedCount());
+        out.put("clientErrors", clientErrors.sum());
+        out.put("serverErrors", serverErrors.sum());
+        out.put("admission", admission.metrics());
+        out.put("endpoints", endpoints);
+        return out;
+    }
+
+    // ======= Plumbing =======
+
+    private void mount(String path, String method, boolean admit, Endpoint endpoint) {
+        LatencyHistogram h = new LatencyHistogram();
+        latency.put(path, h);
+        http.createContext(path, ex -> {
+            long t0 = System.nanoTime();
+            int status = 200;
+            Object body;
+            AdmissionController.Permit permit = null;
+            try {
+                if (!method.equals(ex.getRequestMethod())) {
+                    status = 405;
+                    body = error(method + " only");
+                } else if (admit && (permit = admission.tryAcquire(
+                        AdmissionController.Priority.parse(ex.getRequestHeaders().getFirst("X-Priority")))) == null) {
+                    status = 503;
+                    body = error("Overloaded, retry later");
+                    ex.getResponseHeaders().set("Retry-After", "1");
+                } else {
+                    body = endpoint.handle(ex);
+                }
+            } catch (IllegalArgumentException | ClassCastException e) {
+                status = 400;
+                body = error(e.getMessage());
+            } catch (Exception e) {
+                status = 500;
+                body = error(String.valueOf(e));
+            } finally {
+                if (permit != null) permit.close();     // before the write: the limit tracks service time
+            }
+            if (status >= 500 && status != 503) serverErrors.increment();    // 503s are counted as shed
+            else if (status >= 400 && status < 500) clientErrors.increment();
+            send(ex, status, body);
+            h.recordNanos(System.nanoTime() - t0);
+        });
+    }
+
+    private static void send(HttpExchange ex, int status, Object body) throws IOException {
+        byte[] bytes = MiniJson.write(body).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    static Map<String, Object> pathJson(Daa_smartCity.PathResult r) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        boolean ok = r != null && r.found && !r.hasNegativeCycle;
+        m.put("found", ok);
+        if (r != null && r.hasNegativeCycle) m.put("negativeCycle", true);
+        if (r != null && r.timedOut) m.put("timedOut", true);
+        if (ok && !Double.isNaN(r.bound)) m.put("bound", r.bound);
+        m.put("cost", ok ? r.totalCost : null);
+        m.put("steps", r == null ? 0 : r.steps);
+        List<String> labels = new ArrayList<>();
+        if (ok && r.path != null) {
+            for (Daa_smartCity.Node n : r.path) labels.add(n.label);
+        } else if (ok && r.compactPath != null) {
+            CompactPath cp = r.compactPath;         // cached result: labels straight from the encoding
+            cp.forEachId(id -> labels.add(cp.node(id).label));
+        }
+        m.put("path", labels);
+        return m;
+    }
+
+    private static Map<String, Object> error(String msg) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("error", msg);
+        return m;
+    }
+
+    private static Map<String, String> queryParams(HttpExchange ex) {
+        Map<String, String> out = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) return out;
+        for (String kv : raw.split("&")) {
+            int eq = kv.indexOf('=');
+            if (eq <= 0) continue;
+            out.put(URLDecoder.decode(kv.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    private static String readBody(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
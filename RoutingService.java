@@ -0,0 +1,199 @@
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Thread-safe routing facade over one loaded graph, for the headless front ends.
+ *
+ * Queries run concurrently under a read lock against an immutable snapshot; a traffic batch
+ * takes the write lock (DynamicTrafficManager mutates edge weights in place), then rebuilds
+ * the snapshot. The "Dynamic" algorithm goes through DynamicTrafficManager and its path
+ * cache (batches grouped by source over the pool); "Hub Labels" answers from a HubLabelIndex
+ * that the first query after a traffic batch rebuilds; the others run on RoutingEngine.
+ * Single queries can carry a Deadline, or run asynchronously with a timeout via routeAsync.
+ */
+public class RoutingService {
+
+    public static final String DYNAMIC = "Dynamic";
+    public static final String HUB_LABELS = "Hub Labels";
+
+    private final GraphIO.Graph graph;
+    private final DynamicTrafficManager manager = new DynamicTrafficManager();
+    private final RoutingEngine engine = new RoutingEngine();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ForkJoinPool pool;
+    private final HubLabelIndex hubLabels;
+
+    // Replaced only under the write lock
+    private GraphSnapshot snapshot;
+    private boolean negativeWeights;
+
+    public RoutingService(GraphIO.Graph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+        this.hubLabels = new HubLabelIndex(pool);
+        manager.addTrafficListener(hubLabels);
+        rebuildSnapshot();
+    }
+
+    public RoutingService(GraphIO.Graph graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    public GraphIO.Graph graph() { return graph; }
+
+    public DynamicTrafficManager manager() { return manager; }
+
+    public HubLabelIndex hubLabels() { return hubLabels; }
+
+    public int trafficVersion() { return manager.getTrafficVersion(); }
+
+    /** Node with this label; IllegalArgumentException if there is none. */
+    public Daa_smartCity.Node node(String label) {
+        Daa_smartCity.Node n = label == null ? null : graph.node(label);
+        if (n == null) throw new IllegalArgumentException("Unknown node " + label);
+        return n;
+    }
+
+    /** Shortest path with the named algorithm ("Dynamic", "Hub Labels" or a RoutingEngine label). */
+    public Daa_smartCity.PathResult route(Daa_smartCity.Node src, Daa_smartCity.Node dst, String algorithm) {
+        return route(src, dst, algorithm, Deadline.NONE);
+    }
+
+    /** As above; once the deadline passes the search stops with a timedOut result. */
+    public Daa_smartCity.PathResult route(Daa_smartCity.Node src, Daa_smartCity.Node dst, String algorithm,
+                                          Deadline deadline) {
+        lock.readLock().lock();
+        try {
+            return routeLocked(src, dst, algorithm, deadline);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs route() on the pool. After timeoutMillis (<= 0: no limit) the search returns what
+     * it has with timedOut set; cancelling the future stops it at its next deadline check.
+     */
+    public CompletableFuture<Daa_smartCity.PathResult> routeAsync(Daa_smartCity.Node src, Daa_smartCity.Node dst,
+                                                                  String algorithm, long timeoutMillis) {
+        Deadline deadline = Deadline.afterOrNone(timeoutMillis);
+        CompletableFuture<Daa_smartCity.PathResult> f =
+                CompletableFuture.supplyAsync(() -> route(src, dst, algorithm, deadline), pool);
+        f.whenComplete((r, ex) -> {
+            if (f.isCancelled()) deadline.cancel();
+        });
+        return f;
+    }
+
+    /** One result per pair, in request order, all against the same traffic version. */
+    public List<Daa_smartCity.PathResult> routeBatch(List<Daa_smartCity.Node[]> pairs, String algorithm) {
+        lock.readLock().lock();
+        try {
+            if (algorithm == null || DYNAMIC.equals(algorithm)) {
+                return manager.recomputeBatch(pairs, graph.nodes, graph.edges, graph.directed, snapshot, pool);
+            }
+            List<Daa_smartCity.PathResult> out = new ArrayList<>(pairs.size());
+            for (Daa_smartCity.Node[] p : pairs) out.add(routeLocked(p[0], p[1], algorithm, Deadline.NONE));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies one traffic batch exclusively, e.g. m -> m.applyRushHour(edges, 1.5).
+     * Queries in flight finish on the old weights; later ones see the new snapshot.
+     */
+    public List<DynamicTrafficManager.EdgeChange> applyTraffic(
+            Function<DynamicTrafficManager, List<DynamicTrafficManager.EdgeChange>> batch) {
+        lock.writeLock().lock();
+        try {
+            List<DynamicTrafficManager.EdgeChange> changes = batch.apply(manager);
+            rebuildSnapshot();
+            return changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies a traffic batch described as in POST /traffic:
+     *   {"mode":"random|block", "count":n, "seed":s}   {"mode":"rush|night", "factor":f}
+     *   {"mode":"set", "edges":[{"from":"A","to":"B","weight":w}, ...]}
+     */
+    public List<DynamicTrafficManager.EdgeChange> applyTraffic(Map<String, Object> spec) {
+        String mode = MiniJson.asString(spec.get("mode"));
+        List<Daa_smartCity.Edge> edges = graph.edges;
+        Random rng = spec.containsKey("seed") ? new Random(MiniJson.asNumber(spec.get("seed")).longValue()) : new Random();
+        int count = spec.containsKey("count")
+                ? MiniJson.asNumber(spec.get("count")).intValue()
+                : Math.max(1, edges.size() / 10);
+
+        if ("random".equals(mode)) {
+            return applyTraffic(m -> m.applyRandomTraffic(edges, count, 1, 3, rng));
+        } else if ("rush".equals(mode)) {
+            double factor = spec.containsKey("factor") ? MiniJson.asNumber(spec.get("factor")).doubleValue() : 1.5;
+            return applyTraffic(m -> m.applyRushHour(edges, factor));
+        } else if ("night".equals(mode)) {
+            double factor = spec.containsKey("factor") ? MiniJson.asNumber(spec.get("factor")).doubleValue() : 0.6;
+            return applyTraffic(m -> m.applyNightMode(edges, factor));
+        } else if ("block".equals(mode)) {
+            return applyTraffic(m -> m.applyRoadBlock(edges, count, 9999.0, rng));
+        } else if ("set".equals(mode)) {
+            Map<Daa_smartCity.Edge, Double> weights = new LinkedHashMap<>();
+            for (Object o : MiniJson.asArray(spec.get("edges"), "edges")) {
+                if (!(o instanceof Map)) throw new IllegalArgumentException("Each edge needs from/to/weight");
+                Map<?, ?> e = (Map<?, ?>) o;
+                Daa_smartCity.Node from = node(MiniJson.asString(e.get("from")));
+                Daa_smartCity.Node to = node(MiniJson.asString(e.get("to")));
+                Daa_smartCity.Edge road = graph.edge(from, to);
+                if (road == null) throw new IllegalArgumentException("No road " + from + " -> " + to);
+                weights.put(road, MiniJson.asNumber(e.get("weight")).doubleValue());
+            }
+            return applyTraffic(m -> m.applyWeights(weights));
+        }
+        throw new IllegalArgumentException("Unknown traffic mode " + mode);
+    }
+
+    /** Resolves a JSON array of [from, to] label pairs. */
+    public List<Daa_smartCity.Node[]> pairs(Object json) {
+        List<Daa_smartCity.Node[]> pairs = new ArrayList<>();
+        for (Object o : MiniJson.asArray(json, "pairs")) {
+            List<Object> p = MiniJson.asArray(o, "pair");
+            if (p.size() != 2) throw new IllegalArgumentException("Each pair needs [from, to]");
+            pairs.add(new Daa_smartCity.Node[]{node(MiniJson.asString(p.get(0))), node(MiniJson.asString(p.get(1)))});
+        }
+        return pairs;
+    }
+
+    private void rebuildSnapshot() {
+        snapshot = GraphSnapshot.of(graph.nodes, graph.edges, graph.directed);
+        negativeWeights = snapshot.hasNegativeWeights();
+    }
+
+    private Daa_smartCity.PathResult routeLocked(Daa_smartCity.Node src, Daa_smartCity.Node dst,
+                                                 String algorithm, Deadline deadline) {
+        if (algorithm == null || DYNAMIC.equals(algorithm)) {
+            return manager.recomputeShortestPath(src, dst, graph.nodes, graph.edges, graph.directed, snapshot,
+                    deadline);
+        }
+        if (HUB_LABELS.equals(algorithm)) {
+            if (negativeWeights) throw new IllegalArgumentException(HUB_LABELS + " needs non-negative weights");
+            return hubLabels.shortestPath(snapshot, src, dst);
+        }
+        RoutingEngine.Algorithm algo = RoutingEngine.Algorithm.byLabel(algorithm);
+        if (algo == null) throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+
+        JohnsonPotentials pot = null;
+        if (algo.labelSetting && negativeWeights) {
+            pot = manager.potentialsFor(graph.nodes, graph.edges, graph.directed);
+            if (pot == null) {
+                return new Daa_smartCity.PathResult(false, null, 0, true, null, Double.POSITIVE_INFINITY);
+            }
+        }
+        return engine.route(snapshot, new RoutingEngine.Query(src, dst, algo, pot).withDeadline(deadline));
+    }
+}
@@ -0,0 +1,164 @@
+import java.util.*;
+
+/**
+ * Queue-based Bellman-Ford (SPFA) with Tarjan's subtree disassembly.
+ *
+ * The shortest-path tree is kept as a preorder thread (succ/pred + depth). When a node v
+ * improves, its whole subtree is cut out: those labels are now stale, so they are skipped
+ * when popped instead of propagating garbage. If the node doing the relaxing sits inside
+ * the subtree being cut, the new arc closes a negative cycle, which is returned immediately.
+ * The cost of a cut is charged to the nodes removed, so it is amortised into the scans.
+ */
+public class SpfaShortestPaths {
+
+    private int[] succ, pred, depth, parent;
+    private boolean[] inTree;
+
+    public Daa_smartCity.PathResult shortestPath(Daa_smartCity.Node start,
+                                                 Daa_smartCity.Node goal,
+                                                 List<Daa_smartCity.Node> nodes,
+                                                 List<Daa_smartCity.Edge> edges,
+                                                 boolean directed) {
+        return shortestPath(GraphSnapshot.of(nodes, edges, directed), start, goal);
+    }
+
+    /** As above, on an already built snapshot. */
+    public Daa_smartCity.PathResult shortestPath(GraphSnapshot g,
+                                                 Daa_smartCity.Node start,
+                                                 Daa_smartCity.Node goal) {
+        return shortestPath(g, start, goal, Deadline.NONE);
+    }
+
+    /**
+     * As above, stopping once the deadline passes: the result then has timedOut set and, if
+     * the goal is in the current tree, its tentative path.
+     */
+    public Daa_smartCity.PathResult shortestPath(GraphSnapshot g,
+                                                 Daa_smartCity.Node start,
+                                                 Daa_smartCity.Node goal,
+                                                 Deadline deadline) {
+        int s = g.indexOf(start);
+        int t = g.indexOf(goal);
+        if (s < 0 || t < 0) {
+            return new Daa_smartCity.PathResult(false, null, 0, false, null, Double.POSITIVE_INFINITY);
+        }
+
+        int n = g.size();
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        succ = new int[n];
+        pred = new int[n];
+        depth = new int[n];
+        parent = new int[n];
+        inTree = new boolean[n];
+        Arrays.fill(parent, -1);
+
+        boolean[] queued = new boolean[n];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        dist[s] = 0.0;
+        inTree[s] = true;
+        succ[s] = s;   // circular thread, the root is its own sentinel
+        pred[s] = s;
+        queue.add(s);
+        queued[s] = true;
+
+        int steps = 0;
+        boolean timedOut = false;
+
+        while (!queue.isEmpty()) {
+            if (deadline.expired()) {
+                timedOut = true;
+                break;
+            }
+            int u = queue.poll();
+            queued[u] = false;
+            if (!inTree[u]) continue; // label went stale when an ancestor improved
+
+            for (int a = g.offsets[u]; a < g.offsets[u + 1]; a++) {
+                int v = g.targets[a];
+                double nd = dist[u] + g.weights[a];
+                if (nd >= dist[v]) continue;
+                steps++;
+
+                if (inTree[v] && disassemble(v, u)) {
+                    parent[v] = u;
+                    List<Daa_smartCity.Node> cycle = extractCycle(g, u, v);
+                    Daa_smartCity.PathResult res = new Daa_smartCity.PathResult(
+                            false, null, steps, true, null, Double.POSITIVE_INFINITY);
+                    res.negativeCycle = cycle;
+                    return res;
+                }
+
+                dist[v] = nd;
+                parent[v] = u;
+                depth[v] = depth[u] + 1;
+                inTree[v] = true;
+                linkAfter(u, v);
+
+                if (!queued[v]) {
+                    queued[v] = true;
+                    queue.add(v);
+                }
+            }
+        }
+
+        // A goal cut out of the tree has a stale label; only a goal still in it has a usable path
+        if (dist[t] == Double.POSITIVE_INFINITY || (timedOut && !inTree[t])) {
+            Daa_smartCity.PathResult res = new Daa_smartCity.PathResult(
+                    false, null, steps, false, null, Double.POSITIVE_INFINITY);
+            res.timedOut = timedOut;
+            return res;
+        }
+        List<Daa_smartCity.Node> path = g.toPath(parent, s, t);
+        Daa_smartCity.PathResult res = new Daa_smartCity.PathResult(path != null, path, steps, false, null, dist[t]);
+        res.timedOut = timedOut;
+        return res;
+    }
+
+    /**
+     * Removes v and its descendants from the tree. Returns true (and stops) if 'via'
+     * is found among them, i.e. relaxing via -> v would close a cycle.
+     */
+    private boolean disassemble(int v, int via) {
+        if (v == via) return true;
+
+        int before = pred[v];
+        int x = succ[v];
+        while (x != v && depth[x] > depth[v]) {
+            if (x == via) return true;
+            inTree[x] = false;
+            x = succ[x];
+        }
+
+        if (pred[v] == v) {
+            // v is the root and its subtree was the whole tree
+            succ[v] = v;
+            pred[v] = v;
+        } else {
+            succ[before] = x;
+            pred[x] = before;
+        }
+        inTree[v] = false;
+        return false;
+    }
+
+    // Insert v into the thread directly after u (v becomes u's first child in preorder)
+    private void linkAfter(int u, int v) {
+        int next = succ[u];
+        succ[u] = v;
+        pred[v] = u;
+        succ[v] = next;
+        pred[next] = v;
+    }
+
+    private List<Daa_smartCity.Node> extractCycle(GraphSnapshot g, int u, int v) {
+        List<Daa_smartCity.Node> cycle = new ArrayList<>();
+        cycle.add(g.nodes[v]);
+        int guard = g.size();
+        for (int at = u; at != v && at != -1 && guard-- > 0; at = parent[at]) cycle.add(g.nodes[at]);
+        cycle.add(g.nodes[v]);
+        Collections.reverse(cycle);
+        return cycle;
+    }
+}